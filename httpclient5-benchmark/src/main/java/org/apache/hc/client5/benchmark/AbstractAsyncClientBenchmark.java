@@ -0,0 +1,186 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.async.methods.AsyncRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.testing.async.AsyncEchoHandler;
+import org.apache.hc.client5.testing.async.AsyncRandomHandler;
+import org.apache.hc.core5.function.Supplier;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.config.H1Config;
+import org.apache.hc.core5.http.nio.AsyncServerExchangeHandler;
+import org.apache.hc.core5.http.nio.BasicResponseConsumer;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityConsumer;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.apache.hc.core5.testing.nio.Http2TestServer;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Base class of the end-to-end throughput and latency benchmarks of the asynchronous
+ * clients executing requests against an in-process {@link Http2TestServer}.
+ * <p>
+ * Each benchmark operation submits {@link #concurrency} requests and waits for
+ * all of them to complete, so that the number of in-flight messages can be varied
+ * independently of the number of benchmark threads.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public abstract class AbstractAsyncClientBenchmark {
+
+    static final Timeout TIMEOUT = Timeout.ofSeconds(30);
+
+    @Param({"128", "4096", "65536"})
+    public int bodySize;
+
+    @Param({"1", "10", "50"})
+    public int concurrency;
+
+    private Http2TestServer server;
+    private CloseableHttpAsyncClient httpclient;
+    private HttpHost target;
+    private String randomPath;
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new Http2TestServer(
+                IOReactorConfig.custom()
+                        .setSoTimeout(TIMEOUT)
+                        .build(),
+                null);
+        server.register("/echo/*", new Supplier<AsyncServerExchangeHandler>() {
+
+            @Override
+            public AsyncServerExchangeHandler get() {
+                return new AsyncEchoHandler();
+            }
+
+        });
+        server.register("/random/*", new Supplier<AsyncServerExchangeHandler>() {
+
+            @Override
+            public AsyncServerExchangeHandler get() {
+                return new AsyncRandomHandler();
+            }
+
+        });
+        if (isHttp2()) {
+            server.start(null, null, H2Config.DEFAULT);
+        } else {
+            server.start(null, null, H1Config.DEFAULT);
+        }
+        final Future<ListenerEndpoint> endpointFuture = server.listen(new InetSocketAddress(0));
+        final ListenerEndpoint endpoint = endpointFuture.get();
+        final InetSocketAddress address = (InetSocketAddress) endpoint.getAddress();
+        target = new HttpHost("localhost", address.getPort(), "http");
+
+        final IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setSoTimeout(TIMEOUT)
+                .build();
+        httpclient = createClient(ioReactorConfig);
+        httpclient.start();
+        randomPath = "/random/" + bodySize;
+        content = BenchmarkSupport.randomContent(bodySize);
+    }
+
+    /**
+     * Returns {@code true} if the server is to speak HTTP/2 rather than HTTP/1.1.
+     */
+    abstract boolean isHttp2();
+
+    abstract CloseableHttpAsyncClient createClient(IOReactorConfig ioReactorConfig);
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (httpclient != null) {
+            httpclient.shutdown(ShutdownType.GRACEFUL);
+        }
+        if (server != null) {
+            server.shutdown(TimeValue.ofSeconds(5));
+        }
+    }
+
+    @Benchmark
+    public void get(final Blackhole blackhole) throws Exception {
+        final List<Future<?>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(httpclient.execute(SimpleHttpRequest.get(target, randomPath), null));
+        }
+        for (final Future<?> future: futures) {
+            blackhole.consume(future.get());
+        }
+    }
+
+    @Benchmark
+    public void post(final Blackhole blackhole) throws Exception {
+        final List<Future<?>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(httpclient.execute(
+                    AsyncRequestBuilder.post(target, "/echo/")
+                            .setEntity(content, ContentType.APPLICATION_OCTET_STREAM)
+                            .build(),
+                    new BasicResponseConsumer<>(new BasicAsyncEntityConsumer()), HttpClientContext.create(), null));
+        }
+        for (final Future<?> future: futures) {
+            blackhole.consume(future.get());
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.benchmark;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.config.H1Config;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * End-to-end throughput and latency benchmark of the asynchronous clients
+ * executing requests over HTTP/2 against an in-process server. Requests are
+ * multiplexed over a single connection per endpoint, so unlike
+ * {@link AsyncClientBenchmark} this benchmark is not parameterized by pool size.
+ */
+public class AsyncHttp2ClientBenchmark extends AbstractAsyncClientBenchmark {
+
+    /**
+     * Client implementation under test:
+     * <ul>
+     *   <li>{@code internal}: {@code InternalHttpAsyncClient}</li>
+     *   <li>{@code minimal}: {@code MinimalHttpAsyncClient}</li>
+     *   <li>{@code http2-minimal}: {@code MinimalHttp2AsyncClient}</li>
+     * </ul>
+     */
+    @Param({"internal", "minimal", "http2-minimal"})
+    public String client;
+
+    @Override
+    boolean isHttp2() {
+        return true;
+    }
+
+    @Override
+    CloseableHttpAsyncClient createClient(final IOReactorConfig ioReactorConfig) {
+        if ("http2-minimal".equals(client)) {
+            return HttpAsyncClients.createHttp2Minimal(H2Config.DEFAULT, ioReactorConfig);
+        }
+        final PoolingAsyncClientConnectionManager connManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .build();
+        if ("minimal".equals(client)) {
+            return HttpAsyncClients.createMinimal(
+                    HttpVersionPolicy.FORCE_HTTP_2, H2Config.DEFAULT, H1Config.DEFAULT, ioReactorConfig, connManager);
+        }
+        return HttpAsyncClients.custom()
+                .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+                .setIOReactorConfig(ioReactorConfig)
+                .setConnectionManager(connManager)
+                .build();
+    }
+
+}
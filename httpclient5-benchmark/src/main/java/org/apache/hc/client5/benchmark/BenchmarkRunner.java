@@ -0,0 +1,64 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the client benchmarks with the GC profiler enabled, so that the allocation
+ * rate per operation is reported alongside throughput and latency percentiles.
+ * <p>
+ * Standard JMH command line options are accepted, for instance
+ * {@code java -jar benchmarks.jar ClassicClientBenchmark -t 32 -p poolSize=20}.
+ * </p>
+ */
+public class BenchmarkRunner {
+
+    public static void main(final String[] args) throws Exception {
+        final CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        final ChainedOptionsBuilder builder = new OptionsBuilder()
+                .parent(cmdOptions)
+                .addProfiler(GCProfiler.class);
+        if (cmdOptions.getIncludes().isEmpty()) {
+            builder.include(ClassicClientBenchmark.class.getSimpleName())
+                    .include(AsyncClientBenchmark.class.getSimpleName())
+                    .include(AsyncHttp2ClientBenchmark.class.getSimpleName())
+                    .include(CacheEntrySerializerBenchmark.class.getSimpleName());
+        }
+        if (!cmdOptions.getResult().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result.json");
+        }
+        new Runner(builder.build()).run();
+    }
+
+}
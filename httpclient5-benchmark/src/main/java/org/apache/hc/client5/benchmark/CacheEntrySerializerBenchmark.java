@@ -0,0 +1,158 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
+import org.apache.hc.client5.http.cache.HttpCacheStorageEntry;
+import org.apache.hc.client5.http.impl.cache.BinaryCacheEntrySerializer;
+import org.apache.hc.client5.http.impl.cache.ByteArrayCacheEntrySerializer;
+import org.apache.hc.client5.http.impl.cache.HeapResource;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the native Java serialization based {@link ByteArrayCacheEntrySerializer}
+ * with the binary {@link BinaryCacheEntrySerializer} for cache entries of a typical
+ * shape: a dozen response headers, a small variant map and a body of varying size.
+ * <p>
+ * The serialized size of an entry produced by each serializer is printed at setup.
+ * Use {@link BenchmarkRunner} or the GC profiler ({@code -prof gc}) to compare
+ * allocation rates.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class CacheEntrySerializerBenchmark {
+
+    /**
+     * {@code java} selects {@link ByteArrayCacheEntrySerializer},
+     * {@code binary} selects {@link BinaryCacheEntrySerializer}.
+     */
+    @Param({"java", "binary"})
+    public String serializer;
+
+    @Param({"128", "4096", "65536"})
+    public int bodySize;
+
+    private HttpCacheEntrySerializer<byte[]> impl;
+    private HttpCacheStorageEntry entry;
+    private byte[] serialized;
+    private ByteArrayOutputStream outputStream;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        impl = "binary".equals(serializer) ? BinaryCacheEntrySerializer.INSTANCE : ByteArrayCacheEntrySerializer.INSTANCE;
+        final Date now = new Date();
+        final Header[] headers = {
+                new BasicHeader("Date", DateUtils.formatDate(now)),
+                new BasicHeader("Server", "Apache/2.4.29 (Unix)"),
+                new BasicHeader("Last-Modified", DateUtils.formatDate(new Date(now.getTime() - 86400000L))),
+                new BasicHeader("ETag", "\"2aa6-53a5c7fe1a2c0\""),
+                new BasicHeader("Accept-Ranges", "bytes"),
+                new BasicHeader("Content-Length", Integer.toString(bodySize)),
+                new BasicHeader("Cache-Control", "max-age=3600, public"),
+                new BasicHeader("Expires", DateUtils.formatDate(new Date(now.getTime() + 3600000L))),
+                new BasicHeader("Vary", "Accept-Encoding"),
+                new BasicHeader("Content-Type", "text/html; charset=UTF-8"),
+                new BasicHeader("Via", "1.1 varnish"),
+                new BasicHeader("Hc-Request-Method", "GET")
+        };
+        final Map<String, String> variantMap = new HashMap<>();
+        variantMap.put("{Accept-Encoding=gzip}", "{Accept-Encoding=gzip}http://localhost/index.html");
+        variantMap.put("{Accept-Encoding=}", "{Accept-Encoding=}http://localhost/index.html");
+        entry = new HttpCacheStorageEntry("http://localhost/index.html", new HttpCacheEntry(
+                now, now, HttpStatus.SC_OK, headers,
+                new HeapResource(BenchmarkSupport.randomContent(bodySize)), variantMap));
+        serialized = impl.serialize(entry);
+        outputStream = new ByteArrayOutputStream(bodySize + 1024);
+        System.out.println();
+        System.out.println(serializer + " serialized size: " + serialized.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return impl.serialize(entry);
+    }
+
+    @Benchmark
+    public HttpCacheStorageEntry deserialize() throws Exception {
+        return impl.deserialize(serialized);
+    }
+
+    /**
+     * Writes the entry to a reused output stream; the binary serializer copies the
+     * resource straight into the stream while the native serializer has to
+     * buffer the whole object graph.
+     */
+    @Benchmark
+    public int serializeToStream() throws Exception {
+        outputStream.reset();
+        if (impl instanceof BinaryCacheEntrySerializer) {
+            ((BinaryCacheEntrySerializer) impl).serialize(entry, outputStream);
+        } else {
+            outputStream.write(impl.serialize(entry));
+        }
+        return outputStream.size();
+    }
+
+    @Benchmark
+    public HttpCacheStorageEntry deserializeFromStream() throws Exception {
+        final ByteArrayInputStream inputStream = new ByteArrayInputStream(serialized);
+        if (impl instanceof BinaryCacheEntrySerializer) {
+            return ((BinaryCacheEntrySerializer) impl).deserialize(inputStream);
+        }
+        return impl.deserialize(serialized);
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.testing.classic.EchoHandler;
+import org.apache.hc.client5.testing.classic.RandomHandler;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.config.SocketConfig;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.testing.classic.ClassicTestServer;
+import org.apache.hc.core5.util.Timeout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * End-to-end throughput and latency benchmark of the classic (blocking) clients
+ * executing requests against an in-process {@link ClassicTestServer}.
+ * <p>
+ * Concurrency is controlled with the JMH thread count ({@code -t}); each benchmark
+ * thread executes requests through the same client instance and connection pool.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ClassicClientBenchmark {
+
+    private static final Timeout TIMEOUT = Timeout.ofSeconds(30);
+
+    /**
+     * {@code internal} selects {@code InternalHttpClient} with the default execution chain,
+     * {@code minimal} selects {@code MinimalHttpClient}.
+     */
+    @Param({"internal", "minimal"})
+    public String client;
+
+    @Param({"128", "4096", "65536"})
+    public int bodySize;
+
+    @Param({"5", "20", "100"})
+    public int poolSize;
+
+    private ClassicTestServer server;
+    private PoolingHttpClientConnectionManager connManager;
+    private CloseableHttpClient httpclient;
+    private HttpHost target;
+    private String randomPath;
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new ClassicTestServer(SocketConfig.custom()
+                .setSoTimeout(TIMEOUT)
+                .build());
+        server.registerHandler("/echo/*", new EchoHandler());
+        server.registerHandler("/random/*", new RandomHandler());
+        server.start();
+
+        connManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(poolSize)
+                .setMaxConnPerRoute(poolSize)
+                .setDefaultSocketConfig(SocketConfig.custom()
+                        .setSoTimeout(TIMEOUT)
+                        .build())
+                .build();
+        if ("minimal".equals(client)) {
+            httpclient = HttpClients.createMinimal(connManager);
+        } else {
+            httpclient = HttpClients.custom()
+                    .setConnectionManager(connManager)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectionTimeout(TIMEOUT)
+                            .setConnectionRequestTimeout(TIMEOUT)
+                            .build())
+                    .build();
+        }
+        target = new HttpHost("localhost", server.getPort(), "http");
+        randomPath = "/random/" + bodySize;
+        content = BenchmarkSupport.randomContent(bodySize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (httpclient != null) {
+            httpclient.close();
+        }
+        if (server != null) {
+            server.shutdown(ShutdownType.IMMEDIATE);
+        }
+    }
+
+    @Benchmark
+    public void get(final Blackhole blackhole) throws Exception {
+        final HttpGet httpget = new HttpGet(randomPath);
+        try (final CloseableHttpResponse response = httpclient.execute(target, httpget)) {
+            blackhole.consume(response.getCode());
+            EntityUtils.consume(response.getEntity());
+        }
+    }
+
+    @Benchmark
+    public void post(final Blackhole blackhole) throws Exception {
+        final HttpPost httppost = new HttpPost("/echo/");
+        httppost.setEntity(new ByteArrayEntity(content, ContentType.APPLICATION_OCTET_STREAM));
+        try (final CloseableHttpResponse response = httpclient.execute(target, httppost)) {
+            blackhole.consume(response.getCode());
+            EntityUtils.consume(response.getEntity());
+        }
+    }
+
+}
@@ -0,0 +1,297 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.MessageHeaders;
+import org.apache.hc.core5.http.message.MessageSupport;
+
+/**
+ * Cache control directives and validators of a cached response, parsed
+ * once when the {@link HttpCacheEntry} is created, so that freshness and
+ * suitability of the entry can be computed without re-parsing its headers
+ * on every cache hit.
+ * <p>
+ * Time values are expressed in milliseconds since the epoch and are
+ * {@link #UNDEFINED} if the respective header is absent or cannot be
+ * parsed. Directive values are expressed in seconds.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public final class CacheEntryMetadata {
+
+    /**
+     * Value of time and length attributes whose header is absent.
+     */
+    public static final long UNDEFINED = Long.MIN_VALUE;
+
+    /**
+     * Age assumed for a response with a malformed or negative
+     * {@literal Age} header.
+     */
+    public static final long MAX_AGE = 2147483648L;
+
+    private static final int MUST_REVALIDATE = 1;
+    private static final int PROXY_REVALIDATE = 1 << 1;
+    private static final int SHARED_MAX_AGE = 1 << 2;
+    private static final int LAST_MODIFIED_PRESENT = 1 << 3;
+
+    private static final String[] EMPTY = new String[0];
+
+    private final long date;
+    private final long expires;
+    private final long lastModified;
+    private final long ageSecs;
+    private final long maxAgeSecs;
+    private final long staleWhileRevalidateSecs;
+    private final long staleIfErrorSecs;
+    private final long contentLength;
+    private final String etag;
+    private final String[] directives;
+    private final int flags;
+
+    CacheEntryMetadata(final MessageHeaders headers, final Date dateValue) {
+        super();
+        this.date = dateValue != null ? dateValue.getTime() : UNDEFINED;
+        this.expires = toTime(DateUtils.parseDate(headers, HeaderConstants.EXPIRES));
+        this.lastModified = toTime(DateUtils.parseDate(headers, HeaderConstants.LAST_MODIFIED));
+
+        long age = 0;
+        for (final Header hdr : headers.getHeaders(HeaderConstants.AGE)) {
+            long hdrAge;
+            try {
+                hdrAge = Long.parseLong(hdr.getValue());
+                if (hdrAge < 0) {
+                    hdrAge = MAX_AGE;
+                }
+            } catch (final NumberFormatException nfe) {
+                hdrAge = MAX_AGE;
+            }
+            age = Math.max(hdrAge, age);
+        }
+        this.ageSecs = age;
+
+        long maxAge = -1;
+        long staleWhileRevalidate = -1;
+        long staleIfError = -1;
+        int bits = 0;
+        final List<String> names = new ArrayList<>();
+        final Iterator<HeaderElement> it = MessageSupport.iterate(headers, HeaderConstants.CACHE_CONTROL);
+        while (it.hasNext()) {
+            final HeaderElement elt = it.next();
+            final String name = elt.getName();
+            if (HeaderConstants.CACHE_CONTROL_MAX_AGE.equals(name) || "s-maxage".equals(name)) {
+                try {
+                    final long currMaxAge = Long.parseLong(elt.getValue());
+                    if (maxAge == -1 || currMaxAge < maxAge) {
+                        maxAge = currMaxAge;
+                    }
+                } catch (final NumberFormatException nfe) {
+                    // be conservative if can't parse
+                    maxAge = 0;
+                }
+            }
+            if (HeaderConstants.STALE_WHILE_REVALIDATE.equalsIgnoreCase(name)) {
+                staleWhileRevalidate = Math.max(parseSecs(elt.getValue()), staleWhileRevalidate);
+            }
+            if (HeaderConstants.STALE_IF_ERROR.equals(name)) {
+                staleIfError = Math.max(parseSecs(elt.getValue()), staleIfError);
+            }
+            if (HeaderConstants.CACHE_CONTROL_MUST_REVALIDATE.equalsIgnoreCase(name)) {
+                bits |= MUST_REVALIDATE;
+            } else if (HeaderConstants.CACHE_CONTROL_PROXY_REVALIDATE.equalsIgnoreCase(name)) {
+                bits |= PROXY_REVALIDATE;
+            } else if ("s-maxage".equalsIgnoreCase(name)) {
+                bits |= SHARED_MAX_AGE;
+            }
+            names.add(name.toLowerCase(Locale.ROOT));
+        }
+        this.maxAgeSecs = maxAge;
+        this.staleWhileRevalidateSecs = staleWhileRevalidate;
+        this.staleIfErrorSecs = staleIfError;
+        this.directives = names.isEmpty() ? EMPTY : names.toArray(new String[names.size()]);
+
+        if (headers.getFirstHeader(HeaderConstants.LAST_MODIFIED) != null) {
+            bits |= LAST_MODIFIED_PRESENT;
+        }
+        this.flags = bits;
+
+        final Header etagHeader = headers.getFirstHeader(HeaderConstants.ETAG);
+        this.etag = etagHeader != null ? etagHeader.getValue() : null;
+
+        final Header lengthHeader = headers.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+        long length = UNDEFINED;
+        if (lengthHeader != null) {
+            try {
+                length = Long.parseLong(lengthHeader.getValue());
+            } catch (final NumberFormatException ex) {
+                length = -1;
+            }
+        }
+        this.contentLength = length;
+    }
+
+    private static long toTime(final Date date) {
+        return date != null ? date.getTime() : UNDEFINED;
+    }
+
+    /**
+     * Parses the value of a delta-seconds directive, returning {@code -1}
+     * for malformed values, which are to be skipped.
+     */
+    private static long parseSecs(final String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (final NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the value of the {@literal Date} header.
+     */
+    public long getDate() {
+        return date;
+    }
+
+    /**
+     * Returns the value of the {@literal Expires} header.
+     */
+    public long getExpires() {
+        return expires;
+    }
+
+    /**
+     * Returns the value of the {@literal Last-Modified} header.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns {@code true} if the response has a {@literal Last-Modified}
+     * header, whether or not its value could be parsed.
+     */
+    public boolean hasLastModifiedHeader() {
+        return (flags & LAST_MODIFIED_PRESENT) != 0;
+    }
+
+    /**
+     * Returns the largest value of the {@literal Age} headers, {@code 0}
+     * if there are none or {@link #MAX_AGE} if any of them is malformed.
+     */
+    public long getAgeSecs() {
+        return ageSecs;
+    }
+
+    /**
+     * Returns the smallest value of the {@literal max-age} and
+     * {@literal s-maxage} directives, {@code 0} if any of them is malformed
+     * or {@code -1} if there are none.
+     */
+    public long getMaxAgeSecs() {
+        return maxAgeSecs;
+    }
+
+    /**
+     * Returns the largest value of the {@literal stale-while-revalidate}
+     * directives or {@code -1} if there are none.
+     */
+    public long getStaleWhileRevalidateSecs() {
+        return staleWhileRevalidateSecs;
+    }
+
+    /**
+     * Returns the largest value of the {@literal stale-if-error}
+     * directives or {@code -1} if there are none.
+     */
+    public long getStaleIfErrorSecs() {
+        return staleIfErrorSecs;
+    }
+
+    /**
+     * Returns the value of the {@literal Content-Length} header or
+     * {@code -1} if it is malformed.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Returns the value of the {@literal ETag} header or {@code null}
+     * if absent.
+     */
+    public String getETag() {
+        return etag;
+    }
+
+    public boolean isMustRevalidate() {
+        return (flags & MUST_REVALIDATE) != 0;
+    }
+
+    public boolean isProxyRevalidate() {
+        return (flags & PROXY_REVALIDATE) != 0;
+    }
+
+    public boolean hasSharedMaxAge() {
+        return (flags & SHARED_MAX_AGE) != 0;
+    }
+
+    /**
+     * Returns {@code true} if the {@literal Cache-Control} headers of the
+     * response contain the given directive, ignoring case.
+     */
+    public boolean hasCacheControlDirective(final String directive) {
+        for (final String name : directives) {
+            if (name.equalsIgnoreCase(directive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "[date=" + date + "; expires=" + expires + "; last-modified=" + lastModified
+                + "; age=" + ageSecs + "; max-age=" + maxAgeSecs + "; etag=" + etag + "]";
+    }
+
+}
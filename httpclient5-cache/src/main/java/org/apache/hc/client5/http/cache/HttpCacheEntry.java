@@ -27,21 +27,25 @@
 package org.apache.hc.client5.http.cache;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
 import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HeaderElement;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.MessageHeaders;
 import org.apache.hc.core5.http.ProtocolException;
 import org.apache.hc.core5.http.message.HeaderGroup;
+import org.apache.hc.core5.http.message.MessageSupport;
 import org.apache.hc.core5.util.Args;
 
 /**
@@ -67,6 +71,9 @@ public class HttpCacheEntry implements MessageHeaders, Serializable {
     private final Map<String,String> variantMap;
     private final Date date;
 
+    private transient volatile CacheEntryMetadata metadata;
+    private transient volatile List<String> variantHeaderNames;
+
     /**
      * Create a new {@link HttpCacheEntry} with variants.
      * @param requestDate
@@ -105,6 +112,7 @@ public HttpCacheEntry(
         this.resource = resource;
         this.variantMap = variantMap != null ? new HashMap<>(variantMap) : null;
         this.date = parseDate();
+        this.metadata = new CacheEntryMetadata(this, this.date);
     }
 
     /**
@@ -256,6 +264,22 @@ public Date getDate() {
         return date;
     }
 
+    /**
+     * Returns the cache control directives and validators of the origin
+     * response, parsed when this entry was created.
+     *
+     * @since 5.0
+     */
+    public CacheEntryMetadata getMetadata() {
+        CacheEntryMetadata result = this.metadata;
+        if (result == null) {
+            // deserialized entry
+            result = new CacheEntryMetadata(this, this.date);
+            this.metadata = result;
+        }
+        return result;
+    }
+
     /**
      * Returns the {@link Resource} containing the origin response body.
      */
@@ -273,6 +297,32 @@ public boolean hasVariants() {
         return getFirstHeader(HeaderConstants.VARY) != null;
     }
 
+    /**
+     * Returns the names of the request headers listed in the {@literal Vary}
+     * headers of the origin response, sorted in their natural order. The
+     * headers are parsed on first access only.
+     *
+     * @return the names of the varying request headers; empty if this
+     *   cached response has no variants
+     *
+     * @since 5.0
+     */
+    public List<String> getVariantHeaderNames() {
+        List<String> names = this.variantHeaderNames;
+        if (names == null) {
+            final List<String> list = new ArrayList<>();
+            final Iterator<HeaderElement> it = MessageSupport.iterate(this, HeaderConstants.VARY);
+            while (it.hasNext()) {
+                final HeaderElement elt = it.next();
+                list.add(elt.getName());
+            }
+            Collections.sort(list);
+            names = Collections.unmodifiableList(list);
+            this.variantHeaderNames = names;
+        }
+        return names;
+    }
+
     /**
      * Returns an index about where in the cache different variants for
      * a given resource are stored. This maps "variant keys" to "cache keys",
@@ -283,7 +333,7 @@ public boolean hasVariants() {
      * the "parent" entry to hold this index of the other variants.
      */
     public Map<String, String> getVariantMap() {
-        return Collections.unmodifiableMap(variantMap);
+        return variantMap != null ? Collections.unmodifiableMap(variantMap) : Collections.<String, String>emptyMap();
     }
 
     /**
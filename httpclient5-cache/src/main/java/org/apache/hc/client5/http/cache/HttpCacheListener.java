@@ -0,0 +1,97 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.cache;
+
+import org.apache.hc.core5.http.HttpHost;
+
+/**
+ * Listener of HTTP cache events that can be used to collect cache
+ * effectiveness and storage latency metrics.
+ * <p>
+ * Listener methods get invoked on the critical path of request execution
+ * by multiple threads concurrently. Implementations must be thread safe,
+ * must not block and should not throw exceptions.
+ * </p>
+ *
+ * @since 5.0
+ */
+public interface HttpCacheListener {
+
+    /**
+     * Triggered when the caching module has produced a response.
+     *
+     * @param target the target host.
+     * @param status the way the response has been generated.
+     * @param cachedBytes length of the response body served from the cache,
+     *   {@code 0} if the body came from the origin server or its length is unknown.
+     * @param durationNanos time elapsed between the request and the response head
+     *   in nanoseconds.
+     */
+    void onResponse(HttpHost target, CacheResponseStatus status, long cachedBytes, long durationNanos);
+
+    /**
+     * Triggered when a cache entry has been revalidated with the origin server.
+     *
+     * @param target the target host.
+     * @param validated {@code true} if the origin server has confirmed the
+     *   entry is still valid, {@code false} if it has sent a new response or
+     *   an error.
+     * @param durationNanos round trip time of the conditional request in nanoseconds.
+     */
+    void onRevalidation(HttpHost target, boolean validated, long durationNanos);
+
+    /**
+     * Triggered when an entry lookup in the cache storage has completed.
+     *
+     * @param durationNanos time taken by the lookup in nanoseconds.
+     * @param found {@code true} if the entry has been found.
+     */
+    void onStorageGet(long durationNanos, boolean found);
+
+    /**
+     * Triggered when an entry has been stored or updated in the cache storage.
+     *
+     * @param durationNanos time taken by the operation in nanoseconds.
+     */
+    void onStoragePut(long durationNanos);
+
+    /**
+     * Triggered when an entry has been removed from the cache storage.
+     *
+     * @param durationNanos time taken by the operation in nanoseconds.
+     */
+    void onStorageRemove(long durationNanos);
+
+    /**
+     * Triggered when a cache storage operation has failed.
+     *
+     * @param durationNanos time elapsed before the failure in nanoseconds.
+     */
+    void onStorageFailure(long durationNanos);
+
+}
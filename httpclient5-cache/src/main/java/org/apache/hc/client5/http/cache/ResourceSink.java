@@ -0,0 +1,72 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives a response body as it is being streamed from the origin server
+ * and turns it into a {@link Resource} once the body is complete.
+ * <p>
+ * Exactly one of {@link #commit()} or {@link #abort()} is expected to be
+ * called once the sink is no longer written to.
+ * </p>
+ *
+ * @see StreamingResourceFactory
+ * @since 5.0
+ */
+public interface ResourceSink {
+
+    /**
+     * Appends the remaining content of the given buffer. The position of the
+     * buffer is advanced by the number of bytes written.
+     */
+    void write(ByteBuffer src) throws ResourceIOException;
+
+    /**
+     * Appends a portion of the given byte array.
+     */
+    void write(byte[] content, int off, int len) throws ResourceIOException;
+
+    /**
+     * Returns the number of bytes written so far.
+     */
+    long length();
+
+    /**
+     * Completes the body and returns the {@link Resource} containing it.
+     */
+    Resource commit() throws ResourceIOException;
+
+    /**
+     * Discards all content written so far and releases any system resources
+     * held by the sink.
+     */
+    void abort();
+
+}
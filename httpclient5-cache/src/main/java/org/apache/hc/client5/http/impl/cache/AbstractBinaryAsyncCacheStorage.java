@@ -40,7 +40,7 @@ public AbstractBinaryAsyncCacheStorage(final int maxUpdateRetries, final HttpCac
     }
 
     public AbstractBinaryAsyncCacheStorage(final int maxUpdateRetries) {
-        super(maxUpdateRetries, ByteArrayCacheEntrySerializer.INSTANCE);
+        super(maxUpdateRetries, BinaryCacheEntrySerializer.INSTANCE);
     }
 
 }
@@ -40,7 +40,7 @@ public AbstractBinaryCacheStorage(final int maxUpdateRetries, final HttpCacheEnt
     }
 
     public AbstractBinaryCacheStorage(final int maxUpdateRetries) {
-        super(maxUpdateRetries, ByteArrayCacheEntrySerializer.INSTANCE);
+        super(maxUpdateRetries, BinaryCacheEntrySerializer.INSTANCE);
     }
 
 }
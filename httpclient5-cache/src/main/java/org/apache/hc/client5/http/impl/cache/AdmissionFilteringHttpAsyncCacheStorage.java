@@ -0,0 +1,143 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpAsyncCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.impl.Operations;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * {@link HttpAsyncCacheStorage} decorator that keeps responses requested only
+ * once from reaching another, typically remote, storage such as memcached.
+ * <p>
+ * Every {@link #putEntry(String, HttpCacheEntry, FutureCallback) put} is counted
+ * in a compact count-min sketch of key frequencies and is passed on only once its
+ * key has been offered the given number of times within about one decay window;
+ * other puts complete at once with {@link Boolean#FALSE}.
+ * {@link #updateEntry(String, HttpCacheCASOperation, FutureCallback) CAS updates},
+ * reads and removals are always passed on, so revalidated entries are always
+ * refreshed. Variant references added by CAS updates are limited to variants
+ * that have been admitted.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class AdmissionFilteringHttpAsyncCacheStorage implements HttpAsyncCacheStorage {
+
+    private final HttpAsyncCacheStorage storage;
+    private final CacheAdmissionFilter admissionFilter;
+
+    /**
+     * @param storage the storage to admit entries to.
+     * @param expectedKeys the expected number of distinct keys seen within
+     *   the decay window.
+     * @param threshold the number of times a key must be offered before its
+     *   entry is stored; at most {@code 15}.
+     * @param decayWindow the time after which key frequencies are halved.
+     */
+    public AdmissionFilteringHttpAsyncCacheStorage(
+            final HttpAsyncCacheStorage storage,
+            final int expectedKeys,
+            final int threshold,
+            final TimeValue decayWindow) {
+        super();
+        this.storage = Args.notNull(storage, "Cache storage");
+        this.admissionFilter = new CacheAdmissionFilter(expectedKeys, threshold, decayWindow);
+    }
+
+    public AdmissionFilteringHttpAsyncCacheStorage(final HttpAsyncCacheStorage storage) {
+        this(storage,
+                CacheAdmissionFilter.DEFAULT_EXPECTED_KEYS,
+                CacheAdmissionFilter.DEFAULT_THRESHOLD,
+                CacheAdmissionFilter.DEFAULT_DECAY_WINDOW);
+    }
+
+    @Override
+    public Cancellable putEntry(final String key, final HttpCacheEntry entry, final FutureCallback<Boolean> callback) {
+        Args.notNull(key, "Key");
+        Args.notNull(entry, "Cache entry");
+        Args.notNull(callback, "Callback");
+        if (this.admissionFilter.admit(key)) {
+            return this.storage.putEntry(key, entry, callback);
+        }
+        callback.completed(Boolean.FALSE);
+        return Operations.nonCancellable();
+    }
+
+    @Override
+    public Cancellable getEntry(final String key, final FutureCallback<HttpCacheEntry> callback) {
+        return this.storage.getEntry(key, callback);
+    }
+
+    @Override
+    public Cancellable removeEntry(final String key, final FutureCallback<Boolean> callback) {
+        return this.storage.removeEntry(key, callback);
+    }
+
+    @Override
+    public Cancellable updateEntry(
+            final String key, final HttpCacheCASOperation casOperation, final FutureCallback<Boolean> callback) {
+        return this.storage.updateEntry(key, this.admissionFilter.excludeRejectedVariants(casOperation), callback);
+    }
+
+    @Override
+    public Cancellable getEntries(final Collection<String> keys, final FutureCallback<Map<String, HttpCacheEntry>> callback) {
+        return this.storage.getEntries(keys, callback);
+    }
+
+    /**
+     * Returns the number of puts passed on to the backing storage.
+     */
+    public long getAdmittedCount() {
+        return this.admissionFilter.getAdmittedCount();
+    }
+
+    /**
+     * Returns the number of puts completed without being passed on.
+     */
+    public long getRejectedCount() {
+        return this.admissionFilter.getRejectedCount();
+    }
+
+    @Override
+    public String toString() {
+        return this.admissionFilter.toString();
+    }
+
+}
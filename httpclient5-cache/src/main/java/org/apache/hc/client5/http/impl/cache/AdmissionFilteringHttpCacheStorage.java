@@ -0,0 +1,138 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * {@link HttpCacheStorage} decorator that keeps responses requested only
+ * once from reaching another, typically remote, storage such as memcached.
+ * <p>
+ * Every {@link #putEntry(String, HttpCacheEntry) put} is counted in a compact
+ * count-min sketch of key frequencies and is passed on only once its key has
+ * been offered the given number of times within about one decay window;
+ * other puts are dropped. {@link #updateEntry(String, HttpCacheCASOperation)
+ * CAS updates}, reads and removals are always passed on; the caching module
+ * refreshes entries it has revalidated with CAS updates. A CAS update does
+ * not add references to variant entries whose put has been dropped.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class AdmissionFilteringHttpCacheStorage implements HttpCacheStorage {
+
+    private final HttpCacheStorage storage;
+    private final CacheAdmissionFilter admissionFilter;
+
+    /**
+     * @param storage the storage to admit entries to.
+     * @param expectedKeys the expected number of distinct keys seen within
+     *   the decay window.
+     * @param threshold the number of times a key must be offered before its
+     *   entry is stored; at most {@code 15}.
+     * @param decayWindow the time after which key frequencies are halved.
+     */
+    public AdmissionFilteringHttpCacheStorage(
+            final HttpCacheStorage storage,
+            final int expectedKeys,
+            final int threshold,
+            final TimeValue decayWindow) {
+        super();
+        this.storage = Args.notNull(storage, "Cache storage");
+        this.admissionFilter = new CacheAdmissionFilter(expectedKeys, threshold, decayWindow);
+    }
+
+    public AdmissionFilteringHttpCacheStorage(final HttpCacheStorage storage) {
+        this(storage,
+                CacheAdmissionFilter.DEFAULT_EXPECTED_KEYS,
+                CacheAdmissionFilter.DEFAULT_THRESHOLD,
+                CacheAdmissionFilter.DEFAULT_DECAY_WINDOW);
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws ResourceIOException {
+        Args.notNull(key, "Key");
+        Args.notNull(entry, "Cache entry");
+        if (this.admissionFilter.admit(key)) {
+            this.storage.putEntry(key, entry);
+        }
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws ResourceIOException {
+        return this.storage.getEntry(key);
+    }
+
+    @Override
+    public void removeEntry(final String key) throws ResourceIOException {
+        this.storage.removeEntry(key);
+    }
+
+    @Override
+    public void updateEntry(
+            final String key, final HttpCacheCASOperation casOperation) throws HttpCacheUpdateException, ResourceIOException {
+        this.storage.updateEntry(key, this.admissionFilter.excludeRejectedVariants(casOperation));
+    }
+
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws ResourceIOException {
+        return this.storage.getEntries(keys);
+    }
+
+    /**
+     * Returns the number of puts passed on to the backing storage.
+     */
+    public long getAdmittedCount() {
+        return this.admissionFilter.getAdmittedCount();
+    }
+
+    /**
+     * Returns the number of puts dropped.
+     */
+    public long getRejectedCount() {
+        return this.admissionFilter.getRejectedCount();
+    }
+
+    @Override
+    public String toString() {
+        return this.admissionFilter.toString();
+    }
+
+}
@@ -0,0 +1,284 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.util.Args;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Schedules background revalidations of stale cache entries for
+ * {@link AsyncCachingExec} when the {@code stale-while-revalidate}
+ * directive allows the stale entry to be served in the meantime.
+ * <p>
+ * Revalidations are deduplicated by cache key, at most
+ * {@link CacheConfig#getAsynchronousWorkersMax()} of them are executed
+ * concurrently and no more than {@link CacheConfig#getRevalidationQueueSize()}
+ * are outstanding at any time. Revalidations of a key that failed before
+ * are delayed the same way as by {@link ExponentialBackOffSchedulingStrategy}.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class AsyncCacheRevalidator implements Closeable {
+
+    /**
+     * Background revalidation of a single cache entry.
+     */
+    interface RevalidationTask {
+
+        /**
+         * Starts the revalidation. The callback must eventually be completed
+         * with {@code true} if the entry has been successfully revalidated
+         * and {@code false} or an exception otherwise.
+         */
+        void execute(FutureCallback<Boolean> callback);
+
+    }
+
+    private final ScheduledExecutorService executor;
+    private final boolean ownExecutor;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long backOffRate;
+    private final long initialExpiryInMillis;
+    private final long maxExpiryInMillis;
+    private final FailureCache failureCache;
+    private final Set<String> queued;
+    private final Queue<Job> pending;
+    private int running;
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    /**
+     * Creates a revalidator with its own scheduler thread, the concurrency
+     * limits of the given {@link CacheConfig} and the default back off
+     * parameters of {@link ExponentialBackOffSchedulingStrategy}.
+     */
+    public AsyncCacheRevalidator(final CacheConfig config) {
+        this(createExecutor(),
+                true,
+                config.getAsynchronousWorkersMax(),
+                config.getRevalidationQueueSize(),
+                ExponentialBackOffSchedulingStrategy.DEFAULT_BACK_OFF_RATE,
+                ExponentialBackOffSchedulingStrategy.DEFAULT_INITIAL_EXPIRY_IN_MILLIS,
+                ExponentialBackOffSchedulingStrategy.DEFAULT_MAX_EXPIRY_IN_MILLIS);
+    }
+
+    /**
+     * Creates a revalidator that uses the given executor to delay revalidations.
+     * The executor is not shut down when the revalidator is closed.
+     *
+     * @param executor the executor revalidations are scheduled with; not {@code null}
+     * @param maxConcurrent the maximum number of revalidations executed concurrently
+     * @param maxQueued the maximum number of outstanding revalidations
+     * @param backOffRate the back off rate to be used; not negative
+     * @param initialExpiryInMillis the initial expiry in milli seconds; not negative
+     * @param maxExpiryInMillis the upper limit of the delay in milli seconds; not negative
+     */
+    public AsyncCacheRevalidator(
+            final ScheduledExecutorService executor,
+            final int maxConcurrent,
+            final int maxQueued,
+            final long backOffRate,
+            final long initialExpiryInMillis,
+            final long maxExpiryInMillis) {
+        this(executor, false, maxConcurrent, maxQueued, backOffRate, initialExpiryInMillis, maxExpiryInMillis);
+    }
+
+    private AsyncCacheRevalidator(
+            final ScheduledExecutorService executor,
+            final boolean ownExecutor,
+            final int maxConcurrent,
+            final int maxQueued,
+            final long backOffRate,
+            final long initialExpiryInMillis,
+            final long maxExpiryInMillis) {
+        this.executor = Args.notNull(executor, "Executor");
+        this.ownExecutor = ownExecutor;
+        this.maxConcurrent = Args.positive(maxConcurrent, "Max concurrent revalidations");
+        this.maxQueued = Args.positive(maxQueued, "Max queued revalidations");
+        this.backOffRate = Args.notNegative(backOffRate, "BackOffRate");
+        this.initialExpiryInMillis = Args.notNegative(initialExpiryInMillis, "InitialExpiryInMillis");
+        this.maxExpiryInMillis = Args.notNegative(maxExpiryInMillis, "MaxExpiryInMillis");
+        this.failureCache = new DefaultFailureCache();
+        this.queued = new HashSet<>();
+        this.pending = new ArrayDeque<>();
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                1, new DefaultThreadFactory("cache-revalidator", true));
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return executor;
+    }
+
+    /**
+     * Schedules an asynchronous revalidation unless one for the same
+     * cache key is already outstanding.
+     */
+    void revalidateCacheEntry(final String cacheKey, final RevalidationTask task) {
+        synchronized (this) {
+            if (queued.contains(cacheKey)) {
+                return;
+            }
+            if (queued.size() >= maxQueued) {
+                log.debug("Revalidation for [" + cacheKey + "] not scheduled: too many revalidations outstanding");
+                return;
+            }
+            queued.add(cacheKey);
+        }
+        final Job job = new Job(cacheKey, task);
+        final long delayInMillis = calculateDelayInMillis(failureCache.getErrorCount(cacheKey));
+        try {
+            executor.schedule(job, delayInMillis, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException ree) {
+            log.debug("Revalidation for [" + cacheKey + "] not scheduled: " + ree);
+            synchronized (this) {
+                queued.remove(cacheKey);
+            }
+        }
+    }
+
+    private void start(final Job job) {
+        synchronized (this) {
+            if (running >= maxConcurrent) {
+                pending.add(job);
+                return;
+            }
+            running++;
+        }
+        execute(job);
+    }
+
+    private void execute(final Job job) {
+        try {
+            job.task.execute(new FutureCallback<Boolean>() {
+
+                @Override
+                public void completed(final Boolean result) {
+                    if (result != null && result) {
+                        failureCache.resetErrorCount(job.cacheKey);
+                    } else {
+                        failureCache.increaseErrorCount(job.cacheKey);
+                    }
+                    complete(job);
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    log.debug("Asynchronous revalidation failed", ex);
+                    failureCache.increaseErrorCount(job.cacheKey);
+                    complete(job);
+                }
+
+                @Override
+                public void cancelled() {
+                    complete(job);
+                }
+
+            });
+        } catch (final RuntimeException ex) {
+            log.error("RuntimeException thrown during asynchronous revalidation: " + ex);
+            failureCache.increaseErrorCount(job.cacheKey);
+            complete(job);
+        }
+    }
+
+    private void complete(final Job job) {
+        final Job next;
+        synchronized (this) {
+            if (!queued.remove(job.cacheKey)) {
+                // already completed
+                return;
+            }
+            next = pending.poll();
+            if (next == null) {
+                running--;
+            }
+        }
+        if (next != null) {
+            execute(next);
+        }
+    }
+
+    long calculateDelayInMillis(final int consecutiveFailedAttempts) {
+        if (consecutiveFailedAttempts > 0) {
+            final long delayInMillis = (long) (initialExpiryInMillis *
+                    Math.pow(backOffRate, consecutiveFailedAttempts - 1));
+            return Math.min(delayInMillis, maxExpiryInMillis);
+        }
+        return 0;
+    }
+
+    synchronized Set<String> getScheduledIdentifiers() {
+        return Collections.unmodifiableSet(new HashSet<>(queued));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private final class Job implements Runnable {
+
+        final String cacheKey;
+        final RevalidationTask task;
+
+        Job(final String cacheKey, final RevalidationTask task) {
+            this.cacheKey = cacheKey;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            start(this);
+        }
+
+    }
+
+}
@@ -30,8 +30,10 @@
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -39,14 +41,19 @@
 import org.apache.hc.client5.http.async.AsyncExecCallback;
 import org.apache.hc.client5.http.async.AsyncExecChain;
 import org.apache.hc.client5.http.async.AsyncExecChainHandler;
+import org.apache.hc.client5.http.async.ForkableAsyncExecRuntime;
 import org.apache.hc.client5.http.async.methods.SimpleBody;
 import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
 import org.apache.hc.client5.http.cache.CacheResponseStatus;
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpAsyncCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheListener;
+import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.cache.ResourceSink;
+import org.apache.hc.client5.http.impl.ExecSupport;
 import org.apache.hc.client5.http.impl.RequestCopier;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.utils.DateUtils;
@@ -88,11 +95,87 @@ public class AsyncCachingExec extends CachingExecBase implements AsyncExecChainH
 
     private final HttpAsyncCache responseCache;
     private final ConditionalRequestBuilder<HttpRequest> conditionalRequestBuilder;
+    private final ScheduledExecutorService scheduledExecutor;
+    private final AsyncCacheRevalidator cacheRevalidator;
+
+    /**
+     * @param cache the response cache.
+     * @param scheduledExecutor the executor used to time out requests waiting for a
+     *   collapsed cache miss. If {@code null} such requests wait until the request
+     *   in flight completes.
+     * @param cacheRevalidator the revalidator used to revalidate stale entries in
+     *   the background as permitted by {@code stale-while-revalidate}. If {@code null},
+     *   or if the execution runtime is not a {@link ForkableAsyncExecRuntime}, stale
+     *   entries are always revalidated before they are served.
+     * @param config the cache configuration.
+     *
+     * @since 5.0
+     */
+    public AsyncCachingExec(
+            final HttpAsyncCache cache,
+            final ScheduledExecutorService scheduledExecutor,
+            final AsyncCacheRevalidator cacheRevalidator,
+            final CacheConfig config) {
+        this(cache, scheduledExecutor, cacheRevalidator, config, null);
+    }
 
-    public AsyncCachingExec(final HttpAsyncCache cache, final CacheConfig config) {
-        super(config);
+    /**
+     * @param cache the response cache.
+     * @param scheduledExecutor the executor used to time out requests waiting for a
+     *   collapsed cache miss. May be {@code null}.
+     * @param cacheRevalidator the revalidator used to revalidate stale entries in
+     *   the background. May be {@code null}.
+     * @param config the cache configuration.
+     * @param cacheListener the listener to report cache events to. May be {@code null}.
+     *
+     * @since 5.0
+     */
+    public AsyncCachingExec(
+            final HttpAsyncCache cache,
+            final ScheduledExecutorService scheduledExecutor,
+            final AsyncCacheRevalidator cacheRevalidator,
+            final CacheConfig config,
+            final HttpCacheListener cacheListener) {
+        this(cache, scheduledExecutor, cacheRevalidator, config, cacheListener, null);
+    }
+
+    /**
+     * @param cache the response cache.
+     * @param scheduledExecutor the executor used to time out requests waiting for a
+     *   collapsed cache miss. May be {@code null}.
+     * @param cacheRevalidator the revalidator used to revalidate stale entries in
+     *   the background. May be {@code null}.
+     * @param config the cache configuration.
+     * @param cacheListener the listener to report cache events to. May be {@code null}.
+     * @param writeBehindQueue the queue cacheable responses are written to the cache
+     *   with in the background. If {@code null} responses are returned to the caller
+     *   once they have been cached.
+     *
+     * @since 5.0
+     */
+    public AsyncCachingExec(
+            final HttpAsyncCache cache,
+            final ScheduledExecutorService scheduledExecutor,
+            final AsyncCacheRevalidator cacheRevalidator,
+            final CacheConfig config,
+            final HttpCacheListener cacheListener,
+            final CacheWriteBehindQueue writeBehindQueue) {
+        super(config, cacheListener, writeBehindQueue);
         this.responseCache = Args.notNull(cache, "Response cache");
         this.conditionalRequestBuilder = new ConditionalRequestBuilder<>(RequestCopier.INSTANCE);
+        this.scheduledExecutor = scheduledExecutor;
+        this.cacheRevalidator = cacheRevalidator;
+    }
+
+    public AsyncCachingExec(
+            final HttpAsyncCache cache,
+            final ScheduledExecutorService scheduledExecutor,
+            final CacheConfig config) {
+        this(cache, scheduledExecutor, null, config);
+    }
+
+    public AsyncCachingExec(final HttpAsyncCache cache, final CacheConfig config) {
+        this(cache, null, null, config);
     }
 
     public AsyncCachingExec(
@@ -112,29 +195,66 @@ public AsyncCachingExec(
             final ConditionalRequestBuilder<HttpRequest> conditionalRequestBuilder,
             final ResponseProtocolCompliance responseCompliance,
             final RequestProtocolCompliance requestCompliance,
+            final AsyncCacheRevalidator cacheRevalidator,
             final CacheConfig config) {
         super(validityPolicy, responseCachingPolicy, responseGenerator, cacheableRequestPolicy,
                 suitabilityChecker, responseCompliance, requestCompliance, config);
         this.responseCache = responseCache;
         this.conditionalRequestBuilder = conditionalRequestBuilder;
+        this.scheduledExecutor = null;
+        this.cacheRevalidator = cacheRevalidator;
+    }
+
+    private void triggerResponse(
+            final SimpleHttpResponse cacheResponse,
+            final AsyncExecChain.Scope scope,
+            final AsyncExecCallback asyncExecCallback) {
+        triggerResponse(cacheResponse, null, scope, asyncExecCallback);
     }
 
+    /**
+     * Triggers the given response. If {@code directContent} is not {@code null} the body is
+     * passed to the data consumer as read-only views of the memory mapped cache file or of
+     * the off-heap chunks rather than copied from the response.
+     */
     private void triggerResponse(
             final SimpleHttpResponse cacheResponse,
+            final ByteBuffer[] directContent,
             final AsyncExecChain.Scope scope,
             final AsyncExecCallback asyncExecCallback) {
         scope.clientContext.setAttribute(HttpCoreContext.HTTP_RESPONSE, cacheResponse);
         scope.execRuntime.releaseConnection();
 
         final SimpleBody body = cacheResponse.getBody();
-        final byte[] content = body != null ? body.getBodyBytes() : null;
-        final ContentType contentType = body != null ? body.getContentType() : null;
+        final ByteBuffer[] content;
+        final ContentType contentType;
+        if (body != null) {
+            content = new ByteBuffer[] { ByteBuffer.wrap(body.getBodyBytes()) };
+            contentType = body.getContentType();
+        } else if (directContent != null) {
+            content = directContent;
+            final Header h = cacheResponse.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+            contentType = h != null ? ContentType.parse(h.getValue()) : null;
+        } else {
+            content = null;
+            contentType = null;
+        }
         try {
+            long contentLength = 0;
+            if (content != null) {
+                for (final ByteBuffer buffer: content) {
+                    contentLength += buffer.remaining();
+                }
+            }
             final AsyncDataConsumer dataConsumer = asyncExecCallback.handleResponse(
                     cacheResponse,
-                    content != null ? new BasicEntityDetails(content.length, contentType) : null);
+                    content != null ? new BasicEntityDetails(contentLength, contentType) : null);
             if (dataConsumer != null) {
-                dataConsumer.consume(ByteBuffer.wrap(content));
+                if (content != null) {
+                    for (final ByteBuffer buffer: content) {
+                        dataConsumer.consume(buffer);
+                    }
+                }
                 dataConsumer.streamEnd(null);
             }
             asyncExecCallback.completed();
@@ -154,7 +274,6 @@ public void execute(
         Args.notNull(scope, "Scope");
 
         final HttpRoute route = scope.route;
-        final ComplexFuture<?> future = scope.future;
         final HttpClientContext context = scope.clientContext;
         context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
         context.setAttribute(HttpClientContext.HTTP_REQUEST, request);
@@ -162,6 +281,71 @@ public void execute(
         final URIAuthority authority = request.getAuthority();
         final String scheme = request.getScheme();
         final HttpHost target = authority != null ? new HttpHost(authority, scheme) : route.getTargetHost();
+        if (cacheListener == null) {
+            doExecute(target, request, entityProducer, scope, chain, asyncExecCallback);
+        } else {
+            doExecute(target, request, entityProducer, scope, chain, new ReportingExecCallback(
+                    target, context, System.nanoTime(), asyncExecCallback));
+        }
+    }
+
+    /**
+     * Reports the response to the cache listener as soon as its head is available
+     * or, if the exchange fails before that, on failure.
+     */
+    private class ReportingExecCallback implements AsyncExecCallback {
+
+        private final HttpHost target;
+        private final HttpClientContext context;
+        private final long startNanos;
+        private final AsyncExecCallback asyncExecCallback;
+        private final AtomicBoolean reported;
+
+        ReportingExecCallback(
+                final HttpHost target,
+                final HttpClientContext context,
+                final long startNanos,
+                final AsyncExecCallback asyncExecCallback) {
+            this.target = target;
+            this.context = context;
+            this.startNanos = startNanos;
+            this.asyncExecCallback = asyncExecCallback;
+            this.reported = new AtomicBoolean(false);
+        }
+
+        @Override
+        public AsyncDataConsumer handleResponse(
+                final HttpResponse response, final EntityDetails entityDetails) throws HttpException, IOException {
+            if (reported.compareAndSet(false, true)) {
+                notifyResponse(target, context, entityDetails != null ? entityDetails.getContentLength() : 0, startNanos);
+            }
+            return asyncExecCallback.handleResponse(response, entityDetails);
+        }
+
+        @Override
+        public void completed() {
+            asyncExecCallback.completed();
+        }
+
+        @Override
+        public void failed(final Exception cause) {
+            if (reported.compareAndSet(false, true)) {
+                notifyResponse(target, context, 0, startNanos);
+            }
+            asyncExecCallback.failed(cause);
+        }
+
+    }
+
+    private void doExecute(
+            final HttpHost target,
+            final HttpRequest request,
+            final AsyncEntityProducer entityProducer,
+            final AsyncExecChain.Scope scope,
+            final AsyncExecChain chain,
+            final AsyncExecCallback asyncExecCallback) throws HttpException, IOException {
+        final ComplexFuture<?> future = scope.future;
+        final HttpClientContext context = scope.clientContext;
         final String via = generateViaHeader(request);
 
         // default response context
@@ -184,6 +368,7 @@ public void execute(
 
         if (!cacheableRequestPolicy.isServableFromCache(request)) {
             log.debug("Request is not servable from cache");
+            invalidateWritesBehind(target, request);
             future.setDependency(responseCache.flushInvalidatedCacheEntriesFor(target, request, new FutureCallback<Boolean>() {
 
                 @Override
@@ -307,6 +492,7 @@ public AsyncDataConsumer handleResponse(
                     backendResponse.addHeader("Via", generateViaHeader(backendResponse));
 
                     responseCompliance.ensureProtocolCompliance(scope.originalRequest, request, backendResponse);
+                    invalidateWritesBehind(target, request);
                     responseCache.flushInvalidatedCacheEntriesFor(target, request, backendResponse, new FutureCallback<Boolean>() {
 
                         @Override
@@ -324,8 +510,19 @@ public void cancelled() {
 
                     });
                     final boolean cacheable = asyncExecCallback.cacheResponse(backendResponse)
-                            && responseCachingPolicy.isResponseCacheable(request, backendResponse);
+                            && getResponseCachingPolicy(responseCache.isStreamingSupported())
+                                    .isResponseCacheable(request, backendResponse);
                     if (cacheable) {
+                        if (entityDetails != null && isStreamedIntoCache(entityDetails.getContentLength())) {
+                            final ResourceSink sink = responseCache.createResourceSink(request);
+                            if (sink != null) {
+                                log.debug("Streaming backend response into cache");
+                                storeRequestIfModifiedSinceFor304Response(request, backendResponse);
+                                return streamIntoCache(
+                                        target, request, backendResponse, entityDetails, sink,
+                                        requestDate, responseDate, asyncExecCallback);
+                            }
+                        }
                         responseStateRef.set(new ResponseState(
                                 backendResponse,
                                 responseDate,
@@ -434,7 +631,28 @@ public void releaseResources() {
                 @Override
                 public void completed() {
                     final ResponseState responseState = responseStateRef.getAndSet(null);
-                    if (responseState != null) {
+                    if (responseState != null && writeBehindQueue != null) {
+                        try {
+                            final SimpleHttpResponse cacheResponse = generateWriteBehindResponse(
+                                    request,
+                                    responseState.backendResponse,
+                                    responseState.buffer,
+                                    requestDate,
+                                    responseState.responseDate);
+                            final ByteArrayBuffer buffer = responseState.buffer;
+                            writeBehind(target, request, responseState.backendResponse, buffer,
+                                    requestDate, responseState.responseDate);
+                            triggerResponse(
+                                    cacheResponse,
+                                    isWriteBehindContentServed(request, buffer)
+                                            ? new ByteBuffer[] { ByteBuffer.wrap(buffer.array(), 0, buffer.length()) }
+                                            : null,
+                                    scope,
+                                    asyncExecCallback);
+                        } catch (final ResourceIOException ex) {
+                            asyncExecCallback.failed(ex);
+                        }
+                    } else if (responseState != null) {
                         future.setDependency(responseCache.getCacheEntry(target, request, new FutureCallback<HttpCacheEntry>() {
 
                             @Override
@@ -512,6 +730,200 @@ public void failed(final Exception cause) {
         }
     }
 
+    /**
+     * Queues the buffered backend response to be written to the cache unless
+     * the cache holds a more recent entry by then. Requests collapsed onto this
+     * one wait until the write has completed.
+     */
+    private void writeBehind(
+            final HttpHost target,
+            final HttpRequest request,
+            final HttpResponse backendResponse,
+            final ByteArrayBuffer buffer,
+            final Date requestDate,
+            final Date responseDate) {
+        final Runnable releaseCollapsed = holdCollapsedRequests(target, request);
+        writeBehindQueue.enqueue(target, getWriteBehindKey(target, request, backendResponse), new CacheWriteBehindQueue.Write() {
+
+            private void complete(final Runnable done) {
+                releaseCollapsed.run();
+                done.run();
+            }
+
+            @Override
+            public void execute(final Runnable done) {
+                responseCache.getCacheEntry(target, request, new FutureCallback<HttpCacheEntry>() {
+
+                    @Override
+                    public void completed(final HttpCacheEntry existingEntry) {
+                        if (DateUtils.isAfter(existingEntry, backendResponse, HttpHeaders.DATE)) {
+                            complete(done);
+                            return;
+                        }
+                        responseCache.createCacheEntry(target, request, backendResponse, buffer, requestDate, responseDate,
+                                new FutureCallback<HttpCacheEntry>() {
+
+                                    @Override
+                                    public void completed(final HttpCacheEntry newEntry) {
+                                        log.debug("Backend response successfully cached");
+                                        complete(done);
+                                    }
+
+                                    @Override
+                                    public void failed(final Exception ex) {
+                                        log.warn("Unable to cache backend response", ex);
+                                        complete(done);
+                                    }
+
+                                    @Override
+                                    public void cancelled() {
+                                        complete(done);
+                                    }
+
+                                });
+                    }
+
+                    @Override
+                    public void failed(final Exception ex) {
+                        log.warn("Unable to cache backend response", ex);
+                        complete(done);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        complete(done);
+                    }
+
+                });
+            }
+
+            @Override
+            public void discard() {
+                releaseCollapsed.run();
+            }
+
+        });
+    }
+
+    private AsyncDataConsumer streamIntoCache(
+            final HttpHost target,
+            final HttpRequest request,
+            final HttpResponse backendResponse,
+            final EntityDetails entityDetails,
+            final ResourceSink sink,
+            final Date requestDate,
+            final Date responseDate,
+            final AsyncExecCallback asyncExecCallback) throws HttpException, IOException {
+        // Collapsed requests keep waiting until the body has been streamed
+        final Runnable releaseCollapsed = holdCollapsedRequests(target, request);
+        final AsyncDataConsumer dataConsumer;
+        boolean success = false;
+        try {
+            dataConsumer = asyncExecCallback.handleResponse(backendResponse, entityDetails);
+            success = true;
+        } finally {
+            if (!success) {
+                releaseCollapsed.run();
+            }
+        }
+        return new AsyncDataConsumer() {
+
+            private final AtomicBoolean done = new AtomicBoolean(false);
+
+            private void abort() {
+                if (done.compareAndSet(false, true)) {
+                    sink.abort();
+                    releaseCollapsed.run();
+                }
+            }
+
+            @Override
+            public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+                if (dataConsumer != null) {
+                    dataConsumer.updateCapacity(capacityChannel);
+                } else {
+                    capacityChannel.update(Integer.MAX_VALUE);
+                }
+            }
+
+            @Override
+            public int consume(final ByteBuffer src) throws IOException {
+                if (!done.get()) {
+                    try {
+                        sink.write(src.duplicate());
+                        if (sink.length() > cacheConfig.getMaxStreamedObjectSize()) {
+                            log.debug("Backend response content length exceeds maximum");
+                            abort();
+                        }
+                    } catch (final ResourceIOException ex) {
+                        log.warn("Unable to stream backend response into cache", ex);
+                        abort();
+                    }
+                }
+                if (dataConsumer != null) {
+                    return dataConsumer.consume(src);
+                }
+                src.position(src.limit());
+                return Integer.MAX_VALUE;
+            }
+
+            @Override
+            public void streamEnd(final List<? extends Header> trailers) throws HttpException, IOException {
+                if (dataConsumer != null) {
+                    dataConsumer.streamEnd(trailers);
+                }
+                if (done.compareAndSet(false, true)) {
+                    final Resource resource;
+                    try {
+                        resource = sink.commit();
+                    } catch (final ResourceIOException ex) {
+                        log.warn("Unable to stream backend response into cache", ex);
+                        releaseCollapsed.run();
+                        return;
+                    }
+                    responseCache.createStreamedCacheEntry(
+                            target,
+                            request,
+                            backendResponse,
+                            resource,
+                            requestDate,
+                            responseDate,
+                            new FutureCallback<HttpCacheEntry>() {
+
+                                @Override
+                                public void completed(final HttpCacheEntry newEntry) {
+                                    log.debug("Backend response successfully cached");
+                                    releaseCollapsed.run();
+                                }
+
+                                @Override
+                                public void failed(final Exception ex) {
+                                    resource.dispose();
+                                    log.warn("Unable to store backend response in cache", ex);
+                                    releaseCollapsed.run();
+                                }
+
+                                @Override
+                                public void cancelled() {
+                                    resource.dispose();
+                                    releaseCollapsed.run();
+                                }
+
+                            });
+                }
+            }
+
+            @Override
+            public void releaseResources() {
+                if (dataConsumer != null) {
+                    dataConsumer.releaseResources();
+                }
+                abort();
+            }
+
+        };
+    }
+
     private void handleCacheHit(
             final HttpHost target,
             final HttpRequest request,
@@ -526,8 +938,24 @@ private void handleCacheHit(
         if (suitabilityChecker.canCachedResponseBeUsed(target, request, entry, now)) {
             log.debug("Cache hit");
             try {
-                final SimpleHttpResponse cacheResponse = generateCachedResponse(request, context, entry, now);
-                triggerResponse(cacheResponse, scope, asyncExecCallback);
+                final SimpleHttpResponse cacheResponse = generateCachedResponse(request, context, entry, now, false);
+                final RefCountedResource directContent = getCachedDirectContent(request, entry);
+                if (directContent == null) {
+                    triggerResponse(cacheResponse, scope, asyncExecCallback);
+                } else {
+                    // Keep the memory behind the views alive while they are being consumed
+                    if (!directContent.retain()) {
+                        throw new ResourceIOException("Resource already disposed");
+                    }
+                    try {
+                        final ByteBuffer[] buffers = directContent instanceof FileResource
+                                ? new ByteBuffer[] { ((FileResource) directContent).getByteBuffer() }
+                                : ((OffHeapResource) directContent).getByteBuffers();
+                        triggerResponse(cacheResponse, buffers, scope, asyncExecCallback);
+                    } finally {
+                        directContent.release();
+                    }
+                }
             } catch (final ResourceIOException ex) {
                 recordCacheFailure(target, request);
                 if (!mayCallBackend(request)) {
@@ -547,14 +975,93 @@ private void handleCacheHit(
             final SimpleHttpResponse cacheResponse = generateGatewayTimeout(context);
             triggerResponse(cacheResponse, scope, asyncExecCallback);
         } else if (!(entry.getStatus() == HttpStatus.SC_NOT_MODIFIED && !suitabilityChecker.isConditional(request))) {
-            log.debug("Revalidating cache entry");
-            revalidateCacheEntry(target, request, entityProducer, scope, chain, asyncExecCallback, entry);
+            if (cacheRevalidator != null
+                    && scope.execRuntime instanceof ForkableAsyncExecRuntime
+                    && !staleResponseNotAllowed(request, entry, now)
+                    && validityPolicy.mayReturnStaleWhileRevalidating(entry, now)) {
+                log.debug("Serving stale with asynchronous revalidation");
+                try {
+                    final SimpleHttpResponse cacheResponse = generateCachedResponse(request, context, entry, now);
+                    revalidateCacheEntryInBackground(target, request, scope, chain, entry);
+                    triggerResponse(cacheResponse, scope, asyncExecCallback);
+                } catch (final ResourceIOException ex) {
+                    asyncExecCallback.failed(ex);
+                }
+            } else {
+                log.debug("Revalidating cache entry");
+                revalidateCacheEntry(target, request, entityProducer, scope, chain, asyncExecCallback, entry);
+            }
         } else {
             log.debug("Cache entry not usable; calling backend");
             callBackend(target, request, entityProducer, scope, chain, asyncExecCallback);
         }
     }
 
+    void revalidateCacheEntryInBackground(
+            final HttpHost target,
+            final HttpRequest request,
+            final AsyncExecChain.Scope scope,
+            final AsyncExecChain chain,
+            final HttpCacheEntry entry) {
+        final String cacheKey = CacheKeyGenerator.INSTANCE.generateVariantURI(target, request, entry);
+        cacheRevalidator.revalidateCacheEntry(cacheKey, new AsyncCacheRevalidator.RevalidationTask() {
+
+            @Override
+            public void execute(final FutureCallback<Boolean> resultCallback) {
+                // The revalidation must not share the connection or the future of the
+                // message exchange that has already been completed with the stale entry
+                final String exchangeId = String.format("ex-%08X", ExecSupport.getNextExecNumber());
+                final HttpClientContext clientContext = HttpClientContext.create();
+                clientContext.setRequestConfig(scope.clientContext.getRequestConfig());
+                clientContext.setCredentialsProvider(scope.clientContext.getCredentialsProvider());
+                clientContext.setAuthCache(scope.clientContext.getAuthCache());
+                final AsyncExecChain.Scope fork = new AsyncExecChain.Scope(
+                        exchangeId,
+                        scope.route,
+                        scope.originalRequest,
+                        new ComplexFuture<>(null),
+                        clientContext,
+                        ((ForkableAsyncExecRuntime) scope.execRuntime).fork());
+                revalidateCacheEntry(target, request, null, fork, chain, new AsyncExecCallback() {
+
+                    private final AtomicBoolean successful = new AtomicBoolean(false);
+
+                    @Override
+                    public AsyncDataConsumer handleResponse(
+                            final HttpResponse response, final EntityDetails entityDetails) {
+                        successful.set(response.getCode() < HttpStatus.SC_SERVER_ERROR && !isStale(response));
+                        return null;
+                    }
+
+                    @Override
+                    public void completed() {
+                        fork.execRuntime.releaseConnection();
+                        resultCallback.completed(successful.get());
+                    }
+
+                    @Override
+                    public void failed(final Exception cause) {
+                        fork.execRuntime.discardConnection();
+                        resultCallback.failed(cause);
+                    }
+
+                }, entry);
+            }
+
+        });
+    }
+
+    private static boolean isStale(final HttpResponse response) {
+        for (final Iterator<Header> it = response.headerIterator(HeaderConstants.WARNING); it.hasNext(); ) {
+            final String warningValue = it.next().getValue();
+            // 110 = Response is stale, 111 = Revalidation failed
+            if (warningValue.startsWith("110") || warningValue.startsWith("111")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     void revalidateCacheEntry(
             final HttpHost target,
             final HttpRequest request,
@@ -565,6 +1072,7 @@ void revalidateCacheEntry(
             final HttpCacheEntry cacheEntry) {
 
         final ComplexFuture<?> future = scope.future;
+        final long startNanos = System.nanoTime();
         final Date requestDate = getCurrentDate();
         final InternalCallback internalCallback = new InternalCallback() {
 
@@ -576,6 +1084,7 @@ public boolean cacheResponse(final HttpResponse backendResponse) throws IOExcept
                 final Date responseDate = getCurrentDate();
                 responseDateRef.set(requestDate);
                 final int statusCode = backendResponse.getCode();
+                notifyRevalidation(target, statusCode, startNanos);
                 if (statusCode == HttpStatus.SC_NOT_MODIFIED || statusCode == HttpStatus.SC_OK) {
                     recordCacheUpdate(scope.clientContext);
                 }
@@ -740,6 +1249,83 @@ private void handleCacheMiss(
             final AsyncExecChain.Scope scope,
             final AsyncExecChain chain,
             final AsyncExecCallback asyncExecCallback) {
+        if (requestCollapser == null || !mayCallBackend(request)) {
+            fetchCacheMiss(target, request, entityProducer, scope, chain, asyncExecCallback);
+            return;
+        }
+        final String key = getCollapsingKey(target, request);
+        final RequestCollapser.Inflight inflight = requestCollapser.lead(key);
+        if (inflight != null) {
+            fetchCacheMiss(target, request, entityProducer, scope, chain, new AsyncExecCallback() {
+
+                @Override
+                public AsyncDataConsumer handleResponse(
+                        final HttpResponse response, final EntityDetails entityDetails) throws HttpException, IOException {
+                    // The response has been cached by now, is not going to be, or is
+                    // being cached behind a hold that keeps the followers waiting
+                    inflight.release();
+                    return asyncExecCallback.handleResponse(response, entityDetails);
+                }
+
+                @Override
+                public void completed() {
+                    inflight.release();
+                    asyncExecCallback.completed();
+                }
+
+                @Override
+                public void failed(final Exception cause) {
+                    inflight.release();
+                    asyncExecCallback.failed(cause);
+                }
+
+            });
+            return;
+        }
+        log.debug("Waiting for concurrent request for the same resource");
+        requestCollapser.subscribe(key, new Runnable() {
+
+            @Override
+            public void run() {
+                final ComplexFuture<?> future = scope.future;
+                if (future.isCancelled()) {
+                    asyncExecCallback.failed(new InterruptedIOException());
+                    return;
+                }
+                future.setDependency(responseCache.getCacheEntry(target, request, new FutureCallback<HttpCacheEntry>() {
+
+                    @Override
+                    public void completed(final HttpCacheEntry entry) {
+                        if (entry != null) {
+                            handleCacheHit(target, request, entityProducer, scope, chain, asyncExecCallback, entry);
+                        } else {
+                            fetchCacheMiss(target, request, entityProducer, scope, chain, asyncExecCallback);
+                        }
+                    }
+
+                    @Override
+                    public void failed(final Exception cause) {
+                        asyncExecCallback.failed(cause);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        asyncExecCallback.failed(new InterruptedIOException());
+                    }
+
+                }));
+            }
+
+        }, scheduledExecutor);
+    }
+
+    private void fetchCacheMiss(
+            final HttpHost target,
+            final HttpRequest request,
+            final AsyncEntityProducer entityProducer,
+            final AsyncExecChain.Scope scope,
+            final AsyncExecChain chain,
+            final AsyncExecCallback asyncExecCallback) {
         recordCacheMiss(target, request);
 
         if (mayCallBackend(request)) {
@@ -36,8 +36,10 @@
 import org.apache.hc.client5.http.cache.HttpAsyncCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.cache.ResourceSink;
 import org.apache.hc.client5.http.impl.Operations;
 import org.apache.hc.core5.concurrent.Cancellable;
 import org.apache.hc.core5.concurrent.FutureCallback;
@@ -106,11 +108,15 @@ public Cancellable flushInvalidatedCacheEntriesFor(
     }
 
     Cancellable storeInCache(
-            final HttpHost target, final HttpRequest request, final HttpCacheEntry entry, final FutureCallback<Boolean> callback) {
+            final HttpHost target,
+            final HttpRequest request,
+            final HttpCacheEntry entry,
+            final boolean update,
+            final FutureCallback<Boolean> callback) {
         if (entry.hasVariants()) {
-            return storeVariantEntry(target, request, entry, callback);
+            return storeVariantEntry(target, request, entry, update, callback);
         } else {
-            return storeNonVariantEntry(target, request, entry, callback);
+            return storeNonVariantEntry(target, request, entry, update, callback);
         }
     }
 
@@ -118,20 +124,22 @@ Cancellable storeNonVariantEntry(
             final HttpHost target,
             final HttpRequest req,
             final HttpCacheEntry entry,
+            final boolean update,
             final FutureCallback<Boolean> callback) {
         final String uri = cacheKeyGenerator.generateKey(target, req);
-        return storage.putEntry(uri, entry, callback);
+        return storeEntry(uri, entry, update, callback);
     }
 
     Cancellable storeVariantEntry(
             final HttpHost target,
             final HttpRequest req,
             final HttpCacheEntry entry,
+            final boolean update,
             final FutureCallback<Boolean> callback) {
         final String parentCacheKey = cacheKeyGenerator.generateKey(target, req);
         final String variantKey = cacheKeyGenerator.generateVariantKey(req, entry);
         final String variantURI = cacheKeyGenerator.generateVariantURI(target, req, entry);
-        return storage.putEntry(variantURI, entry, new FutureCallback<Boolean>() {
+        return storeEntry(variantURI, entry, update, new FutureCallback<Boolean>() {
 
             @Override
             public void completed(final Boolean result) {
@@ -158,6 +166,26 @@ public void cancelled() {
         });
     }
 
+    /**
+     * Stores a new entry with a put, or replaces an entry refreshed after
+     * revalidation with a CAS operation that admission filtering storages
+     * never drop.
+     */
+    private Cancellable storeEntry(
+            final String key, final HttpCacheEntry entry, final boolean update, final FutureCallback<Boolean> callback) {
+        if (update) {
+            return storage.updateEntry(key, new HttpCacheCASOperation() {
+
+                @Override
+                public HttpCacheEntry execute(final HttpCacheEntry existing) {
+                    return entry;
+                }
+
+            }, callback);
+        }
+        return storage.putEntry(key, entry, callback);
+    }
+
     @Override
     public Cancellable reuseVariantEntryFor(
             final HttpHost target, final HttpRequest req, final Variant variant, final FutureCallback<Boolean> callback) {
@@ -191,7 +219,7 @@ public Cancellable updateCacheEntry(
                     requestSent,
                     responseReceived,
                     originResponse);
-            return storeInCache(target, request, updatedEntry, new FutureCallback<Boolean>() {
+            return storeInCache(target, request, updatedEntry, true, new FutureCallback<Boolean>() {
 
                 @Override
                 public void completed(final Boolean result) {
@@ -232,7 +260,7 @@ public Cancellable updateVariantCacheEntry(
                     requestSent,
                     responseReceived,
                     originResponse);
-            return storage.putEntry(cacheKey, updatedEntry, new FutureCallback<Boolean>() {
+            return storeEntry(cacheKey, updatedEntry, true, new FutureCallback<Boolean>() {
 
                 @Override
                 public void completed(final Boolean result) {
@@ -267,7 +295,7 @@ public Cancellable createCacheEntry(
             final FutureCallback<HttpCacheEntry> callback) {
         try {
             final HttpCacheEntry entry = cacheUpdateHandler.createtCacheEntry(request, originResponse, content, requestSent, responseReceived);
-            return storeInCache(host, request, entry, new FutureCallback<Boolean>() {
+            return storeInCache(host, request, entry, false, new FutureCallback<Boolean>() {
 
                 @Override
                 public void completed(final Boolean result) {
@@ -291,6 +319,46 @@ public void cancelled() {
         }
     }
 
+    @Override
+    public Cancellable createStreamedCacheEntry(
+            final HttpHost host,
+            final HttpRequest request,
+            final HttpResponse originResponse,
+            final Resource resource,
+            final Date requestSent,
+            final Date responseReceived,
+            final FutureCallback<HttpCacheEntry> callback) {
+        final HttpCacheEntry entry = cacheUpdateHandler.createStreamedCacheEntry(request, originResponse, resource, requestSent, responseReceived);
+        return storeInCache(host, request, entry, false, new FutureCallback<Boolean>() {
+
+            @Override
+            public void completed(final Boolean result) {
+                callback.completed(entry);
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                callback.failed(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                callback.cancelled();
+            }
+
+        });
+    }
+
+    @Override
+    public ResourceSink createResourceSink(final HttpRequest request) throws ResourceIOException {
+        return cacheUpdateHandler.createResourceSink(request);
+    }
+
+    @Override
+    public boolean isStreamingSupported() {
+        return cacheUpdateHandler.isStreamingSupported();
+    }
+
     @Override
     public Cancellable getCacheEntry(final HttpHost host, final HttpRequest request, final FutureCallback<HttpCacheEntry> callback) {
         final ComplexCancellable complexCancellable = new ComplexCancellable();
@@ -37,8 +37,10 @@
 import org.apache.hc.client5.http.cache.HttpCacheInvalidator;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.cache.ResourceSink;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
@@ -103,27 +105,39 @@ public void flushInvalidatedCacheEntriesFor(final HttpHost host, final HttpReque
 
     void storeInCache(
             final HttpHost target, final HttpRequest request, final HttpCacheEntry entry) throws ResourceIOException {
+        storeInCache(target, request, entry, false);
+    }
+
+    void storeInCache(
+            final HttpHost target,
+            final HttpRequest request,
+            final HttpCacheEntry entry,
+            final boolean update) throws ResourceIOException {
         if (entry.hasVariants()) {
-            storeVariantEntry(target, request, entry);
+            storeVariantEntry(target, request, entry, update);
         } else {
-            storeNonVariantEntry(target, request, entry);
+            storeNonVariantEntry(target, request, entry, update);
         }
     }
 
     void storeNonVariantEntry(
-            final HttpHost target, final HttpRequest req, final HttpCacheEntry entry) throws ResourceIOException {
+            final HttpHost target,
+            final HttpRequest req,
+            final HttpCacheEntry entry,
+            final boolean update) throws ResourceIOException {
         final String uri = cacheKeyGenerator.generateKey(target, req);
-        storage.putEntry(uri, entry);
+        storeEntry(uri, entry, update);
     }
 
     void storeVariantEntry(
             final HttpHost target,
             final HttpRequest req,
-            final HttpCacheEntry entry) throws ResourceIOException {
+            final HttpCacheEntry entry,
+            final boolean update) throws ResourceIOException {
         final String parentCacheKey = cacheKeyGenerator.generateKey(target, req);
         final String variantKey = cacheKeyGenerator.generateVariantKey(req, entry);
         final String variantURI = cacheKeyGenerator.generateVariantURI(target, req, entry);
-        storage.putEntry(variantURI, entry);
+        storeEntry(variantURI, entry, update);
 
         try {
             storage.updateEntry(parentCacheKey, new HttpCacheCASOperation() {
@@ -139,6 +153,30 @@ public HttpCacheEntry execute(final HttpCacheEntry existing) throws ResourceIOEx
         }
     }
 
+    /**
+     * Stores a new entry with a put. Entries refreshed after revalidation
+     * replace the stored entry with a CAS operation instead, which storages
+     * that only admit some of the puts offered to them always pass on.
+     */
+    private void storeEntry(final String key, final HttpCacheEntry entry, final boolean update) throws ResourceIOException {
+        if (update) {
+            try {
+                storage.updateEntry(key, new HttpCacheCASOperation() {
+
+                    @Override
+                    public HttpCacheEntry execute(final HttpCacheEntry existing) {
+                        return entry;
+                    }
+
+                });
+            } catch (final HttpCacheUpdateException e) {
+                log.warn("Could not update key [" + key + "]", e);
+            }
+        } else {
+            storage.putEntry(key, entry);
+        }
+    }
+
     @Override
     public void reuseVariantEntryFor(
             final HttpHost target, final HttpRequest req, final Variant variant) throws ResourceIOException {
@@ -175,7 +213,7 @@ public HttpCacheEntry updateCacheEntry(
                 requestSent,
                 responseReceived,
                 originResponse);
-        storeInCache(target, request, updatedEntry);
+        storeInCache(target, request, updatedEntry, true);
         return updatedEntry;
     }
 
@@ -189,7 +227,7 @@ public HttpCacheEntry updateVariantCacheEntry(final HttpHost target, final HttpR
                 requestSent,
                 responseReceived,
                 originResponse);
-        storage.putEntry(cacheKey, updatedEntry);
+        storeEntry(cacheKey, updatedEntry, true);
         return updatedEntry;
     }
 
@@ -206,6 +244,29 @@ public HttpCacheEntry createCacheEntry(
         return entry;
     }
 
+    @Override
+    public HttpCacheEntry createStreamedCacheEntry(
+            final HttpHost host,
+            final HttpRequest request,
+            final HttpResponse originResponse,
+            final Resource resource,
+            final Date requestSent,
+            final Date responseReceived) throws ResourceIOException {
+        final HttpCacheEntry entry = cacheUpdateHandler.createStreamedCacheEntry(request, originResponse, resource, requestSent, responseReceived);
+        storeInCache(host, request, entry);
+        return entry;
+    }
+
+    @Override
+    public ResourceSink createResourceSink(final HttpRequest request) throws ResourceIOException {
+        return cacheUpdateHandler.createResourceSink(request);
+    }
+
+    @Override
+    public boolean isStreamingSupported() {
+        return cacheUpdateHandler.isStreamingSupported();
+    }
+
     @Override
     public HttpCacheEntry getCacheEntry(final HttpHost host, final HttpRequest request) throws ResourceIOException {
         final HttpCacheEntry root = storage.getEntry(cacheKeyGenerator.generateKey(host, request));
@@ -0,0 +1,527 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
+import org.apache.hc.client5.http.cache.HttpCacheStorageEntry;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link HttpCacheEntrySerializer} implementation that uses a compact, versioned
+ * binary format instead of the default (native) serialization.
+ * <p>
+ * A serialized entry starts with a four byte magic number and a format version,
+ * followed by the storage key, request and response dates as longs, the status
+ * code, the response headers and the variant map as length-prefixed UTF-8 byte
+ * runs, and finally the length of the resource followed by its content. Lengths
+ * and counts are written as variable length integers.
+ * </p>
+ * <p>
+ * Besides the {@code byte[]} based methods of {@link HttpCacheEntrySerializer}
+ * this class can write an entry directly to and read it back from a stream. In
+ * streaming mode the resource content is copied straight from the {@link Resource}
+ * into the output without buffering the whole entry in memory.
+ * </p>
+ * <p>
+ * Deserialized entries hold their content in a {@link HeapResource}. Counts
+ * and lengths read from a serialized entry are checked against the data
+ * actually available, so that corrupt or foreign data is rejected with
+ * {@link ResourceIOException} rather than causing excessive allocations.
+ * </p>
+ * <p>
+ * This format is not compatible with {@link ByteArrayCacheEntrySerializer}.
+ * Entries written to a persistent storage (such as memcached or Ehcache)
+ * by the native serializer, the default of earlier versions, cannot be read
+ * by this serializer. They are rejected with {@link ResourceIOException},
+ * which the caching layer treats as a cache miss, and get replaced as
+ * responses are cached anew. Storages that have to keep reading such entries
+ * need to be configured with {@link ByteArrayCacheEntrySerializer} explicitly.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public final class BinaryCacheEntrySerializer implements HttpCacheEntrySerializer<byte[]> {
+
+    public static final BinaryCacheEntrySerializer INSTANCE = new BinaryCacheEntrySerializer();
+
+    /**
+     * Current version of the format.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x48434501; // 'H' 'C' 'E' 0x01
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final int MAX_INITIAL_CAPACITY = 64;
+
+    @Override
+    public byte[] serialize(final HttpCacheStorageEntry cacheEntry) throws ResourceIOException {
+        if (cacheEntry == null) {
+            return null;
+        }
+        final Resource resource = cacheEntry.getContent().getResource();
+        final Writer writer = new Writer(null);
+        try {
+            final long length = writeHead(cacheEntry, writer);
+            if (length > Integer.MAX_VALUE - 8 - writer.pos) {
+                throw new ResourceIOException("Cache entry content too large: " + length);
+            }
+            // Allocate the result exactly once and fill in the content directly
+            final byte[] result = Arrays.copyOf(writer.buffer, writer.pos + (int) Math.max(length, 0));
+            if (length > 0) {
+                if (resource instanceof HeapResource) {
+                    System.arraycopy(resource.get(), 0, result, writer.pos, (int) length);
+                } else {
+                    try (final InputStream inputStream = resource.getInputStream()) {
+                        int off = writer.pos;
+                        while (off < result.length) {
+                            final int n = inputStream.read(result, off, result.length - off);
+                            if (n == -1) {
+                                throw new EOFException("Resource shorter than its declared length");
+                            }
+                            off += n;
+                        }
+                    }
+                }
+            }
+            return result;
+        } catch (final ResourceIOException ex) {
+            throw ex;
+        } catch (final IOException ex) {
+            throw new ResourceIOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public HttpCacheStorageEntry deserialize(final byte[] serializedObject) throws ResourceIOException {
+        if (serializedObject == null) {
+            return null;
+        }
+        return read(new Reader(serializedObject));
+    }
+
+    /**
+     * Writes the given entry to the output stream. The stream is not closed.
+     */
+    public void serialize(final HttpCacheStorageEntry cacheEntry, final OutputStream outputStream) throws ResourceIOException {
+        Args.notNull(cacheEntry, "Cache entry");
+        Args.notNull(outputStream, "Output stream");
+        final Writer writer = new Writer(outputStream);
+        try {
+            final long length = writeHead(cacheEntry, writer);
+            writer.flush();
+            if (length > 0) {
+                final Resource resource = cacheEntry.getContent().getResource();
+                if (resource instanceof HeapResource) {
+                    outputStream.write(resource.get());
+                } else {
+                    copy(resource, length, outputStream);
+                }
+            }
+        } catch (final ResourceIOException ex) {
+            throw ex;
+        } catch (final IOException ex) {
+            throw new ResourceIOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Writes everything but the resource content and returns the length of the
+     * content, or {@code -1} if the entry has no resource.
+     */
+    private static long writeHead(final HttpCacheStorageEntry cacheEntry, final Writer writer) throws IOException {
+        final HttpCacheEntry entry = cacheEntry.getContent();
+        writer.writeInt(MAGIC);
+        writer.write(VERSION);
+        writer.writeString(cacheEntry.getKey());
+        writer.writeLong(entry.getRequestDate().getTime());
+        writer.writeLong(entry.getResponseDate().getTime());
+        writer.writeVarInt(entry.getStatus());
+
+        int headerCount = 0;
+        for (final Iterator<Header> it = entry.headerIterator(); it.hasNext(); ) {
+            it.next();
+            headerCount++;
+        }
+        writer.writeVarInt(headerCount);
+        for (final Iterator<Header> it = entry.headerIterator(); it.hasNext(); ) {
+            final Header header = it.next();
+            writer.writeString(header.getName());
+            writer.writeString(header.getValue());
+        }
+
+        final Map<String, String> variantMap = entry.getVariantMap();
+        writer.writeVarInt(variantMap.size());
+        for (final Map.Entry<String, String> variant: variantMap.entrySet()) {
+            writer.writeString(variant.getKey());
+            writer.writeString(variant.getValue());
+        }
+
+        final Resource resource = entry.getResource();
+        if (resource == null) {
+            writer.writeVarLong(0);
+            return -1;
+        }
+        final long length = resource.length();
+        if (length < 0) {
+            throw new ResourceIOException("Resource already disposed");
+        }
+        writer.writeVarLong(length + 1);
+        return length;
+    }
+
+    /**
+     * Reads an entry from the input stream. The stream is not closed.
+     */
+    public HttpCacheStorageEntry deserialize(final InputStream inputStream) throws ResourceIOException {
+        Args.notNull(inputStream, "Input stream");
+        return read(new Reader(inputStream));
+    }
+
+    private static HttpCacheStorageEntry read(final Reader reader) throws ResourceIOException {
+        try {
+            if (reader.readInt() != MAGIC) {
+                throw new ResourceIOException("Not a binary cache entry");
+            }
+            final int version = reader.read();
+            if (version < 1 || version > VERSION) {
+                throw new ResourceIOException("Unsupported cache entry format version: " + version);
+            }
+            final String key = reader.readString();
+            final Date requestDate = new Date(reader.readLong());
+            final Date responseDate = new Date(reader.readLong());
+            final int status = reader.readVarInt();
+
+            // every header and variant takes at least two bytes
+            final int headerCount = reader.readCount(2);
+            final List<Header> headers = new ArrayList<>(Math.min(headerCount, MAX_INITIAL_CAPACITY));
+            for (int i = 0; i < headerCount; i++) {
+                headers.add(new BasicHeader(reader.readString(), reader.readString()));
+            }
+
+            final int variantCount = reader.readCount(2);
+            final Map<String, String> variantMap = new HashMap<>(Math.min(Math.max(4, variantCount * 2), MAX_INITIAL_CAPACITY));
+            for (int i = 0; i < variantCount; i++) {
+                variantMap.put(reader.readString(), reader.readString());
+            }
+
+            final long encodedLength = reader.readVarLong();
+            if (encodedLength < 0) {
+                throw new ResourceIOException("Malformed content length");
+            }
+            final long length = encodedLength - 1;
+            final Resource resource;
+            if (length < 0) {
+                resource = null;
+            } else {
+                if (length > Integer.MAX_VALUE - 8) {
+                    throw new ResourceIOException("Cache entry content too large: " + length);
+                }
+                resource = new HeapResource(reader.readBytes((int) length));
+            }
+            return new HttpCacheStorageEntry(key,
+                    new HttpCacheEntry(requestDate, responseDate, status,
+                            headers.toArray(new Header[headers.size()]), resource, variantMap));
+        } catch (final ResourceIOException ex) {
+            throw ex;
+        } catch (final IOException | IllegalArgumentException ex) {
+            throw new ResourceIOException(ex.getMessage(), ex);
+        }
+    }
+
+    private static void copy(final Resource resource, final long length, final OutputStream outputStream) throws IOException {
+        try (final InputStream inputStream = resource.getInputStream()) {
+            final byte[] tmp = new byte[(int) Math.min(BUFFER_SIZE, Math.max(length, 1))];
+            long remaining = length;
+            while (remaining > 0) {
+                final int n = inputStream.read(tmp, 0, (int) Math.min(tmp.length, remaining));
+                if (n == -1) {
+                    throw new EOFException("Resource shorter than its declared length");
+                }
+                outputStream.write(tmp, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+    /**
+     * Buffered primitive writer. When created without an output stream the buffer
+     * grows as needed and holds the complete output; otherwise it is flushed to the
+     * stream when full. Unlike {@link java.io.BufferedOutputStream} short byte runs
+     * are always copied into the buffer, so that it can be flushed before the
+     * resource content is written directly to the underlying stream.
+     */
+    static final class Writer {
+
+        private final OutputStream outputStream;
+        byte[] buffer;
+        int pos;
+
+        Writer(final OutputStream outputStream) {
+            this.outputStream = outputStream;
+            this.buffer = new byte[512];
+        }
+
+        private void ensureCapacity(final int len) throws IOException {
+            if (len > buffer.length - pos) {
+                if (outputStream != null) {
+                    flush();
+                } else {
+                    buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, pos + len));
+                }
+            }
+        }
+
+        void write(final int b) throws IOException {
+            ensureCapacity(1);
+            buffer[pos++] = (byte) b;
+        }
+
+        void write(final byte[] b) throws IOException {
+            ensureCapacity(b.length);
+            if (b.length > buffer.length - pos) {
+                outputStream.write(b);
+                return;
+            }
+            System.arraycopy(b, 0, buffer, pos, b.length);
+            pos += b.length;
+        }
+
+        void writeInt(final int i) throws IOException {
+            write(i >>> 24);
+            write(i >>> 16);
+            write(i >>> 8);
+            write(i);
+        }
+
+        void writeLong(final long l) throws IOException {
+            writeInt((int) (l >>> 32));
+            writeInt((int) l);
+        }
+
+        void writeVarInt(final int i) throws IOException {
+            writeVarLong(i & 0xffffffffL);
+        }
+
+        void writeVarLong(final long l) throws IOException {
+            long v = l;
+            while ((v & ~0x7fL) != 0) {
+                write((int) ((v & 0x7f) | 0x80));
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        /**
+         * Writes the length of the UTF-8 representation of the string plus one,
+         * {@code 0} denoting {@code null}, followed by the UTF-8 bytes. ASCII
+         * strings are encoded straight into the buffer.
+         */
+        void writeString(final String s) throws IOException {
+            if (s == null) {
+                write(0);
+                return;
+            }
+            final int len = s.length();
+            if (!isAscii(s)) {
+                final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(b.length + 1);
+                write(b);
+                return;
+            }
+            writeVarInt(len + 1);
+            ensureCapacity(len);
+            if (len > buffer.length - pos) {
+                write(s.getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            for (int i = 0; i < len; i++) {
+                buffer[pos++] = (byte) s.charAt(i);
+            }
+        }
+
+        private static boolean isAscii(final String s) {
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) >= 0x80) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void flush() throws IOException {
+            if (pos > 0 && outputStream != null) {
+                outputStream.write(buffer, 0, pos);
+                pos = 0;
+            }
+        }
+
+    }
+
+    /**
+     * Primitive reader over either a byte array or an input stream.
+     */
+    static final class Reader {
+
+        private final byte[] array;
+        private final InputStream inputStream;
+        private int pos;
+
+        Reader(final byte[] array) {
+            this.array = array;
+            this.inputStream = null;
+        }
+
+        Reader(final InputStream inputStream) {
+            this.array = null;
+            this.inputStream = inputStream;
+        }
+
+        private void ensureAvailable(final int len) throws ResourceIOException {
+            if (len > array.length - pos) {
+                throw new ResourceIOException("Truncated cache entry");
+            }
+        }
+
+        int read() throws IOException {
+            if (array != null) {
+                ensureAvailable(1);
+                return array[pos++] & 0xff;
+            }
+            final int b = inputStream.read();
+            if (b == -1) {
+                throw new ResourceIOException("Truncated cache entry");
+            }
+            return b;
+        }
+
+        byte[] readBytes(final int len) throws IOException {
+            if (array != null) {
+                ensureAvailable(len);
+                final byte[] b = Arrays.copyOfRange(array, pos, pos + len);
+                pos += len;
+                return b;
+            }
+            // the length of the data in the stream is unknown: grow the buffer
+            // as data arrives rather than trusting the declared length upfront
+            byte[] b = new byte[Math.min(len, BUFFER_SIZE)];
+            int off = 0;
+            while (off < len) {
+                if (off == b.length) {
+                    b = Arrays.copyOf(b, (int) Math.min(len, (long) b.length << 1));
+                }
+                final int n = inputStream.read(b, off, b.length - off);
+                if (n == -1) {
+                    throw new ResourceIOException("Truncated cache entry");
+                }
+                off += n;
+            }
+            return b;
+        }
+
+        int readInt() throws IOException {
+            return (read() << 24) | (read() << 16) | (read() << 8) | read();
+        }
+
+        long readLong() throws IOException {
+            return ((long) readInt() << 32) | (readInt() & 0xffffffffL);
+        }
+
+        /**
+         * Reads a non-negative variable length integer.
+         */
+        int readVarInt() throws IOException {
+            final long l = readVarLong();
+            if (l < 0 || l > Integer.MAX_VALUE) {
+                throw new ResourceIOException("Malformed variable length integer");
+            }
+            return (int) l;
+        }
+
+        /**
+         * Reads the number of items that follow, each taking at least the given number of bytes.
+         */
+        int readCount(final int minItemSize) throws IOException {
+            final int count = readVarInt();
+            if (array != null && count > (array.length - pos) / minItemSize) {
+                throw new ResourceIOException("Malformed cache entry: " + count + " items exceed the remaining data");
+            }
+            return count;
+        }
+
+        long readVarLong() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = read();
+                result |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new ResourceIOException("Malformed variable length integer");
+        }
+
+        String readString() throws IOException {
+            final int len = readVarInt();
+            if (len == 0) {
+                return null;
+            }
+            if (array != null) {
+                ensureAvailable(len - 1);
+                final String s = new String(array, pos, len - 1, StandardCharsets.UTF_8);
+                pos += len - 1;
+                return s;
+            }
+            return new String(readBytes(len - 1), StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * Doorkeeper that admits a cache key for storage only once it has been
+ * offered a given number of times. Key frequencies are estimated with a
+ * {@link FrequencySketch}; all counters are halved whenever the decay
+ * window elapses, so keys must be seen repeatedly within about one window
+ * in order to be admitted.
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+final class CacheAdmissionFilter {
+
+    static final int DEFAULT_EXPECTED_KEYS = 10000;
+    static final int DEFAULT_THRESHOLD = 2;
+    static final TimeValue DEFAULT_DECAY_WINDOW = TimeValue.ofMinutes(10);
+
+    private static final int MAX_THRESHOLD = 15;
+    // four halvings clear every 4-bit counter
+    private static final int MAX_DECAY_STEPS = 4;
+
+    private final FrequencySketch sketch;
+    private final int threshold;
+    private final long decayWindowMillis;
+    private final AtomicLong admitted;
+    private final AtomicLong rejected;
+    private long lastDecay;
+
+    CacheAdmissionFilter(final int expectedKeys, final int threshold, final TimeValue decayWindow) {
+        Args.positive(expectedKeys, "Expected keys");
+        Args.check(threshold >= 1 && threshold <= MAX_THRESHOLD, "Admission threshold must be between 1 and 15");
+        Args.notNull(decayWindow, "Decay window");
+        Args.positive(decayWindow.toMillis(), "Decay window");
+        this.sketch = new FrequencySketch(expectedKeys);
+        this.threshold = threshold;
+        this.decayWindowMillis = decayWindow.toMillis();
+        this.admitted = new AtomicLong();
+        this.rejected = new AtomicLong();
+        this.lastDecay = System.currentTimeMillis();
+    }
+
+    /**
+     * Records an attempt to store the given key and returns {@code true}
+     * if the key has now been seen often enough to be stored.
+     */
+    boolean admit(final String key) {
+        final boolean admit;
+        if (this.threshold == 1) {
+            admit = true;
+        } else {
+            synchronized (this.sketch) {
+                decayIfDue(System.currentTimeMillis());
+                this.sketch.increment(key);
+                admit = this.sketch.frequency(key) >= this.threshold;
+            }
+        }
+        if (admit) {
+            this.admitted.incrementAndGet();
+        } else {
+            this.rejected.incrementAndGet();
+        }
+        return admit;
+    }
+
+    /**
+     * Returns {@code true} if the given key has been seen often enough to be
+     * stored, without recording an attempt.
+     */
+    boolean isAdmitted(final String key) {
+        if (this.threshold == 1) {
+            return true;
+        }
+        synchronized (this.sketch) {
+            return this.sketch.frequency(key) >= this.threshold;
+        }
+    }
+
+    /**
+     * Wraps the given CAS operation so that it does not add references to
+     * variant entries whose put has been dropped. A parent entry missing a
+     * variant reference yields a cache miss for that variant, whereas a
+     * reference to a variant that was never stored would be kept around
+     * until the parent entry expires.
+     */
+    HttpCacheCASOperation excludeRejectedVariants(final HttpCacheCASOperation casOperation) {
+        if (this.threshold == 1) {
+            return casOperation;
+        }
+        return new HttpCacheCASOperation() {
+
+            @Override
+            public HttpCacheEntry execute(final HttpCacheEntry existing) throws ResourceIOException {
+                final HttpCacheEntry updated = casOperation.execute(existing);
+                if (updated == null || !updated.hasVariants()) {
+                    return updated;
+                }
+                Map<String, String> variantMap = null;
+                for (final Map.Entry<String, String> variant: updated.getVariantMap().entrySet()) {
+                    final String variantCacheKey = variant.getValue();
+                    if (existing != null && variantCacheKey.equals(existing.getVariantMap().get(variant.getKey()))) {
+                        continue;
+                    }
+                    if (!isAdmitted(variantCacheKey)) {
+                        if (variantMap == null) {
+                            variantMap = new HashMap<>(updated.getVariantMap());
+                        }
+                        variantMap.remove(variant.getKey());
+                    }
+                }
+                if (variantMap == null) {
+                    return updated;
+                }
+                return new HttpCacheEntry(
+                        updated.getRequestDate(),
+                        updated.getResponseDate(),
+                        updated.getStatus(),
+                        updated.getAllHeaders(),
+                        updated.getResource(),
+                        variantMap);
+            }
+
+        };
+    }
+
+    private void decayIfDue(final long now) {
+        final long elapsed = now - this.lastDecay;
+        if (elapsed < this.decayWindowMillis) {
+            return;
+        }
+        final long windows = elapsed / this.decayWindowMillis;
+        for (int i = 0; i < Math.min(windows, MAX_DECAY_STEPS); i++) {
+            this.sketch.reset();
+        }
+        this.lastDecay += windows * this.decayWindowMillis;
+    }
+
+    long getAdmittedCount() {
+        return this.admitted.get();
+    }
+
+    long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "[admitted: " + this.admitted + "; rejected: " + this.rejected + "]";
+    }
+
+}
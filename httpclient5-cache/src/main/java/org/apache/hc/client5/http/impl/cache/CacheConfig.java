@@ -27,6 +27,7 @@
 package org.apache.hc.client5.http.impl.cache;
 
 import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
 
 /**
  * <p>Java Beans-style configuration for caching {@link org.apache.hc.client5.http.classic.HttpClient}.
@@ -112,6 +113,16 @@ public class CacheConfig implements Cloneable {
      */
     public final static int DEFAULT_MAX_CACHE_ENTRIES = 1000;
 
+    /** Default total size in bytes of all cache entries; {@code 0} means the
+     * cache is bounded by the number of entries only.
+     */
+    public final static long DEFAULT_MAX_CACHE_SIZE = 0;
+
+    /** Default maximum size of a response body streamed into the cache
+     * while it is forwarded; {@code 0} disables streaming
+     */
+    public final static long DEFAULT_MAX_STREAMED_OBJECT_SIZE = 0;
+
     /** Default setting for the number of retries on a failed
      * cache processChallenge
      */
@@ -158,10 +169,29 @@ public class CacheConfig implements Cloneable {
      */
     public static final int DEFAULT_REVALIDATION_QUEUE_SIZE = 100;
 
+    /** Default setting for request collapsing of concurrent cache misses
+     */
+    public static final boolean DEFAULT_REQUEST_COLLAPSING_ENABLED = false;
+
+    /** Default maximum time a request waits for a collapsed cache miss
+     * to be populated
+     */
+    public static final TimeValue DEFAULT_REQUEST_COLLAPSING_TIMEOUT = TimeValue.ofSeconds(5);
+
+    /** Default setting for write-behind population of the cache
+     */
+    public static final boolean DEFAULT_WRITE_BEHIND_ENABLED = false;
+
+    /** Default maximum number of cache writes queued for write-behind
+     */
+    public static final int DEFAULT_WRITE_BEHIND_QUEUE_SIZE = 100;
+
     public static final CacheConfig DEFAULT = new Builder().build();
 
     private final long maxObjectSize;
     private final int maxCacheEntries;
+    private final long maxCacheSize;
+    private final long maxStreamedObjectSize;
     private final int maxUpdateRetries;
     private final boolean allow303Caching;
     private final boolean weakETagOnPutDeleteAllowed;
@@ -174,10 +204,16 @@ public class CacheConfig implements Cloneable {
     private final int asynchronousWorkerIdleLifetimeSecs;
     private final int revalidationQueueSize;
     private final boolean neverCacheHTTP10ResponsesWithQuery;
+    private final boolean requestCollapsingEnabled;
+    private final TimeValue requestCollapsingTimeout;
+    private final boolean writeBehindEnabled;
+    private final int writeBehindQueueSize;
 
     CacheConfig(
             final long maxObjectSize,
             final int maxCacheEntries,
+            final long maxCacheSize,
+            final long maxStreamedObjectSize,
             final int maxUpdateRetries,
             final boolean allow303Caching,
             final boolean weakETagOnPutDeleteAllowed,
@@ -189,10 +225,16 @@ public class CacheConfig implements Cloneable {
             final int asynchronousWorkersCore,
             final int asynchronousWorkerIdleLifetimeSecs,
             final int revalidationQueueSize,
-            final boolean neverCacheHTTP10ResponsesWithQuery) {
+            final boolean neverCacheHTTP10ResponsesWithQuery,
+            final boolean requestCollapsingEnabled,
+            final TimeValue requestCollapsingTimeout,
+            final boolean writeBehindEnabled,
+            final int writeBehindQueueSize) {
         super();
         this.maxObjectSize = maxObjectSize;
         this.maxCacheEntries = maxCacheEntries;
+        this.maxCacheSize = maxCacheSize;
+        this.maxStreamedObjectSize = maxStreamedObjectSize;
         this.maxUpdateRetries = maxUpdateRetries;
         this.allow303Caching = allow303Caching;
         this.weakETagOnPutDeleteAllowed = weakETagOnPutDeleteAllowed;
@@ -205,6 +247,10 @@ public class CacheConfig implements Cloneable {
         this.asynchronousWorkerIdleLifetimeSecs = asynchronousWorkerIdleLifetimeSecs;
         this.revalidationQueueSize = revalidationQueueSize;
         this.neverCacheHTTP10ResponsesWithQuery = neverCacheHTTP10ResponsesWithQuery;
+        this.requestCollapsingEnabled = requestCollapsingEnabled;
+        this.requestCollapsingTimeout = requestCollapsingTimeout;
+        this.writeBehindEnabled = writeBehindEnabled;
+        this.writeBehindQueueSize = writeBehindQueueSize;
     }
 
     /**
@@ -233,6 +279,33 @@ public int getMaxCacheEntries() {
         return maxCacheEntries;
     }
 
+    /**
+     * Returns the maximum total size in bytes of the cache entries (response
+     * bodies plus headers) the cache will retain. A positive value selects
+     * the byte budgeted {@link TinyLfuHttpCacheStorage} as the default cache
+     * storage; {@code 0} means the cache is bounded by the number of entries.
+     *
+     * @since 5.0
+     */
+    public long getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * Returns the maximum size in bytes of a response body that is streamed
+     * into the cache while it is being forwarded to the caller. A positive
+     * value enables streaming for resource factories that implement
+     * {@link org.apache.hc.client5.http.cache.StreamingResourceFactory}, such
+     * as {@link FileResourceFactory}; response bodies are then no longer
+     * buffered in memory and not limited by {@link #getMaxObjectSize()}.
+     * {@code 0} disables streaming.
+     *
+     * @since 5.0
+     */
+    public long getMaxStreamedObjectSize() {
+        return maxStreamedObjectSize;
+    }
+
     /**
      * Returns the number of times to retry a cache processChallenge on failure
      */
@@ -322,6 +395,47 @@ public int getRevalidationQueueSize() {
         return revalidationQueueSize;
     }
 
+    /**
+     * Returns whether concurrent cache misses for the same resource are
+     * collapsed into a single request to the origin server.
+     *
+     * @since 5.0
+     */
+    public boolean isRequestCollapsingEnabled() {
+        return requestCollapsingEnabled;
+    }
+
+    /**
+     * Returns the maximum time a collapsed request waits for the response
+     * of the request in flight to be cached before it goes to the origin
+     * server on its own.
+     *
+     * @since 5.0
+     */
+    public TimeValue getRequestCollapsingTimeout() {
+        return requestCollapsingTimeout;
+    }
+
+    /**
+     * Returns whether cacheable responses are returned to the caller as soon
+     * as their content has been read, while they are written to the cache
+     * storage in the background.
+     *
+     * @since 5.0
+     */
+    public boolean isWriteBehindEnabled() {
+        return writeBehindEnabled;
+    }
+
+    /**
+     * Returns the maximum number of cache writes queued for write-behind.
+     *
+     * @since 5.0
+     */
+    public int getWriteBehindQueueSize() {
+        return writeBehindQueueSize;
+    }
+
     @Override
     protected CacheConfig clone() throws CloneNotSupportedException {
         return (CacheConfig) super.clone();
@@ -336,6 +450,8 @@ public static Builder copy(final CacheConfig config) {
         return new Builder()
             .setMaxObjectSize(config.getMaxObjectSize())
             .setMaxCacheEntries(config.getMaxCacheEntries())
+            .setMaxCacheSize(config.getMaxCacheSize())
+            .setMaxStreamedObjectSize(config.getMaxStreamedObjectSize())
             .setMaxUpdateRetries(config.getMaxUpdateRetries())
             .setHeuristicCachingEnabled(config.isHeuristicCachingEnabled())
             .setHeuristicCoefficient(config.getHeuristicCoefficient())
@@ -345,7 +461,11 @@ public static Builder copy(final CacheConfig config) {
             .setAsynchronousWorkersCore(config.getAsynchronousWorkersCore())
             .setAsynchronousWorkerIdleLifetimeSecs(config.getAsynchronousWorkerIdleLifetimeSecs())
             .setRevalidationQueueSize(config.getRevalidationQueueSize())
-            .setNeverCacheHTTP10ResponsesWithQueryString(config.isNeverCacheHTTP10ResponsesWithQuery());
+            .setNeverCacheHTTP10ResponsesWithQueryString(config.isNeverCacheHTTP10ResponsesWithQuery())
+            .setRequestCollapsingEnabled(config.isRequestCollapsingEnabled())
+            .setRequestCollapsingTimeout(config.getRequestCollapsingTimeout())
+            .setWriteBehindEnabled(config.isWriteBehindEnabled())
+            .setWriteBehindQueueSize(config.getWriteBehindQueueSize());
     }
 
 
@@ -353,6 +473,8 @@ public static class Builder {
 
         private long maxObjectSize;
         private int maxCacheEntries;
+        private long maxCacheSize;
+        private long maxStreamedObjectSize;
         private int maxUpdateRetries;
         private boolean allow303Caching;
         private boolean weakETagOnPutDeleteAllowed;
@@ -365,10 +487,16 @@ public static class Builder {
         private int asynchronousWorkerIdleLifetimeSecs;
         private int revalidationQueueSize;
         private boolean neverCacheHTTP10ResponsesWithQuery;
+        private boolean requestCollapsingEnabled;
+        private TimeValue requestCollapsingTimeout;
+        private boolean writeBehindEnabled;
+        private int writeBehindQueueSize;
 
         Builder() {
             this.maxObjectSize = DEFAULT_MAX_OBJECT_SIZE_BYTES;
             this.maxCacheEntries = DEFAULT_MAX_CACHE_ENTRIES;
+            this.maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+            this.maxStreamedObjectSize = DEFAULT_MAX_STREAMED_OBJECT_SIZE;
             this.maxUpdateRetries = DEFAULT_MAX_UPDATE_RETRIES;
             this.allow303Caching = DEFAULT_303_CACHING_ENABLED;
             this.weakETagOnPutDeleteAllowed = DEFAULT_WEAK_ETAG_ON_PUTDELETE_ALLOWED;
@@ -380,6 +508,10 @@ public static class Builder {
             this.asynchronousWorkersCore = DEFAULT_ASYNCHRONOUS_WORKERS_CORE;
             this.asynchronousWorkerIdleLifetimeSecs = DEFAULT_ASYNCHRONOUS_WORKER_IDLE_LIFETIME_SECS;
             this.revalidationQueueSize = DEFAULT_REVALIDATION_QUEUE_SIZE;
+            this.requestCollapsingEnabled = DEFAULT_REQUEST_COLLAPSING_ENABLED;
+            this.requestCollapsingTimeout = DEFAULT_REQUEST_COLLAPSING_TIMEOUT;
+            this.writeBehindEnabled = DEFAULT_WRITE_BEHIND_ENABLED;
+            this.writeBehindQueueSize = DEFAULT_WRITE_BEHIND_QUEUE_SIZE;
         }
 
         /**
@@ -399,6 +531,32 @@ public Builder setMaxCacheEntries(final int maxCacheEntries) {
             return this;
         }
 
+        /**
+         * Sets the maximum total size in bytes of the cache entries the cache will
+         * retain. A positive value makes the default cache storage a
+         * {@link TinyLfuHttpCacheStorage} bounded by this size, in which case
+         * the maximum number of cache entries is only used as a sizing hint.
+         * @param maxCacheSize size in bytes
+         *
+         * @since 5.0
+         */
+        public Builder setMaxCacheSize(final long maxCacheSize) {
+            this.maxCacheSize = maxCacheSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum size in bytes of a response body that is streamed
+         * into the cache while it is being forwarded to the caller. Streaming
+         * requires a resource factory that implements
+         * {@link org.apache.hc.client5.http.cache.StreamingResourceFactory}.
+         * Set to {@code 0} to disable streaming.
+         */
+        public Builder setMaxStreamedObjectSize(final long maxStreamedObjectSize) {
+            this.maxStreamedObjectSize = maxStreamedObjectSize;
+            return this;
+        }
+
         /**
          * Sets the number of times to retry a cache processChallenge on failure
          */
@@ -532,10 +690,54 @@ public Builder setNeverCacheHTTP10ResponsesWithQueryString(
             return this;
         }
 
+        /**
+         * Enables or disables collapsing of concurrent cache misses. When
+         * enabled, only the first of several concurrent requests for the
+         * same uncached resource is sent to the origin server; the others
+         * wait for its response to be cached and are then served from
+         * the cache.
+         */
+        public Builder setRequestCollapsingEnabled(final boolean requestCollapsingEnabled) {
+            this.requestCollapsingEnabled = requestCollapsingEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time a collapsed request waits for the response
+         * of the request in flight before it goes to the origin server
+         * on its own.
+         */
+        public Builder setRequestCollapsingTimeout(final TimeValue requestCollapsingTimeout) {
+            this.requestCollapsingTimeout = requestCollapsingTimeout;
+            return this;
+        }
+
+        /**
+         * Enables or disables write-behind population of the cache. When
+         * enabled, a cacheable response is returned to the caller as soon as
+         * its content has been read and is written to the cache storage by a
+         * background thread. Pending writes of the same response are coalesced.
+         */
+        public Builder setWriteBehindEnabled(final boolean writeBehindEnabled) {
+            this.writeBehindEnabled = writeBehindEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of cache writes queued for write-behind.
+         * Responses that do not fit into the queue are not cached.
+         */
+        public Builder setWriteBehindQueueSize(final int writeBehindQueueSize) {
+            this.writeBehindQueueSize = writeBehindQueueSize;
+            return this;
+        }
+
         public CacheConfig build() {
             return new CacheConfig(
                     maxObjectSize,
                     maxCacheEntries,
+                    maxCacheSize,
+                    maxStreamedObjectSize,
                     maxUpdateRetries,
                     allow303Caching,
                     weakETagOnPutDeleteAllowed,
@@ -547,7 +749,11 @@ public CacheConfig build() {
                     asynchronousWorkersCore,
                     asynchronousWorkerIdleLifetimeSecs,
                     revalidationQueueSize,
-                    neverCacheHTTP10ResponsesWithQuery);
+                    neverCacheHTTP10ResponsesWithQuery,
+                    requestCollapsingEnabled,
+                    requestCollapsingTimeout != null ? requestCollapsingTimeout : DEFAULT_REQUEST_COLLAPSING_TIMEOUT,
+                    writeBehindEnabled,
+                    writeBehindQueueSize);
         }
 
     }
@@ -557,6 +763,8 @@ public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("[maxObjectSize=").append(this.maxObjectSize)
                 .append(", maxCacheEntries=").append(this.maxCacheEntries)
+                .append(", maxCacheSize=").append(this.maxCacheSize)
+                .append(", maxStreamedObjectSize=").append(this.maxStreamedObjectSize)
                 .append(", maxUpdateRetries=").append(this.maxUpdateRetries)
                 .append(", 303CachingEnabled=").append(this.allow303Caching)
                 .append(", weakETagOnPutDeleteAllowed=").append(this.weakETagOnPutDeleteAllowed)
@@ -569,6 +777,10 @@ public String toString() {
                 .append(", asynchronousWorkerIdleLifetimeSecs=").append(this.asynchronousWorkerIdleLifetimeSecs)
                 .append(", revalidationQueueSize=").append(this.revalidationQueueSize)
                 .append(", neverCacheHTTP10ResponsesWithQuery=").append(this.neverCacheHTTP10ResponsesWithQuery)
+                .append(", requestCollapsingEnabled=").append(this.requestCollapsingEnabled)
+                .append(", requestCollapsingTimeout=").append(this.requestCollapsingTimeout)
+                .append(", writeBehindEnabled=").append(this.writeBehindEnabled)
+                .append(", writeBehindQueueSize=").append(this.writeBehindQueueSize)
                 .append("]");
         return builder.toString();
     }
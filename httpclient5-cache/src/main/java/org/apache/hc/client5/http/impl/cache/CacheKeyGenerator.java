@@ -31,21 +31,16 @@
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
-import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
 import org.apache.hc.core5.function.Resolver;
 import org.apache.hc.core5.http.Header;
-import org.apache.hc.core5.http.HeaderElement;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
-import org.apache.hc.core5.http.message.MessageSupport;
+import org.apache.hc.core5.net.URIAuthority;
 
 /**
  * @since 4.1
@@ -86,6 +81,10 @@ public String generateKey(final URI requestUri) {
      * @return cache key
      */
     public String generateKey(final HttpHost host, final HttpRequest request) {
+        final String key = formatPlainKey(host, request);
+        if (key != null) {
+            return key;
+        }
         final String s = HttpCacheSupport.getRequestUri(request, host);
         try {
             return generateKey(new URI(s));
@@ -94,6 +93,180 @@ public String generateKey(final HttpHost host, final HttpRequest request) {
         }
     }
 
+    /**
+     * Formats the cache key in a single pass for the common case of a request
+     * whose scheme, host name and path are already in their normal form and
+     * need no escaping. Returns {@code null} if the request URI needs to be
+     * fully normalized in order to produce a key identical to that of
+     * {@link #generateKey(URI)}.
+     */
+    private static String formatPlainKey(final HttpHost host, final HttpRequest request) {
+        final String scheme;
+        final String hostName;
+        int port;
+        final URIAuthority authority = request.getAuthority();
+        if (authority != null) {
+            scheme = request.getScheme() != null ? request.getScheme() : "http";
+            hostName = authority.getHostName();
+            port = authority.getPort();
+        } else {
+            scheme = host.getSchemeName();
+            hostName = host.getHostName();
+            port = host.getPort();
+        }
+        final String path = request.getPath();
+        if (!isPlainScheme(scheme) || !isPlainHostName(hostName) || !isPlainPath(path)) {
+            return null;
+        }
+        if (port < 0) {
+            if ("http".equalsIgnoreCase(scheme)) {
+                port = 80;
+            } else if ("https".equalsIgnoreCase(scheme)) {
+                port = 443;
+            }
+        }
+        final StringBuilder buf = new StringBuilder(
+                scheme.length() + hostName.length() + (path != null ? path.length() : 0) + 10);
+        appendLowerCase(buf, scheme);
+        buf.append("://");
+        appendLowerCase(buf, hostName);
+        if (port >= 0) {
+            buf.append(':').append(port);
+        }
+        if (path == null || !path.startsWith("/")) {
+            buf.append('/');
+        }
+        if (path != null) {
+            buf.append(path);
+        }
+        return buf.toString();
+    }
+
+    private static void appendLowerCase(final StringBuilder buf, final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            buf.append(ch >= 'A' && ch <= 'Z' ? (char) (ch + ('a' - 'A')) : ch);
+        }
+    }
+
+    private static boolean isAlpha(final char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    private static boolean isAlphaNumeric(final char ch) {
+        return isAlpha(ch) || (ch >= '0' && ch <= '9');
+    }
+
+    private static boolean isPlainScheme(final String scheme) {
+        if (scheme == null || scheme.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < scheme.length(); i++) {
+            if (!isAlpha(scheme.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Accepts only host names {@link URI} parses as a server based authority:
+     * dot separated alphanumeric labels that may contain inner hyphens, with
+     * the last label starting with a letter.
+     */
+    private static boolean isPlainHostName(final String hostName) {
+        if (hostName == null || hostName.isEmpty()) {
+            return false;
+        }
+        int labelStart = 0;
+        for (int i = 0; i <= hostName.length(); i++) {
+            final char ch = i < hostName.length() ? hostName.charAt(i) : '.';
+            if (ch == '.') {
+                if (i == labelStart || hostName.charAt(i - 1) == '-') {
+                    return false;
+                }
+                labelStart = i + 1;
+            } else if (ch == '-') {
+                if (i == labelStart) {
+                    return false;
+                }
+            } else if (!isAlphaNumeric(ch)) {
+                return false;
+            }
+        }
+        final int lastLabel = hostName.lastIndexOf('.') + 1;
+        return isAlpha(hostName.charAt(lastLabel));
+    }
+
+    private static boolean isPathChar(final char ch) {
+        if (isAlphaNumeric(ch)) {
+            return true;
+        }
+        switch (ch) {
+            case '-':
+            case '.':
+            case '_':
+            case '~':
+            case '!':
+            case '$':
+            case '&':
+            case '\'':
+            case '(':
+            case ')':
+            case '*':
+            case '+':
+            case ',':
+            case ';':
+            case '=':
+            case ':':
+            case '@':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Accepts only paths that URI normalization leaves intact: no empty or dot
+     * segments, no fragment and no characters that are or would be escaped.
+     */
+    private static boolean isPlainPath(final String path) {
+        if (path == null) {
+            return true;
+        }
+        final int len = path.length();
+        int i = path.startsWith("/") ? 1 : 0;
+        int segmentLen = 0;
+        boolean dots = true;
+        for (; i < len; i++) {
+            final char ch = path.charAt(i);
+            if (ch == '/') {
+                if (segmentLen == 0 || (dots && segmentLen <= 2)) {
+                    return false;
+                }
+                segmentLen = 0;
+                dots = true;
+            } else if (ch == '?') {
+                break;
+            } else if (isPathChar(ch)) {
+                segmentLen++;
+                dots &= ch == '.';
+            } else {
+                return false;
+            }
+        }
+        if (segmentLen > 0 && dots && segmentLen <= 2) {
+            return false;
+        }
+        for (i++; i < len; i++) {
+            final char ch = path.charAt(i);
+            if (ch != '/' && ch != '?' && !isPathChar(ch)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private String getFullHeaderValue(final Header[] headers) {
         if (headers == null) {
             return "";
@@ -136,26 +309,23 @@ public String generateVariantURI(final HttpHost host, final HttpRequest request,
      * @return variant key
      */
     public String generateVariantKey(final HttpRequest req, final HttpCacheEntry entry) {
-        final List<String> variantHeaderNames = new ArrayList<>();
-        final Iterator<HeaderElement> it = MessageSupport.iterate(entry, HeaderConstants.VARY);
-        while (it.hasNext()) {
-            final HeaderElement elt = it.next();
-            variantHeaderNames.add(elt.getName());
-        }
-        Collections.sort(variantHeaderNames);
+        final List<String> variantHeaderNames = entry.getVariantHeaderNames();
 
         final StringBuilder buf;
         try {
-            buf = new StringBuilder("{");
+            buf = new StringBuilder(64);
+            buf.append("{");
             boolean first = true;
             for (final String headerName : variantHeaderNames) {
                 if (!first) {
                     buf.append("&");
                 }
-                buf.append(URLEncoder.encode(headerName, StandardCharsets.UTF_8.name()));
+                appendEncoded(buf, headerName);
                 buf.append("=");
-                buf.append(URLEncoder.encode(getFullHeaderValue(req.getHeaders(headerName)),
-                        StandardCharsets.UTF_8.name()));
+                final Header[] headers = req.getHeaders(headerName);
+                appendEncoded(buf, headers != null && headers.length == 1
+                        ? headers[0].getValue().trim()
+                        : getFullHeaderValue(headers));
                 first = false;
             }
             buf.append("}");
@@ -165,4 +335,23 @@ public String generateVariantKey(final HttpRequest req, final HttpCacheEntry ent
         return buf.toString();
     }
 
+    /**
+     * Appends the {@literal application/x-www-form-urlencoded} form of the
+     * given string, using {@link URLEncoder} only if the string contains
+     * characters other than those it leaves intact.
+     */
+    private static void appendEncoded(final StringBuilder buf, final String s) throws UnsupportedEncodingException {
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            if (!isAlphaNumeric(ch) && ch != ' ' && ch != '.' && ch != '-' && ch != '*' && ch != '_') {
+                buf.append(URLEncoder.encode(s, StandardCharsets.UTF_8.name()));
+                return;
+            }
+        }
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            buf.append(ch == ' ' ? '+' : ch);
+        }
+    }
+
 }
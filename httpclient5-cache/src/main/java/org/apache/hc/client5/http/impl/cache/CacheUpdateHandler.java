@@ -36,6 +36,8 @@
 import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.cache.ResourceSink;
+import org.apache.hc.client5.http.cache.StreamingResourceFactory;
 import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
@@ -85,6 +87,42 @@ public HttpCacheEntry createtCacheEntry(
                 content != null ? resourceFactory.generate(request.getRequestUri(), content.array(), 0, content.length()) : null);
     }
 
+    /**
+     * Creates a cache entry for the given request, origin response message and response
+     * body that has already been turned into a {@link Resource}.
+     */
+    public HttpCacheEntry createStreamedCacheEntry(
+            final HttpRequest request,
+            final HttpResponse originResponse,
+            final Resource resource,
+            final Date requestSent,
+            final Date responseReceived) {
+        return new HttpCacheEntry(
+                requestSent,
+                responseReceived,
+                originResponse.getCode(),
+                originResponse.getAllHeaders(),
+                resource);
+    }
+
+    /**
+     * Returns {@code true} if the resource factory supports streaming.
+     */
+    public boolean isStreamingSupported() {
+        return resourceFactory instanceof StreamingResourceFactory;
+    }
+
+    /**
+     * Creates a sink the response body for the given request can be streamed into
+     * or returns {@code null} if the resource factory does not support streaming.
+     */
+    public ResourceSink createResourceSink(final HttpRequest request) throws ResourceIOException {
+        if (resourceFactory instanceof StreamingResourceFactory) {
+            return ((StreamingResourceFactory) resourceFactory).createSink(request.getRequestUri());
+        }
+        return null;
+    }
+
     /**
      * Update the entry with the new information from the response.  Should only be used for
      * 304 responses.
@@ -100,7 +138,7 @@ public HttpCacheEntry updateCacheEntry(
         final Header[] mergedHeaders = mergeHeaders(entry, response);
         Resource resource = null;
         if (entry.getResource() != null) {
-            resource = resourceFactory.copy(requestId, entry.getResource());
+            resource = shareResource(requestId, entry.getResource());
         }
         return new HttpCacheEntry(
                 requestDate,
@@ -123,7 +161,7 @@ public HttpCacheEntry updateParentCacheEntry(
 
         Resource resource = null;
         if (src.getResource() != null) {
-            resource = resourceFactory.copy(requestId, src.getResource());
+            resource = shareResource(requestId, src.getResource());
         }
         final Map<String,String> variantMap = new HashMap<>(src.getVariantMap());
         variantMap.put(variantKey, variantCacheKey);
@@ -136,6 +174,18 @@ public HttpCacheEntry updateParentCacheEntry(
                 variantMap);
     }
 
+    /**
+     * Returns a resource with the same content for use by a new cache entry. Reference
+     * counted resources are immutable and get shared by acquiring another reference;
+     * other resources are copied.
+     */
+    private Resource shareResource(final String requestId, final Resource resource) throws ResourceIOException {
+        if (resource instanceof RefCountedResource && ((RefCountedResource) resource).retain()) {
+            return resource;
+        }
+        return resourceFactory.copy(requestId, resource);
+    }
+
     private Header[] mergeHeaders(final HttpCacheEntry entry, final HttpResponse response) {
         if (DateUtils.isAfter(entry, response, HttpHeaders.DATE)) {
             return entry.getAllHeaders();
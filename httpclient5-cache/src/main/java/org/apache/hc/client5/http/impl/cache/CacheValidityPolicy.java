@@ -29,15 +29,13 @@
 import java.util.Date;
 import java.util.Iterator;
 
+import org.apache.hc.client5.http.cache.CacheEntryMetadata;
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.Resource;
-import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
-import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HeaderElement;
-import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.MessageHeaders;
 import org.apache.hc.core5.http.message.MessageSupport;
@@ -48,7 +46,7 @@
 @Contract(threading = ThreadingBehavior.IMMUTABLE)
 class CacheValidityPolicy {
 
-    public static final long MAX_AGE = 2147483648L;
+    public static final long MAX_AGE = CacheEntryMetadata.MAX_AGE;
 
     CacheValidityPolicy() {
         super();
@@ -64,16 +62,15 @@ public long getFreshnessLifetimeSecs(final HttpCacheEntry entry) {
             return maxage;
         }
 
-        final Date dateValue = entry.getDate();
-        if (dateValue == null) {
+        final CacheEntryMetadata metadata = entry.getMetadata();
+        if (metadata.getDate() == CacheEntryMetadata.UNDEFINED) {
             return 0L;
         }
 
-        final Date expiry = DateUtils.parseDate(entry, HeaderConstants.EXPIRES);
-        if (expiry == null) {
+        if (metadata.getExpires() == CacheEntryMetadata.UNDEFINED) {
             return 0;
         }
-        final long diff = expiry.getTime() - dateValue.getTime();
+        final long diff = metadata.getExpires() - metadata.getDate();
         return (diff / 1000);
     }
 
@@ -101,11 +98,11 @@ public boolean isResponseHeuristicallyFresh(final HttpCacheEntry entry,
 
     public long getHeuristicFreshnessLifetimeSecs(final HttpCacheEntry entry,
             final float coefficient, final long defaultLifetime) {
-        final Date dateValue = entry.getDate();
-        final Date lastModifiedValue = DateUtils.parseDate(entry, HeaderConstants.LAST_MODIFIED);
+        final CacheEntryMetadata metadata = entry.getMetadata();
 
-        if (dateValue != null && lastModifiedValue != null) {
-            final long diff = dateValue.getTime() - lastModifiedValue.getTime();
+        if (metadata.getDate() != CacheEntryMetadata.UNDEFINED
+                && metadata.getLastModified() != CacheEntryMetadata.UNDEFINED) {
+            final long diff = metadata.getDate() - metadata.getLastModified();
             if (diff < 0) {
                 return 0;
             }
@@ -116,41 +113,27 @@ public long getHeuristicFreshnessLifetimeSecs(final HttpCacheEntry entry,
     }
 
     public boolean isRevalidatable(final HttpCacheEntry entry) {
-        return entry.getFirstHeader(HeaderConstants.ETAG) != null
-                || entry.getFirstHeader(HeaderConstants.LAST_MODIFIED) != null;
+        final CacheEntryMetadata metadata = entry.getMetadata();
+        return metadata.getETag() != null || metadata.hasLastModifiedHeader();
     }
 
     public boolean mustRevalidate(final HttpCacheEntry entry) {
-        return hasCacheControlDirective(entry, HeaderConstants.CACHE_CONTROL_MUST_REVALIDATE);
+        return entry.getMetadata().isMustRevalidate();
     }
 
     public boolean proxyRevalidate(final HttpCacheEntry entry) {
-        return hasCacheControlDirective(entry, HeaderConstants.CACHE_CONTROL_PROXY_REVALIDATE);
+        return entry.getMetadata().isProxyRevalidate();
     }
 
     public boolean mayReturnStaleWhileRevalidating(final HttpCacheEntry entry, final Date now) {
-        final Iterator<HeaderElement> it = MessageSupport.iterate(entry, HeaderConstants.CACHE_CONTROL);
-        while (it.hasNext()) {
-            final HeaderElement elt = it.next();
-            if (HeaderConstants.STALE_WHILE_REVALIDATE.equalsIgnoreCase(elt.getName())) {
-                try {
-                    final int allowedStalenessLifetime = Integer.parseInt(elt.getValue());
-                    if (getStalenessSecs(entry, now) <= allowedStalenessLifetime) {
-                        return true;
-                    }
-                } catch (final NumberFormatException nfe) {
-                    // skip malformed directive
-                }
-            }
-        }
-
-        return false;
+        final long allowedStalenessLifetime = entry.getMetadata().getStaleWhileRevalidateSecs();
+        return allowedStalenessLifetime >= 0 && getStalenessSecs(entry, now) <= allowedStalenessLifetime;
     }
 
     public boolean mayReturnStaleIfError(final HttpRequest request, final HttpCacheEntry entry, final Date now) {
         final long stalenessSecs = getStalenessSecs(entry, now);
         return mayReturnStaleIfError(request, HeaderConstants.CACHE_CONTROL, stalenessSecs)
-                || mayReturnStaleIfError(entry, HeaderConstants.CACHE_CONTROL, stalenessSecs);
+                || stalenessSecs <= entry.getMetadata().getStaleIfErrorSecs();
     }
 
     private boolean mayReturnStaleIfError(final MessageHeaders headers, final String name, final long stalenessSecs) {
@@ -181,29 +164,24 @@ private boolean mayReturnStaleIfError(final MessageHeaders headers, final String
      * @return boolean indicating whether actual length matches Content-Length
      */
     protected boolean contentLengthHeaderMatchesActualLength(final HttpCacheEntry entry) {
-        final Header h = entry.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
-        if (h != null) {
-            try {
-                final long responseLen = Long.parseLong(h.getValue());
-                final Resource resource = entry.getResource();
-                if (resource == null) {
-                    return false;
-                }
-                final long resourceLen = resource.length();
-                return responseLen == resourceLen;
-            } catch (final NumberFormatException ex) {
+        final long responseLen = entry.getMetadata().getContentLength();
+        if (responseLen != CacheEntryMetadata.UNDEFINED) {
+            final Resource resource = entry.getResource();
+            if (resource == null) {
                 return false;
             }
+            final long resourceLen = resource.length();
+            return responseLen == resourceLen;
         }
         return true;
     }
 
     protected long getApparentAgeSecs(final HttpCacheEntry entry) {
-        final Date dateValue = entry.getDate();
-        if (dateValue == null) {
+        final long dateValue = entry.getMetadata().getDate();
+        if (dateValue == CacheEntryMetadata.UNDEFINED) {
             return MAX_AGE;
         }
-        final long diff = entry.getResponseDate().getTime() - dateValue.getTime();
+        final long diff = entry.getResponseDate().getTime() - dateValue;
         if (diff < 0L) {
             return 0;
         }
@@ -211,20 +189,7 @@ protected long getApparentAgeSecs(final HttpCacheEntry entry) {
     }
 
     protected long getAgeValue(final HttpCacheEntry entry) {
-        long ageValue = 0;
-        for (final Header hdr : entry.getHeaders(HeaderConstants.AGE)) {
-            long hdrAge;
-            try {
-                hdrAge = Long.parseLong(hdr.getValue());
-                if (hdrAge < 0) {
-                    hdrAge = MAX_AGE;
-                }
-            } catch (final NumberFormatException nfe) {
-                hdrAge = MAX_AGE;
-            }
-            ageValue = (hdrAge > ageValue) ? hdrAge : ageValue;
-        }
-        return ageValue;
+        return entry.getMetadata().getAgeSecs();
     }
 
     protected long getCorrectedReceivedAgeSecs(final HttpCacheEntry entry) {
@@ -248,34 +213,11 @@ protected long getResidentTimeSecs(final HttpCacheEntry entry, final Date now) {
     }
 
     protected long getMaxAge(final HttpCacheEntry entry) {
-        long maxage = -1;
-        final Iterator<HeaderElement> it = MessageSupport.iterate(entry, HeaderConstants.CACHE_CONTROL);
-        while (it.hasNext()) {
-            final HeaderElement elt = it.next();
-            if (HeaderConstants.CACHE_CONTROL_MAX_AGE.equals(elt.getName()) || "s-maxage".equals(elt.getName())) {
-                try {
-                    final long currMaxAge = Long.parseLong(elt.getValue());
-                    if (maxage == -1 || currMaxAge < maxage) {
-                        maxage = currMaxAge;
-                    }
-                } catch (final NumberFormatException nfe) {
-                    // be conservative if can't parse
-                    maxage = 0;
-                }
-            }
-        }
-        return maxage;
+        return entry.getMetadata().getMaxAgeSecs();
     }
 
     public boolean hasCacheControlDirective(final HttpCacheEntry entry, final String directive) {
-        final Iterator<HeaderElement> it = MessageSupport.iterate(entry, HeaderConstants.CACHE_CONTROL);
-        while (it.hasNext()) {
-            final HeaderElement elt = it.next();
-            if (directive.equalsIgnoreCase(elt.getName())) {
-                return true;
-            }
-        }
-        return false;
+        return entry.getMetadata().hasCacheControlDirective(directive);
     }
 
     public long getStalenessSecs(final HttpCacheEntry entry, final Date now) {
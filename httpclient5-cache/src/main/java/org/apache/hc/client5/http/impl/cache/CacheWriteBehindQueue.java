@@ -0,0 +1,304 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.Args;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Queues cache writes of {@link CachingExec} and {@link AsyncCachingExec} to
+ * be executed in the background, so that responses can be returned to the
+ * caller without waiting for the cache storage.
+ * <p>
+ * A write queued for a key that has a write pending already replaces the
+ * pending one. No more than {@link CacheConfig#getWriteBehindQueueSize()}
+ * writes are pending or in progress at any time; writes that do not fit are
+ * dropped and counted as overflow. Requests with unsafe methods
+ * {@link #invalidate(HttpHost) invalidate} the writes pending for their
+ * target host, which are then dropped rather than put stale content back
+ * into the cache.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class CacheWriteBehindQueue implements Closeable {
+
+    private static final int INVALIDATION_STRIPES = 64;
+
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+    private final int maxQueued;
+    private final ConcurrentMap<String, Pending> pending;
+    private final AtomicLongArray invalidations;
+    private final AtomicInteger queued;
+    private final AtomicLong coalesced;
+    private final AtomicLong overflow;
+    private final AtomicLong invalidated;
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    /**
+     * Creates a queue with its own writer thread and the queue size of
+     * the given {@link CacheConfig}.
+     */
+    public CacheWriteBehindQueue(final CacheConfig config) {
+        this(Executors.newSingleThreadExecutor(new DefaultThreadFactory("cache-write-behind", true)),
+                true,
+                config.getWriteBehindQueueSize());
+    }
+
+    /**
+     * Creates a queue that executes writes with the given executor.
+     * The executor is not shut down when the queue is closed.
+     *
+     * @param executor the executor writes are executed with; not {@code null}
+     * @param maxQueued the maximum number of pending writes
+     */
+    public CacheWriteBehindQueue(final Executor executor, final int maxQueued) {
+        this(executor, false, maxQueued);
+    }
+
+    private CacheWriteBehindQueue(final Executor executor, final boolean ownExecutor, final int maxQueued) {
+        this.executor = Args.notNull(executor, "Executor");
+        this.ownExecutor = ownExecutor ? (ExecutorService) executor : null;
+        this.maxQueued = Args.positive(maxQueued, "Max queued writes");
+        this.pending = new ConcurrentHashMap<>();
+        this.invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+        this.queued = new AtomicInteger();
+        this.coalesced = new AtomicLong();
+        this.overflow = new AtomicLong();
+        this.invalidated = new AtomicLong();
+    }
+
+    private static int stripeOf(final HttpHost target) {
+        return (target.hashCode() & 0x7fffffff) % INVALIDATION_STRIPES;
+    }
+
+    /**
+     * Queues the given write of a response of the given target host, replacing
+     * a write for the same key that is still pending.
+     *
+     * @return {@code false} if the write has been dropped because the
+     *   queue is full.
+     */
+    boolean enqueue(final HttpHost target, final String key, final Write write) {
+        final int stripe = stripeOf(target);
+        final Pending next = new Pending(write, stripe, invalidations.get(stripe));
+        for (;;) {
+            final Pending previous = pending.get(key);
+            if (previous != null) {
+                if (pending.replace(key, previous, next)) {
+                    coalesced.incrementAndGet();
+                    discard(previous.write);
+                    return true;
+                }
+                continue;
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                overflow.incrementAndGet();
+                log.debug("Cache write for [" + key + "] dropped: too many writes pending");
+                discard(write);
+                return false;
+            }
+            if (pending.putIfAbsent(key, next) != null) {
+                queued.decrementAndGet();
+                continue;
+            }
+            try {
+                executor.execute(new Job(key));
+            } catch (final RejectedExecutionException ex) {
+                if (pending.remove(key, next)) {
+                    queued.decrementAndGet();
+                    discard(write);
+                }
+                overflow.incrementAndGet();
+                log.debug("Cache write for [" + key + "] dropped: " + ex);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Invalidates the writes pending for the given target host. Writes queued
+     * before this method has been called are dropped when their turn comes.
+     */
+    void invalidate(final HttpHost target) {
+        invalidations.incrementAndGet(stripeOf(target));
+    }
+
+    private void discard(final Write write) {
+        try {
+            write.discard();
+        } catch (final RuntimeException ex) {
+            log.warn("Unable to discard cache write", ex);
+        }
+    }
+
+    /**
+     * Returns the number of writes currently pending or in progress.
+     */
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    /**
+     * Returns the number of writes that replaced a pending write for the same key.
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Returns the number of writes dropped because the queue was full.
+     */
+    public long getOverflowCount() {
+        return overflow.get();
+    }
+
+    /**
+     * Returns the number of writes dropped because their target host has been
+     * invalidated after they were queued.
+     */
+    public long getInvalidatedCount() {
+        return invalidated.get();
+    }
+
+    /**
+     * Shuts down the writer thread if the queue runs its own; writes already
+     * pending are still executed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[pending: " + queued + "; coalesced: " + coalesced + "; overflow: " + overflow
+                + "; invalidated: " + invalidated + "]";
+    }
+
+    /**
+     * Cache write queued with {@link CacheWriteBehindQueue}.
+     */
+    interface Write {
+
+        /**
+         * Executes the write. The given callback must be run once the write
+         * has completed, successfully or not.
+         */
+        void execute(Runnable done);
+
+        /**
+         * Invoked instead of {@link #execute(Runnable)} if the write is
+         * replaced, dropped or invalidated.
+         */
+        void discard();
+
+    }
+
+    private static final class Pending {
+
+        final Write write;
+        final int stripe;
+        final long invalidations;
+
+        Pending(final Write write, final int stripe, final long invalidations) {
+            this.write = write;
+            this.stripe = stripe;
+            this.invalidations = invalidations;
+        }
+
+    }
+
+    private final class Job implements Runnable {
+
+        final String key;
+
+        Job(final String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            final Pending next = pending.remove(key);
+            if (next == null) {
+                return;
+            }
+            if (invalidations.get(next.stripe) != next.invalidations) {
+                queued.decrementAndGet();
+                invalidated.incrementAndGet();
+                log.debug("Cache write for [" + key + "] dropped: invalidated");
+                discard(next.write);
+                return;
+            }
+            final AtomicBoolean completed = new AtomicBoolean(false);
+            final Runnable done = new Runnable() {
+
+                @Override
+                public void run() {
+                    if (completed.compareAndSet(false, true)) {
+                        queued.decrementAndGet();
+                    }
+                }
+
+            };
+            try {
+                next.write.execute(done);
+            } catch (final RuntimeException ex) {
+                log.warn("Unable to write cache entry behind", ex);
+                done.run();
+            }
+        }
+
+    }
+
+}
@@ -26,6 +26,7 @@
  */
 package org.apache.hc.client5.http.impl.cache;
 
+import java.io.File;
 import java.util.Date;
 
 import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
@@ -68,6 +69,19 @@ class CachedHttpResponseGenerator {
      * @return {@link SimpleHttpResponse} constructed response
      */
     SimpleHttpResponse generateResponse(final HttpRequest request, final HttpCacheEntry entry) throws ResourceIOException {
+        return generateResponse(request, entry, true);
+    }
+
+    /**
+     * Generates an {@link HttpResponse} based on {@link HttpCacheEntry}. If {@code inlineContent}
+     * is {@code false} the content of a {@link FileResource} or an {@link OffHeapResource} is not
+     * loaded into the response; the caller is expected to serve the body from
+     * {@link #getDirectContent(HttpRequest, HttpCacheEntry)} instead.
+     */
+    SimpleHttpResponse generateResponse(
+            final HttpRequest request,
+            final HttpCacheEntry entry,
+            final boolean inlineContent) throws ResourceIOException {
         final Date now = new Date();
         final SimpleHttpResponse response = new SimpleHttpResponse(entry.getStatus());
         response.setVersion(HttpVersion.DEFAULT);
@@ -76,11 +90,24 @@ SimpleHttpResponse generateResponse(final HttpRequest request, final HttpCacheEn
 
         if (responseShouldContainEntity(request, entry)) {
             final Resource resource = entry.getResource();
-            final Header h = entry.getFirstHeader(HttpHeaders.CONTENT_TYPE);
-            final ContentType contentType = h != null ? ContentType.parse(h.getValue()) : null;
-            final byte[] content = resource.get();
-            addMissingContentLengthHeader(response, content);
-            response.setBodyBytes(content, contentType);
+            if (!inlineContent && resource instanceof FileResource) {
+                final File file = ((FileResource) resource).getFile();
+                if (file == null || !file.canRead()) {
+                    throw new ResourceIOException("Resource content is no longer available");
+                }
+                addMissingContentLengthHeader(response, resource.length());
+            } else if (!inlineContent && resource instanceof OffHeapResource) {
+                if (((OffHeapResource) resource).refCount() <= 0) {
+                    throw new ResourceIOException("Resource content is no longer available");
+                }
+                addMissingContentLengthHeader(response, resource.length());
+            } else {
+                final Header h = entry.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+                final ContentType contentType = h != null ? ContentType.parse(h.getValue()) : null;
+                final byte[] content = resource.get();
+                addMissingContentLengthHeader(response, content.length);
+                response.setBodyBytes(content, contentType);
+            }
         }
 
         final long age = this.validityStrategy.getCurrentAgeSecs(entry, now);
@@ -146,13 +173,27 @@ SimpleHttpResponse generateNotModifiedResponse(final HttpCacheEntry entry) {
         return response;
     }
 
-    private void addMissingContentLengthHeader(final HttpResponse response, final byte[] body) {
+    /**
+     * Returns the file or off-heap resource the body of a response generated without
+     * inlined content has to be served from, or {@code null} if the body is carried by
+     * the response itself.
+     */
+    RefCountedResource getDirectContent(final HttpRequest request, final HttpCacheEntry entry) {
+        final Resource resource = entry.getResource();
+        if (responseShouldContainEntity(request, entry)
+                && (resource instanceof FileResource || resource instanceof OffHeapResource)) {
+            return (RefCountedResource) resource;
+        }
+        return null;
+    }
+
+    private void addMissingContentLengthHeader(final HttpResponse response, final long length) {
         if (transferEncodingIsPresent(response)) {
             return;
         }
         final Header contentLength = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
         if (contentLength == null) {
-            response.setHeader(HttpHeaders.CONTENT_LENGTH, Integer.toString(body.length));
+            response.setHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(length));
         }
     }
 
@@ -29,6 +29,7 @@
 import java.util.Date;
 import java.util.Iterator;
 
+import org.apache.hc.client5.http.cache.CacheEntryMetadata;
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.utils.DateUtils;
@@ -100,7 +101,7 @@ private boolean originInsistsOnFreshness(final HttpCacheEntry entry) {
             return false;
         }
         return validityStrategy.proxyRevalidate(entry) ||
-            validityStrategy.hasCacheControlDirective(entry, "s-maxage");
+            entry.getMetadata().hasSharedMaxAge();
     }
 
     private long getMaxStale(final HttpRequest request) {
@@ -314,8 +315,7 @@ private boolean hasSupportedLastModifiedValidator(final HttpRequest request) {
      * @return boolean does the etag validator match
      */
     private boolean etagValidatorMatches(final HttpRequest request, final HttpCacheEntry entry) {
-        final Header etagHeader = entry.getFirstHeader(HeaderConstants.ETAG);
-        final String etag = (etagHeader != null) ? etagHeader.getValue() : null;
+        final String etag = entry.getMetadata().getETag();
         final Iterator<HeaderElement> it = MessageSupport.iterate(request, HeaderConstants.IF_NONE_MATCH);
         while (it.hasNext()) {
             final HeaderElement elt = it.next();
@@ -336,15 +336,15 @@ private boolean etagValidatorMatches(final HttpRequest request, final HttpCacheE
      * @return  boolean Does the last modified header match
      */
     private boolean lastModifiedValidatorMatches(final HttpRequest request, final HttpCacheEntry entry, final Date now) {
-        final Date lastModified = DateUtils.parseDate(entry, HeaderConstants.LAST_MODIFIED);
-        if (lastModified == null) {
+        final long lastModified = entry.getMetadata().getLastModified();
+        if (lastModified == CacheEntryMetadata.UNDEFINED) {
             return false;
         }
 
         for (final Header h : request.getHeaders(HeaderConstants.IF_MODIFIED_SINCE)) {
             final Date ifModifiedSince = DateUtils.parseDate(h.getValue());
             if (ifModifiedSince != null) {
-                if (ifModifiedSince.after(now) || lastModified.after(ifModifiedSince)) {
+                if (ifModifiedSince.after(now) || lastModified > ifModifiedSince.getTime()) {
                     return false;
                 }
             }
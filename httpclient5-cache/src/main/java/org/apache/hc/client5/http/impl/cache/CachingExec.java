@@ -38,9 +38,12 @@
 import org.apache.hc.client5.http.cache.CacheResponseStatus;
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheListener;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.cache.ResourceSink;
 import org.apache.hc.client5.http.classic.ExecChain;
 import org.apache.hc.client5.http.classic.ExecChainHandler;
 import org.apache.hc.client5.http.impl.classic.ClassicRequestCopier;
@@ -48,14 +51,17 @@
 import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.ClassicHttpRequest;
 import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.HttpVersion;
 import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
@@ -106,7 +112,36 @@ public class CachingExec extends CachingExecBase implements ExecChainHandler {
     private final Logger log = LogManager.getLogger(getClass());
 
     public CachingExec(final HttpCache cache, final CacheConfig config) {
-        super(config);
+        this(cache, config, null);
+    }
+
+    /**
+     * @param cache the response cache.
+     * @param config the cache configuration.
+     * @param cacheListener the listener to report cache events to. May be {@code null}.
+     *
+     * @since 5.0
+     */
+    public CachingExec(final HttpCache cache, final CacheConfig config, final HttpCacheListener cacheListener) {
+        this(cache, config, cacheListener, null);
+    }
+
+    /**
+     * @param cache the response cache.
+     * @param config the cache configuration.
+     * @param cacheListener the listener to report cache events to. May be {@code null}.
+     * @param writeBehindQueue the queue cacheable responses are written to the cache
+     *   with in the background. If {@code null} responses are returned to the caller
+     *   once they have been cached.
+     *
+     * @since 5.0
+     */
+    public CachingExec(
+            final HttpCache cache,
+            final CacheConfig config,
+            final HttpCacheListener cacheListener,
+            final CacheWriteBehindQueue writeBehindQueue) {
+        super(config, cacheListener, writeBehindQueue);
         this.responseCache = Args.notNull(cache, "Response cache");
         this.conditionalRequestBuilder = new ConditionalRequestBuilder<>(ClassicRequestCopier.INSTANCE);
     }
@@ -155,6 +190,26 @@ public ClassicHttpResponse execute(
         final URIAuthority authority = request.getAuthority();
         final String scheme = request.getScheme();
         final HttpHost target = authority != null ? new HttpHost(authority, scheme) : route.getTargetHost();
+        if (cacheListener == null) {
+            return doExecute(target, request, scope, chain);
+        }
+        final long startNanos = System.nanoTime();
+        ClassicHttpResponse response = null;
+        try {
+            response = doExecute(target, request, scope, chain);
+            return response;
+        } finally {
+            final HttpEntity entity = response != null ? response.getEntity() : null;
+            notifyResponse(target, context, entity != null ? entity.getContentLength() : 0, startNanos);
+        }
+    }
+
+    private ClassicHttpResponse doExecute(
+            final HttpHost target,
+            final ClassicHttpRequest request,
+            final ExecChain.Scope scope,
+            final ExecChain chain) throws IOException, HttpException {
+        final HttpClientContext context = scope.clientContext;
         final String via = generateViaHeader(request);
 
         // default response context
@@ -208,6 +263,27 @@ private static ClassicHttpResponse convert(final SimpleHttpResponse cacheRespons
         return response;
     }
 
+    /**
+     * Converts the given response. If {@code directContent} is a {@link FileResource} the body
+     * is served straight from the cache file rather than copied from the response.
+     */
+    private static ClassicHttpResponse convert(
+            final SimpleHttpResponse cacheResponse, final RefCountedResource directContent) throws ResourceIOException {
+        final ClassicHttpResponse response = convert(cacheResponse);
+        if (response == null || response.getEntity() != null || directContent == null) {
+            return response;
+        }
+        final Header h = cacheResponse.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+        if (directContent instanceof FileResource) {
+            response.setEntity(new FileResourceEntity((FileResource) directContent, h != null ? h.getValue() : null));
+        } else {
+            // Output streams take byte arrays, so off-heap content is copied here
+            response.setEntity(new ByteArrayEntity(
+                    directContent.get(), h != null ? ContentType.parse(h.getValue()) : null));
+        }
+        return response;
+    }
+
     ClassicHttpResponse callBackend(
             final HttpHost target,
             final ClassicHttpRequest request,
@@ -240,7 +316,9 @@ private ClassicHttpResponse handleCacheHit(
         if (suitabilityChecker.canCachedResponseBeUsed(target, request, entry, now)) {
             log.debug("Cache hit");
             try {
-                final ClassicHttpResponse response = convert(generateCachedResponse(request, context, entry, now));
+                final ClassicHttpResponse response = convert(
+                        generateCachedResponse(request, context, entry, now, false),
+                        getCachedDirectContent(request, entry));
                 context.setAttribute(HttpCoreContext.HTTP_RESPONSE, response);
                 return response;
             } catch (final ResourceIOException ex) {
@@ -282,6 +360,7 @@ ClassicHttpResponse revalidateCacheEntry(
         final ClassicHttpRequest conditionalRequest = conditionalRequestBuilder.buildConditionalRequest(
                 scope.originalRequest, cacheEntry);
 
+        final long startNanos = System.nanoTime();
         Date requestDate = getCurrentDate();
         ClassicHttpResponse backendResponse = chain.proceed(conditionalRequest, scope);
         try {
@@ -299,6 +378,7 @@ ClassicHttpResponse revalidateCacheEntry(
             backendResponse.addHeader(HeaderConstants.VIA, generateViaHeader(backendResponse));
 
             final int statusCode = backendResponse.getCode();
+            notifyRevalidation(target, statusCode, startNanos);
             if (statusCode == HttpStatus.SC_NOT_MODIFIED || statusCode == HttpStatus.SC_OK) {
                 recordCacheUpdate(scope.clientContext);
             }
@@ -353,6 +433,7 @@ Map<String, Variant> getExistingCacheVariants(final HttpHost target, final HttpR
     }
 
     void flushEntriesInvalidatedByRequest(final HttpHost target, final HttpRequest request) {
+        invalidateWritesBehind(target, request);
         try {
             responseCache.flushInvalidatedCacheEntriesFor(target, request);
         } catch (final IOException ioe) {
@@ -381,8 +462,10 @@ ClassicHttpResponse handleBackendResponse(
 
         responseCompliance.ensureProtocolCompliance(scope.originalRequest, request, backendResponse);
 
+        invalidateWritesBehind(target, request);
         responseCache.flushInvalidatedCacheEntriesFor(target, request, backendResponse);
-        final boolean cacheable = responseCachingPolicy.isResponseCacheable(request, backendResponse);
+        final boolean cacheable = getResponseCachingPolicy(responseCache.isStreamingSupported())
+                .isResponseCacheable(request, backendResponse);
         if (cacheable) {
             storeRequestIfModifiedSinceFor304Response(request, backendResponse);
             return cacheAndReturnResponse(target, request, backendResponse, requestDate, responseDate);
@@ -403,9 +486,52 @@ ClassicHttpResponse cacheAndReturnResponse(
             final ClassicHttpResponse backendResponse,
             final Date requestSent,
             final Date responseReceived) throws IOException {
+        final HttpEntity entity = backendResponse.getEntity();
+        if (entity != null && isStreamedIntoCache(entity.getContentLength())) {
+            final ResourceSink sink = responseCache.createResourceSink(request);
+            if (sink != null) {
+                log.debug("Streaming backend response into cache");
+                // Collapsed requests keep waiting until the body has been streamed
+                final Runnable releaseCollapsed = holdCollapsedRequests(target, request);
+                boolean success = false;
+                try {
+                    backendResponse.setEntity(new TeeingEntity(entity, sink, cacheConfig.getMaxStreamedObjectSize(),
+                            new FutureCallback<Resource>() {
+
+                                @Override
+                                public void completed(final Resource resource) {
+                                    try {
+                                        storeStreamedResponse(
+                                                target, request, backendResponse, resource, requestSent, responseReceived);
+                                    } finally {
+                                        releaseCollapsed.run();
+                                    }
+                                }
+
+                                @Override
+                                public void failed(final Exception ex) {
+                                    log.warn("Unable to stream backend response into cache", ex);
+                                    releaseCollapsed.run();
+                                }
+
+                                @Override
+                                public void cancelled() {
+                                    log.debug("Backend response not consumed completely; not cached");
+                                    releaseCollapsed.run();
+                                }
+
+                            }));
+                    success = true;
+                } finally {
+                    if (!success) {
+                        releaseCollapsed.run();
+                    }
+                }
+                return backendResponse;
+            }
+        }
         log.debug("Caching backend response");
         final ByteArrayBuffer buf;
-        final HttpEntity entity = backendResponse.getEntity();
         if (entity != null) {
             buf = new ByteArrayBuffer(1024);
             final InputStream instream = entity.getContent();
@@ -425,6 +551,9 @@ ClassicHttpResponse cacheAndReturnResponse(
             buf = null;
         }
         backendResponse.close();
+        if (writeBehindQueue != null) {
+            return writeBehind(target, request, backendResponse, buf, requestSent, responseReceived);
+        }
         final HttpCacheEntry existingEntry = responseCache.getCacheEntry(target, request);
         if (DateUtils.isAfter(existingEntry, backendResponse, HttpHeaders.DATE)) {
             return convert(responseGenerator.generateResponse(request, existingEntry));
@@ -436,11 +565,107 @@ ClassicHttpResponse cacheAndReturnResponse(
         }
     }
 
+    /**
+     * Returns the buffered backend response at once and queues it to be written
+     * to the cache unless the cache holds a more recent entry by then. Requests
+     * collapsed onto this one wait until the write has completed.
+     */
+    private ClassicHttpResponse writeBehind(
+            final HttpHost target,
+            final HttpRequest request,
+            final ClassicHttpResponse backendResponse,
+            final ByteArrayBuffer buf,
+            final Date requestSent,
+            final Date responseReceived) throws IOException {
+        final ClassicHttpResponse response = convert(generateWriteBehindResponse(
+                request, backendResponse, buf, requestSent, responseReceived));
+        if (isWriteBehindContentServed(request, buf)) {
+            final Header h = backendResponse.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+            response.setEntity(new ByteArrayEntity(
+                    buf.array(), 0, buf.length(), h != null ? ContentType.parse(h.getValue()) : null));
+        }
+        final Runnable releaseCollapsed = holdCollapsedRequests(target, request);
+        writeBehindQueue.enqueue(target, getWriteBehindKey(target, request, backendResponse), new CacheWriteBehindQueue.Write() {
+
+            @Override
+            public void execute(final Runnable done) {
+                try {
+                    final HttpCacheEntry existingEntry = responseCache.getCacheEntry(target, request);
+                    if (!DateUtils.isAfter(existingEntry, backendResponse, HttpHeaders.DATE)) {
+                        responseCache.createCacheEntry(
+                                target, request, backendResponse, buf, requestSent, responseReceived);
+                        log.debug("Backend response successfully cached");
+                    }
+                } catch (final IOException ex) {
+                    log.warn("Unable to cache backend response", ex);
+                } finally {
+                    releaseCollapsed.run();
+                    done.run();
+                }
+            }
+
+            @Override
+            public void discard() {
+                releaseCollapsed.run();
+            }
+
+        });
+        return response;
+    }
+
+    void storeStreamedResponse(
+            final HttpHost target,
+            final HttpRequest request,
+            final HttpResponse backendResponse,
+            final Resource resource,
+            final Date requestSent,
+            final Date responseReceived) {
+        try {
+            final HttpCacheEntry existingEntry = responseCache.getCacheEntry(target, request);
+            if (DateUtils.isAfter(existingEntry, backendResponse, HttpHeaders.DATE)) {
+                resource.dispose();
+                return;
+            }
+            responseCache.createStreamedCacheEntry(target, request, backendResponse, resource, requestSent, responseReceived);
+            log.debug("Backend response successfully cached");
+        } catch (final ResourceIOException ex) {
+            resource.dispose();
+            log.warn("Unable to store backend response in cache", ex);
+        }
+    }
+
     private ClassicHttpResponse handleCacheMiss(
             final HttpHost target,
             final ClassicHttpRequest request,
             final ExecChain.Scope scope,
             final ExecChain chain) throws IOException, HttpException {
+        if (requestCollapser != null && mayCallBackend(request)) {
+            final String key = getCollapsingKey(target, request);
+            final RequestCollapser.Inflight inflight = requestCollapser.lead(key);
+            if (inflight != null) {
+                try {
+                    return fetchCacheMiss(target, request, scope, chain);
+                } finally {
+                    inflight.release();
+                }
+            }
+            log.debug("Waiting for concurrent request for the same resource");
+            if (!requestCollapser.await(key)) {
+                log.debug("Timed out waiting for concurrent request");
+            }
+            final HttpCacheEntry entry = satisfyFromCache(target, request);
+            if (entry != null) {
+                return handleCacheHit(target, request, scope, chain, entry);
+            }
+        }
+        return fetchCacheMiss(target, request, scope, chain);
+    }
+
+    private ClassicHttpResponse fetchCacheMiss(
+            final HttpHost target,
+            final ClassicHttpRequest request,
+            final ExecChain.Scope scope,
+            final ExecChain chain) throws IOException, HttpException {
         recordCacheMiss(target, request);
 
         if (!mayCallBackend(request)) {
@@ -34,11 +34,13 @@
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.hc.client5.http.StandardMethods;
 import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
 import org.apache.hc.client5.http.cache.CacheResponseStatus;
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheContext;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheListener;
 import org.apache.hc.client5.http.cache.ResourceIOException;
 import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.http.Header;
@@ -53,6 +55,7 @@
 import org.apache.hc.core5.http.ProtocolVersion;
 import org.apache.hc.core5.http.message.MessageSupport;
 import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.ByteArrayBuffer;
 import org.apache.hc.core5.util.VersionInfo;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -61,6 +64,14 @@ public class CachingExecBase {
 
     final static boolean SUPPORTS_RANGE_AND_CONTENT_RANGE_HEADERS = false;
 
+    private static final Runnable NO_HOLD = new Runnable() {
+
+        @Override
+        public void run() {
+        }
+
+    };
+
     final AtomicLong cacheHits = new AtomicLong();
     final AtomicLong cacheMisses = new AtomicLong();
     final AtomicLong cacheUpdates = new AtomicLong();
@@ -68,6 +79,7 @@ public class CachingExecBase {
     final Map<ProtocolVersion, String> viaHeaders = new ConcurrentHashMap<>(4);
 
     final ResponseCachingPolicy responseCachingPolicy;
+    final ResponseCachingPolicy streamingResponseCachingPolicy;
     final CacheValidityPolicy validityPolicy;
     final CachedHttpResponseGenerator responseGenerator;
     final CacheableRequestPolicy cacheableRequestPolicy;
@@ -75,6 +87,9 @@ public class CachingExecBase {
     final ResponseProtocolCompliance responseCompliance;
     final RequestProtocolCompliance requestCompliance;
     final CacheConfig cacheConfig;
+    final RequestCollapser requestCollapser;
+    final HttpCacheListener cacheListener;
+    final CacheWriteBehindQueue writeBehindQueue;
 
     final Logger log = LogManager.getLogger(getClass());
 
@@ -88,6 +103,7 @@ public class CachingExecBase {
             final RequestProtocolCompliance requestCompliance,
             final CacheConfig config) {
         this.responseCachingPolicy = responseCachingPolicy;
+        this.streamingResponseCachingPolicy = responseCachingPolicy;
         this.validityPolicy = validityPolicy;
         this.responseGenerator = responseGenerator;
         this.cacheableRequestPolicy = cacheableRequestPolicy;
@@ -95,9 +111,19 @@ public class CachingExecBase {
         this.requestCompliance = requestCompliance;
         this.responseCompliance = responseCompliance;
         this.cacheConfig = config != null ? config : CacheConfig.DEFAULT;
+        this.requestCollapser = createRequestCollapser(this.cacheConfig);
+        this.cacheListener = null;
+        this.writeBehindQueue = null;
     }
 
     CachingExecBase(final CacheConfig config) {
+        this(config, null, null);
+    }
+
+    CachingExecBase(
+            final CacheConfig config,
+            final HttpCacheListener cacheListener,
+            final CacheWriteBehindQueue writeBehindQueue) {
         super();
         this.cacheConfig = config != null ? config : CacheConfig.DEFAULT;
         this.validityPolicy = new CacheValidityPolicy();
@@ -107,8 +133,22 @@ public class CachingExecBase {
         this.responseCompliance = new ResponseProtocolCompliance();
         this.requestCompliance = new RequestProtocolCompliance(this.cacheConfig.isWeakETagOnPutDeleteAllowed());
         this.responseCachingPolicy = new ResponseCachingPolicy(
-                this.cacheConfig.getMaxObjectSize(), this.cacheConfig.isSharedCache(),
+                this.cacheConfig.getMaxObjectSize(),
+                this.cacheConfig.isSharedCache(),
                 this.cacheConfig.isNeverCacheHTTP10ResponsesWithQuery(), this.cacheConfig.is303CachingEnabled());
+        this.streamingResponseCachingPolicy = this.cacheConfig.getMaxStreamedObjectSize() > this.cacheConfig.getMaxObjectSize()
+                ? new ResponseCachingPolicy(
+                        this.cacheConfig.getMaxStreamedObjectSize(),
+                        this.cacheConfig.isSharedCache(),
+                        this.cacheConfig.isNeverCacheHTTP10ResponsesWithQuery(), this.cacheConfig.is303CachingEnabled())
+                : this.responseCachingPolicy;
+        this.requestCollapser = createRequestCollapser(this.cacheConfig);
+        this.cacheListener = cacheListener;
+        this.writeBehindQueue = writeBehindQueue;
+    }
+
+    private static RequestCollapser createRequestCollapser(final CacheConfig config) {
+        return config.isRequestCollapsingEnabled() ? new RequestCollapser(config.getRequestCollapsingTimeout()) : null;
     }
 
     /**
@@ -181,10 +221,20 @@ SimpleHttpResponse generateCachedResponse(
             final HttpContext context,
             final HttpCacheEntry entry,
             final Date now) throws ResourceIOException {
+        return generateCachedResponse(request, context, entry, now, true);
+    }
+
+    SimpleHttpResponse generateCachedResponse(
+            final HttpRequest request,
+            final HttpContext context,
+            final HttpCacheEntry entry,
+            final Date now,
+            final boolean inlineContent) throws ResourceIOException {
         final SimpleHttpResponse cachedResponse;
-        if (request.containsHeader(HeaderConstants.IF_NONE_MATCH)
-                || request.containsHeader(HeaderConstants.IF_MODIFIED_SINCE)) {
+        if (isConditional(request)) {
             cachedResponse = responseGenerator.generateNotModifiedResponse(entry);
+        } else if (!inlineContent && responseGenerator.getDirectContent(request, entry) != null) {
+            cachedResponse = responseGenerator.generateResponse(request, entry, false);
         } else {
             cachedResponse = responseGenerator.generateResponse(request, entry);
         }
@@ -195,6 +245,20 @@ SimpleHttpResponse generateCachedResponse(
         return cachedResponse;
     }
 
+    /**
+     * Returns the file or off-heap resource the body of a response generated by
+     * {@link #generateCachedResponse(HttpRequest, HttpContext, HttpCacheEntry, Date, boolean)}
+     * without inlined content has to be served from, or {@code null}.
+     */
+    RefCountedResource getCachedDirectContent(final HttpRequest request, final HttpCacheEntry entry) {
+        return isConditional(request) ? null : responseGenerator.getDirectContent(request, entry);
+    }
+
+    private static boolean isConditional(final HttpRequest request) {
+        return request.containsHeader(HeaderConstants.IF_NONE_MATCH)
+                || request.containsHeader(HeaderConstants.IF_MODIFIED_SINCE);
+    }
+
     SimpleHttpResponse handleRevalidationFailure(
             final HttpRequest request,
             final HttpContext context,
@@ -293,6 +357,133 @@ String generateViaHeader(final HttpMessage msg) {
         return value;
     }
 
+    /**
+     * Returns the policy that decides whether backend responses are cacheable.
+     * Caches able to stream bodies into their resource factory accept
+     * responses up to the maximum streamed object size.
+     */
+    ResponseCachingPolicy getResponseCachingPolicy(final boolean streamingSupported) {
+        return streamingSupported ? streamingResponseCachingPolicy : responseCachingPolicy;
+    }
+
+    /**
+     * Determines whether a response body of the given length should be streamed
+     * into a {@link org.apache.hc.client5.http.cache.ResourceSink} while being
+     * forwarded to the caller rather than buffered in memory.
+     */
+    boolean isStreamedIntoCache(final long contentLength) {
+        final long maxStreamedObjectSize = cacheConfig.getMaxStreamedObjectSize();
+        return maxStreamedObjectSize > 0 && (contentLength < 0 || contentLength > cacheConfig.getMaxObjectSize());
+    }
+
+    /**
+     * Returns the key concurrent cache misses are collapsed by. Variants of
+     * the same resource share the key, so a request that waited for another
+     * one may still find no suitable entry and has to go to the origin
+     * server on its own.
+     */
+    String getCollapsingKey(final HttpHost target, final HttpRequest request) {
+        return request.getMethod() + " " + CacheKeyGenerator.INSTANCE.generateKey(target, request);
+    }
+
+    /**
+     * Returns the key pending write-behind writes of a response are coalesced by.
+     * Variants are told apart by the values of the request headers the response
+     * varies on.
+     */
+    String getWriteBehindKey(final HttpHost target, final HttpRequest request, final HttpResponse backendResponse) {
+        final StringBuilder buf = new StringBuilder(getCollapsingKey(target, request));
+        final Iterator<HeaderElement> it = MessageSupport.iterate(backendResponse, HeaderConstants.VARY);
+        while (it.hasNext()) {
+            final String name = it.next().getName();
+            buf.append(' ').append(name).append('=');
+            for (final Header header: request.getHeaders(name)) {
+                buf.append(header.getValue()).append(',');
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Generates the response returned to the caller for a backend response whose
+     * content has been buffered and is written to the cache in the background.
+     * The response has no body; if {@link #isWriteBehindContentServed(HttpRequest,
+     * ByteArrayBuffer)} the caller serves the buffered content, which is shared
+     * with the queued write rather than copied.
+     */
+    SimpleHttpResponse generateWriteBehindResponse(
+            final HttpRequest request,
+            final HttpResponse backendResponse,
+            final ByteArrayBuffer content,
+            final Date requestDate,
+            final Date responseDate) throws ResourceIOException {
+        final HttpCacheEntry entry = new HttpCacheEntry(
+                requestDate,
+                responseDate,
+                backendResponse.getCode(),
+                backendResponse.getAllHeaders(),
+                null);
+        final SimpleHttpResponse response = responseGenerator.generateResponse(request, entry);
+        if (isWriteBehindContentServed(request, content)
+                && !response.containsHeader(HttpHeaders.TRANSFER_ENCODING)
+                && !response.containsHeader(HttpHeaders.CONTENT_LENGTH)) {
+            response.setHeader(HttpHeaders.CONTENT_LENGTH, Integer.toString(content.length()));
+        }
+        return response;
+    }
+
+    boolean isWriteBehindContentServed(final HttpRequest request, final ByteArrayBuffer content) {
+        return content != null && HeaderConstants.GET_METHOD.equals(request.getMethod());
+    }
+
+    /**
+     * Keeps requests collapsed onto the request in flight for the given request
+     * waiting until the returned callback is run, so that they find the response
+     * in the cache once it has been written behind.
+     */
+    Runnable holdCollapsedRequests(final HttpHost target, final HttpRequest request) {
+        final Runnable release = requestCollapser != null
+                ? requestCollapser.hold(getCollapsingKey(target, request))
+                : null;
+        return release != null ? release : NO_HOLD;
+    }
+
+    /**
+     * Drops cache writes pending for the target of an unsafe request before
+     * the request invalidates cache entries, so that none of them can put
+     * content back that the request has made stale.
+     */
+    void invalidateWritesBehind(final HttpHost target, final HttpRequest request) {
+        if (writeBehindQueue != null && !StandardMethods.isSafe(request.getMethod())) {
+            writeBehindQueue.invalidate(target);
+        }
+    }
+
+    /**
+     * Reports the response status set in the given context to the cache listener, if any.
+     * Body length is only reported for responses served from the cache.
+     */
+    void notifyResponse(final HttpHost target, final HttpContext context, final long contentLength, final long startNanos) {
+        if (cacheListener == null) {
+            return;
+        }
+        final Object status = context.getAttribute(HttpCacheContext.CACHE_RESPONSE_STATUS);
+        if (status instanceof CacheResponseStatus) {
+            final boolean fromCache = status == CacheResponseStatus.CACHE_HIT || status == CacheResponseStatus.VALIDATED;
+            cacheListener.onResponse(
+                    target,
+                    (CacheResponseStatus) status,
+                    fromCache && contentLength > 0 ? contentLength : 0,
+                    System.nanoTime() - startNanos);
+        }
+    }
+
+    void notifyRevalidation(final HttpHost target, final int statusCode, final long startNanos) {
+        if (cacheListener != null) {
+            cacheListener.onRevalidation(target, statusCode == HttpStatus.SC_NOT_MODIFIED, System.nanoTime() - startNanos);
+        }
+    }
+
     void setResponseStatus(final HttpContext context, final CacheResponseStatus value) {
         if (context != null) {
             context.setAttribute(HttpCacheContext.CACHE_RESPONSE_STATUS, value);
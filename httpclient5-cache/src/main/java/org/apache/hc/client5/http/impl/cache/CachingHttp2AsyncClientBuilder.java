@@ -29,15 +29,21 @@
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import org.apache.hc.client5.http.async.AsyncExecChainHandler;
 import org.apache.hc.client5.http.cache.HttpAsyncCacheInvalidator;
 import org.apache.hc.client5.http.cache.HttpAsyncCacheStorage;
 import org.apache.hc.client5.http.cache.HttpAsyncCacheStorageAdaptor;
+import org.apache.hc.client5.http.cache.HttpCacheListener;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.impl.ChainElements;
+import org.apache.hc.client5.http.impl.cache.disk.DiskHttpAsyncCacheStorage;
 import org.apache.hc.client5.http.impl.async.Http2AsyncClientBuilder;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
+import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.http.config.NamedElementChain;
 
 /**
@@ -51,9 +57,11 @@ public class CachingHttp2AsyncClientBuilder extends Http2AsyncClientBuilder {
     private ResourceFactory resourceFactory;
     private HttpAsyncCacheStorage storage;
     private File cacheDir;
+    private File persistentCacheDir;
     private CacheConfig cacheConfig;
     private HttpAsyncCacheInvalidator httpCacheInvalidator;
     private boolean deleteCache;
+    private HttpCacheListener cacheListener;
 
     public static CachingHttp2AsyncClientBuilder create() {
         return new CachingHttp2AsyncClientBuilder();
@@ -84,6 +92,19 @@ public final CachingHttp2AsyncClientBuilder setCacheDir(final File cacheDir) {
         return this;
     }
 
+    /**
+     * Sets the directory of a persistent, log-structured cache storage that survives
+     * application restarts. The storage is bounded by {@link CacheConfig#getMaxCacheSize()}
+     * and closed along with the client. Has no effect if a cache storage has been set
+     * explicitly.
+     *
+     * @since 5.0
+     */
+    public final CachingHttp2AsyncClientBuilder setPersistentCacheDir(final File persistentCacheDir) {
+        this.persistentCacheDir = persistentCacheDir;
+        return this;
+    }
+
     public final CachingHttp2AsyncClientBuilder setCacheConfig(final CacheConfig cacheConfig) {
         this.cacheConfig = cacheConfig;
         return this;
@@ -99,6 +120,17 @@ public CachingHttp2AsyncClientBuilder setDeleteCache(final boolean deleteCache)
         return this;
     }
 
+    /**
+     * Assigns {@link HttpCacheListener} to be notified of cache responses, revalidations
+     * and cache storage operations, for instance {@link InMemoryCacheStatistics}.
+     *
+     * @since 5.0
+     */
+    public final CachingHttp2AsyncClientBuilder setHttpCacheListener(final HttpCacheListener cacheListener) {
+        this.cacheListener = cacheListener;
+        return this;
+    }
+
     @Override
     protected void customizeExecChain(final NamedElementChain<AsyncExecChainHandler> execChainDefinition) {
         final CacheConfig config = this.cacheConfig != null ? this.cacheConfig : CacheConfig.DEFAULT;
@@ -112,11 +144,35 @@ protected void customizeExecChain(final NamedElementChain<AsyncExecChainHandler>
             }
         }
         HttpAsyncCacheStorage storageCopy = this.storage;
+        if (storageCopy == null && this.persistentCacheDir != null) {
+            final DiskHttpAsyncCacheStorage diskStorage;
+            try {
+                diskStorage = new DiskHttpAsyncCacheStorage(this.persistentCacheDir, config);
+            } catch (final IOException ex) {
+                throw new IllegalStateException("Unable to open persistent cache in " + this.persistentCacheDir, ex);
+            }
+            addCloseable(diskStorage);
+            storageCopy = diskStorage;
+        }
         if (storageCopy == null) {
-            if (this.cacheDir == null) {
-                storageCopy = new HttpAsyncCacheStorageAdaptor(new BasicHttpCacheStorage(config));
+            if (this.cacheDir == null && !(resourceFactoryCopy instanceof OffHeapResourceFactory)) {
+                if (config.getMaxCacheSize() > 0) {
+                    storageCopy = new HttpAsyncCacheStorageAdaptor(new TinyLfuHttpCacheStorage(config));
+                } else {
+                    storageCopy = new HttpAsyncCacheStorageAdaptor(new BasicHttpCacheStorage(config));
+                }
             } else {
                 final ManagedHttpCacheStorage managedStorage = new ManagedHttpCacheStorage(config);
+                if (resourceFactoryCopy instanceof OffHeapResourceFactory) {
+                    ((OffHeapResourceFactory) resourceFactoryCopy).setReclaimCallback(new Callback<Long>() {
+
+                        @Override
+                        public void execute(final Long size) {
+                            managedStorage.reclaim(size);
+                        }
+
+                    });
+                }
                 if (this.deleteCache) {
                     addCloseable(new Closeable() {
 
@@ -134,11 +190,43 @@ public void close() throws IOException {
         }
         final HttpAsyncCache httpCache = new BasicHttpAsyncCache(
                 resourceFactoryCopy,
-                storageCopy,
+                this.cacheListener != null ? new InstrumentedHttpAsyncCacheStorage(storageCopy, this.cacheListener) : storageCopy,
                 CacheKeyGenerator.INSTANCE,
                 this.httpCacheInvalidator != null ? this.httpCacheInvalidator : new DefaultAsyncCacheInvalidator());
 
-        final AsyncCachingExec cachingExec = new AsyncCachingExec(httpCache, config);
+        final ScheduledExecutorService scheduledExecutor;
+        if (config.isRequestCollapsingEnabled()) {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                    1, new DefaultThreadFactory("cache-request-collapser", true));
+            executor.setRemoveOnCancelPolicy(true);
+            addCloseable(new Closeable() {
+
+                @Override
+                public void close() throws IOException {
+                    executor.shutdownNow();
+                }
+
+            });
+            scheduledExecutor = executor;
+        } else {
+            scheduledExecutor = null;
+        }
+        final AsyncCacheRevalidator cacheRevalidator;
+        if (config.getAsynchronousWorkersMax() > 0) {
+            cacheRevalidator = new AsyncCacheRevalidator(config);
+            addCloseable(cacheRevalidator);
+        } else {
+            cacheRevalidator = null;
+        }
+        final CacheWriteBehindQueue writeBehindQueue;
+        if (config.isWriteBehindEnabled()) {
+            writeBehindQueue = new CacheWriteBehindQueue(config);
+            addCloseable(writeBehindQueue);
+        } else {
+            writeBehindQueue = null;
+        }
+        final AsyncCachingExec cachingExec = new AsyncCachingExec(
+                httpCache, scheduledExecutor, cacheRevalidator, config, this.cacheListener, writeBehindQueue);
         execChainDefinition.addBefore(ChainElements.PROTOCOL.name(), cachingExec, ChainElements.CACHING.name());
     }
 
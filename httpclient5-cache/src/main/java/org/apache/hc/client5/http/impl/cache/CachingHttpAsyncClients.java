@@ -72,6 +72,16 @@ public static CloseableHttpAsyncClient createFileBound(final File cacheDir) {
         return CachingHttpAsyncClientBuilder.create().setCacheDir(cacheDir).build();
     }
 
+    /**
+     * Creates {@link CloseableHttpAsyncClient} instance that uses a persistent
+     * response cache surviving application restarts.
+     *
+     * @param cacheDir location of response cache.
+     */
+    public static CloseableHttpAsyncClient createPersistent(final File cacheDir) {
+        return CachingHttpAsyncClientBuilder.create().setPersistentCacheDir(cacheDir).build();
+    }
+
     /**
      * Creates builder object for construction of custom HTTP/2
      * {@link CloseableHttpAsyncClient} instances.
@@ -98,4 +108,14 @@ public static CloseableHttpAsyncClient createHttp2FileBound(final File cacheDir)
         return CachingHttp2AsyncClientBuilder.create().setCacheDir(cacheDir).build();
     }
 
+    /**
+     * Creates HTTP/2 {@link CloseableHttpAsyncClient} instance that uses a persistent
+     * response cache surviving application restarts.
+     *
+     * @param cacheDir location of response cache.
+     */
+    public static CloseableHttpAsyncClient createHttp2Persistent(final File cacheDir) {
+        return CachingHttp2AsyncClientBuilder.create().setPersistentCacheDir(cacheDir).build();
+    }
+
 }
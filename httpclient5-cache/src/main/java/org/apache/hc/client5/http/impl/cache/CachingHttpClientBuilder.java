@@ -31,11 +31,14 @@
 import java.io.IOException;
 
 import org.apache.hc.client5.http.cache.HttpCacheInvalidator;
+import org.apache.hc.client5.http.cache.HttpCacheListener;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.classic.ExecChainHandler;
 import org.apache.hc.client5.http.impl.ChainElements;
+import org.apache.hc.client5.http.impl.cache.disk.DiskHttpCacheStorage;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.http.config.NamedElementChain;
 
 /**
@@ -49,9 +52,11 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
     private ResourceFactory resourceFactory;
     private HttpCacheStorage storage;
     private File cacheDir;
+    private File persistentCacheDir;
     private CacheConfig cacheConfig;
     private HttpCacheInvalidator httpCacheInvalidator;
     private boolean deleteCache;
+    private HttpCacheListener cacheListener;
 
     public static CachingHttpClientBuilder create() {
         return new CachingHttpClientBuilder();
@@ -80,6 +85,19 @@ public final CachingHttpClientBuilder setCacheDir(
         return this;
     }
 
+    /**
+     * Sets the directory of a persistent, log-structured cache storage that survives
+     * application restarts. The storage is bounded by {@link CacheConfig#getMaxCacheSize()}
+     * and closed along with the client. Has no effect if a cache storage has been set
+     * explicitly.
+     *
+     * @since 5.0
+     */
+    public final CachingHttpClientBuilder setPersistentCacheDir(final File persistentCacheDir) {
+        this.persistentCacheDir = persistentCacheDir;
+        return this;
+    }
+
     public final CachingHttpClientBuilder setCacheConfig(
             final CacheConfig cacheConfig) {
         this.cacheConfig = cacheConfig;
@@ -97,6 +115,17 @@ public CachingHttpClientBuilder setDeleteCache(final boolean deleteCache) {
         return this;
     }
 
+    /**
+     * Assigns {@link HttpCacheListener} to be notified of cache responses, revalidations
+     * and cache storage operations, for instance {@link InMemoryCacheStatistics}.
+     *
+     * @since 5.0
+     */
+    public final CachingHttpClientBuilder setHttpCacheListener(final HttpCacheListener cacheListener) {
+        this.cacheListener = cacheListener;
+        return this;
+    }
+
     @Override
     protected void customizeExecChain(final NamedElementChain<ExecChainHandler> execChainDefinition) {
         final CacheConfig config = this.cacheConfig != null ? this.cacheConfig : CacheConfig.DEFAULT;
@@ -110,11 +139,35 @@ protected void customizeExecChain(final NamedElementChain<ExecChainHandler> exec
             }
         }
         HttpCacheStorage storageCopy = this.storage;
+        if (storageCopy == null && this.persistentCacheDir != null) {
+            final DiskHttpCacheStorage diskStorage;
+            try {
+                diskStorage = new DiskHttpCacheStorage(this.persistentCacheDir, config);
+            } catch (final IOException ex) {
+                throw new IllegalStateException("Unable to open persistent cache in " + this.persistentCacheDir, ex);
+            }
+            addCloseable(diskStorage);
+            storageCopy = diskStorage;
+        }
         if (storageCopy == null) {
-            if (this.cacheDir == null) {
-                storageCopy = new BasicHttpCacheStorage(config);
+            if (this.cacheDir == null && !(resourceFactoryCopy instanceof OffHeapResourceFactory)) {
+                if (config.getMaxCacheSize() > 0) {
+                    storageCopy = new TinyLfuHttpCacheStorage(config);
+                } else {
+                    storageCopy = new BasicHttpCacheStorage(config);
+                }
             } else {
                 final ManagedHttpCacheStorage managedStorage = new ManagedHttpCacheStorage(config);
+                if (resourceFactoryCopy instanceof OffHeapResourceFactory) {
+                    ((OffHeapResourceFactory) resourceFactoryCopy).setReclaimCallback(new Callback<Long>() {
+
+                        @Override
+                        public void execute(final Long size) {
+                            managedStorage.reclaim(size);
+                        }
+
+                    });
+                }
                 if (this.deleteCache) {
                     addCloseable(new Closeable() {
 
@@ -132,11 +185,18 @@ public void close() throws IOException {
         }
         final HttpCache httpCache = new BasicHttpCache(
                 resourceFactoryCopy,
-                storageCopy,
+                this.cacheListener != null ? new InstrumentedHttpCacheStorage(storageCopy, this.cacheListener) : storageCopy,
                 CacheKeyGenerator.INSTANCE,
                 this.httpCacheInvalidator != null ? this.httpCacheInvalidator : new DefaultCacheInvalidator());
 
-        final CachingExec cachingExec = new CachingExec(httpCache, config);
+        final CacheWriteBehindQueue writeBehindQueue;
+        if (config.isWriteBehindEnabled()) {
+            writeBehindQueue = new CacheWriteBehindQueue(config);
+            addCloseable(writeBehindQueue);
+        } else {
+            writeBehindQueue = null;
+        }
+        final CachingExec cachingExec = new CachingExec(httpCache, config, this.cacheListener, writeBehindQueue);
         execChainDefinition.addBefore(ChainElements.PROTOCOL.name(), cachingExec, ChainElements.CACHING.name());
     }
 
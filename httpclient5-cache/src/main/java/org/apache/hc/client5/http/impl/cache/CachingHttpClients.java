@@ -72,4 +72,16 @@ public static CloseableHttpClient createFileBound(final File cacheDir) {
         return CachingHttpClientBuilder.create().setCacheDir(cacheDir).build();
     }
 
+    /**
+     * Creates {@link CloseableHttpClient} instance that uses a persistent
+     * response cache surviving application restarts.
+     *
+     * @param cacheDir location of response cache.
+     *
+     * @since 5.0
+     */
+    public static CloseableHttpClient createPersistent(final File cacheDir) {
+        return CachingHttpClientBuilder.create().setPersistentCacheDir(cacheDir).build();
+    }
+
 }
@@ -0,0 +1,205 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+
+/**
+ * Bounded map of cache entries that expire a fixed time after they have
+ * been put into the map. Used as the in-process tier of the tiered cache storages.
+ * <p>
+ * Entries are kept in a {@link ConcurrentHashMap}, so lookups never block. As all
+ * entries live for the same time, the order they have been put in is also the
+ * order they expire in; entries are evicted in that order when the map grows past
+ * its maximum size. Eviction is performed by whichever writer acquires the cleanup
+ * lock, so the map may briefly hold more entries than its maximum under contention.
+ * </p>
+ * <p>
+ * Every invalidation of a key advances the invalidation counter of the stripe the
+ * key hashes to. Values read from another tier can be put with
+ * {@link #putIfNotInvalidated(String, HttpCacheEntry, long)} so that they are
+ * dropped if the key may have been invalidated while they were read. Keys sharing
+ * a stripe may cause a value to be dropped needlessly, but never the reverse.
+ * </p>
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+final class ExpiringCacheMap {
+
+    static final int INVALIDATION_STRIPES = 64;
+
+    private static final int MIN_COMPACTION_THRESHOLD = 64;
+
+    static final class Slot {
+
+        final String key;
+        final HttpCacheEntry entry;
+        final long expiry;
+
+        Slot(final String key, final HttpCacheEntry entry, final long expiry) {
+            this.key = key;
+            this.entry = entry;
+            this.expiry = expiry;
+        }
+
+    }
+
+    private final ConcurrentMap<String, Slot> map;
+    // Slots in the order they have been put; may contain slots replaced since
+    private final ConcurrentLinkedQueue<Slot> expiryQueue;
+    private final AtomicInteger queueSize;
+    private final ReentrantLock cleanupLock;
+    private final AtomicLongArray invalidations;
+    private final int maxEntries;
+    private final long timeToLiveMillis;
+
+    ExpiringCacheMap(final int maxEntries, final long timeToLiveMillis) {
+        super();
+        this.map = new ConcurrentHashMap<>(Math.min(Math.max(16, maxEntries), 1024));
+        this.expiryQueue = new ConcurrentLinkedQueue<>();
+        this.queueSize = new AtomicInteger(0);
+        this.cleanupLock = new ReentrantLock();
+        this.invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    private static int stripeOf(final String key) {
+        final int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (INVALIDATION_STRIPES - 1);
+    }
+
+    HttpCacheEntry get(final String key) {
+        final Slot slot = this.map.get(key);
+        if (slot == null) {
+            return null;
+        }
+        if (slot.expiry - System.currentTimeMillis() <= 0) {
+            this.map.remove(key, slot);
+            return null;
+        }
+        return slot.entry;
+    }
+
+    void put(final String key, final HttpCacheEntry entry) {
+        if (entry != null) {
+            store(key, entry);
+        } else {
+            this.map.remove(key);
+        }
+    }
+
+    private Slot store(final String key, final HttpCacheEntry entry) {
+        final Slot slot = new Slot(key, entry, System.currentTimeMillis() + this.timeToLiveMillis);
+        this.map.put(key, slot);
+        this.expiryQueue.add(slot);
+        this.queueSize.incrementAndGet();
+        cleanUp();
+        return slot;
+    }
+
+    /**
+     * Returns the invalidation counter of the given key to be passed to
+     * {@link #putIfNotInvalidated(String, HttpCacheEntry, long)}.
+     */
+    long getInvalidations(final String key) {
+        return this.invalidations.get(stripeOf(key));
+    }
+
+    void putIfNotInvalidated(final String key, final HttpCacheEntry entry, final long invalidations) {
+        final int stripe = stripeOf(key);
+        if (this.invalidations.get(stripe) != invalidations) {
+            return;
+        }
+        if (entry == null) {
+            this.map.remove(key);
+            return;
+        }
+        final Slot slot = store(key, entry);
+        // An invalidation may have slipped in between the check and the put.
+        // It either removed the slot already or is seen here.
+        if (this.invalidations.get(stripe) != invalidations) {
+            this.map.remove(key, slot);
+        }
+    }
+
+    void invalidate(final String key) {
+        this.invalidations.incrementAndGet(stripeOf(key));
+        this.map.remove(key);
+    }
+
+    int size() {
+        return this.map.size();
+    }
+
+    private void cleanUp() {
+        if (!this.cleanupLock.tryLock()) {
+            return;
+        }
+        try {
+            final long now = System.currentTimeMillis();
+            for (;;) {
+                final Slot head = this.expiryQueue.peek();
+                if (head == null) {
+                    break;
+                }
+                final boolean current = this.map.get(head.key) == head;
+                if (current && head.expiry - now > 0 && this.map.size() <= this.maxEntries) {
+                    break;
+                }
+                this.expiryQueue.poll();
+                this.queueSize.decrementAndGet();
+                if (current) {
+                    this.map.remove(head.key, head);
+                }
+            }
+            // Replaced slots behind the head are only dropped once they pile up
+            if (this.queueSize.get() > Math.max(2 * this.map.size(), MIN_COMPACTION_THRESHOLD)) {
+                for (final Iterator<Slot> it = this.expiryQueue.iterator(); it.hasNext(); ) {
+                    final Slot slot = it.next();
+                    if (this.map.get(slot.key) != slot) {
+                        it.remove();
+                        this.queueSize.decrementAndGet();
+                    }
+                }
+            }
+        } finally {
+            this.cleanupLock.unlock();
+        }
+    }
+
+}
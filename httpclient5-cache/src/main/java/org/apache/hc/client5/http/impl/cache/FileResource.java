@@ -31,9 +31,13 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.atomic.AtomicReference;
 
-import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.cache.ResourceIOException;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
@@ -41,17 +45,21 @@
 import org.apache.hc.core5.util.ByteArrayBuffer;
 
 /**
- * Cache resource backed by a file.
+ * Cache resource backed by a file. The file content can be accessed through
+ * a read-only memory mapped view, which keeps large response bodies
+ * off the heap. The file is deleted once the last reference to the resource
+ * has been released.
  *
  * @since 4.1
  */
 @Contract(threading = ThreadingBehavior.SAFE)
-public class FileResource extends Resource {
+public class FileResource extends RefCountedResource {
 
     private static final long serialVersionUID = 4132244415919043397L;
 
     private final AtomicReference<File> fileRef;
     private final long len;
+    private transient volatile ByteBuffer mapped;
 
     public FileResource(final File file) {
         super();
@@ -64,12 +72,57 @@ File getFile() {
         return this.fileRef.get();
     }
 
+    /**
+     * Returns a read-only view of the file content mapped into memory.
+     * Each invocation returns a new view with its own position and limit
+     * that shares the same mapping.
+     * <p>
+     * The mapping is released when the resource is deallocated, so callers
+     * must hold a reference to the resource (see {@link #retain()}) for as
+     * long as they use the view.
+     * </p>
+     *
+     * @since 5.0
+     */
+    public ByteBuffer getByteBuffer() throws ResourceIOException {
+        ByteBuffer buffer = this.mapped;
+        if (buffer == null) {
+            synchronized (this) {
+                buffer = this.mapped;
+                if (buffer == null) {
+                    final File file = this.fileRef.get();
+                    if (file == null) {
+                        throw new ResourceIOException("Resouce already dispoased");
+                    }
+                    try (final RandomAccessFile raf = new RandomAccessFile(file, "r");
+                         final FileChannel channel = raf.getChannel()) {
+                        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, this.len);
+                    } catch (final IOException ex) {
+                        throw new ResourceIOException(ex.getMessage(), ex);
+                    }
+                    this.mapped = buffer;
+                }
+            }
+        }
+        return buffer.asReadOnlyBuffer();
+    }
+
     @Override
     public byte[] get() throws ResourceIOException {
         final File file = this.fileRef.get();
         if (file == null) {
             throw new ResourceIOException("Resouce already dispoased");
         }
+        if (this.mapped != null && retain()) {
+            try {
+                final ByteBuffer buffer = getByteBuffer();
+                final byte[] content = new byte[buffer.remaining()];
+                buffer.get(content);
+                return content;
+            } finally {
+                release();
+            }
+        }
         try (final InputStream in = new FileInputStream(file)) {
             final ByteArrayBuffer buf = new ByteArrayBuffer(1024);
             final byte[] tmp = new byte[2048];
@@ -103,11 +156,73 @@ public long length() {
     }
 
     @Override
-    public void dispose() {
-        final File file = this.fileRef.getAndSet(null);
+    protected void deallocate() {
+        final File file;
+        final ByteBuffer buffer;
+        synchronized (this) {
+            file = this.fileRef.getAndSet(null);
+            buffer = this.mapped;
+            this.mapped = null;
+        }
+        if (buffer != null) {
+            // Some platforms cannot delete a file while it is mapped
+            Unmapper.unmap(buffer);
+        }
         if (file != null) {
             file.delete();
         }
     }
 
+    /**
+     * Releases memory mappings eagerly rather than leaving it to the garbage
+     * collector. This relies on JDK internals and silently does nothing where
+     * they are not accessible.
+     */
+    static final class Unmapper {
+
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                // Java 9 and newer
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                final Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+            } catch (final Exception | LinkageError ignore) {
+                invokeCleaner = null;
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        static boolean unmap(final ByteBuffer buffer) {
+            if (buffer == null || !buffer.isDirect()) {
+                return false;
+            }
+            try {
+                if (INVOKE_CLEANER != null) {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                    return true;
+                }
+                // Java 8 and older
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner == null) {
+                    return false;
+                }
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+                return true;
+            } catch (final Exception | LinkageError ignore) {
+                return false;
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,121 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Entity that serves the content of a {@link FileResource} directly from
+ * the underlying file. Content written to a {@link FileOutputStream} is moved
+ * with {@link FileChannel#transferTo}, which lets the operating system copy
+ * the data without passing it through the heap. Any other stream receives
+ * the content through a single intermediate buffer.
+ */
+class FileResourceEntity extends AbstractHttpEntity {
+
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+    private final FileResource resource;
+
+    FileResourceEntity(final FileResource resource, final String contentType) {
+        super();
+        this.resource = resource;
+        setContentType(contentType);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return resource.length();
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return resource.getInputStream();
+    }
+
+    @Override
+    public void writeTo(final OutputStream outstream) throws IOException {
+        Args.notNull(outstream, "Output stream");
+        final File file = resource.getFile();
+        if (file == null) {
+            throw new ResourceIOException("Resouce already dispoased");
+        }
+        final long len = resource.length();
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (outstream instanceof FileOutputStream) {
+                final FileChannel channel = raf.getChannel();
+                final FileChannel target = ((FileOutputStream) outstream).getChannel();
+                long pos = 0;
+                while (pos < len) {
+                    final long n = channel.transferTo(pos, len - pos, target);
+                    if (n <= 0) {
+                        throw new ResourceIOException("Cache file truncated: " + pos + " of " + len + " bytes");
+                    }
+                    pos += n;
+                }
+            } else {
+                final byte[] tmp = new byte[(int) Math.min(len, OUTPUT_BUFFER_SIZE)];
+                long pos = 0;
+                while (pos < len) {
+                    final int n = raf.read(tmp, 0, (int) Math.min(tmp.length, len - pos));
+                    if (n < 0) {
+                        throw new ResourceIOException("Cache file truncated: " + pos + " of " + len + " bytes");
+                    }
+                    outstream.write(tmp, 0, n);
+                    pos += n;
+                }
+            }
+        }
+        outstream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+}
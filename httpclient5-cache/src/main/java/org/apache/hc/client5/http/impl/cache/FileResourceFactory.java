@@ -31,22 +31,26 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 import org.apache.hc.client5.http.cache.Resource;
-import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.cache.ResourceSink;
+import org.apache.hc.client5.http.cache.StreamingResourceFactory;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
 import org.apache.hc.core5.util.Args;
 
 /**
  * Generates {@link Resource} instances whose body is stored in a temporary file.
+ * Response bodies can also be streamed straight into the file through a
+ * {@link ResourceSink}.
  *
  * @since 4.1
  */
 @Contract(threading = ThreadingBehavior.IMMUTABLE)
-public class FileResourceFactory implements ResourceFactory {
+public class FileResourceFactory implements StreamingResourceFactory {
 
     private final File cacheDir;
     private final BasicIdGenerator idgen;
@@ -124,4 +128,72 @@ public Resource copy(
         return new FileResource(file);
     }
 
+    /**
+     * @since 5.0
+     */
+    @Override
+    public ResourceSink createSink(final String requestId) throws ResourceIOException {
+        Args.notNull(requestId, "Request id");
+        final File file = generateUniqueCacheFile(requestId);
+        try {
+            return new FileResourceSink(file, new FileOutputStream(file).getChannel());
+        } catch (final IOException ex) {
+            throw new ResourceIOException(ex.getMessage(), ex);
+        }
+    }
+
+    static class FileResourceSink implements ResourceSink {
+
+        private final File file;
+        private final FileChannel channel;
+        private long length;
+
+        FileResourceSink(final File file, final FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(final ByteBuffer src) throws ResourceIOException {
+            try {
+                while (src.hasRemaining()) {
+                    length += channel.write(src);
+                }
+            } catch (final IOException ex) {
+                throw new ResourceIOException(ex.getMessage(), ex);
+            }
+        }
+
+        @Override
+        public void write(final byte[] content, final int off, final int len) throws ResourceIOException {
+            write(ByteBuffer.wrap(content, off, len));
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public Resource commit() throws ResourceIOException {
+            try {
+                channel.close();
+            } catch (final IOException ex) {
+                file.delete();
+                throw new ResourceIOException(ex.getMessage(), ex);
+            }
+            return new FileResource(file);
+        }
+
+        @Override
+        public void abort() {
+            try {
+                channel.close();
+            } catch (final IOException ignore) {
+            }
+            file.delete();
+        }
+
+    }
+
 }
@@ -28,18 +28,18 @@
 
 import java.util.concurrent.atomic.AtomicReference;
 
-import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.cache.ResourceIOException;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
 
 /**
- * Cache resource backed by a byte array on the heap.
+ * Cache resource backed by a byte array on the heap. The array is dropped
+ * once the last reference to the resource has been released.
  *
  * @since 4.1
  */
-@Contract(threading = ThreadingBehavior.IMMUTABLE)
-public class HeapResource extends Resource {
+@Contract(threading = ThreadingBehavior.SAFE)
+public class HeapResource extends RefCountedResource {
 
     private static final long serialVersionUID = -2078599905620463394L;
 
@@ -71,7 +71,7 @@ public long length() {
     }
 
     @Override
-    public void dispose() {
+    protected void deallocate() {
         this.arrayRef.set(null);
     }
 
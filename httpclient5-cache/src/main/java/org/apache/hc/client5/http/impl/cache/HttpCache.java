@@ -30,7 +30,9 @@
 import java.util.Map;
 
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.cache.ResourceSink;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.HttpResponse;
@@ -78,6 +80,35 @@ HttpCacheEntry createCacheEntry(
             Date requestSent,
             Date responseReceived) throws ResourceIOException;
 
+    /**
+     * Store a {@link HttpResponse} whose body has been streamed into a
+     * {@link ResourceSink} in the cache, and return
+     *
+     * @since 5.0
+     */
+    HttpCacheEntry createStreamedCacheEntry(
+            HttpHost host,
+            HttpRequest request,
+            HttpResponse originResponse,
+            Resource resource,
+            Date requestSent,
+            Date responseReceived) throws ResourceIOException;
+
+    /**
+     * Create a {@link ResourceSink} the body of the response to the given request can be
+     * streamed into, or return {@code null} if response bodies cannot be streamed
+     *
+     * @since 5.0
+     */
+    ResourceSink createResourceSink(HttpRequest request) throws ResourceIOException;
+
+    /**
+     * Returns {@code true} if response bodies can be streamed into this cache.
+     *
+     * @since 5.0
+     */
+    boolean isStreamingSupported();
+
     /**
      * Update a {@link HttpCacheEntry} using a 304 {@link HttpResponse}.
      */
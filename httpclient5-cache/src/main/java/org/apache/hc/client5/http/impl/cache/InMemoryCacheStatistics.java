@@ -0,0 +1,461 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.client5.http.cache.HttpCacheListener;
+import org.apache.hc.client5.http.impl.ConcurrentHistogram;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link HttpCacheListener} implementation that keeps HTTP cache statistics
+ * in memory. Response counts are broken down by {@link CacheResponseStatus}
+ * and by target host, response and storage latencies are recorded as
+ * histograms. All statistics are recorded without locking into counters and
+ * histograms striped by thread. Per host counters are kept for a limited
+ * number of hosts, events of further hosts only count towards the totals.
+ * Point-in-time
+ * views of the statistics can be obtained with {@link #getSnapshot()},
+ * {@link #getHostSnapshot(HttpHost)} and {@link #getHostSnapshots()}.
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class InMemoryCacheStatistics implements HttpCacheListener {
+
+    private static final CacheResponseStatus[] STATUSES = CacheResponseStatus.values();
+
+    private static final int HOST_CACHED_BYTES = STATUSES.length;
+    private static final int HOST_REVALIDATIONS = STATUSES.length + 1;
+    private static final int HOST_VALIDATED = STATUSES.length + 2;
+
+    private static final int CACHED_BYTES = 0;
+    private static final int VALIDATED = 1;
+    private static final int STORAGE_HITS = 2;
+    private static final int STORAGE_FAILURES = 3;
+
+    public static final int DEFAULT_MAX_HOSTS = 1000;
+
+    private final int maxHosts;
+    private final ConcurrentMap<HttpHost, StripedCounters> hostCountersMap;
+    private volatile Totals totals;
+
+    /**
+     * @param maxHosts the maximum number of hosts to keep per host counters for.
+     */
+    public InMemoryCacheStatistics(final int maxHosts) {
+        this.maxHosts = Args.notNegative(maxHosts, "Max hosts");
+        this.hostCountersMap = new ConcurrentHashMap<>();
+        this.totals = new Totals();
+    }
+
+    public InMemoryCacheStatistics() {
+        this(DEFAULT_MAX_HOSTS);
+    }
+
+    private StripedCounters getHostCounters(final HttpHost host) {
+        StripedCounters hostCounters = this.hostCountersMap.get(host);
+        if (hostCounters == null) {
+            if (this.hostCountersMap.size() >= this.maxHosts) {
+                return null;
+            }
+            final StripedCounters newHostCounters = new StripedCounters(STATUSES.length + 3);
+            hostCounters = this.hostCountersMap.putIfAbsent(host, newHostCounters);
+            if (hostCounters == null) {
+                hostCounters = newHostCounters;
+            }
+        }
+        return hostCounters;
+    }
+
+    @Override
+    public void onResponse(
+            final HttpHost target, final CacheResponseStatus status, final long cachedBytes, final long durationNanos) {
+        final Totals current = this.totals;
+        current.responseTimes[status.ordinal()].record(durationNanos);
+        final StripedCounters hostCounters = getHostCounters(target);
+        if (hostCounters != null) {
+            hostCounters.increment(status.ordinal());
+        }
+        if (cachedBytes > 0) {
+            current.counters.add(CACHED_BYTES, cachedBytes);
+            if (hostCounters != null) {
+                hostCounters.add(HOST_CACHED_BYTES, cachedBytes);
+            }
+        }
+    }
+
+    @Override
+    public void onRevalidation(final HttpHost target, final boolean validated, final long durationNanos) {
+        final Totals current = this.totals;
+        current.revalidationTime.record(durationNanos);
+        final StripedCounters hostCounters = getHostCounters(target);
+        if (hostCounters != null) {
+            hostCounters.increment(HOST_REVALIDATIONS);
+        }
+        if (validated) {
+            current.counters.increment(VALIDATED);
+            if (hostCounters != null) {
+                hostCounters.increment(HOST_VALIDATED);
+            }
+        }
+    }
+
+    @Override
+    public void onStorageGet(final long durationNanos, final boolean found) {
+        final Totals current = this.totals;
+        current.storageGetTime.record(durationNanos);
+        if (found) {
+            current.counters.increment(STORAGE_HITS);
+        }
+    }
+
+    @Override
+    public void onStoragePut(final long durationNanos) {
+        this.totals.storagePutTime.record(durationNanos);
+    }
+
+    @Override
+    public void onStorageRemove(final long durationNanos) {
+        this.totals.storageRemoveTime.record(durationNanos);
+    }
+
+    @Override
+    public void onStorageFailure(final long durationNanos) {
+        this.totals.counters.increment(STORAGE_FAILURES);
+    }
+
+    /**
+     * Returns a snapshot of statistics of all hosts.
+     */
+    public Snapshot getSnapshot() {
+        return this.totals.getSnapshot();
+    }
+
+    /**
+     * Returns a snapshot of statistics of the given host or {@code null}
+     * if no events have been recorded for the host or the host has not been
+     * tracked because the maximum number of hosts had been reached.
+     */
+    public HostSnapshot getHostSnapshot(final HttpHost host) {
+        final StripedCounters hostCounters = this.hostCountersMap.get(host);
+        return hostCounters != null ? new HostSnapshot(host, hostCounters.getAll()) : null;
+    }
+
+    /**
+     * Returns snapshots of statistics of individual hosts.
+     */
+    public Map<HttpHost, HostSnapshot> getHostSnapshots() {
+        final Map<HttpHost, HostSnapshot> snapshots = new HashMap<>();
+        for (final Map.Entry<HttpHost, StripedCounters> entry: this.hostCountersMap.entrySet()) {
+            snapshots.put(entry.getKey(), new HostSnapshot(entry.getKey(), entry.getValue().getAll()));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Discards all statistics recorded so far.
+     */
+    public void clear() {
+        this.totals = new Totals();
+        this.hostCountersMap.clear();
+    }
+
+    @Override
+    public String toString() {
+        return getSnapshot().toString();
+    }
+
+    static final class Totals {
+
+        final ConcurrentHistogram[] responseTimes;
+        final ConcurrentHistogram revalidationTime = new ConcurrentHistogram(StripedCounters.STRIPES);
+        final ConcurrentHistogram storageGetTime = new ConcurrentHistogram(StripedCounters.STRIPES);
+        final ConcurrentHistogram storagePutTime = new ConcurrentHistogram(StripedCounters.STRIPES);
+        final ConcurrentHistogram storageRemoveTime = new ConcurrentHistogram(StripedCounters.STRIPES);
+        final StripedCounters counters = new StripedCounters(4);
+
+        Totals() {
+            this.responseTimes = new ConcurrentHistogram[STATUSES.length];
+            for (int i = 0; i < STATUSES.length; i++) {
+                this.responseTimes[i] = new ConcurrentHistogram(StripedCounters.STRIPES);
+            }
+        }
+
+        Snapshot getSnapshot() {
+            final Map<CacheResponseStatus, ConcurrentHistogram.Snapshot> responseTimeSnapshots =
+                    new EnumMap<>(CacheResponseStatus.class);
+            for (int i = 0; i < STATUSES.length; i++) {
+                responseTimeSnapshots.put(STATUSES[i], responseTimes[i].getSnapshot());
+            }
+            return new Snapshot(
+                    responseTimeSnapshots,
+                    counters.getAll(),
+                    revalidationTime.getSnapshot(),
+                    storageGetTime.getSnapshot(),
+                    storagePutTime.getSnapshot(),
+                    storageRemoveTime.getSnapshot());
+        }
+
+    }
+
+    static double ratio(final long part, final long total) {
+        return total > 0 ? (double) part / total : 0.0d;
+    }
+
+    /**
+     * Point-in-time view of HTTP cache statistics of all hosts.
+     */
+    @Contract(threading = ThreadingBehavior.IMMUTABLE)
+    public static final class Snapshot {
+
+        private final Map<CacheResponseStatus, ConcurrentHistogram.Snapshot> responseTimes;
+        private final long[] counters;
+        private final ConcurrentHistogram.Snapshot revalidationTime;
+        private final ConcurrentHistogram.Snapshot storageGetTime;
+        private final ConcurrentHistogram.Snapshot storagePutTime;
+        private final ConcurrentHistogram.Snapshot storageRemoveTime;
+
+        Snapshot(
+                final Map<CacheResponseStatus, ConcurrentHistogram.Snapshot> responseTimes,
+                final long[] counters,
+                final ConcurrentHistogram.Snapshot revalidationTime,
+                final ConcurrentHistogram.Snapshot storageGetTime,
+                final ConcurrentHistogram.Snapshot storagePutTime,
+                final ConcurrentHistogram.Snapshot storageRemoveTime) {
+            this.responseTimes = responseTimes;
+            this.counters = counters;
+            this.revalidationTime = revalidationTime;
+            this.storageGetTime = storageGetTime;
+            this.storagePutTime = storagePutTime;
+            this.storageRemoveTime = storageRemoveTime;
+        }
+
+        /**
+         * Returns the total number of responses produced by the caching module.
+         */
+        public long getResponseCount() {
+            long count = 0;
+            for (final ConcurrentHistogram.Snapshot snapshot: responseTimes.values()) {
+                count += snapshot.getCount();
+            }
+            return count;
+        }
+
+        /**
+         * Returns the number of responses with the given status.
+         */
+        public long getResponseCount(final CacheResponseStatus status) {
+            return responseTimes.get(status).getCount();
+        }
+
+        /**
+         * Returns the ratio of responses served from the cache, with or without
+         * revalidation, to all responses.
+         */
+        public double getHitRatio() {
+            return ratio(getResponseCount(CacheResponseStatus.CACHE_HIT)
+                    + getResponseCount(CacheResponseStatus.VALIDATED), getResponseCount());
+        }
+
+        /**
+         * Returns response times of responses with the given status in nanoseconds.
+         */
+        public ConcurrentHistogram.Snapshot getResponseTime(final CacheResponseStatus status) {
+            return responseTimes.get(status);
+        }
+
+        /**
+         * Returns the total length of response bodies served from the cache.
+         */
+        public long getCachedBytes() {
+            return counters[CACHED_BYTES];
+        }
+
+        public long getRevalidationCount() {
+            return revalidationTime.getCount();
+        }
+
+        /**
+         * Returns the number of revalidations that have confirmed the cache entry.
+         */
+        public long getValidatedCount() {
+            return counters[VALIDATED];
+        }
+
+        /**
+         * Returns the ratio of revalidations that have confirmed the cache entry.
+         */
+        public double getRevalidationSuccessRatio() {
+            return ratio(getValidatedCount(), getRevalidationCount());
+        }
+
+        /**
+         * Returns round trip times of conditional requests in nanoseconds.
+         */
+        public ConcurrentHistogram.Snapshot getRevalidationTime() {
+            return revalidationTime;
+        }
+
+        /**
+         * Returns the number of storage lookups that have found an entry.
+         */
+        public long getStorageHitCount() {
+            return counters[STORAGE_HITS];
+        }
+
+        public long getStorageFailureCount() {
+            return counters[STORAGE_FAILURES];
+        }
+
+        /**
+         * Returns storage lookup times in nanoseconds.
+         */
+        public ConcurrentHistogram.Snapshot getStorageGetTime() {
+            return storageGetTime;
+        }
+
+        /**
+         * Returns storage update times in nanoseconds.
+         */
+        public ConcurrentHistogram.Snapshot getStoragePutTime() {
+            return storagePutTime;
+        }
+
+        /**
+         * Returns storage removal times in nanoseconds.
+         */
+        public ConcurrentHistogram.Snapshot getStorageRemoveTime() {
+            return storageRemoveTime;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buffer = new StringBuilder();
+            buffer.append("[responses: ").append(getResponseCount());
+            buffer.append("][hit ratio: ").append(getHitRatio());
+            buffer.append("][cached bytes: ").append(getCachedBytes());
+            buffer.append("][revalidations: ").append(getRevalidationCount());
+            buffer.append("][validated: ").append(getValidatedCount());
+            buffer.append("][storage get: ").append(storageGetTime);
+            buffer.append("][storage put: ").append(storagePutTime);
+            buffer.append("][storage failures: ").append(getStorageFailureCount());
+            buffer.append("]");
+            return buffer.toString();
+        }
+
+    }
+
+    /**
+     * Point-in-time view of HTTP cache statistics of a particular host.
+     */
+    @Contract(threading = ThreadingBehavior.IMMUTABLE)
+    public static final class HostSnapshot {
+
+        private final HttpHost host;
+        private final long[] counters;
+
+        HostSnapshot(final HttpHost host, final long[] counters) {
+            this.host = host;
+            this.counters = counters;
+        }
+
+        public HttpHost getHost() {
+            return host;
+        }
+
+        /**
+         * Returns the total number of responses produced by the caching module.
+         */
+        public long getResponseCount() {
+            long count = 0;
+            for (int i = 0; i < STATUSES.length; i++) {
+                count += counters[i];
+            }
+            return count;
+        }
+
+        /**
+         * Returns the number of responses with the given status.
+         */
+        public long getResponseCount(final CacheResponseStatus status) {
+            return counters[status.ordinal()];
+        }
+
+        /**
+         * Returns the ratio of responses served from the cache, with or without
+         * revalidation, to all responses.
+         */
+        public double getHitRatio() {
+            return ratio(getResponseCount(CacheResponseStatus.CACHE_HIT)
+                    + getResponseCount(CacheResponseStatus.VALIDATED), getResponseCount());
+        }
+
+        /**
+         * Returns the total length of response bodies served from the cache.
+         */
+        public long getCachedBytes() {
+            return counters[HOST_CACHED_BYTES];
+        }
+
+        public long getRevalidationCount() {
+            return counters[HOST_REVALIDATIONS];
+        }
+
+        /**
+         * Returns the number of revalidations that have confirmed the cache entry.
+         */
+        public long getValidatedCount() {
+            return counters[HOST_VALIDATED];
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buffer = new StringBuilder();
+            buffer.append("[host: ").append(host);
+            buffer.append("][responses: ").append(getResponseCount());
+            buffer.append("][hit ratio: ").append(getHitRatio());
+            buffer.append("][cached bytes: ").append(getCachedBytes());
+            buffer.append("][revalidations: ").append(getRevalidationCount());
+            buffer.append("][validated: ").append(getValidatedCount());
+            buffer.append("]");
+            return buffer.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpAsyncCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheListener;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link HttpAsyncCacheStorage} decorator that reports latency and outcome of
+ * all operations of the decorated storage to a {@link HttpCacheListener}.
+ * Latency is measured until the result callback is invoked; cancelled
+ * operations are not reported. Bulk lookups are reported as a single lookup
+ * that has found an entry if any of the requested entries has been found.
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class InstrumentedHttpAsyncCacheStorage implements HttpAsyncCacheStorage {
+
+    private final HttpAsyncCacheStorage storage;
+    private final HttpCacheListener listener;
+
+    public InstrumentedHttpAsyncCacheStorage(final HttpAsyncCacheStorage storage, final HttpCacheListener listener) {
+        this.storage = Args.notNull(storage, "Cache storage");
+        this.listener = Args.notNull(listener, "Cache listener");
+    }
+
+    private abstract class ReportingCallback<T> implements FutureCallback<T> {
+
+        private final long start;
+        private final FutureCallback<T> callback;
+
+        ReportingCallback(final FutureCallback<T> callback) {
+            this.start = System.nanoTime();
+            this.callback = callback;
+        }
+
+        abstract void report(long durationNanos, T result);
+
+        @Override
+        public void completed(final T result) {
+            report(System.nanoTime() - start, result);
+            callback.completed(result);
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            listener.onStorageFailure(System.nanoTime() - start);
+            callback.failed(ex);
+        }
+
+        @Override
+        public void cancelled() {
+            callback.cancelled();
+        }
+
+    }
+
+    @Override
+    public Cancellable putEntry(
+            final String key, final HttpCacheEntry entry, final FutureCallback<Boolean> callback) {
+        Args.notNull(callback, "Callback");
+        return storage.putEntry(key, entry, new ReportingCallback<Boolean>(callback) {
+
+            @Override
+            void report(final long durationNanos, final Boolean result) {
+                listener.onStoragePut(durationNanos);
+            }
+
+        });
+    }
+
+    @Override
+    public Cancellable getEntry(final String key, final FutureCallback<HttpCacheEntry> callback) {
+        Args.notNull(callback, "Callback");
+        return storage.getEntry(key, new ReportingCallback<HttpCacheEntry>(callback) {
+
+            @Override
+            void report(final long durationNanos, final HttpCacheEntry result) {
+                listener.onStorageGet(durationNanos, result != null);
+            }
+
+        });
+    }
+
+    @Override
+    public Cancellable removeEntry(final String key, final FutureCallback<Boolean> callback) {
+        Args.notNull(callback, "Callback");
+        return storage.removeEntry(key, new ReportingCallback<Boolean>(callback) {
+
+            @Override
+            void report(final long durationNanos, final Boolean result) {
+                listener.onStorageRemove(durationNanos);
+            }
+
+        });
+    }
+
+    @Override
+    public Cancellable updateEntry(
+            final String key, final HttpCacheCASOperation casOperation, final FutureCallback<Boolean> callback) {
+        Args.notNull(callback, "Callback");
+        return storage.updateEntry(key, casOperation, new ReportingCallback<Boolean>(callback) {
+
+            @Override
+            void report(final long durationNanos, final Boolean result) {
+                listener.onStoragePut(durationNanos);
+            }
+
+        });
+    }
+
+    @Override
+    public Cancellable getEntries(
+            final Collection<String> keys, final FutureCallback<Map<String, HttpCacheEntry>> callback) {
+        Args.notNull(callback, "Callback");
+        return storage.getEntries(keys, new ReportingCallback<Map<String, HttpCacheEntry>>(callback) {
+
+            @Override
+            void report(final long durationNanos, final Map<String, HttpCacheEntry> result) {
+                listener.onStorageGet(durationNanos, result != null && !result.isEmpty());
+            }
+
+        });
+    }
+
+    @Override
+    public String toString() {
+        return storage.toString();
+    }
+
+}
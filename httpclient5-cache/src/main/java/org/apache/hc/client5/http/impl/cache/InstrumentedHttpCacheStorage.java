@@ -0,0 +1,132 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheListener;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link HttpCacheStorage} decorator that reports latency and outcome of
+ * all operations of the decorated storage to a {@link HttpCacheListener}.
+ * Bulk lookups are reported as a single lookup that has found an entry
+ * if any of the requested entries has been found.
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class InstrumentedHttpCacheStorage implements HttpCacheStorage {
+
+    private final HttpCacheStorage storage;
+    private final HttpCacheListener listener;
+
+    public InstrumentedHttpCacheStorage(final HttpCacheStorage storage, final HttpCacheListener listener) {
+        this.storage = Args.notNull(storage, "Cache storage");
+        this.listener = Args.notNull(listener, "Cache listener");
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws ResourceIOException {
+        final long start = System.nanoTime();
+        try {
+            storage.putEntry(key, entry);
+        } catch (final ResourceIOException ex) {
+            listener.onStorageFailure(System.nanoTime() - start);
+            throw ex;
+        }
+        listener.onStoragePut(System.nanoTime() - start);
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws ResourceIOException {
+        final long start = System.nanoTime();
+        final HttpCacheEntry entry;
+        try {
+            entry = storage.getEntry(key);
+        } catch (final ResourceIOException ex) {
+            listener.onStorageFailure(System.nanoTime() - start);
+            throw ex;
+        }
+        listener.onStorageGet(System.nanoTime() - start, entry != null);
+        return entry;
+    }
+
+    @Override
+    public void removeEntry(final String key) throws ResourceIOException {
+        final long start = System.nanoTime();
+        try {
+            storage.removeEntry(key);
+        } catch (final ResourceIOException ex) {
+            listener.onStorageFailure(System.nanoTime() - start);
+            throw ex;
+        }
+        listener.onStorageRemove(System.nanoTime() - start);
+    }
+
+    @Override
+    public void updateEntry(
+            final String key, final HttpCacheCASOperation casOperation) throws ResourceIOException, HttpCacheUpdateException {
+        final long start = System.nanoTime();
+        try {
+            storage.updateEntry(key, casOperation);
+        } catch (final ResourceIOException | HttpCacheUpdateException ex) {
+            listener.onStorageFailure(System.nanoTime() - start);
+            throw ex;
+        }
+        listener.onStoragePut(System.nanoTime() - start);
+    }
+
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws ResourceIOException {
+        final long start = System.nanoTime();
+        final Map<String, HttpCacheEntry> entries;
+        try {
+            entries = storage.getEntries(keys);
+        } catch (final ResourceIOException ex) {
+            listener.onStorageFailure(System.nanoTime() - start);
+            throw ex;
+        }
+        listener.onStorageGet(System.nanoTime() - start, entries != null && !entries.isEmpty());
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        return storage.toString();
+    }
+
+}
@@ -28,9 +28,13 @@
 
 import java.io.Closeable;
 import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -62,6 +66,11 @@
  * and similar.
  * </p>
  * <p>
+ * Entries backed by {@link OffHeapResource}s can also be evicted on demand with
+ * {@link #reclaim(long)}, which releases their resources immediately. This is used
+ * by {@link OffHeapResourceFactory} to free memory when its budget is exhausted.
+ * </p>
+ * <p>
  * Compatibility note. Prior to version 4.4 this storage implementation used to dispose of
  * all resource entries upon {@link #close()}. As of version 4.4 the {@link #close()} method
  * disposes only of those resources that have been explicitly removed from the cache with
@@ -178,6 +187,64 @@ public void cleanResources() {
         }
     }
 
+    /**
+     * Evicts least recently used entries backed by {@link OffHeapResource}s
+     * and releases their resources until resources with a total length of at least
+     * {@code size} bytes have been released or no such entries are left. Resources
+     * of entries no longer in use are deallocated first.
+     *
+     * @param size the number of bytes to reclaim.
+     * @return the total length of the resources released by evicting entries.
+     *
+     * @since 5.0
+     */
+    public long reclaim(final long size) {
+        if (!this.active.get()) {
+            return 0;
+        }
+        cleanResources();
+        final List<Resource> released = new ArrayList<>();
+        synchronized (this) {
+            final Map<Resource, Integer> evicted = new IdentityHashMap<>();
+            long total = 0;
+            for (final Iterator<HttpCacheEntry> it = this.entries.values().iterator(); it.hasNext() && total < size; ) {
+                final Resource resource = it.next().getResource();
+                if (resource instanceof OffHeapResource) {
+                    it.remove();
+                    final Integer count = evicted.get(resource);
+                    evicted.put(resource, count != null ? count + 1 : 1);
+                    total += resource.length();
+                }
+            }
+            if (evicted.isEmpty()) {
+                return 0;
+            }
+            // The evicted entries may still be referenced elsewhere; stop tracking them
+            // and release their references now
+            for (final Iterator<ResourceReference> it = this.resources.iterator(); it.hasNext(); ) {
+                final ResourceReference ref = it.next();
+                final Resource resource = ref.getResource();
+                final Integer count = evicted.get(resource);
+                if (count != null) {
+                    it.remove();
+                    ref.clear();
+                    released.add(resource);
+                    if (count > 1) {
+                        evicted.put(resource, count - 1);
+                    } else {
+                        evicted.remove(resource);
+                    }
+                }
+            }
+        }
+        long total = 0;
+        for (final Resource resource: released) {
+            total += resource.length();
+            resource.dispose();
+        }
+        return total;
+    }
+
     public void shutdown() {
         if (this.active.compareAndSet(true, false)) {
             synchronized (this) {
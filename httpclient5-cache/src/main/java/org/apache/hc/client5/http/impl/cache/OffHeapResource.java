@@ -0,0 +1,125 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.NotSerializableException;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+
+/**
+ * Cache resource backed by chunks of direct memory allocated by
+ * {@link OffHeapResourceFactory}. The chunks are returned to the factory
+ * once the last reference to the resource has been released.
+ * <p>
+ * The resource is serialized as a {@link HeapResource} with the same content.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class OffHeapResource extends RefCountedResource {
+
+    private static final long serialVersionUID = -3711862311429328893L;
+
+    private final transient OffHeapResourceFactory factory;
+    private final transient OffHeapResourceFactory.Chunk[] chunks;
+    private final long len;
+
+    OffHeapResource(final OffHeapResourceFactory factory, final OffHeapResourceFactory.Chunk[] chunks, final long len) {
+        super();
+        this.factory = factory;
+        this.chunks = chunks;
+        this.len = len;
+    }
+
+    @Override
+    public byte[] get() throws ResourceIOException {
+        if (!retain()) {
+            throw new ResourceIOException("Resouce already dispoased");
+        }
+        try {
+            final byte[] content = new byte[(int) this.len];
+            int pos = 0;
+            for (final OffHeapResourceFactory.Chunk chunk: this.chunks) {
+                final ByteBuffer src = chunk.buffer.duplicate();
+                final int n = Math.min(src.capacity(), content.length - pos);
+                src.clear();
+                src.get(content, pos, n);
+                pos += n;
+            }
+            return content;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Returns read-only views of the content, one per chunk, in content order.
+     * The views share the off-heap memory of the resource, so callers must hold
+     * a reference to the resource (see {@link #retain()}) for as long as they
+     * use them.
+     */
+    public ByteBuffer[] getByteBuffers() throws ResourceIOException {
+        if (refCount() <= 0) {
+            throw new ResourceIOException("Resouce already dispoased");
+        }
+        final ByteBuffer[] buffers = new ByteBuffer[this.chunks.length];
+        long remaining = this.len;
+        for (int i = 0; i < this.chunks.length; i++) {
+            final ByteBuffer view = this.chunks[i].buffer.asReadOnlyBuffer();
+            view.clear();
+            view.limit((int) Math.min(view.capacity(), remaining));
+            remaining -= view.limit();
+            buffers[i] = view;
+        }
+        return buffers;
+    }
+
+    @Override
+    public long length() {
+        return this.len;
+    }
+
+    @Override
+    protected void deallocate() {
+        this.factory.free(this.chunks);
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        try {
+            return new HeapResource(get());
+        } catch (final ResourceIOException ex) {
+            throw new NotSerializableException(ex.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,359 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceFactory;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.function.Callback;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Generates {@link OffHeapResource} instances whose content is stored outside
+ * of the Java heap.
+ * <p>
+ * Memory is allocated in slabs of direct {@link ByteBuffer}s. Each slab is
+ * dedicated to a size class and carved into equally sized chunks; size classes
+ * are powers of two from {@value #MIN_CHUNK_SIZE} bytes up to the slab size.
+ * A response body occupies as many chunks of the largest class as it fills
+ * completely plus one chunk of the smallest class the remainder fits into.
+ * Chunks are returned to their slab once the resource has been released. A slab
+ * whose chunks are all free is given back to the budget, so that the memory can
+ * be used by other size classes; one empty slab per size class is kept for reuse
+ * as long as the budget is not needed elsewhere.
+ * </p>
+ * <p>
+ * The total size of all slabs is bounded by the off-heap budget. If an allocation
+ * cannot be satisfied within the budget the reclaim callback, if any, is asked to
+ * release cached resources, for instance by means of
+ * {@link ManagedHttpCacheStorage#reclaim(long)}, before the allocation is retried.
+ * If there is still no space the allocation fails with {@link ResourceIOException}
+ * and the response is not cached.
+ * </p>
+ * <p>
+ * Resources generated by this factory must be deallocated explicitly, so the factory
+ * is meant to be used with {@link ManagedHttpCacheStorage}.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class OffHeapResourceFactory implements ResourceFactory, Closeable {
+
+    public static final int MIN_CHUNK_SIZE = 256;
+    public static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+
+    private final long maxSize;
+    private final int slabSize;
+    // Slabs with free chunks per size class
+    private final Deque<Slab>[] available;
+    private final int[] freeChunkCount;
+    private final Slab[] emptySlabs;
+    private volatile Callback<Long> reclaimCallback;
+    private long allocatedSize;
+    private long usedSize;
+    private boolean closed;
+
+    /**
+     * @param maxSize the maximum total size of direct memory in bytes the factory may allocate.
+     * @param slabSize the size of a slab in bytes; must be a power of two no smaller
+     *   than {@link #MIN_CHUNK_SIZE}.
+     */
+    @SuppressWarnings("unchecked")
+    public OffHeapResourceFactory(final long maxSize, final int slabSize) {
+        super();
+        Args.positive(maxSize, "Max off-heap size");
+        Args.check(slabSize >= MIN_CHUNK_SIZE && Integer.bitCount(slabSize) == 1,
+                "Slab size must be a power of two no smaller than " + MIN_CHUNK_SIZE);
+        this.maxSize = maxSize;
+        this.slabSize = slabSize;
+        final int classes = Integer.numberOfTrailingZeros(slabSize) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE) + 1;
+        this.available = new Deque[classes];
+        for (int i = 0; i < classes; i++) {
+            this.available[i] = new ArrayDeque<>();
+        }
+        this.freeChunkCount = new int[classes];
+        this.emptySlabs = new Slab[classes];
+    }
+
+    public OffHeapResourceFactory(final long maxSize) {
+        this(maxSize, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * Sets the callback to be asked to release cached resources when an allocation
+     * cannot be satisfied within the off-heap budget. The callback receives the number
+     * of bytes that need to be reclaimed.
+     */
+    public void setReclaimCallback(final Callback<Long> reclaimCallback) {
+        this.reclaimCallback = reclaimCallback;
+    }
+
+    /**
+     * Returns the total size of the slabs allocated so far.
+     */
+    public synchronized long getAllocatedSize() {
+        return this.allocatedSize;
+    }
+
+    /**
+     * Returns the total size of the chunks currently in use.
+     */
+    public synchronized long getUsedSize() {
+        return this.usedSize;
+    }
+
+    public long getMaxSize() {
+        return this.maxSize;
+    }
+
+    private static int sizeClassOf(final int len) {
+        final int chunkSize = Math.max(MIN_CHUNK_SIZE, Integer.highestOneBit(len - 1) << 1);
+        return Integer.numberOfTrailingZeros(chunkSize) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE);
+    }
+
+    private static int chunkSizeOf(final int sizeClass) {
+        return MIN_CHUNK_SIZE << sizeClass;
+    }
+
+    private int[] layout(final int len) {
+        final int full = len / this.slabSize;
+        final int remainder = len % this.slabSize;
+        final int[] classes = new int[full + (remainder > 0 ? 1 : 0)];
+        final int largest = this.available.length - 1;
+        for (int i = 0; i < full; i++) {
+            classes[i] = largest;
+        }
+        if (remainder > 0) {
+            classes[full] = sizeClassOf(remainder);
+        }
+        return classes;
+    }
+
+    private long requiredSlabSpace(final int[] classes) {
+        final int[] needed = new int[this.available.length];
+        for (final int sizeClass: classes) {
+            needed[sizeClass]++;
+        }
+        long required = 0;
+        for (int i = 0; i < needed.length; i++) {
+            final int missing = needed[i] - this.freeChunkCount[i];
+            if (missing > 0) {
+                final int chunksPerSlab = this.slabSize / chunkSizeOf(i);
+                required += (long) ((missing + chunksPerSlab - 1) / chunksPerSlab) * this.slabSize;
+            }
+        }
+        return required;
+    }
+
+    // guarded by this
+    private Chunk allocateChunk(final int sizeClass) {
+        final Deque<Slab> slabs = this.available[sizeClass];
+        Slab slab = slabs.peek();
+        if (slab == null) {
+            slab = new Slab(sizeClass, ByteBuffer.allocateDirect(this.slabSize), chunkSizeOf(sizeClass));
+            this.allocatedSize += this.slabSize;
+            this.freeChunkCount[sizeClass] += slab.chunkCount;
+            slabs.push(slab);
+        }
+        if (this.emptySlabs[sizeClass] == slab) {
+            this.emptySlabs[sizeClass] = null;
+        }
+        final Chunk chunk = slab.free.pop();
+        if (slab.free.isEmpty()) {
+            slabs.poll();
+        }
+        this.freeChunkCount[sizeClass]--;
+        this.usedSize += chunk.buffer.capacity();
+        return chunk;
+    }
+
+    // guarded by this
+    private void releaseSlab(final Slab slab) {
+        this.available[slab.sizeClass].remove(slab);
+        this.freeChunkCount[slab.sizeClass] -= slab.chunkCount;
+        this.allocatedSize -= this.slabSize;
+    }
+
+    // guarded by this
+    private void releaseEmptySlabs() {
+        for (int i = 0; i < this.emptySlabs.length; i++) {
+            final Slab slab = this.emptySlabs[i];
+            if (slab != null) {
+                this.emptySlabs[i] = null;
+                releaseSlab(slab);
+            }
+        }
+    }
+
+    private synchronized Chunk[] tryAllocate(final int[] classes) throws ResourceIOException {
+        if (this.closed) {
+            throw new ResourceIOException("Resource factory has been closed");
+        }
+        if (this.allocatedSize + requiredSlabSpace(classes) > this.maxSize) {
+            releaseEmptySlabs();
+            if (this.allocatedSize + requiredSlabSpace(classes) > this.maxSize) {
+                return null;
+            }
+        }
+        final Chunk[] chunks = new Chunk[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            chunks[i] = allocateChunk(classes[i]);
+        }
+        return chunks;
+    }
+
+    private Chunk[] allocate(final int len) throws ResourceIOException {
+        final int[] classes = layout(len);
+        Chunk[] chunks = tryAllocate(classes);
+        if (chunks == null) {
+            final Callback<Long> callback = this.reclaimCallback;
+            if (callback != null) {
+                callback.execute(Long.valueOf(len));
+                chunks = tryAllocate(classes);
+            }
+        }
+        if (chunks == null) {
+            throw new ResourceIOException("Off-heap cache budget of " + this.maxSize + " bytes exhausted");
+        }
+        return chunks;
+    }
+
+    synchronized void free(final Chunk[] chunks) {
+        if (this.closed) {
+            return;
+        }
+        for (final Chunk chunk: chunks) {
+            final Slab slab = chunk.slab;
+            chunk.buffer.clear();
+            if (slab.free.isEmpty()) {
+                this.available[slab.sizeClass].push(slab);
+            }
+            slab.free.push(chunk);
+            this.freeChunkCount[slab.sizeClass]++;
+            this.usedSize -= chunk.buffer.capacity();
+            if (slab.free.size() == slab.chunkCount) {
+                if (this.emptySlabs[slab.sizeClass] == null) {
+                    this.emptySlabs[slab.sizeClass] = slab;
+                } else {
+                    releaseSlab(slab);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Resource generate(
+            final String requestId,
+            final byte[] content, final int off, final int len) throws ResourceIOException {
+        Args.notNull(content, "Content");
+        final Chunk[] chunks = allocate(len);
+        int pos = off;
+        int remaining = len;
+        for (final Chunk chunk: chunks) {
+            final int n = Math.min(chunk.buffer.capacity(), remaining);
+            final ByteBuffer dst = chunk.buffer.duplicate();
+            dst.clear();
+            dst.put(content, pos, n);
+            pos += n;
+            remaining -= n;
+        }
+        return new OffHeapResource(this, chunks, len);
+    }
+
+    @Override
+    public Resource generate(final String requestId, final byte[] content) throws ResourceIOException {
+        Args.notNull(content, "Content");
+        return generate(requestId, content, 0, content.length);
+    }
+
+    @Override
+    public Resource copy(
+            final String requestId,
+            final Resource resource) throws ResourceIOException {
+        Args.notNull(resource, "Resource");
+        return generate(requestId, resource.get());
+    }
+
+    /**
+     * Drops all slabs. Resources generated by this factory must no longer be used
+     * once the factory has been closed.
+     */
+    @Override
+    public synchronized void close() {
+        if (!this.closed) {
+            this.closed = true;
+            for (int i = 0; i < this.available.length; i++) {
+                this.available[i].clear();
+                this.freeChunkCount[i] = 0;
+                this.emptySlabs[i] = null;
+            }
+            this.allocatedSize = 0;
+            this.usedSize = 0;
+        }
+    }
+
+    static final class Slab {
+
+        final int sizeClass;
+        final int chunkCount;
+        final Deque<Chunk> free;
+
+        Slab(final int sizeClass, final ByteBuffer buffer, final int chunkSize) {
+            this.sizeClass = sizeClass;
+            this.chunkCount = buffer.capacity() / chunkSize;
+            this.free = new ArrayDeque<>(this.chunkCount);
+            for (int pos = 0; pos < buffer.capacity(); pos += chunkSize) {
+                buffer.limit(pos + chunkSize);
+                buffer.position(pos);
+                this.free.add(new Chunk(this, buffer.slice()));
+            }
+        }
+
+    }
+
+    static final class Chunk {
+
+        final Slab slab;
+        final ByteBuffer buffer;
+
+        Chunk(final Slab slab, final ByteBuffer buffer) {
+            this.slab = slab;
+            this.buffer = buffer;
+        }
+
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+
+/**
+ * Cache resource with explicit reference counting. A new resource has a
+ * reference count of one. The underlying system resources are deallocated
+ * once the count drops to zero. {@link #dispose()} releases one reference.
+ * <p>
+ * The reference count is not serialized; a deserialized resource has a
+ * reference count of one.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public abstract class RefCountedResource extends Resource {
+
+    private static final long serialVersionUID = 5314316395398464216L;
+
+    private static final AtomicIntegerFieldUpdater<RefCountedResource> EXTRA_REFS =
+            AtomicIntegerFieldUpdater.newUpdater(RefCountedResource.class, "extraRefs");
+
+    // The reference count minus one, so that the default value of the field
+    // stands for a single reference
+    private transient volatile int extraRefs;
+
+    protected RefCountedResource() {
+        super();
+    }
+
+    /**
+     * Acquires an additional reference to this resource.
+     *
+     * @return {@code true} if the reference has been acquired, {@code false}
+     *   if the resource has already been deallocated.
+     */
+    public boolean retain() {
+        for (;;) {
+            final int extra = this.extraRefs;
+            if (extra < 0) {
+                return false;
+            }
+            if (EXTRA_REFS.compareAndSet(this, extra, extra + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases one reference to this resource, deallocating it when the last
+     * reference has been released.
+     *
+     * @return {@code true} if the resource has been deallocated as a result
+     *   of this call.
+     */
+    public boolean release() {
+        for (;;) {
+            final int extra = this.extraRefs;
+            if (extra < 0) {
+                return false;
+            }
+            if (EXTRA_REFS.compareAndSet(this, extra, extra - 1)) {
+                if (extra == 0) {
+                    deallocate();
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Returns the current reference count.
+     */
+    public int refCount() {
+        return this.extraRefs + 1;
+    }
+
+    @Override
+    public void dispose() {
+        release();
+    }
+
+    /**
+     * Deallocates the underlying system resources. Invoked once, when the
+     * last reference has been released.
+     */
+    protected abstract void deallocate();
+
+}
@@ -0,0 +1,278 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps track of cache misses that are being fetched from the origin
+ * server so that concurrent requests for the same resource can wait for
+ * the response to be cached instead of each going to the origin server.
+ * <p>
+ * The first request to miss becomes the leader and must {@link
+ * Inflight#release() release} its {@link Inflight} once the response has
+ * been cached, or once it is known that the response will not be cached.
+ * Other requests either block in {@link #await(String)} or register a
+ * callback with {@link #subscribe(String, Runnable, ScheduledExecutorService)}.
+ * Work that completes the caching of the response after the leader has been
+ * released, such as a write behind, can {@link #hold(String) hold} the request
+ * in flight until it is done.
+ * Followers are never made to wait longer than the collapsing timeout;
+ * a leader that has been in flight for longer than that is superseded by
+ * the next request.
+ * </p>
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+final class RequestCollapser {
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final ConcurrentMap<String, Inflight> inflightMap;
+    private final long timeoutNanos;
+
+    RequestCollapser(final TimeValue timeout) {
+        super();
+        Args.notNull(timeout, "Timeout");
+        this.inflightMap = new ConcurrentHashMap<>();
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * Attempts to become the leader for the given key.
+     *
+     * @return the in-flight request to be released by the caller or {@code null}
+     *  if another request for the same key is already in flight.
+     */
+    Inflight lead(final String key) {
+        final Inflight candidate = new Inflight(key, System.nanoTime() + timeoutNanos);
+        for (;;) {
+            final Inflight existing = inflightMap.putIfAbsent(key, candidate);
+            if (existing == null) {
+                return candidate;
+            }
+            if (!existing.isExpired(System.nanoTime())) {
+                return null;
+            }
+            if (inflightMap.replace(key, existing, candidate)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Collapsed request for " + key + " timed out; superseding it");
+                }
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * Blocks until the request in flight for the given key is released
+     * or the collapsing timeout elapses.
+     *
+     * @return {@code true} if the request in flight has been released or there
+     *  was none, {@code false} if the wait timed out.
+     */
+    boolean await(final String key) throws InterruptedIOException {
+        final Inflight inflight = inflightMap.get(key);
+        if (inflight == null) {
+            return true;
+        }
+        try {
+            return inflight.latch.await(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Registers a callback to be run once the request in flight for the given
+     * key is released. The callback is run exactly once: when the request is
+     * released, when the collapsing timeout elapses if a scheduler is given,
+     * or immediately if no request for the key is in flight any more.
+     */
+    void subscribe(final String key, final Runnable callback, final ScheduledExecutorService scheduler) {
+        final Inflight inflight = inflightMap.get(key);
+        final Waiter waiter = new Waiter(callback);
+        if (inflight == null || !inflight.addWaiter(waiter)) {
+            waiter.run();
+            return;
+        }
+        if (scheduler != null) {
+            try {
+                waiter.timeout = scheduler.schedule(waiter, timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (final RejectedExecutionException ex) {
+                log.debug("Unable to schedule collapsing timeout", ex);
+            }
+        }
+    }
+
+    /**
+     * Keeps the request in flight for the given key from waking up waiting
+     * requests until the returned callback is run, even if the leader has
+     * released it by then. Running the callback more than once has no effect.
+     *
+     * @return the callback releasing the hold or {@code null} if no request
+     *  for the key is in flight.
+     */
+    Runnable hold(final String key) {
+        final Inflight inflight = inflightMap.get(key);
+        return inflight != null ? inflight.hold() : null;
+    }
+
+    int getInflightCount() {
+        return inflightMap.size();
+    }
+
+    final class Inflight {
+
+        private final String key;
+        private final long expiry;
+        private final CountDownLatch latch;
+        private final AtomicBoolean released;
+        private final AtomicInteger holds;
+        private List<Waiter> waiters;
+
+        Inflight(final String key, final long expiry) {
+            this.key = key;
+            this.expiry = expiry;
+            this.latch = new CountDownLatch(1);
+            this.released = new AtomicBoolean(false);
+            this.holds = new AtomicInteger(1);
+            this.waiters = new ArrayList<>();
+        }
+
+        boolean isExpired(final long now) {
+            return now - expiry > 0;
+        }
+
+        synchronized boolean addWaiter(final Waiter waiter) {
+            if (waiters == null) {
+                return false;
+            }
+            waiters.add(waiter);
+            return true;
+        }
+
+        Runnable hold() {
+            for (;;) {
+                final int n = holds.get();
+                if (n <= 0) {
+                    return null;
+                }
+                if (holds.compareAndSet(n, n + 1)) {
+                    break;
+                }
+            }
+            final AtomicBoolean held = new AtomicBoolean(true);
+            return new Runnable() {
+
+                @Override
+                public void run() {
+                    if (held.compareAndSet(true, false)) {
+                        unhold();
+                    }
+                }
+
+            };
+        }
+
+        /**
+         * Wakes up all requests waiting for this one unless it is still held.
+         * Calling this method more than once has no effect.
+         */
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                unhold();
+            }
+        }
+
+        private void unhold() {
+            if (holds.decrementAndGet() > 0) {
+                return;
+            }
+            inflightMap.remove(key, this);
+            final List<Waiter> pending;
+            synchronized (this) {
+                pending = waiters;
+                waiters = null;
+            }
+            latch.countDown();
+            if (pending != null) {
+                for (final Waiter waiter: pending) {
+                    try {
+                        waiter.run();
+                    } catch (final RuntimeException ex) {
+                        log.warn("Collapsed request callback failed", ex);
+                    }
+                }
+            }
+        }
+
+    }
+
+    static final class Waiter implements Runnable {
+
+        private final Runnable callback;
+        private final AtomicBoolean done;
+        volatile ScheduledFuture<?> timeout;
+
+        Waiter(final Runnable callback) {
+            this.callback = callback;
+            this.done = new AtomicBoolean(false);
+        }
+
+        @Override
+        public void run() {
+            if (done.compareAndSet(false, true)) {
+                final ScheduledFuture<?> scheduledFuture = timeout;
+                if (scheduledFuture != null) {
+                    scheduledFuture.cancel(false);
+                }
+                callback.run();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Fixed set of {@code long} counters striped over several cells in order to
+ * reduce contention between threads updating them concurrently. Each stripe
+ * holds all counters of the set and is padded to a multiple of a cache line,
+ * a thread always updates the stripe selected by its id. Reading a counter
+ * sums up its cells over all stripes.
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+final class StripedCounters {
+
+    // longs per 64 byte cache line
+    private static final int LINE = 8;
+    private static final int MAX_STRIPES = 16;
+
+    static final int STRIPES;
+
+    static {
+        final int cpus = Runtime.getRuntime().availableProcessors();
+        int n = 1;
+        while (n < cpus && n < MAX_STRIPES) {
+            n <<= 1;
+        }
+        STRIPES = n;
+    }
+
+    private final int count;
+    private final int width;
+    private final AtomicLongArray cells;
+
+    StripedCounters(final int count) {
+        Args.positive(count, "Counter count");
+        this.count = count;
+        this.width = (count + LINE - 1) / LINE * LINE;
+        this.cells = new AtomicLongArray(STRIPES * this.width);
+    }
+
+    private int stripe() {
+        return (int) (Thread.currentThread().getId() & (STRIPES - 1)) * width;
+    }
+
+    void add(final int counter, final long delta) {
+        this.cells.addAndGet(stripe() + counter, delta);
+    }
+
+    void increment(final int counter) {
+        add(counter, 1);
+    }
+
+    long get(final int counter) {
+        long sum = 0;
+        for (int i = counter; i < this.cells.length(); i += width) {
+            sum += this.cells.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns current values of all counters. Updates made concurrently
+     * with this method may or may not be reflected in the result.
+     */
+    long[] getAll() {
+        final long[] values = new long[count];
+        for (int s = 0; s < this.cells.length(); s += width) {
+            for (int i = 0; i < count; i++) {
+                values[i] += this.cells.get(s + i);
+            }
+        }
+        return values;
+    }
+
+}
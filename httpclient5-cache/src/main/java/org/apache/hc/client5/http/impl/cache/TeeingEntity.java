@@ -0,0 +1,248 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.cache.ResourceSink;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.function.Supplier;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Entity that copies the content of the wrapped entity into a
+ * {@link ResourceSink} as it is being consumed. The sink is committed
+ * once the end of the content has been reached and aborted if the entity
+ * is closed early, if reading the content fails or if the content grows
+ * beyond the given limit.
+ */
+class TeeingEntity implements HttpEntity {
+
+    private final HttpEntity entity;
+    private final ResourceSink sink;
+    private final long maxLength;
+    private final FutureCallback<Resource> callback;
+    private final InputStream content;
+    private boolean done;
+
+    TeeingEntity(
+            final HttpEntity entity,
+            final ResourceSink sink,
+            final long maxLength,
+            final FutureCallback<Resource> callback) throws IOException {
+        super();
+        this.entity = entity;
+        this.sink = sink;
+        this.maxLength = maxLength;
+        this.callback = callback;
+        this.content = new TeeInputStream(entity.getContent());
+    }
+
+    private void tee(final byte[] b, final int off, final int len) {
+        if (done) {
+            return;
+        }
+        try {
+            sink.write(b, off, len);
+        } catch (final ResourceIOException ex) {
+            done = true;
+            sink.abort();
+            callback.failed(ex);
+            return;
+        }
+        if (sink.length() > maxLength) {
+            done = true;
+            sink.abort();
+            callback.cancelled();
+        }
+    }
+
+    private void complete() {
+        if (done) {
+            return;
+        }
+        done = true;
+        final Resource resource;
+        try {
+            resource = sink.commit();
+        } catch (final ResourceIOException ex) {
+            callback.failed(ex);
+            return;
+        }
+        callback.completed(resource);
+    }
+
+    private void abort(final Exception cause) {
+        if (done) {
+            return;
+        }
+        done = true;
+        sink.abort();
+        if (cause != null) {
+            callback.failed(cause);
+        } else {
+            callback.cancelled();
+        }
+    }
+
+    @Override
+    public long getContentLength() {
+        return entity.getContentLength();
+    }
+
+    @Override
+    public String getContentType() {
+        return entity.getContentType();
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return entity.getContentEncoding();
+    }
+
+    @Override
+    public boolean isChunked() {
+        return entity.isChunked();
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException, IllegalStateException {
+        return this.content;
+    }
+
+    @Override
+    public Set<String> getTrailerNames() {
+        return entity.getTrailerNames();
+    }
+
+    @Override
+    public Supplier<List<? extends Header>> getTrailers() {
+        return entity.getTrailers();
+    }
+
+    @Override
+    public void writeTo(final OutputStream outstream) throws IOException {
+        Args.notNull(outstream, "Output stream");
+        try (InputStream instream = getContent()) {
+            int l;
+            final byte[] tmp = new byte[4096];
+            while ((l = instream.read(tmp)) != -1) {
+                outstream.write(tmp, 0, l);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            content.close();
+        } finally {
+            entity.close();
+        }
+    }
+
+    class TeeInputStream extends FilterInputStream {
+
+        TeeInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b;
+            try {
+                b = in.read();
+            } catch (final IOException ex) {
+                abort(ex);
+                throw ex;
+            }
+            if (b == -1) {
+                complete();
+            } else {
+                tee(new byte[] {(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int l;
+            try {
+                l = in.read(b, off, len);
+            } catch (final IOException ex) {
+                abort(ex);
+                throw ex;
+            }
+            if (l == -1) {
+                complete();
+            } else {
+                tee(b, off, l);
+            }
+            return l;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            // Skipped content cannot be cached
+            abort(null);
+            return in.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            abort(null);
+            in.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.cache.HttpAsyncCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.impl.Operations;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * {@link HttpAsyncCacheStorage} implementation that layers a bounded in-process
+ * tier (L1) over another, typically remote, storage (L2) such as memcached.
+ * <p>
+ * Reads are served from L1 when possible and read through to L2 otherwise,
+ * populating L1 with the result. L1 entries expire after a short time to live
+ * to bound their staleness with respect to changes made to L2 by other nodes.
+ * </p>
+ * <p>
+ * In write-through mode writes complete once L2 has completed them. In write-behind
+ * mode they are applied to L1 and complete at once; the L2 write is issued without
+ * being awaited. Removals invalidate the L1 entry and are passed on to L2 the same
+ * way as writes. {@link #updateEntry(String, HttpCacheCASOperation, FutureCallback)
+ * CAS updates} are always awaited and invalidate the L1 entry.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class TieredHttpAsyncCacheStorage implements HttpAsyncCacheStorage {
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final HttpAsyncCacheStorage l2;
+    private final ExpiringCacheMap l1;
+    private final boolean writeBehind;
+    private final AtomicLong l1Hits;
+    private final AtomicLong l2Hits;
+    private final AtomicLong misses;
+
+    /**
+     * @param l2 the storage backing the in-process tier.
+     * @param maxL1Entries the maximum number of entries kept in-process.
+     * @param l1TimeToLive the time an entry is kept in-process after it has been
+     *   read from or written to L2.
+     * @param writeBehind {@code true} to complete writes without waiting for L2.
+     */
+    public TieredHttpAsyncCacheStorage(
+            final HttpAsyncCacheStorage l2,
+            final int maxL1Entries,
+            final TimeValue l1TimeToLive,
+            final boolean writeBehind) {
+        super();
+        this.l2 = Args.notNull(l2, "L2 storage");
+        Args.positive(maxL1Entries, "Max L1 entries");
+        Args.notNull(l1TimeToLive, "L1 time to live");
+        this.l1 = new ExpiringCacheMap(maxL1Entries, l1TimeToLive.toMillis());
+        this.writeBehind = writeBehind;
+        this.l1Hits = new AtomicLong();
+        this.l2Hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    public TieredHttpAsyncCacheStorage(
+            final HttpAsyncCacheStorage l2,
+            final int maxL1Entries,
+            final TimeValue l1TimeToLive) {
+        this(l2, maxL1Entries, l1TimeToLive, false);
+    }
+
+    private FutureCallback<Boolean> writeBehindCallback(final String key, final boolean invalidate) {
+        return new FutureCallback<Boolean>() {
+
+            @Override
+            public void completed(final Boolean result) {
+                if (invalidate) {
+                    l1.invalidate(key);
+                }
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                l1.invalidate(key);
+                log.warn("Unable to write cache entry behind", ex);
+            }
+
+            @Override
+            public void cancelled() {
+                l1.invalidate(key);
+            }
+
+        };
+    }
+
+    @Override
+    public Cancellable putEntry(final String key, final HttpCacheEntry entry, final FutureCallback<Boolean> callback) {
+        Args.notNull(key, "Key");
+        Args.notNull(entry, "Cache entry");
+        Args.notNull(callback, "Callback");
+        if (this.writeBehind) {
+            this.l1.put(key, entry);
+            this.l2.putEntry(key, entry, writeBehindCallback(key, false));
+            callback.completed(Boolean.TRUE);
+            return Operations.nonCancellable();
+        }
+        return this.l2.putEntry(key, entry, new FutureCallback<Boolean>() {
+
+            @Override
+            public void completed(final Boolean result) {
+                l1.put(key, entry);
+                callback.completed(result);
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                l1.invalidate(key);
+                callback.failed(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                l1.invalidate(key);
+                callback.cancelled();
+            }
+
+        });
+    }
+
+    @Override
+    public Cancellable getEntry(final String key, final FutureCallback<HttpCacheEntry> callback) {
+        Args.notNull(key, "Key");
+        Args.notNull(callback, "Callback");
+        final HttpCacheEntry cached = this.l1.get(key);
+        if (cached != null) {
+            this.l1Hits.incrementAndGet();
+            callback.completed(cached);
+            return Operations.nonCancellable();
+        }
+        final long invalidations = this.l1.getInvalidations(key);
+        return this.l2.getEntry(key, new FutureCallback<HttpCacheEntry>() {
+
+            @Override
+            public void completed(final HttpCacheEntry entry) {
+                if (entry != null) {
+                    l2Hits.incrementAndGet();
+                    l1.putIfNotInvalidated(key, entry, invalidations);
+                } else {
+                    misses.incrementAndGet();
+                }
+                callback.completed(entry);
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                callback.failed(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                callback.cancelled();
+            }
+
+        });
+    }
+
+    @Override
+    public Cancellable removeEntry(final String key, final FutureCallback<Boolean> callback) {
+        Args.notNull(key, "Key");
+        Args.notNull(callback, "Callback");
+        this.l1.invalidate(key);
+        if (this.writeBehind) {
+            this.l2.removeEntry(key, writeBehindCallback(key, true));
+            callback.completed(Boolean.TRUE);
+            return Operations.nonCancellable();
+        }
+        return this.l2.removeEntry(key, invalidatingCallback(key, callback));
+    }
+
+    @Override
+    public Cancellable updateEntry(
+            final String key, final HttpCacheCASOperation casOperation, final FutureCallback<Boolean> callback) {
+        Args.notNull(key, "Key");
+        Args.notNull(casOperation, "CAS operation");
+        Args.notNull(callback, "Callback");
+        this.l1.invalidate(key);
+        return this.l2.updateEntry(key, casOperation, invalidatingCallback(key, callback));
+    }
+
+    private FutureCallback<Boolean> invalidatingCallback(final String key, final FutureCallback<Boolean> callback) {
+        return new FutureCallback<Boolean>() {
+
+            @Override
+            public void completed(final Boolean result) {
+                l1.invalidate(key);
+                callback.completed(result);
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                l1.invalidate(key);
+                callback.failed(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                l1.invalidate(key);
+                callback.cancelled();
+            }
+
+        };
+    }
+
+    @Override
+    public Cancellable getEntries(final Collection<String> keys, final FutureCallback<Map<String, HttpCacheEntry>> callback) {
+        Args.notNull(keys, "Key");
+        Args.notNull(callback, "Callback");
+        final Map<String, HttpCacheEntry> resultMap = new HashMap<>(keys.size());
+        final List<String> remaining = new ArrayList<>(keys.size());
+        for (final String key: keys) {
+            final HttpCacheEntry cached = this.l1.get(key);
+            if (cached != null) {
+                this.l1Hits.incrementAndGet();
+                resultMap.put(key, cached);
+            } else {
+                remaining.add(key);
+            }
+        }
+        if (remaining.isEmpty()) {
+            callback.completed(resultMap);
+            return Operations.nonCancellable();
+        }
+        final long[] invalidations = new long[remaining.size()];
+        for (int i = 0; i < invalidations.length; i++) {
+            invalidations[i] = this.l1.getInvalidations(remaining.get(i));
+        }
+        return this.l2.getEntries(remaining, new FutureCallback<Map<String, HttpCacheEntry>>() {
+
+            @Override
+            public void completed(final Map<String, HttpCacheEntry> l2Entries) {
+                for (int i = 0; i < invalidations.length; i++) {
+                    final String key = remaining.get(i);
+                    final HttpCacheEntry entry = l2Entries.get(key);
+                    if (entry != null) {
+                        l2Hits.incrementAndGet();
+                        l1.putIfNotInvalidated(key, entry, invalidations[i]);
+                        resultMap.put(key, entry);
+                    } else {
+                        misses.incrementAndGet();
+                    }
+                }
+                callback.completed(resultMap);
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                callback.failed(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                callback.cancelled();
+            }
+
+        });
+    }
+
+    /**
+     * Returns the number of lookups served by the in-process tier.
+     */
+    public long getL1HitCount() {
+        return this.l1Hits.get();
+    }
+
+    /**
+     * Returns the number of lookups served by the backing storage.
+     */
+    public long getL2HitCount() {
+        return this.l2Hits.get();
+    }
+
+    /**
+     * Returns the number of lookups found in neither tier.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the number of entries currently held by the in-process tier.
+     */
+    public int getL1Size() {
+        return this.l1.size();
+    }
+
+    @Override
+    public String toString() {
+        return "[L1 hits: " + this.l1Hits + "; L2 hits: " + this.l2Hits + "; misses: " + this.misses + "]";
+    }
+
+}
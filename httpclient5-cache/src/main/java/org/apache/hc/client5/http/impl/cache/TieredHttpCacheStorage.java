@@ -0,0 +1,273 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * {@link HttpCacheStorage} implementation that layers a bounded in-process
+ * tier (L1) over another, typically remote, storage (L2) such as memcached
+ * or Ehcache.
+ * <p>
+ * Reads are served from L1 when possible and read through to L2 otherwise,
+ * populating L1 with the result. L1 entries expire after a short time to live
+ * to bound their staleness with respect to changes made to L2 by other nodes.
+ * </p>
+ * <p>
+ * Writes go either through to L2 before the call returns or, if a write-behind
+ * executor is given, are applied to L1 at once and passed on to L2 by the executor.
+ * The executor must run tasks in the order they were submitted. Removals invalidate
+ * the L1 entry and are passed on to L2 the same way as writes.
+ * {@link #updateEntry(String, HttpCacheCASOperation) CAS updates} are always applied
+ * to L2 directly, so in write-behind mode they may not see writes still pending, and
+ * invalidate the L1 entry.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class TieredHttpCacheStorage implements HttpCacheStorage {
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final HttpCacheStorage l2;
+    private final ExpiringCacheMap l1;
+    private final Executor writeBehindExecutor;
+    private final AtomicLong l1Hits;
+    private final AtomicLong l2Hits;
+    private final AtomicLong misses;
+
+    /**
+     * @param l2 the storage backing the in-process tier.
+     * @param maxL1Entries the maximum number of entries kept in-process.
+     * @param l1TimeToLive the time an entry is kept in-process after it has been
+     *   read from or written to L2.
+     * @param writeBehindExecutor the executor to write entries to L2 in the background;
+     *   {@code null} to write them through.
+     */
+    public TieredHttpCacheStorage(
+            final HttpCacheStorage l2,
+            final int maxL1Entries,
+            final TimeValue l1TimeToLive,
+            final Executor writeBehindExecutor) {
+        super();
+        this.l2 = Args.notNull(l2, "L2 storage");
+        Args.positive(maxL1Entries, "Max L1 entries");
+        Args.notNull(l1TimeToLive, "L1 time to live");
+        this.l1 = new ExpiringCacheMap(maxL1Entries, l1TimeToLive.toMillis());
+        this.writeBehindExecutor = writeBehindExecutor;
+        this.l1Hits = new AtomicLong();
+        this.l2Hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    public TieredHttpCacheStorage(
+            final HttpCacheStorage l2,
+            final int maxL1Entries,
+            final TimeValue l1TimeToLive) {
+        this(l2, maxL1Entries, l1TimeToLive, null);
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws ResourceIOException {
+        Args.notNull(key, "Key");
+        Args.notNull(entry, "Cache entry");
+        if (this.writeBehindExecutor != null) {
+            this.l1.put(key, entry);
+            this.writeBehindExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        l2.putEntry(key, entry);
+                    } catch (final ResourceIOException ex) {
+                        l1.invalidate(key);
+                        log.warn("Unable to write cache entry behind", ex);
+                    }
+                }
+
+            });
+        } else {
+            try {
+                this.l2.putEntry(key, entry);
+            } catch (final ResourceIOException ex) {
+                this.l1.invalidate(key);
+                throw ex;
+            }
+            this.l1.put(key, entry);
+        }
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws ResourceIOException {
+        Args.notNull(key, "Key");
+        final HttpCacheEntry cached = this.l1.get(key);
+        if (cached != null) {
+            this.l1Hits.incrementAndGet();
+            return cached;
+        }
+        final long invalidations = this.l1.getInvalidations(key);
+        final HttpCacheEntry entry = this.l2.getEntry(key);
+        if (entry != null) {
+            this.l2Hits.incrementAndGet();
+            this.l1.putIfNotInvalidated(key, entry, invalidations);
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return entry;
+    }
+
+    @Override
+    public void removeEntry(final String key) throws ResourceIOException {
+        Args.notNull(key, "Key");
+        this.l1.invalidate(key);
+        if (this.writeBehindExecutor != null) {
+            this.writeBehindExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        l2.removeEntry(key);
+                    } catch (final ResourceIOException ex) {
+                        log.warn("Unable to remove cache entry behind", ex);
+                    } finally {
+                        l1.invalidate(key);
+                    }
+                }
+
+            });
+            return;
+        }
+        try {
+            this.l2.removeEntry(key);
+        } finally {
+            this.l1.invalidate(key);
+        }
+    }
+
+    @Override
+    public void updateEntry(
+            final String key,
+            final HttpCacheCASOperation casOperation) throws ResourceIOException, HttpCacheUpdateException {
+        Args.notNull(key, "Key");
+        Args.notNull(casOperation, "CAS operation");
+        this.l1.invalidate(key);
+        try {
+            this.l2.updateEntry(key, casOperation);
+        } finally {
+            this.l1.invalidate(key);
+        }
+    }
+
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws ResourceIOException {
+        Args.notNull(keys, "Key");
+        final Map<String, HttpCacheEntry> resultMap = new HashMap<>(keys.size());
+        final List<String> remaining = new ArrayList<>(keys.size());
+        for (final String key: keys) {
+            final HttpCacheEntry cached = this.l1.get(key);
+            if (cached != null) {
+                this.l1Hits.incrementAndGet();
+                resultMap.put(key, cached);
+            } else {
+                remaining.add(key);
+            }
+        }
+        if (!remaining.isEmpty()) {
+            final long[] invalidations = new long[remaining.size()];
+            for (int i = 0; i < invalidations.length; i++) {
+                invalidations[i] = this.l1.getInvalidations(remaining.get(i));
+            }
+            final Map<String, HttpCacheEntry> l2Entries = this.l2.getEntries(remaining);
+            for (int i = 0; i < invalidations.length; i++) {
+                final String key = remaining.get(i);
+                final HttpCacheEntry entry = l2Entries.get(key);
+                if (entry != null) {
+                    this.l2Hits.incrementAndGet();
+                    this.l1.putIfNotInvalidated(key, entry, invalidations[i]);
+                    resultMap.put(key, entry);
+                } else {
+                    this.misses.incrementAndGet();
+                }
+            }
+        }
+        return resultMap;
+    }
+
+    /**
+     * Returns the number of lookups served by the in-process tier.
+     */
+    public long getL1HitCount() {
+        return this.l1Hits.get();
+    }
+
+    /**
+     * Returns the number of lookups served by the backing storage.
+     */
+    public long getL2HitCount() {
+        return this.l2Hits.get();
+    }
+
+    /**
+     * Returns the number of lookups found in neither tier.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the number of entries currently held by the in-process tier.
+     */
+    public int getL1Size() {
+        return this.l1.size();
+    }
+
+    @Override
+    public String toString() {
+        return "[L1 hits: " + this.l1Hits + "; L2 hits: " + this.l2Hits + "; misses: " + this.misses + "]";
+    }
+
+}
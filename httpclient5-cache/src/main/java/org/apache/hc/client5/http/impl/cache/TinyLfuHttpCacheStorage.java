@@ -0,0 +1,482 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * In-memory {@link HttpCacheStorage} implementation bounded by the total size in
+ * bytes of the cache entries it holds and governed by the W-TinyLFU policy.
+ * <p>
+ * Cache entries are kept in a {@link ConcurrentHashMap}, so lookups never block.
+ * Reads are recorded in a bounded buffer and replayed against the eviction policy
+ * in batches by whichever thread manages to acquire the policy lock; when the
+ * buffer is full further reads are not recorded. Writes update the policy
+ * directly under the lock.
+ * </p>
+ * <p>
+ * New entries are placed into a small LRU admission window. Entries falling out
+ * of the window are admitted to the main segmented LRU space only if they have
+ * been used more often in the recent past than the entries they would displace,
+ * which is estimated with a {@link FrequencySketch}. This protects popular entries
+ * from being flushed out by scans of one-hit wonders.
+ * </p>
+ * <p>
+ * The weight of an entry is the length of its key, response headers, variant map
+ * and resource body. Entries heavier than the maximum size are not cached. As
+ * {@link BasicHttpCacheStorage}, this cache does NOT deallocate resources associated
+ * with the cache entries; it is intended for use with {@link HeapResource} and similar.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class TinyLfuHttpCacheStorage implements HttpCacheStorage {
+
+    static final int READ_BUFFER_SIZE = 256;
+    static final int READ_DRAIN_THRESHOLD = 32;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int RETIRED = 3;
+
+    private final long maximumSize;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ConcurrentMap<String, Node> map;
+    private final ConcurrentLinkedQueue<Node> readBuffer;
+    private final AtomicInteger readBufferSize;
+    private final ReentrantLock evictionLock;
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque window;
+    private final AccessOrderDeque probation;
+    private final AccessOrderDeque protectedSegment;
+
+    // guarded by evictionLock
+    private long windowSize;
+    private long probationSize;
+    private long protectedSize;
+
+    /**
+     * Creates a cache bounded by {@link CacheConfig#getMaxCacheSize()} bytes or, if
+     * that is not set, by {@link CacheConfig#getMaxCacheEntries()} times
+     * {@link CacheConfig#getMaxObjectSize()} bytes.
+     */
+    public TinyLfuHttpCacheStorage(final CacheConfig config) {
+        this(config.getMaxCacheSize() > 0 ? config.getMaxCacheSize() :
+                        config.getMaxCacheEntries() * Math.max(config.getMaxObjectSize(), 1L),
+                config.getMaxCacheEntries());
+    }
+
+    /**
+     * @param maximumSize the maximum total weight in bytes of the cache entries.
+     * @param expectedEntries the expected number of cache entries, used to size
+     *   the frequency sketch.
+     */
+    public TinyLfuHttpCacheStorage(final long maximumSize, final int expectedEntries) {
+        super();
+        this.maximumSize = Args.positive(maximumSize, "Maximum size");
+        this.windowMaximum = Math.max(1L, maximumSize / 100);
+        this.protectedMaximum = (maximumSize - windowMaximum) * 4 / 5;
+        this.map = new ConcurrentHashMap<>(Math.max(16, expectedEntries));
+        this.readBuffer = new ConcurrentLinkedQueue<>();
+        this.readBufferSize = new AtomicInteger(0);
+        this.evictionLock = new ReentrantLock();
+        this.sketch = new FrequencySketch(expectedEntries);
+        this.window = new AccessOrderDeque();
+        this.probation = new AccessOrderDeque();
+        this.protectedSegment = new AccessOrderDeque();
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws ResourceIOException {
+        Args.notNull(key, "Key");
+        Args.notNull(entry, "Cache entry");
+        final Node node = new Node(key, entry, weigh(key, entry));
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            put(node);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws ResourceIOException {
+        Args.notNull(key, "Key");
+        final Node node = map.get(key);
+        if (node == null) {
+            return null;
+        }
+        recordRead(node);
+        return node.entry;
+    }
+
+    @Override
+    public void removeEntry(final String key) throws ResourceIOException {
+        Args.notNull(key, "Key");
+        evictionLock.lock();
+        try {
+            final Node node = map.remove(key);
+            if (node != null) {
+                retire(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateEntry(
+            final String key, final HttpCacheCASOperation casOperation) throws ResourceIOException {
+        Args.notNull(key, "Key");
+        Args.notNull(casOperation, "CAS operation");
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            final Node existing = map.get(key);
+            final HttpCacheEntry updated = casOperation.execute(existing != null ? existing.entry : null);
+            if (updated != null) {
+                put(new Node(key, updated, weigh(key, updated)));
+            } else if (existing != null) {
+                map.remove(key, existing);
+                retire(existing);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws ResourceIOException {
+        Args.notNull(keys, "Key");
+        final Map<String, HttpCacheEntry> resultMap = new HashMap<>(keys.size());
+        for (final String key: keys) {
+            final HttpCacheEntry entry = getEntry(key);
+            if (entry != null) {
+                resultMap.put(key, entry);
+            }
+        }
+        return resultMap;
+    }
+
+    /**
+     * Returns the maximum total weight in bytes of the cache entries.
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the current total weight in bytes of the cache entries.
+     */
+    public long getWeightedSize() {
+        evictionLock.lock();
+        try {
+            return windowSize + probationSize + protectedSize;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of cache entries.
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Replays all pending reads against the eviction policy.
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    static long weigh(final String key, final HttpCacheEntry entry) {
+        long weight = key.length();
+        for (final Iterator<Header> it = entry.headerIterator(); it.hasNext(); ) {
+            final Header header = it.next();
+            // name ": " value CRLF
+            weight += header.getName().length() + 4;
+            final String value = header.getValue();
+            if (value != null) {
+                weight += value.length();
+            }
+        }
+        for (final Map.Entry<String, String> variant: entry.getVariantMap().entrySet()) {
+            weight += variant.getKey().length() + variant.getValue().length();
+        }
+        final Resource resource = entry.getResource();
+        if (resource != null) {
+            weight += resource.length();
+        }
+        return weight;
+    }
+
+    private void recordRead(final Node node) {
+        if (readBufferSize.incrementAndGet() <= READ_BUFFER_SIZE) {
+            readBuffer.offer(node);
+        } else {
+            readBufferSize.decrementAndGet();
+        }
+        if (readBufferSize.get() >= READ_DRAIN_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        Node node;
+        while ((node = readBuffer.poll()) != null) {
+            readBufferSize.decrementAndGet();
+            onAccess(node);
+        }
+    }
+
+    private void onAccess(final Node node) {
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToBack(node);
+                break;
+            case PROBATION:
+                probation.unlink(node);
+                probationSize -= node.weight;
+                node.queue = PROTECTED;
+                protectedSegment.linkLast(node);
+                protectedSize += node.weight;
+                demoteProtected();
+                break;
+            case PROTECTED:
+                protectedSegment.moveToBack(node);
+                break;
+            default:
+                // Removed or replaced in the meantime
+        }
+    }
+
+    private void demoteProtected() {
+        while (protectedSize > protectedMaximum) {
+            final Node node = protectedSegment.peekFirst();
+            protectedSegment.unlink(node);
+            protectedSize -= node.weight;
+            node.queue = PROBATION;
+            probation.linkLast(node);
+            probationSize += node.weight;
+        }
+    }
+
+    private void put(final Node node) {
+        final Node previous;
+        if (node.weight > maximumSize) {
+            previous = map.remove(node.key);
+        } else {
+            previous = map.put(node.key, node);
+        }
+        if (previous != null) {
+            retire(previous);
+        }
+        if (node.weight > maximumSize) {
+            return;
+        }
+        sketch.increment(node.key);
+        node.queue = WINDOW;
+        window.linkLast(node);
+        windowSize += node.weight;
+        evict();
+    }
+
+    private void retire(final Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.unlink(node);
+                windowSize -= node.weight;
+                break;
+            case PROBATION:
+                probation.unlink(node);
+                probationSize -= node.weight;
+                break;
+            case PROTECTED:
+                protectedSegment.unlink(node);
+                protectedSize -= node.weight;
+                break;
+            default:
+        }
+        node.queue = RETIRED;
+    }
+
+    private void evict() {
+        while (windowSize > windowMaximum) {
+            final Node candidate = window.peekFirst();
+            window.unlink(candidate);
+            windowSize -= candidate.weight;
+            candidate.queue = RETIRED;
+            if (admit(candidate)) {
+                candidate.queue = PROBATION;
+                probation.linkLast(candidate);
+                probationSize += candidate.weight;
+            } else {
+                map.remove(candidate.key, candidate);
+            }
+        }
+        // The window may have grown into space the main segments are using
+        while (windowSize + probationSize + protectedSize > maximumSize) {
+            Node victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedSegment.peekFirst();
+            }
+            if (victim == null) {
+                victim = window.peekFirst();
+            }
+            retire(victim);
+            map.remove(victim.key, victim);
+        }
+    }
+
+    /**
+     * Makes room in the main space for the candidate by evicting less frequently
+     * used entries. Returns {@code false} if the candidate should be rejected.
+     */
+    private boolean admit(final Node candidate) {
+        int candidateFrequency = -1;
+        while (windowSize + probationSize + protectedSize + candidate.weight > maximumSize) {
+            Node victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedSegment.peekFirst();
+            }
+            if (victim == null) {
+                return false;
+            }
+            if (candidateFrequency < 0) {
+                candidateFrequency = sketch.frequency(candidate.key);
+            }
+            if (candidateFrequency <= sketch.frequency(victim.key)) {
+                return false;
+            }
+            retire(victim);
+            map.remove(victim.key, victim);
+        }
+        return true;
+    }
+
+    static final class Node {
+
+        final String key;
+        final HttpCacheEntry entry;
+        final long weight;
+
+        // guarded by evictionLock
+        int queue;
+        Node prev;
+        Node next;
+
+        Node(final String key, final HttpCacheEntry entry, final long weight) {
+            this.key = key;
+            this.entry = entry;
+            this.weight = weight;
+            this.queue = RETIRED;
+        }
+
+    }
+
+    static final class AccessOrderDeque {
+
+        private Node first;
+        private Node last;
+
+        Node peekFirst() {
+            return first;
+        }
+
+        void linkLast(final Node node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        void unlink(final Node node) {
+            final Node prev = node.prev;
+            final Node next = node.next;
+            if (prev == null) {
+                first = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                last = prev;
+            } else {
+                next.prev = prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(final Node node) {
+            if (node != last) {
+                unlink(node);
+                linkLast(node);
+            }
+        }
+
+    }
+
+}
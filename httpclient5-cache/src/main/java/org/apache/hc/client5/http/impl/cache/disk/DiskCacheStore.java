@@ -0,0 +1,885 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache.disk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * Persistent log-structured key / value store used by {@link DiskHttpCacheStorage}
+ * and {@link DiskHttpAsyncCacheStorage}.
+ * <p>
+ * Values are appended to segment files in the store directory; a segment is
+ * closed once it reaches the segment size and a new one is started. Each record
+ * carries a monotonically increasing version, which doubles as the CAS token for
+ * {@link #replace(String, long, byte[])}, and a CRC32 checksum. Removals are
+ * recorded as tombstones.
+ * </p>
+ * <p>
+ * The location of the latest record for every key is held in an in-memory index.
+ * The index is written to a checkpoint file on {@link #close()} and after each
+ * compaction, so that on startup it can be restored from the checkpoint and only
+ * the records appended after the checkpoint need to be replayed. Without a valid
+ * checkpoint the index is rebuilt by replaying all segments. A torn record at the
+ * tail of a segment is truncated.
+ * </p>
+ * <p>
+ * Segments holding mostly superseded records are compacted in the background:
+ * their live records are copied to the active segment and the segment file is
+ * deleted. If the total size of the segment files exceeds the maximum size the
+ * oldest segment is dropped along with all entries it still holds.
+ * </p>
+ * <p>
+ * Lookups do not block; writes are serialized.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class DiskCacheStore implements Closeable {
+
+    /**
+     * Default segment file size limit.
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Default interval between compaction runs.
+     */
+    public static final TimeValue DEFAULT_COMPACTION_INTERVAL = TimeValue.ofSeconds(60);
+
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".log";
+    static final String CHECKPOINT_FILE = "index.checkpoint";
+
+    private static final int RECORD_MAGIC = 0x48434c52;
+    private static final int CHECKPOINT_MAGIC = 0x48434958;
+    private static final int CHECKPOINT_VERSION = 1;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // magic, type, version, key length, value length
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 4 + 4;
+    private static final int CRC_SIZE = 4;
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    private final File directory;
+    private final long maxSize;
+    private final long segmentSize;
+    private final ConcurrentMap<String, Location> index;
+    private final ReentrantLock lock;
+    private final ScheduledExecutorService compactor;
+
+    // guarded by lock
+    private final TreeMap<Long, Segment> segments;
+    private Segment active;
+    private long sequence;
+    private boolean dirty;
+    private long diskSize;
+    private volatile boolean closed;
+
+    /**
+     * Opens or creates a store in the given directory.
+     *
+     * @param directory the store directory.
+     * @param maxSize the maximum total size in bytes of the segment files.
+     * @param segmentSize the size in bytes at which segment files are rolled.
+     * @param compactionInterval the interval between background compaction runs;
+     *   {@code null} or zero disables background compaction.
+     */
+    public DiskCacheStore(
+            final File directory,
+            final long maxSize,
+            final long segmentSize,
+            final TimeValue compactionInterval) throws IOException {
+        this.directory = Args.notNull(directory, "Directory");
+        this.maxSize = Args.positive(maxSize, "Max size");
+        this.segmentSize = Args.positive(segmentSize, "Segment size");
+        this.index = new ConcurrentHashMap<>();
+        this.lock = new ReentrantLock();
+        this.segments = new TreeMap<>();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create cache directory " + directory);
+        }
+        open();
+        if (compactionInterval != null && compactionInterval.getDuration() > 0) {
+            this.compactor = Executors.newSingleThreadScheduledExecutor(
+                    new DefaultThreadFactory("disk-cache-compactor", true));
+            final long interval = compactionInterval.toMillis();
+            this.compactor.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        compact();
+                    } catch (final IOException ignore) {
+                        // will be retried on the next run
+                    }
+                }
+
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.compactor = null;
+        }
+    }
+
+    /**
+     * Opens or creates a store in the given directory with segments of
+     * {@code maxSize / 8} bytes up to {@link #DEFAULT_SEGMENT_SIZE} and
+     * {@link #DEFAULT_COMPACTION_INTERVAL}.
+     */
+    public DiskCacheStore(final File directory, final long maxSize) throws IOException {
+        this(directory, maxSize, Math.max(64 * 1024, Math.min(DEFAULT_SEGMENT_SIZE, maxSize / 8)),
+                DEFAULT_COMPACTION_INTERVAL);
+    }
+
+    /**
+     * Value stored under a key along with its version.
+     */
+    public static final class Record {
+
+        private final long version;
+        private final byte[] value;
+
+        Record(final long version, final byte[] value) {
+            this.version = version;
+            this.value = value;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public byte[] getValue() {
+            return value;
+        }
+
+    }
+
+    /**
+     * Returns the value stored under the given key or {@code null}.
+     */
+    public Record get(final String key) throws IOException {
+        Args.notNull(key, "Key");
+        ensureOpen();
+        Location location = index.get(key);
+        while (location != null) {
+            try {
+                return new Record(location.version, location.readValue());
+            } catch (final ClosedChannelException ex) {
+                ensureOpen();
+                if (!location.segment.deleted) {
+                    throw ex;
+                }
+                // The segment has been compacted or evicted in the meantime
+                final Location current = index.get(key);
+                if (current == location) {
+                    throw ex;
+                }
+                location = current;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores the value under the given key. Values larger than the maximum size
+     * of the store are not stored; any existing value is removed instead.
+     */
+    public void put(final String key, final byte[] value) throws IOException {
+        Args.notNull(key, "Key");
+        Args.notNull(value, "Value");
+        lock.lock();
+        try {
+            ensureOpen();
+            store(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the value under the given key only if the current value has the given
+     * version.
+     *
+     * @return {@code true} if the value has been replaced.
+     */
+    public boolean replace(final String key, final long expectedVersion, final byte[] value) throws IOException {
+        Args.notNull(key, "Key");
+        Args.notNull(value, "Value");
+        lock.lock();
+        try {
+            ensureOpen();
+            final Location current = index.get(key);
+            if (current == null || current.version != expectedVersion) {
+                return false;
+            }
+            store(key, value);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the value stored under the given key.
+     *
+     * @return {@code true} if a value has been removed.
+     */
+    public boolean remove(final String key) throws IOException {
+        Args.notNull(key, "Key");
+        lock.lock();
+        try {
+            ensureOpen();
+            return delete(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of keys in the store.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the total size in bytes of the segment files.
+     */
+    public long getDiskSize() {
+        lock.lock();
+        try {
+            return diskSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of segment files.
+     */
+    public int getSegmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compacts sealed segments in which at least half of the bytes belong to
+     * superseded or removed records and writes a new index checkpoint if
+     * anything has changed.
+     */
+    public void compact() throws IOException {
+        final List<Segment> candidates = new ArrayList<>();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            for (final Segment segment: segments.values()) {
+                if (segment != active && segment.liveBytes.get() < segment.size * (1 - COMPACTION_THRESHOLD)) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (final Segment segment: candidates) {
+            compact(segment);
+        }
+        lock.lock();
+        try {
+            if (!closed && dirty) {
+                writeCheckpoint();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes an index checkpoint.
+     */
+    public void checkpoint() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            writeCheckpoint();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes an index checkpoint and closes the segment files.
+     */
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            // Interrupting the compactor would close the channel it is reading from
+            compactor.shutdown();
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            try {
+                writeCheckpoint();
+            } finally {
+                closed = true;
+                for (final Segment segment: segments.values()) {
+                    segment.close();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    // guarded by lock
+    private void store(final String key, final byte[] value) throws IOException {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (recordSize(keyBytes.length, value.length) > maxSize) {
+            delete(key);
+            return;
+        }
+        final Location location = append(PUT, keyBytes, value, ++sequence);
+        index(key, location);
+        enforceMaxSize();
+    }
+
+    // guarded by lock
+    private boolean delete(final String key) throws IOException {
+        final Location existing = index.remove(key);
+        if (existing == null) {
+            return false;
+        }
+        existing.segment.liveBytes.addAndGet(-existing.recordSize);
+        append(DELETE, key.getBytes(StandardCharsets.UTF_8), new byte[0], ++sequence);
+        enforceMaxSize();
+        return true;
+    }
+
+    // guarded by lock
+    private void index(final String key, final Location location) {
+        final Location previous = index.put(key, location);
+        if (previous != null) {
+            previous.segment.liveBytes.addAndGet(-previous.recordSize);
+        }
+        location.segment.liveBytes.addAndGet(location.recordSize);
+    }
+
+    private static int recordSize(final int keyLength, final int valueLength) {
+        return HEADER_SIZE + keyLength + valueLength + CRC_SIZE;
+    }
+
+    // guarded by lock
+    private Location append(
+            final byte type, final byte[] keyBytes, final byte[] value, final long version) throws IOException {
+        final int recordSize = recordSize(keyBytes.length, value.length);
+        if (active.size > 0 && active.size + recordSize > segmentSize) {
+            active = newSegment(active.id + 1);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(recordSize);
+        buffer.putInt(RECORD_MAGIC);
+        buffer.put(type);
+        buffer.putLong(version);
+        buffer.putInt(keyBytes.length);
+        buffer.putInt(value.length);
+        buffer.put(keyBytes);
+        buffer.put(value);
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, recordSize - CRC_SIZE);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        final long offset = active.size;
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += active.channel().write(buffer, position);
+        }
+        active.size += recordSize;
+        diskSize += recordSize;
+        dirty = true;
+        return new Location(active, offset, recordSize, keyBytes.length, value.length, version);
+    }
+
+    // guarded by lock
+    private Segment newSegment(final long id) throws IOException {
+        final Segment segment = new Segment(id, new File(directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    // guarded by lock
+    private void enforceMaxSize() throws IOException {
+        if (diskSize <= maxSize) {
+            return;
+        }
+        final Set<Segment> evicted = Collections.newSetFromMap(new IdentityHashMap<Segment, Boolean>());
+        while (segments.size() > 1 && diskSize > maxSize) {
+            final Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active) {
+                break;
+            }
+            segments.remove(oldest.id);
+            evicted.add(oldest);
+            diskSize -= oldest.size;
+        }
+        if (evicted.isEmpty()) {
+            return;
+        }
+        // A single pass over the index no matter how many segments got evicted
+        for (final Iterator<Location> it = index.values().iterator(); it.hasNext(); ) {
+            if (evicted.contains(it.next().segment)) {
+                it.remove();
+            }
+        }
+        for (final Segment segment: evicted) {
+            segment.close();
+            segment.file.delete();
+        }
+        dirty = true;
+    }
+
+    private void compact(final Segment segment) throws IOException {
+        try {
+            copyLiveRecords(segment);
+        } catch (final ClosedChannelException ex) {
+            if (segment.deleted) {
+                // Evicted in the meantime
+                return;
+            }
+            throw ex;
+        }
+        lock.lock();
+        try {
+            if (closed || segments.get(segment.id) != segment) {
+                return;
+            }
+            // Make sure the index no longer refers to the segment before it is deleted
+            writeCheckpoint();
+            segments.remove(segment.id);
+            diskSize -= segment.size;
+            segment.close();
+            segment.file.delete();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void copyLiveRecords(final Segment segment) throws IOException {
+        final long size = segment.size;
+        long position = 0;
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position < size) {
+            header.clear();
+            if (!readFully(segment.channel(), header, position)) {
+                break;
+            }
+            header.flip();
+            header.getInt();
+            final byte type = header.get();
+            final long version = header.getLong();
+            final int keyLength = header.getInt();
+            final int valueLength = header.getInt();
+            final int recordSize = recordSize(keyLength, valueLength);
+            final ByteBuffer keyBuffer = ByteBuffer.allocate(keyLength);
+            if (!readFully(segment.channel(), keyBuffer, position + HEADER_SIZE)) {
+                break;
+            }
+            final String key = new String(keyBuffer.array(), StandardCharsets.UTF_8);
+            if (type == PUT) {
+                final Location location = index.get(key);
+                if (location != null && location.segment == segment && location.offset == position) {
+                    final byte[] value = location.readValue();
+                    lock.lock();
+                    try {
+                        if (closed) {
+                            return;
+                        }
+                        if (index.get(key) == location) {
+                            // Keep the version, the content is unchanged
+                            index(key, append(PUT, keyBuffer.array(), value, version));
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } else {
+                lock.lock();
+                try {
+                    if (closed) {
+                        return;
+                    }
+                    // Tombstones are still needed while older segments may hold the removed record
+                    if (segments.firstKey() < segment.id && !index.containsKey(key)) {
+                        append(DELETE, keyBuffer.array(), new byte[0], version);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            position += recordSize;
+        }
+    }
+
+    private static boolean readFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+        long p = position;
+        while (buffer.hasRemaining()) {
+            final int n = channel.read(buffer, p);
+            if (n < 0) {
+                return false;
+            }
+            p += n;
+        }
+        return true;
+    }
+
+    private void open() throws IOException {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file: files) {
+                final String name = file.getName();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        final long id = Long.parseLong(name.substring(
+                                SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                        segments.put(id, new Segment(id, file));
+                    } catch (final NumberFormatException ignore) {
+                        // not ours
+                    }
+                }
+            }
+        }
+        long replaySegment = segments.isEmpty() ? 0 : segments.firstKey();
+        long replayOffset = 0;
+        final long[] checkpoint = readCheckpoint();
+        if (checkpoint != null) {
+            replaySegment = checkpoint[0];
+            replayOffset = checkpoint[1];
+        } else {
+            index.clear();
+        }
+        for (final Segment segment: segments.tailMap(replaySegment, true).values()) {
+            replay(segment, segment.id == replaySegment ? replayOffset : 0);
+        }
+        for (final Map.Entry<String, Location> entry: index.entrySet()) {
+            final Location location = entry.getValue();
+            location.segment.liveBytes.addAndGet(location.recordSize);
+        }
+        for (final Segment segment: segments.values()) {
+            diskSize += segment.size;
+        }
+        if (segments.isEmpty()) {
+            active = newSegment(0);
+        } else {
+            final Segment last = segments.lastEntry().getValue();
+            active = last.size < segmentSize ? last : newSegment(last.id + 1);
+        }
+        enforceMaxSize();
+    }
+
+    /**
+     * Restores the index from the checkpoint and returns the segment and offset
+     * the replay must start at, or {@code null} if there is no valid checkpoint.
+     */
+    private long[] readCheckpoint() throws IOException {
+        final File file = new File(directory, CHECKPOINT_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        final CRC32 crc = new CRC32();
+        try (final InputStream inputStream = new FileInputStream(file)) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new CheckedInputStream(inputStream, crc), 65536));
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION) {
+                return null;
+            }
+            final long checkpointSequence = in.readLong();
+            final long segmentId = in.readLong();
+            final long offset = in.readLong();
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final int keyLength = in.readInt();
+                if (keyLength < 0 || keyLength > file.length()) {
+                    index.clear();
+                    return null;
+                }
+                final byte[] keyBytes = new byte[keyLength];
+                in.readFully(keyBytes);
+                final long id = in.readLong();
+                final long recordOffset = in.readLong();
+                final int recordSize = in.readInt();
+                final int valueLength = in.readInt();
+                final long version = in.readLong();
+                final Segment segment = segments.get(id);
+                if (segment != null && recordOffset + recordSize <= segment.size) {
+                    index.put(new String(keyBytes, StandardCharsets.UTF_8), new Location(
+                            segment, recordOffset, recordSize, keyBytes.length, valueLength, version));
+                }
+            }
+            final long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                index.clear();
+                return null;
+            }
+            this.sequence = checkpointSequence;
+            return new long[] { segmentId, offset };
+        } catch (final EOFException ex) {
+            index.clear();
+            return null;
+        }
+    }
+
+    // guarded by lock
+    private void writeCheckpoint() throws IOException {
+        for (final Segment segment: segments.values()) {
+            segment.channel().force(false);
+        }
+        final File tmp = new File(directory, CHECKPOINT_FILE + ".tmp");
+        final CRC32 crc = new CRC32();
+        try (final OutputStream outputStream = new FileOutputStream(tmp)) {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(outputStream, crc), 65536));
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeLong(sequence);
+            out.writeLong(active.id);
+            out.writeLong(active.size);
+            final List<Map.Entry<String, Location>> entries = new ArrayList<>(index.entrySet());
+            out.writeInt(entries.size());
+            for (final Map.Entry<String, Location> entry: entries) {
+                final Location location = entry.getValue();
+                final byte[] keyBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(keyBytes.length);
+                out.write(keyBytes);
+                out.writeLong(location.segment.id);
+                out.writeLong(location.offset);
+                out.writeInt(location.recordSize);
+                out.writeInt(location.valueLength);
+                out.writeLong(location.version);
+            }
+            out.flush();
+            final long checksum = crc.getValue();
+            out.writeLong(checksum);
+            out.flush();
+            ((FileOutputStream) outputStream).getFD().sync();
+        }
+        final File target = new File(directory, CHECKPOINT_FILE);
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        dirty = false;
+    }
+
+    private void replay(final Segment segment, final long offset) throws IOException {
+        long position = offset;
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position < segment.size) {
+            header.clear();
+            if (!readFully(segment.channel(), header, position)) {
+                break;
+            }
+            header.flip();
+            final int magic = header.getInt();
+            final byte type = header.get();
+            final long version = header.getLong();
+            final int keyLength = header.getInt();
+            final int valueLength = header.getInt();
+            if (magic != RECORD_MAGIC || (type != PUT && type != DELETE) || keyLength < 0 || valueLength < 0
+                    || position + recordSize(keyLength, valueLength) > segment.size) {
+                break;
+            }
+            final int recordSize = recordSize(keyLength, valueLength);
+            final ByteBuffer record = ByteBuffer.allocate(recordSize);
+            if (!readFully(segment.channel(), record, position)) {
+                break;
+            }
+            final CRC32 crc = new CRC32();
+            crc.update(record.array(), 0, recordSize - CRC_SIZE);
+            if (record.getInt(recordSize - CRC_SIZE) != (int) crc.getValue()) {
+                break;
+            }
+            final String key = new String(record.array(), HEADER_SIZE, keyLength, StandardCharsets.UTF_8);
+            if (type == PUT) {
+                index.put(key, new Location(segment, position, recordSize, keyLength, valueLength, version));
+            } else {
+                index.remove(key);
+            }
+            sequence = Math.max(sequence, version);
+            position += recordSize;
+        }
+        if (position < segment.size) {
+            // Torn or corrupt tail
+            segment.channel().truncate(position);
+            segment.size = position;
+        }
+    }
+
+    static final class Segment {
+
+        final long id;
+        final File file;
+        final AtomicLong liveBytes;
+        // written under lock
+        volatile long size;
+        volatile boolean deleted;
+        private volatile FileChannel channel;
+
+        Segment(final long id, final File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = openChannel(file);
+            this.size = this.channel.size();
+            this.liveBytes = new AtomicLong(0);
+        }
+
+        @SuppressWarnings("resource")
+        private static FileChannel openChannel(final File file) throws IOException {
+            return new RandomAccessFile(file, "rw").getChannel();
+        }
+
+        /**
+         * Returns the file channel of the segment. File channels get closed when
+         * a thread blocked in an I/O operation on them is interrupted, in which
+         * case the channel is reopened unless the segment has been deleted.
+         */
+        FileChannel channel() throws IOException {
+            final FileChannel current = channel;
+            if (current.isOpen()) {
+                return current;
+            }
+            synchronized (this) {
+                if (deleted) {
+                    throw new ClosedChannelException();
+                }
+                if (!channel.isOpen()) {
+                    channel = openChannel(file);
+                }
+                return channel;
+            }
+        }
+
+        void close() throws IOException {
+            synchronized (this) {
+                deleted = true;
+                channel.close();
+            }
+        }
+
+    }
+
+    static final class Location {
+
+        final Segment segment;
+        final long offset;
+        final int recordSize;
+        final int keyLength;
+        final int valueLength;
+        final long version;
+
+        Location(
+                final Segment segment,
+                final long offset,
+                final int recordSize,
+                final int keyLength,
+                final int valueLength,
+                final long version) {
+            this.segment = segment;
+            this.offset = offset;
+            this.recordSize = recordSize;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.version = version;
+        }
+
+        byte[] readValue() throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate(valueLength);
+            if (!readFully(segment.channel(), buffer, offset + HEADER_SIZE + keyLength)) {
+                throw new EOFException("Truncated segment " + segment.file);
+            }
+            return buffer.array();
+        }
+
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache.disk;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.impl.cache.AbstractBinaryAsyncCacheStorage;
+import org.apache.hc.client5.http.impl.cache.BinaryCacheEntrySerializer;
+import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * <p>
+ * This class is an asynchronous storage backend that keeps cache entries in a
+ * persistent, log-structured {@link DiskCacheStore}, so that the cache survives
+ * application restarts. Store operations involve blocking file I/O and are
+ * executed on a dedicated executor rather than on the I/O dispatch threads.
+ * </p>
+ * <p>
+ * The storage must be closed to write the index checkpoint that allows the store
+ * to be reopened without replaying its segment files.
+ * </p>
+ *
+ * @see DiskHttpCacheStorage
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class DiskHttpAsyncCacheStorage extends AbstractBinaryAsyncCacheStorage<DiskCacheStore.Record> implements Closeable {
+
+    private static final int DEFAULT_IO_THREADS = 2;
+
+    /**
+     * Maximum time {@link #close()} waits for pending operations.
+     */
+    static final TimeValue CLOSE_TIMEOUT = TimeValue.ofSeconds(30);
+
+    private final DiskCacheStore store;
+    private final ExecutorService executorService;
+    private final boolean ownExecutor;
+
+    /**
+     * Opens or creates a storage in the given directory bounded by
+     * {@link CacheConfig#getMaxCacheSize()} bytes or, if that is not set,
+     * by {@link CacheConfig#getMaxCacheEntries()} times
+     * {@link CacheConfig#getMaxObjectSize()} bytes.
+     *
+     * @param directory the storage directory.
+     * @param config cache configuration.
+     */
+    public DiskHttpAsyncCacheStorage(final File directory, final CacheConfig config) throws IOException {
+        this(new DiskCacheStore(directory, DiskHttpCacheStorage.maxSize(config != null ? config : CacheConfig.DEFAULT)),
+                config, null, null);
+    }
+
+    /**
+     * Creates a storage backed by the given store.
+     *
+     * @param store the store.
+     * @param config cache configuration.
+     * @param serializer alternative serialization mechanism.
+     * @param executorService executor for store operations; if {@code null} the
+     *   storage creates and owns a small pool of daemon threads.
+     */
+    public DiskHttpAsyncCacheStorage(
+            final DiskCacheStore store,
+            final CacheConfig config,
+            final HttpCacheEntrySerializer<byte[]> serializer,
+            final ExecutorService executorService) {
+        super((config != null ? config : CacheConfig.DEFAULT).getMaxUpdateRetries(),
+                serializer != null ? serializer : BinaryCacheEntrySerializer.INSTANCE);
+        this.store = Args.notNull(store, "Store");
+        this.ownExecutor = executorService == null;
+        this.executorService = executorService != null ? executorService : Executors.newFixedThreadPool(
+                DEFAULT_IO_THREADS, new DefaultThreadFactory("disk-cache-io", true));
+    }
+
+    private <T> Cancellable execute(final Callable<T> task, final FutureCallback<T> callback) {
+        final BasicFuture<T> future = new BasicFuture<>(callback);
+        try {
+            executorService.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (future.isCancelled()) {
+                        return;
+                    }
+                    try {
+                        future.completed(task.call());
+                    } catch (final IOException ex) {
+                        future.failed(new ResourceIOException(ex.getMessage(), ex));
+                    } catch (final Exception ex) {
+                        future.failed(ex);
+                    }
+                }
+
+            });
+        } catch (final RejectedExecutionException ex) {
+            future.failed(ex);
+        }
+        return future;
+    }
+
+    @Override
+    protected String digestToStorageKey(final String key) {
+        return key;
+    }
+
+    @Override
+    protected byte[] getStorageObject(final DiskCacheStore.Record record) throws ResourceIOException {
+        return record.getValue();
+    }
+
+    @Override
+    protected Cancellable store(final String storageKey, final byte[] storageObject, final FutureCallback<Boolean> callback) {
+        return execute(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws IOException {
+                store.put(storageKey, storageObject);
+                return Boolean.TRUE;
+            }
+
+        }, callback);
+    }
+
+    @Override
+    protected Cancellable restore(final String storageKey, final FutureCallback<byte[]> callback) {
+        return execute(new Callable<byte[]>() {
+
+            @Override
+            public byte[] call() throws IOException {
+                final DiskCacheStore.Record record = store.get(storageKey);
+                return record != null ? record.getValue() : null;
+            }
+
+        }, callback);
+    }
+
+    @Override
+    protected Cancellable getForUpdateCAS(final String storageKey, final FutureCallback<DiskCacheStore.Record> callback) {
+        return execute(new Callable<DiskCacheStore.Record>() {
+
+            @Override
+            public DiskCacheStore.Record call() throws IOException {
+                return store.get(storageKey);
+            }
+
+        }, callback);
+    }
+
+    @Override
+    protected Cancellable updateCAS(
+            final String storageKey,
+            final DiskCacheStore.Record record,
+            final byte[] storageObject,
+            final FutureCallback<Boolean> callback) {
+        return execute(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws IOException {
+                return store.replace(storageKey, record.getVersion(), storageObject);
+            }
+
+        }, callback);
+    }
+
+    @Override
+    protected Cancellable delete(final String storageKey, final FutureCallback<Boolean> callback) {
+        return execute(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws IOException {
+                return store.remove(storageKey);
+            }
+
+        }, callback);
+    }
+
+    @Override
+    protected Cancellable bulkRestore(final Collection<String> storageKeys, final FutureCallback<Map<String, byte[]>> callback) {
+        return execute(new Callable<Map<String, byte[]>>() {
+
+            @Override
+            public Map<String, byte[]> call() throws IOException {
+                final Map<String, byte[]> resultMap = new HashMap<>();
+                for (final String storageKey: storageKeys) {
+                    final DiskCacheStore.Record record = store.get(storageKey);
+                    if (record != null) {
+                        resultMap.put(storageKey, record.getValue());
+                    }
+                }
+                return resultMap;
+            }
+
+        }, callback);
+    }
+
+    /**
+     * Shuts down the executor if owned by the storage, waits up to
+     * thirty seconds for pending operations to complete, and closes the store.
+     * Operations still pending on an executor not owned by the storage fail with
+     * a {@link ResourceIOException} once the store is closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (ownExecutor) {
+            executorService.shutdown();
+            try {
+                executorService.awaitTermination(CLOSE_TIMEOUT.getDuration(), CLOSE_TIMEOUT.getTimeUnit());
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        store.close();
+    }
+
+}
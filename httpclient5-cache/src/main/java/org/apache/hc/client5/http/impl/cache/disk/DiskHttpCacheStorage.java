@@ -0,0 +1,170 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache.disk;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.impl.cache.AbstractBinaryCacheStorage;
+import org.apache.hc.client5.http.impl.cache.BinaryCacheEntrySerializer;
+import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * <p>
+ * This class is a storage backend that keeps cache entries in a persistent,
+ * log-structured {@link DiskCacheStore}, so that the cache survives application
+ * restarts. Cache entries are serialized with {@link BinaryCacheEntrySerializer}
+ * by default and updated with optimistic compare-and-swap using the version of
+ * the stored record.
+ * </p>
+ * <p>
+ * The storage must be closed to write the index checkpoint that allows the store
+ * to be reopened without replaying its segment files.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class DiskHttpCacheStorage extends AbstractBinaryCacheStorage<DiskCacheStore.Record> implements Closeable {
+
+    private final DiskCacheStore store;
+
+    /**
+     * Opens or creates a storage in the given directory bounded by
+     * {@link CacheConfig#getMaxCacheSize()} bytes or, if that is not set,
+     * by {@link CacheConfig#getMaxCacheEntries()} times
+     * {@link CacheConfig#getMaxObjectSize()} bytes.
+     *
+     * @param directory the storage directory.
+     * @param config cache configuration.
+     */
+    public DiskHttpCacheStorage(final File directory, final CacheConfig config) throws IOException {
+        this(new DiskCacheStore(directory, maxSize(config != null ? config : CacheConfig.DEFAULT)), config, null);
+    }
+
+    /**
+     * Creates a storage backed by the given store.
+     *
+     * @param store the store.
+     * @param config cache configuration.
+     * @param serializer alternative serialization mechanism.
+     */
+    public DiskHttpCacheStorage(
+            final DiskCacheStore store,
+            final CacheConfig config,
+            final HttpCacheEntrySerializer<byte[]> serializer) {
+        super((config != null ? config : CacheConfig.DEFAULT).getMaxUpdateRetries(),
+                serializer != null ? serializer : BinaryCacheEntrySerializer.INSTANCE);
+        this.store = Args.notNull(store, "Store");
+    }
+
+    static long maxSize(final CacheConfig config) {
+        return config.getMaxCacheSize() > 0 ? config.getMaxCacheSize() :
+                config.getMaxCacheEntries() * Math.max(config.getMaxObjectSize(), 1L);
+    }
+
+    @Override
+    protected String digestToStorageKey(final String key) {
+        return key;
+    }
+
+    @Override
+    protected void store(final String storageKey, final byte[] storageObject) throws ResourceIOException {
+        try {
+            store.put(storageKey, storageObject);
+        } catch (final IOException ex) {
+            throw new ResourceIOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    protected byte[] restore(final String storageKey) throws ResourceIOException {
+        final DiskCacheStore.Record record = getForUpdateCAS(storageKey);
+        return record != null ? record.getValue() : null;
+    }
+
+    @Override
+    protected DiskCacheStore.Record getForUpdateCAS(final String storageKey) throws ResourceIOException {
+        try {
+            return store.get(storageKey);
+        } catch (final IOException ex) {
+            throw new ResourceIOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    protected byte[] getStorageObject(final DiskCacheStore.Record record) throws ResourceIOException {
+        return record.getValue();
+    }
+
+    @Override
+    protected boolean updateCAS(
+            final String storageKey, final DiskCacheStore.Record record, final byte[] storageObject) throws ResourceIOException {
+        try {
+            return store.replace(storageKey, record.getVersion(), storageObject);
+        } catch (final IOException ex) {
+            throw new ResourceIOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    protected void delete(final String storageKey) throws ResourceIOException {
+        try {
+            store.remove(storageKey);
+        } catch (final IOException ex) {
+            throw new ResourceIOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    protected Map<String, byte[]> bulkRestore(final Collection<String> storageKeys) throws ResourceIOException {
+        final Map<String, byte[]> resultMap = new HashMap<>();
+        for (final String storageKey: storageKeys) {
+            final byte[] storageObject = restore(storageKey);
+            if (storageObject != null) {
+                resultMap.put(storageKey, storageObject);
+            }
+        }
+        return resultMap;
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+}
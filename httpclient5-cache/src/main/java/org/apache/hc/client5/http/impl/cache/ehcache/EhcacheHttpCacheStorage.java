@@ -34,7 +34,7 @@
 import org.apache.hc.client5.http.cache.HttpCacheStorageEntry;
 import org.apache.hc.client5.http.cache.ResourceIOException;
 import org.apache.hc.client5.http.impl.cache.AbstractSerializingCacheStorage;
-import org.apache.hc.client5.http.impl.cache.ByteArrayCacheEntrySerializer;
+import org.apache.hc.client5.http.impl.cache.BinaryCacheEntrySerializer;
 import org.apache.hc.client5.http.impl.cache.CacheConfig;
 import org.apache.hc.client5.http.impl.cache.NoopCacheEntrySerializer;
 import org.apache.hc.core5.util.Args;
@@ -71,12 +71,15 @@ public static EhcacheHttpCacheStorage<HttpCacheStorageEntry> createObjectCache(
 
     /**
      * Creates cache that stores serialized {@link HttpCacheStorageEntry}s.
+     * Entries are serialized with {@link BinaryCacheEntrySerializer}; entries
+     * persisted by earlier versions in native serialization format cannot be
+     * read back and count as cache misses.
      *
      * @since 5.0
      */
     public static EhcacheHttpCacheStorage<byte[]> createSerializedCache(
             final Cache<String, byte[]> cache, final CacheConfig config) {
-        return new EhcacheHttpCacheStorage<>(cache, config, ByteArrayCacheEntrySerializer.INSTANCE);
+        return new EhcacheHttpCacheStorage<>(cache, config, BinaryCacheEntrySerializer.INSTANCE);
     }
 
     private final Cache<String, T> cache;
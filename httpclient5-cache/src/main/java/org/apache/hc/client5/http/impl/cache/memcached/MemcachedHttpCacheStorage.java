@@ -35,7 +35,7 @@
 import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
 import org.apache.hc.client5.http.cache.ResourceIOException;
 import org.apache.hc.client5.http.impl.cache.AbstractBinaryCacheStorage;
-import org.apache.hc.client5.http.impl.cache.ByteArrayCacheEntrySerializer;
+import org.apache.hc.client5.http.impl.cache.BinaryCacheEntrySerializer;
 import org.apache.hc.client5.http.impl.cache.CacheConfig;
 import org.apache.hc.core5.util.Args;
 
@@ -79,6 +79,12 @@
  * documentation</a> for details about how to set up and configure memcached
  * and the Java client used here, respectively.
  * </p>
+ * <p>
+ * Unless configured otherwise, entries are serialized with
+ * {@link BinaryCacheEntrySerializer}, which cannot read entries written
+ * with the native serialization of earlier versions. Such entries are
+ * treated as cache misses.
+ * </p>
  *
  * @since 4.1
  */
@@ -105,7 +111,7 @@ public MemcachedHttpCacheStorage(final InetSocketAddress address) throws IOExcep
      * @param cache client to use for communicating with <i>memcached</i>
      */
     public MemcachedHttpCacheStorage(final MemcachedClient cache) {
-        this(cache, CacheConfig.DEFAULT, ByteArrayCacheEntrySerializer.INSTANCE, SHA256KeyHashingScheme.INSTANCE);
+        this(cache, CacheConfig.DEFAULT, BinaryCacheEntrySerializer.INSTANCE, SHA256KeyHashingScheme.INSTANCE);
     }
 
     /**
@@ -124,7 +130,7 @@ public MemcachedHttpCacheStorage(
             final HttpCacheEntrySerializer<byte[]> serializer,
             final KeyHashingScheme keyHashingScheme) {
         super((config != null ? config : CacheConfig.DEFAULT).getMaxUpdateRetries(),
-                serializer != null ? serializer : ByteArrayCacheEntrySerializer.INSTANCE);
+                serializer != null ? serializer : BinaryCacheEntrySerializer.INSTANCE);
         this.client = Args.notNull(client, "Memcached client");
         this.keyHashingScheme = keyHashingScheme;
     }
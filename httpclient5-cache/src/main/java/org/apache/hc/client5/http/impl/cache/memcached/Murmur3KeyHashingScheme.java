@@ -0,0 +1,145 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache.memcached;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+
+/**
+ * This is a {@link KeyHashingScheme} based on the 128-bit x64 variant of the
+ * <a href="https://github.com/aappleby/smhasher">MurmurHash3</a> algorithm.
+ * The hashes produced are hex-encoded 128-bit digests and hence are always
+ * 32-character hexadecimal strings. Unlike {@link SHA256KeyHashingScheme} this
+ * scheme is not cryptographically secure, but it is considerably cheaper to
+ * compute and produces shorter keys.
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public final class Murmur3KeyHashingScheme implements KeyHashingScheme {
+
+    public static final Murmur3KeyHashingScheme INSTANCE = new Murmur3KeyHashingScheme();
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    @Override
+    public String hash(final String key) {
+        final byte[] data = key.getBytes(StandardCharsets.UTF_8);
+        final int len = data.length;
+        final int blocks = len / 16;
+        long h1 = 0;
+        long h2 = 0;
+
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLong(data, i * 16);
+            long k2 = getLong(data, i * 16 + 8);
+
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        final int tail = blocks * 16;
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = len - tail - 1; i >= 8; i--) {
+            k2 ^= (data[tail + i] & 0xffL) << ((i - 8) * 8);
+        }
+        if (len - tail > 8) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+        }
+        for (int i = Math.min(len - tail, 8) - 1; i >= 0; i--) {
+            k1 ^= (data[tail + i] & 0xffL) << (i * 8);
+        }
+        if (len - tail > 0) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+        }
+
+        h1 ^= len;
+        h2 ^= len;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        final char[] buf = new char[32];
+        toHex(h1, buf, 0);
+        toHex(h2, buf, 16);
+        return new String(buf);
+    }
+
+    private static long getLong(final byte[] data, final int off) {
+        long l = 0;
+        for (int i = 7; i >= 0; i--) {
+            l = (l << 8) | (data[off + i] & 0xffL);
+        }
+        return l;
+    }
+
+    private static long fmix(final long k) {
+        long h = k;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static void toHex(final long l, final char[] buf, final int off) {
+        for (int i = 0; i < 16; i++) {
+            buf[off + i] = DIGITS[(int) (l >>> (60 - i * 4)) & 0x0f];
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.Test;
+
+/** Unit tests for {@link CacheEntryMetadata}. */
+public class TestCacheEntryMetadata {
+
+    private static HttpCacheEntry makeEntry(final Header... headers) {
+        final Date now = new Date();
+        return new HttpCacheEntry(now, now, HttpStatus.SC_OK, headers, null);
+    }
+
+    @Test
+    public void testParsesDatesAndValidators() {
+        final Date date = new Date(1000000000000L);
+        final Date expires = new Date(1000000060000L);
+        final Date lastModified = new Date(999999000000L);
+        final CacheEntryMetadata metadata = makeEntry(
+                new BasicHeader("Date", DateUtils.formatDate(date)),
+                new BasicHeader("Expires", DateUtils.formatDate(expires)),
+                new BasicHeader("Last-Modified", DateUtils.formatDate(lastModified)),
+                new BasicHeader("ETag", "\"etag\""),
+                new BasicHeader("Content-Length", "128")).getMetadata();
+        assertEquals(date.getTime(), metadata.getDate());
+        assertEquals(expires.getTime(), metadata.getExpires());
+        assertEquals(lastModified.getTime(), metadata.getLastModified());
+        assertTrue(metadata.hasLastModifiedHeader());
+        assertEquals("\"etag\"", metadata.getETag());
+        assertEquals(128, metadata.getContentLength());
+    }
+
+    @Test
+    public void testAbsentAndMalformedHeaders() {
+        final CacheEntryMetadata metadata = makeEntry(
+                new BasicHeader("Expires", "0"),
+                new BasicHeader("Last-Modified", "yesterday"),
+                new BasicHeader("Content-Length", "lots")).getMetadata();
+        assertEquals(CacheEntryMetadata.UNDEFINED, metadata.getDate());
+        assertEquals(CacheEntryMetadata.UNDEFINED, metadata.getExpires());
+        assertEquals(CacheEntryMetadata.UNDEFINED, metadata.getLastModified());
+        assertTrue(metadata.hasLastModifiedHeader());
+        assertNull(metadata.getETag());
+        assertEquals(-1, metadata.getContentLength());
+        assertEquals(0, metadata.getAgeSecs());
+        assertEquals(-1, metadata.getMaxAgeSecs());
+        assertEquals(-1, metadata.getStaleWhileRevalidateSecs());
+        assertEquals(-1, metadata.getStaleIfErrorSecs());
+        assertEquals(CacheEntryMetadata.UNDEFINED, makeEntry().getMetadata().getContentLength());
+    }
+
+    @Test
+    public void testUsesLargestAgeValue() {
+        assertEquals(20, makeEntry(new BasicHeader("Age", "10"), new BasicHeader("Age", "20"))
+                .getMetadata().getAgeSecs());
+        assertEquals(CacheEntryMetadata.MAX_AGE, makeEntry(new BasicHeader("Age", "10"), new BasicHeader("Age", "-1"))
+                .getMetadata().getAgeSecs());
+    }
+
+    @Test
+    public void testParsesCacheControlDirectives() {
+        final CacheEntryMetadata metadata = makeEntry(
+                new BasicHeader("Cache-Control", "max-age=60, s-maxage=30, Must-Revalidate"),
+                new BasicHeader("Cache-Control", "stale-while-revalidate=5, stale-if-error=15, x-custom")).getMetadata();
+        assertEquals(30, metadata.getMaxAgeSecs());
+        assertEquals(5, metadata.getStaleWhileRevalidateSecs());
+        assertEquals(15, metadata.getStaleIfErrorSecs());
+        assertTrue(metadata.isMustRevalidate());
+        assertFalse(metadata.isProxyRevalidate());
+        assertTrue(metadata.hasSharedMaxAge());
+        assertTrue(metadata.hasCacheControlDirective("X-Custom"));
+        assertFalse(metadata.hasCacheControlDirective("no-store"));
+    }
+
+    @Test
+    public void testMalformedMaxAgeIsZero() {
+        assertEquals(0, makeEntry(new BasicHeader("Cache-Control", "max-age=60, max-age=soon"))
+                .getMetadata().getMaxAgeSecs());
+    }
+
+    @Test
+    public void testMetadataIsParsedOnceAndRestoredAfterDeserialization() throws Exception {
+        final HttpCacheEntry entry = makeEntry(new BasicHeader("Cache-Control", "max-age=60"));
+        assertSame(entry.getMetadata(), entry.getMetadata());
+
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(entry);
+        }
+        final HttpCacheEntry copy;
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            copy = (HttpCacheEntry) in.readObject();
+        }
+        assertEquals(60, copy.getMetadata().getMaxAgeSecs());
+    }
+
+}
@@ -35,8 +35,10 @@
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.hc.client5.http.utils.DateUtils;
@@ -136,6 +138,23 @@ public void testCacheEntryWithVaryStarHasVariants(){
         assertTrue(entry.hasVariants());
     }
 
+    @Test
+    public void testVariantHeaderNamesAreSortedAndCached() {
+        final Header[] headers = { new BasicHeader("Vary", "User-Agent, Accept-Language"),
+                new BasicHeader("Vary", "Accept-Encoding")
+        };
+        entry = makeEntry(headers);
+        final List<String> names = entry.getVariantHeaderNames();
+        assertEquals(Arrays.asList("Accept-Encoding", "Accept-Language", "User-Agent"), names);
+        assertSame(names, entry.getVariantHeaderNames());
+    }
+
+    @Test
+    public void testNoVariantHeaderNamesWithoutVaryHeader() {
+        entry = makeEntry(new Header[0]);
+        assertTrue(entry.getVariantHeaderNames().isEmpty());
+    }
+
     @SuppressWarnings("unused")
     @Test
     public void mustProvideRequestDate() {
@@ -70,7 +70,7 @@ public class TestAbstractSerializingAsyncCacheStorage {
     private AbstractBinaryAsyncCacheStorage<String> impl;
 
     public static byte[] serialize(final String key, final HttpCacheEntry value) throws ResourceIOException {
-        return ByteArrayCacheEntrySerializer.INSTANCE.serialize(new HttpCacheStorageEntry(key, value));
+        return BinaryCacheEntrySerializer.INSTANCE.serialize(new HttpCacheStorageEntry(key, value));
     }
 
     @Before
@@ -54,7 +54,7 @@
 public class TestAbstractSerializingCacheStorage {
 
     public static byte[] serialize(final String key, final HttpCacheEntry value) throws ResourceIOException {
-        return ByteArrayCacheEntrySerializer.INSTANCE.serialize(new HttpCacheStorageEntry(key, value));
+        return BinaryCacheEntrySerializer.INSTANCE.serialize(new HttpCacheStorageEntry(key, value));
     }
 
     private AbstractBinaryCacheStorage<String> impl;
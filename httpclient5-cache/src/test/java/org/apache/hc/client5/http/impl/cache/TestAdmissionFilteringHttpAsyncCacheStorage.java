@@ -0,0 +1,76 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.apache.hc.client5.http.cache.HttpAsyncCacheStorageAdaptor;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link AdmissionFilteringHttpAsyncCacheStorage}. */
+@SuppressWarnings("unchecked")
+public class TestAdmissionFilteringHttpAsyncCacheStorage {
+
+    private SimpleHttpCacheStorage backend;
+    private AdmissionFilteringHttpAsyncCacheStorage impl;
+
+    @Before
+    public void setUp() {
+        backend = new SimpleHttpCacheStorage();
+        impl = new AdmissionFilteringHttpAsyncCacheStorage(
+                new HttpAsyncCacheStorageAdaptor(backend), 100, 2, TimeValue.ofMinutes(10));
+    }
+
+    @Test
+    public void testEntryStoredOnceSeenEnoughTimes() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        final FutureCallback<Boolean> callback1 = mock(FutureCallback.class);
+        impl.putEntry("foo", entry, callback1);
+        verify(callback1).completed(Boolean.FALSE);
+        Assert.assertNull(backend.getEntry("foo"));
+
+        final FutureCallback<Boolean> callback2 = mock(FutureCallback.class);
+        impl.putEntry("foo", entry, callback2);
+        verify(callback2).completed(Boolean.TRUE);
+        Assert.assertSame(entry, backend.getEntry("foo"));
+
+        final FutureCallback<HttpCacheEntry> getCallback = mock(FutureCallback.class);
+        impl.getEntry("foo", getCallback);
+        verify(getCallback).completed(entry);
+
+        Assert.assertEquals(1, impl.getAdmittedCount());
+        Assert.assertEquals(1, impl.getRejectedCount());
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Date;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link AdmissionFilteringHttpCacheStorage}. */
+public class TestAdmissionFilteringHttpCacheStorage {
+
+    private SimpleHttpCacheStorage backend;
+    private AdmissionFilteringHttpCacheStorage impl;
+
+    @Before
+    public void setUp() {
+        backend = new SimpleHttpCacheStorage();
+        impl = new AdmissionFilteringHttpCacheStorage(backend, 100, 2, TimeValue.ofMinutes(10));
+    }
+
+    @Test
+    public void testEntryStoredOnceSeenEnoughTimes() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry);
+        Assert.assertNull(backend.getEntry("foo"));
+        Assert.assertNull(impl.getEntry("foo"));
+
+        impl.putEntry("foo", entry);
+        Assert.assertSame(entry, backend.getEntry("foo"));
+        Assert.assertSame(entry, impl.getEntry("foo"));
+
+        impl.putEntry("bar", entry);
+        Assert.assertNull(backend.getEntry("bar"));
+
+        Assert.assertEquals(1, impl.getAdmittedCount());
+        Assert.assertEquals(2, impl.getRejectedCount());
+    }
+
+    @Test
+    public void testUpdatesAndRemovalsPassThrough() throws Exception {
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        backend.putEntry("foo", entry1);
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        impl.updateEntry("foo", new HttpCacheCASOperation() {
+
+            @Override
+            public HttpCacheEntry execute(final HttpCacheEntry existing) {
+                Assert.assertSame(entry1, existing);
+                return entry2;
+            }
+
+        });
+        Assert.assertSame(entry2, backend.getEntry("foo"));
+
+        impl.removeEntry("foo");
+        Assert.assertNull(backend.getEntry("foo"));
+        Assert.assertEquals(0, impl.getAdmittedCount());
+        Assert.assertEquals(0, impl.getRejectedCount());
+    }
+
+    @Test
+    public void testRevalidatedEntryAlwaysRefreshed() throws Exception {
+        impl = new AdmissionFilteringHttpCacheStorage(backend, 100, 3, TimeValue.ofMinutes(10));
+        final BasicHttpCache cache = new BasicHttpCache(new HeapResourceFactory(), impl);
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        final String key = new CacheKeyGenerator().generateKey(host, request);
+        final HttpCacheEntry stale = HttpTestUtils.makeCacheEntry();
+        backend.putEntry(key, stale);
+
+        final HttpResponse notModified = HttpTestUtils.make304Response();
+        notModified.setHeader("Date", DateUtils.formatDate(new Date()));
+        final HttpCacheEntry updated = cache.updateCacheEntry(host, request, stale, notModified, new Date(), new Date());
+        Assert.assertSame(updated, backend.getEntry(key));
+        Assert.assertEquals(0, impl.getRejectedCount());
+    }
+
+    @Test
+    public void testRejectedVariantNotReferencedByParent() throws Exception {
+        final BasicHttpCache cache = new BasicHttpCache(new HeapResourceFactory(), impl);
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        request.setHeader("Accept-Encoding", "gzip");
+        final HttpResponse response = new BasicHttpResponse(HttpStatus.SC_OK, "OK");
+        response.setHeader("Date", DateUtils.formatDate(new Date()));
+        response.setHeader("Cache-Control", "max-age=3600, public");
+        response.setHeader("Vary", "Accept-Encoding");
+        final String key = new CacheKeyGenerator().generateKey(host, request);
+
+        cache.createCacheEntry(host, request, response, HttpTestUtils.getRandomBuffer(128), new Date(), new Date());
+        final HttpCacheEntry parent = backend.getEntry(key);
+        Assert.assertNotNull(parent);
+        Assert.assertTrue(parent.getVariantMap().isEmpty());
+        Assert.assertNull(cache.getCacheEntry(host, request));
+
+        cache.createCacheEntry(host, request, response, HttpTestUtils.getRandomBuffer(128), new Date(), new Date());
+        Assert.assertEquals(1, backend.getEntry(key).getVariantMap().size());
+        Assert.assertNotNull(cache.getCacheEntry(host, request));
+    }
+
+    @Test
+    public void testFrequenciesDecay() throws Exception {
+        impl = new AdmissionFilteringHttpCacheStorage(backend, 100, 2, TimeValue.ofMillis(1));
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry);
+        Thread.sleep(20);
+        impl.putEntry("foo", entry);
+        Assert.assertNull(backend.getEntry("foo"));
+        Assert.assertEquals(2, impl.getRejectedCount());
+    }
+
+    @Test
+    public void testThresholdOfOneAdmitsAll() throws Exception {
+        impl = new AdmissionFilteringHttpCacheStorage(backend, 100, 1, TimeValue.ofMinutes(10));
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry);
+        Assert.assertSame(entry, backend.getEntry("foo"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThresholdOutOfRange() throws Exception {
+        new AdmissionFilteringHttpCacheStorage(backend, 100, 16, TimeValue.ofMinutes(10));
+    }
+
+}
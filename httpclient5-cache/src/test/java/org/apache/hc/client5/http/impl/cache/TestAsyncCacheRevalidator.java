@@ -0,0 +1,159 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for {@link AsyncCacheRevalidator}. */
+public class TestAsyncCacheRevalidator {
+
+    private ScheduledExecutorService mockExecutor;
+    private AsyncCacheRevalidator impl;
+
+    static class RecordingTask implements AsyncCacheRevalidator.RevalidationTask {
+
+        final List<FutureCallback<Boolean>> callbacks = new ArrayList<>();
+
+        @Override
+        public void execute(final FutureCallback<Boolean> callback) {
+            callbacks.add(callback);
+        }
+
+    }
+
+    @Before
+    public void setUp() {
+        mockExecutor = mock(ScheduledExecutorService.class);
+        impl = new AsyncCacheRevalidator(mockExecutor, 1, 2, 10, 100, 1000);
+    }
+
+    private Runnable scheduled(final int times, final long delay) {
+        final ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockExecutor, times(times)).schedule(captor.capture(), eq(delay), eq(TimeUnit.MILLISECONDS));
+        return captor.getValue();
+    }
+
+    @Test
+    public void testRevalidationIsScheduledOncePerKey() {
+        final RecordingTask task = new RecordingTask();
+        impl.revalidateCacheEntry("foo", task);
+        impl.revalidateCacheEntry("foo", task);
+        final Runnable job = scheduled(1, 0L);
+        Assert.assertTrue(impl.getScheduledIdentifiers().contains("foo"));
+
+        job.run();
+        Assert.assertEquals(1, task.callbacks.size());
+        task.callbacks.get(0).completed(Boolean.TRUE);
+        Assert.assertTrue(impl.getScheduledIdentifiers().isEmpty());
+
+        impl.revalidateCacheEntry("foo", task);
+        scheduled(2, 0L);
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() {
+        final RecordingTask task1 = new RecordingTask();
+        final RecordingTask task2 = new RecordingTask();
+        impl.revalidateCacheEntry("foo", task1);
+        impl.revalidateCacheEntry("bar", task2);
+        final ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockExecutor, times(2)).schedule(captor.capture(), anyLong(), any(TimeUnit.class));
+        for (final Runnable job : captor.getAllValues()) {
+            job.run();
+        }
+        Assert.assertEquals(1, task1.callbacks.size());
+        Assert.assertEquals(0, task2.callbacks.size());
+
+        task1.callbacks.get(0).failed(new Exception());
+        Assert.assertEquals(1, task2.callbacks.size());
+        Assert.assertEquals(1, impl.getScheduledIdentifiers().size());
+    }
+
+    @Test
+    public void testOutstandingRevalidationsAreBounded() {
+        impl.revalidateCacheEntry("foo", new RecordingTask());
+        impl.revalidateCacheEntry("bar", new RecordingTask());
+        impl.revalidateCacheEntry("baz", new RecordingTask());
+        verify(mockExecutor, times(2)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        Assert.assertFalse(impl.getScheduledIdentifiers().contains("baz"));
+    }
+
+    @Test
+    public void testFailedRevalidationsBackOff() {
+        final RecordingTask task = new RecordingTask();
+        impl.revalidateCacheEntry("foo", task);
+        scheduled(1, 0L).run();
+        task.callbacks.get(0).completed(Boolean.FALSE);
+
+        impl.revalidateCacheEntry("foo", task);
+        scheduled(1, 100L).run();
+        task.callbacks.get(1).failed(new Exception());
+
+        impl.revalidateCacheEntry("foo", task);
+        scheduled(1, 1000L).run();
+        task.callbacks.get(2).completed(Boolean.TRUE);
+
+        impl.revalidateCacheEntry("foo", task);
+        scheduled(2, 0L);
+    }
+
+    @Test
+    public void testCalculateDelay() {
+        Assert.assertEquals(0L, impl.calculateDelayInMillis(0));
+        Assert.assertEquals(100L, impl.calculateDelayInMillis(1));
+        Assert.assertEquals(1000L, impl.calculateDelayInMillis(2));
+        Assert.assertEquals(1000L, impl.calculateDelayInMillis(5));
+    }
+
+    @Test
+    public void testRejectedRevalidationIsNotTracked() {
+        doThrow(new RejectedExecutionException()).when(mockExecutor).schedule(
+                any(Runnable.class), anyLong(), any(TimeUnit.class));
+        impl.revalidateCacheEntry("foo", new RecordingTask());
+        Assert.assertTrue(impl.getScheduledIdentifiers().isEmpty());
+    }
+
+}
@@ -0,0 +1,412 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.async.AsyncExecCallback;
+import org.apache.hc.client5.http.async.AsyncExecChain;
+import org.apache.hc.client5.http.async.AsyncExecRuntime;
+import org.apache.hc.client5.http.async.ForkableAsyncExecRuntime;
+import org.apache.hc.client5.http.auth.AuthCache;
+import org.apache.hc.client5.http.auth.CredentialsProvider;
+import org.apache.hc.client5.http.cache.HttpAsyncCacheStorageAdaptor;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.ComplexFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.impl.BasicEntityDetails;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncDataConsumer;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** Unit tests for {@link AsyncCachingExec}. */
+public class TestAsyncCachingExec {
+
+    private HttpHost host;
+    private HttpRoute route;
+    private HttpAsyncCache mockCache;
+    private AsyncCacheRevalidator mockRevalidator;
+    private AsyncExecChain mockChain;
+    private AsyncExecCallback mockCallback;
+    private HttpClientContext context;
+    private AsyncCachingExec impl;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        host = new HttpHost("foo.example.com", 80);
+        route = new HttpRoute(host);
+        mockCache = mock(HttpAsyncCache.class);
+        mockRevalidator = mock(AsyncCacheRevalidator.class);
+        mockChain = mock(AsyncExecChain.class);
+        mockCallback = mock(AsyncExecCallback.class);
+        context = HttpClientContext.create();
+        impl = new AsyncCachingExec(mockCache, null, mockRevalidator, CacheConfig.DEFAULT);
+    }
+
+    private void cacheReturns(final HttpCacheEntry entry) {
+        when(mockCache.getCacheEntry(any(HttpHost.class), any(HttpRequest.class), any(FutureCallback.class)))
+                .thenAnswer(new Answer<Cancellable>() {
+
+                    @Override
+                    public Cancellable answer(final InvocationOnMock invocation) {
+                        final FutureCallback<HttpCacheEntry> callback = invocation.getArgument(2);
+                        callback.completed(entry);
+                        return mock(Cancellable.class);
+                    }
+
+                });
+    }
+
+    private static HttpCacheEntry makeStaleWhileRevalidateEntry() {
+        final Date tenSecondsAgo = new Date(System.currentTimeMillis() - 10 * 1000L);
+        return HttpTestUtils.makeCacheEntry(tenSecondsAgo, tenSecondsAgo, new Header[] {
+                new BasicHeader("Date", DateUtils.formatDate(tenSecondsAgo)),
+                new BasicHeader("Cache-Control", "public, max-age=5, stale-while-revalidate=15"),
+                new BasicHeader("ETag", "\"etag\""),
+                new BasicHeader("Content-Length", "128")
+        });
+    }
+
+    private AsyncExecChain.Scope scope(final HttpRequest request, final AsyncExecRuntime execRuntime) {
+        return new AsyncExecChain.Scope("ex-1", route, request, new ComplexFuture<>(null), context, execRuntime);
+    }
+
+    @Test
+    public void testStaleWhileRevalidateServesStaleAndRevalidatesOnForkedRuntime() throws Exception {
+        final RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofSeconds(7))
+                .build();
+        final CredentialsProvider credentialsProvider = mock(CredentialsProvider.class);
+        final AuthCache authCache = mock(AuthCache.class);
+        context.setRequestConfig(requestConfig);
+        context.setCredentialsProvider(credentialsProvider);
+        context.setAuthCache(authCache);
+
+        final ForkableAsyncExecRuntime mockRuntime = mock(ForkableAsyncExecRuntime.class);
+        final AsyncExecRuntime forkedRuntime = mock(AsyncExecRuntime.class);
+        when(mockRuntime.fork()).thenReturn(forkedRuntime);
+        cacheReturns(makeStaleWhileRevalidateEntry());
+
+        final HttpRequest request = new BasicHttpRequest("GET", "/");
+        final AsyncExecChain.Scope scope = scope(request, mockRuntime);
+        impl.execute(request, null, scope, mockChain, mockCallback);
+
+        final ArgumentCaptor<HttpResponse> responseCaptor = ArgumentCaptor.forClass(HttpResponse.class);
+        verify(mockCallback).handleResponse(responseCaptor.capture(), any(EntityDetails.class));
+        verify(mockCallback).completed();
+        final HttpResponse response = responseCaptor.getValue();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getCode());
+        Assert.assertTrue(response.getFirstHeader("Warning").getValue().startsWith("110"));
+        verify(mockChain, never()).proceed(
+                any(HttpRequest.class), any(AsyncEntityProducer.class), any(AsyncExecChain.Scope.class),
+                any(AsyncExecCallback.class));
+
+        final ArgumentCaptor<AsyncCacheRevalidator.RevalidationTask> taskCaptor =
+                ArgumentCaptor.forClass(AsyncCacheRevalidator.RevalidationTask.class);
+        verify(mockRevalidator).revalidateCacheEntry(any(String.class), taskCaptor.capture());
+        @SuppressWarnings("unchecked")
+        final FutureCallback<Boolean> resultCallback = mock(FutureCallback.class);
+        taskCaptor.getValue().execute(resultCallback);
+
+        final ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        final ArgumentCaptor<AsyncExecChain.Scope> scopeCaptor = ArgumentCaptor.forClass(AsyncExecChain.Scope.class);
+        verify(mockChain).proceed(
+                requestCaptor.capture(), ArgumentMatchers.<AsyncEntityProducer>isNull(), scopeCaptor.capture(),
+                any(AsyncExecCallback.class));
+        Assert.assertNotNull(requestCaptor.getValue().getFirstHeader("If-None-Match"));
+        final AsyncExecChain.Scope fork = scopeCaptor.getValue();
+        Assert.assertSame(forkedRuntime, fork.execRuntime);
+        Assert.assertNotSame(context, fork.clientContext);
+        Assert.assertNotEquals(scope.exchangeId, fork.exchangeId);
+        Assert.assertSame(requestConfig, fork.clientContext.getRequestConfig());
+        Assert.assertSame(credentialsProvider, fork.clientContext.getCredentialsProvider());
+        Assert.assertSame(authCache, fork.clientContext.getAuthCache());
+    }
+
+    @Test
+    public void testStaleEntryRevalidatedInForegroundIfRuntimeCannotFork() throws Exception {
+        final AsyncExecRuntime mockRuntime = mock(AsyncExecRuntime.class);
+        cacheReturns(makeStaleWhileRevalidateEntry());
+
+        final HttpRequest request = new BasicHttpRequest("GET", "/");
+        final AsyncExecChain.Scope scope = scope(request, mockRuntime);
+        impl.execute(request, null, scope, mockChain, mockCallback);
+
+        verify(mockRevalidator, never()).revalidateCacheEntry(
+                any(String.class), any(AsyncCacheRevalidator.RevalidationTask.class));
+        verify(mockChain).proceed(
+                any(HttpRequest.class), ArgumentMatchers.<AsyncEntityProducer>isNull(), same(scope), any(AsyncExecCallback.class));
+        verify(mockCallback, never()).completed();
+    }
+
+    @Test
+    public void testOffHeapContentServedFromByteBuffers() throws Exception {
+        final OffHeapResourceFactory resourceFactory = new OffHeapResourceFactory(64 * 1024, 4096);
+        final byte[] content = new byte[5000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        final OffHeapResource resource = (OffHeapResource) resourceFactory.generate("id", content);
+        final Date now = new Date();
+        cacheReturns(new HttpCacheEntry(now, now, HttpStatus.SC_OK, new Header[] {
+                new BasicHeader("Date", DateUtils.formatDate(now)),
+                new BasicHeader("Cache-Control", "max-age=3600"),
+                new BasicHeader("Content-Length", Integer.toString(content.length))
+        }, resource));
+
+        final List<ByteBuffer> consumed = new ArrayList<>();
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final AsyncDataConsumer dataConsumer = mock(AsyncDataConsumer.class);
+        when(dataConsumer.consume(any(ByteBuffer.class))).thenAnswer(new Answer<Integer>() {
+
+            @Override
+            public Integer answer(final InvocationOnMock invocation) {
+                final ByteBuffer src = invocation.getArgument(0);
+                consumed.add(src);
+                while (src.hasRemaining()) {
+                    received.write(src.get());
+                }
+                return Integer.MAX_VALUE;
+            }
+
+        });
+        when(mockCallback.handleResponse(any(HttpResponse.class), any(EntityDetails.class))).thenReturn(dataConsumer);
+
+        final HttpRequest request = new BasicHttpRequest("GET", "/");
+        impl.execute(request, null, scope(request, mock(AsyncExecRuntime.class)), mockChain, mockCallback);
+
+        final ArgumentCaptor<EntityDetails> detailsCaptor = ArgumentCaptor.forClass(EntityDetails.class);
+        verify(mockCallback).handleResponse(any(HttpResponse.class), detailsCaptor.capture());
+        Assert.assertEquals(content.length, detailsCaptor.getValue().getContentLength());
+        verify(mockCallback).completed();
+        Assert.assertArrayEquals(content, received.toByteArray());
+        Assert.assertEquals(2, consumed.size());
+        for (final ByteBuffer buffer: consumed) {
+            Assert.assertTrue(buffer.isDirect());
+        }
+        // The reference taken while serving has been released
+        Assert.assertEquals(1, resource.refCount());
+    }
+
+    @Test
+    public void testWriteBehindServesBufferedContentAndHoldsCollapsedRequests() throws Exception {
+        final List<Runnable> jobs = new ArrayList<>();
+        final CacheWriteBehindQueue writeBehindQueue = new CacheWriteBehindQueue(new Executor() {
+
+            @Override
+            public void execute(final Runnable command) {
+                jobs.add(command);
+            }
+
+        }, 10);
+        final CacheConfig config = CacheConfig.custom()
+                .setRequestCollapsingEnabled(true)
+                .build();
+        final HttpAsyncCache cache = new BasicHttpAsyncCache(HeapResourceFactory.INSTANCE,
+                new HttpAsyncCacheStorageAdaptor(new BasicHttpCacheStorage(config)));
+        impl = new AsyncCachingExec(cache, null, null, config, null, writeBehindQueue);
+
+        final byte[] content = "Hello, world".getBytes("US-ASCII");
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Exception {
+                final AsyncExecCallback callback = invocation.getArgument(3);
+                final HttpResponse response = makeResponseWithContentLength(content.length);
+                response.setHeader("Content-Type", "text/plain");
+                final AsyncDataConsumer dataConsumer = callback.handleResponse(
+                        response, new BasicEntityDetails(content.length, ContentType.TEXT_PLAIN));
+                dataConsumer.consume(ByteBuffer.wrap(content));
+                dataConsumer.streamEnd(null);
+                callback.completed();
+                return null;
+            }
+
+        }).when(mockChain).proceed(
+                any(HttpRequest.class), ArgumentMatchers.<AsyncEntityProducer>isNull(), any(AsyncExecChain.Scope.class),
+                any(AsyncExecCallback.class));
+
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final AsyncDataConsumer dataConsumer = mock(AsyncDataConsumer.class);
+        when(dataConsumer.consume(any(ByteBuffer.class))).thenAnswer(new Answer<Integer>() {
+
+            @Override
+            public Integer answer(final InvocationOnMock invocation) {
+                final ByteBuffer src = invocation.getArgument(0);
+                while (src.hasRemaining()) {
+                    received.write(src.get());
+                }
+                return Integer.MAX_VALUE;
+            }
+
+        });
+        when(mockCallback.handleResponse(any(HttpResponse.class), any(EntityDetails.class))).thenReturn(dataConsumer);
+
+        final HttpRequest request1 = new BasicHttpRequest("GET", "/");
+        impl.execute(request1, null, scope(request1, mock(AsyncExecRuntime.class)), mockChain, mockCallback);
+        verify(mockCallback).completed();
+        Assert.assertArrayEquals(content, received.toByteArray());
+        Assert.assertEquals(1, writeBehindQueue.getQueueSize());
+        // Requests collapsed onto this one keep waiting until the response is cached
+        Assert.assertEquals(1, impl.requestCollapser.getInflightCount());
+
+        for (final Runnable job: jobs) {
+            job.run();
+        }
+        Assert.assertEquals(0, writeBehindQueue.getQueueSize());
+        Assert.assertEquals(0, impl.requestCollapser.getInflightCount());
+
+        final AsyncExecCallback callback2 = mock(AsyncExecCallback.class);
+        final HttpRequest request2 = new BasicHttpRequest("GET", "/");
+        impl.execute(request2, null, scope(request2, mock(AsyncExecRuntime.class)), mockChain, callback2);
+        verify(callback2).completed();
+        verify(mockChain, times(1)).proceed(
+                any(HttpRequest.class), ArgumentMatchers.<AsyncEntityProducer>isNull(), any(AsyncExecChain.Scope.class),
+                any(AsyncExecCallback.class));
+    }
+
+    @Test
+    public void testStreamedCacheMissHoldsCollapsedRequestsUntilCached() throws Exception {
+        final CacheConfig config = CacheConfig.custom()
+                .setRequestCollapsingEnabled(true)
+                .setMaxObjectSize(16)
+                .setMaxStreamedObjectSize(4096)
+                .build();
+        final HttpAsyncCache cache = new BasicHttpAsyncCache(new FileResourceFactory(tempFolder.newFolder()),
+                new HttpAsyncCacheStorageAdaptor(new BasicHttpCacheStorage(config)));
+        impl = new AsyncCachingExec(cache, null, null, config);
+
+        final AtomicReference<AsyncExecCallback> backendCallback = new AtomicReference<>();
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                backendCallback.set(invocation.<AsyncExecCallback>getArgument(3));
+                return null;
+            }
+
+        }).when(mockChain).proceed(
+                any(HttpRequest.class), ArgumentMatchers.<AsyncEntityProducer>isNull(), any(AsyncExecChain.Scope.class),
+                any(AsyncExecCallback.class));
+
+        final HttpRequest request1 = new BasicHttpRequest("GET", "/");
+        impl.execute(request1, null, scope(request1, mock(AsyncExecRuntime.class)), mockChain, mockCallback);
+        final byte[] content = "content longer than the heap limit".getBytes("US-ASCII");
+        final AsyncDataConsumer dataConsumer = backendCallback.get().handleResponse(
+                makeResponseWithContentLength(content.length),
+                new BasicEntityDetails(content.length, ContentType.TEXT_PLAIN));
+        verify(mockCallback).handleResponse(any(HttpResponse.class), any(EntityDetails.class));
+        // The body has not been streamed into the cache yet
+        Assert.assertEquals(1, impl.requestCollapser.getInflightCount());
+
+        dataConsumer.consume(ByteBuffer.wrap(content));
+        dataConsumer.streamEnd(null);
+        backendCallback.get().completed();
+        Assert.assertEquals(0, impl.requestCollapser.getInflightCount());
+
+        final AsyncExecCallback callback2 = mock(AsyncExecCallback.class);
+        final HttpRequest request2 = new BasicHttpRequest("GET", "/");
+        impl.execute(request2, null, scope(request2, mock(AsyncExecRuntime.class)), mockChain, callback2);
+        verify(callback2).completed();
+        Assert.assertEquals(1, impl.getCacheHits());
+    }
+
+    private static HttpResponse makeResponseWithContentLength(final long contentLength) {
+        final HttpResponse response = new BasicHttpResponse(HttpStatus.SC_OK, "OK");
+        response.setHeader("Date", DateUtils.formatDate(new Date()));
+        response.setHeader("Cache-Control", "max-age=3600");
+        response.setHeader("Content-Length", Long.toString(contentLength));
+        return response;
+    }
+
+    @Test
+    public void testStreamedObjectSizeIgnoredWithoutStreamingSupport() {
+        final CacheConfig config = CacheConfig.custom()
+                .setMaxObjectSize(1000)
+                .setMaxStreamedObjectSize(10000)
+                .build();
+        impl = new AsyncCachingExec(mockCache, null, null, config);
+        final ResponseCachingPolicy policy = impl.getResponseCachingPolicy(false);
+        Assert.assertTrue(policy.isResponseCacheable("GET", makeResponseWithContentLength(1000)));
+        Assert.assertFalse(policy.isResponseCacheable("GET", makeResponseWithContentLength(5000)));
+    }
+
+    @Test
+    public void testStreamedObjectSizeAppliedWithStreamingSupport() {
+        final CacheConfig config = CacheConfig.custom()
+                .setMaxObjectSize(1000)
+                .setMaxStreamedObjectSize(10000)
+                .build();
+        impl = new AsyncCachingExec(mockCache, null, null, config);
+        final ResponseCachingPolicy policy = impl.getResponseCachingPolicy(true);
+        Assert.assertTrue(policy.isResponseCacheable("GET", makeResponseWithContentLength(5000)));
+        Assert.assertFalse(policy.isResponseCacheable("GET", makeResponseWithContentLength(20000)));
+    }
+
+}
@@ -165,6 +165,7 @@ public void testVariantsBothRevalidated() {
         when(mockCacheEntry.hasVariants()).thenReturn(true);
         when(mockCacheEntry.headerIterator(HeaderConstants.VARY)).thenReturn(
                 new BasicHeaderIterator(variantHeaders, HeaderConstants.VARY));
+        when(mockCacheEntry.getVariantHeaderNames()).thenCallRealMethod();
         mockSchedulingStrategy.schedule(isA(AsynchronousValidationRequest.class));
 
         impl.revalidateCacheEntry(mockClient, host, req1, new ExecChain.Scope("test", route, req1, mockEndpoint, context),
@@ -173,7 +174,7 @@ public void testVariantsBothRevalidated() {
                 mockExecChain, mockCacheEntry);
 
         verify(mockCacheEntry, times(2)).hasVariants();
-        verify(mockCacheEntry, times(2)).headerIterator(HeaderConstants.VARY);
+        verify(mockCacheEntry).headerIterator(HeaderConstants.VARY);
         verify(mockSchedulingStrategy, times(2)).schedule(isA(AsynchronousValidationRequest.class));
 
         Assert.assertEquals(2, impl.getScheduledIdentifiers().size());
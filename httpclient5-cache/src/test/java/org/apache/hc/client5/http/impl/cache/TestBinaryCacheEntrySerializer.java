@@ -0,0 +1,232 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorageEntry;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link BinaryCacheEntrySerializer}. */
+public class TestBinaryCacheEntrySerializer {
+
+    private BinaryCacheEntrySerializer impl;
+
+    @Before
+    public void setUp() {
+        impl = BinaryCacheEntrySerializer.INSTANCE;
+    }
+
+    @Test
+    public void canSerializeEntriesWithVariantMaps() throws Exception {
+        readWriteVerify(makeCacheEntryWithVariantMap("key"));
+    }
+
+    @Test
+    public void canSerializeEntriesWithoutResource() throws Exception {
+        final HttpCacheEntry cacheEntry = new HttpCacheEntry(new Date(), new Date(),
+                HttpStatus.SC_NOT_MODIFIED, new Header[] { new BasicHeader("ETag", "\"123\"") }, null);
+        final HttpCacheStorageEntry readEntry = readWriteVerify(new HttpCacheStorageEntry(null, cacheEntry));
+        assertNull(readEntry.getKey());
+        assertNull(readEntry.getContent().getResource());
+    }
+
+    @Test
+    public void canSerializeNonAsciiAndNullHeaderValues() throws Exception {
+        final HttpCacheEntry cacheEntry = new HttpCacheEntry(new Date(), new Date(),
+                HttpStatus.SC_OK, new Header[] {
+                        new BasicHeader("X-Name", "\u00e9t\u00e9 \u65e5\u672c"),
+                        new BasicHeader("X-Empty", null) },
+                new HeapResource(new byte[0]));
+        readWriteVerify(new HttpCacheStorageEntry("key", cacheEntry));
+    }
+
+    @Test
+    public void canStreamEntries() throws Exception {
+        final HttpCacheStorageEntry writeEntry = makeCacheEntryWithVariantMap("key");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        impl.serialize(writeEntry, out);
+        final byte[] bytes = out.toByteArray();
+        assertTrue(Arrays.equals(impl.serialize(writeEntry), bytes));
+        final HttpCacheStorageEntry readEntry = impl.deserialize(new ByteArrayInputStream(bytes));
+        assertEquals(writeEntry.getKey(), readEntry.getKey());
+        assertThat(readEntry.getContent(), HttpCacheEntryMatcher.equivalent(writeEntry.getContent()));
+    }
+
+    @Test
+    public void canSerializeLongHeaders() throws Exception {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            buf.append("token").append(i).append(',');
+        }
+        final HttpCacheEntry cacheEntry = new HttpCacheEntry(new Date(), new Date(),
+                HttpStatus.SC_OK, new Header[] { new BasicHeader("X-Long", buf.toString()) },
+                new HeapResource(HttpTestUtils.getRandomBytes(100)));
+        final HttpCacheStorageEntry writeEntry = new HttpCacheStorageEntry("key", cacheEntry);
+        readWriteVerify(writeEntry);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        impl.serialize(writeEntry, out);
+        assertTrue(Arrays.equals(impl.serialize(writeEntry), out.toByteArray()));
+    }
+
+    @Test
+    public void canStreamFileResources() throws Exception {
+        final File file = File.createTempFile("cache", ".tmp");
+        try {
+            final byte[] content = HttpTestUtils.getRandomBytes(10000);
+            try (final FileOutputStream out = new FileOutputStream(file)) {
+                out.write(content);
+            }
+            final HttpCacheEntry cacheEntry = new HttpCacheEntry(new Date(), new Date(),
+                    HttpStatus.SC_OK, new Header[0], new FileResource(file));
+            final HttpCacheStorageEntry readEntry = readWriteVerify(new HttpCacheStorageEntry("key", cacheEntry));
+            assertTrue(Arrays.equals(content, readEntry.getContent().getResource().get()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void isMoreCompactThanNativeSerialization() throws Exception {
+        final HttpCacheStorageEntry entry = makeCacheEntryWithVariantMap("key");
+        assertTrue(impl.serialize(entry).length < ByteArrayCacheEntrySerializer.INSTANCE.serialize(entry).length);
+    }
+
+    @Test
+    public void nullIsSerializedAsNull() throws Exception {
+        assertNull(impl.serialize(null));
+        assertNull(impl.deserialize((byte[]) null));
+    }
+
+    @Test(expected = ResourceIOException.class)
+    public void rejectsForeignData() throws Exception {
+        impl.deserialize(ByteArrayCacheEntrySerializer.INSTANCE.serialize(makeCacheEntryWithVariantMap("key")));
+    }
+
+    @Test(expected = ResourceIOException.class)
+    public void rejectsUnsupportedVersion() throws Exception {
+        final byte[] bytes = impl.serialize(makeCacheEntryWithVariantMap("key"));
+        bytes[4] = (byte) (BinaryCacheEntrySerializer.VERSION + 1);
+        impl.deserialize(bytes);
+    }
+
+    @Test(expected = ResourceIOException.class)
+    public void rejectsTruncatedData() throws Exception {
+        final byte[] bytes = impl.serialize(makeCacheEntryWithVariantMap("key"));
+        impl.deserialize(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    @Test(expected = ResourceIOException.class)
+    public void rejectsTruncatedStream() throws Exception {
+        final byte[] bytes = impl.serialize(makeCacheEntryWithVariantMap("key"));
+        impl.deserialize(new ByteArrayInputStream(bytes, 0, bytes.length - 1));
+    }
+
+    @Test(expected = ResourceIOException.class)
+    public void rejectsHeaderCountExceedingData() throws Exception {
+        impl.deserialize(makeHead(0xff, 0xff, 0xff, 0xff, 0x07));
+    }
+
+    @Test(expected = ResourceIOException.class)
+    public void rejectsNegativeHeaderCount() throws Exception {
+        impl.deserialize(makeHead(0xff, 0xff, 0xff, 0xff, 0x0f));
+    }
+
+    @Test(expected = ResourceIOException.class)
+    public void rejectsStringLengthExceedingData() throws Exception {
+        impl.deserialize(makeHead(0x01, 0xff, 0xff, 0xff, 0xff, 0x07, 'a'));
+    }
+
+    @Test(expected = ResourceIOException.class)
+    public void rejectsStringLengthExceedingStream() throws Exception {
+        impl.deserialize(new ByteArrayInputStream(makeHead(0x01, 0xff, 0xff, 0xff, 0xff, 0x07, 'a')));
+    }
+
+    /**
+     * Makes the head of a serialized entry up to and including the status code,
+     * followed by the given bytes.
+     */
+    private static byte[] makeHead(final int... tail) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // magic number, version and a single character key
+        for (final int b: new int[] {0x48, 0x43, 0x45, 0x01, BinaryCacheEntrySerializer.VERSION, 0x02, 'k'}) {
+            out.write(b);
+        }
+        // request and response dates
+        for (int i = 0; i < 16; i++) {
+            out.write(0);
+        }
+        // status code 200
+        out.write(0xc8);
+        out.write(0x01);
+        for (final int b: tail) {
+            out.write(b);
+        }
+        return out.toByteArray();
+    }
+
+    private HttpCacheStorageEntry readWriteVerify(final HttpCacheStorageEntry writeEntry) throws Exception {
+        final byte[] bytes = impl.serialize(writeEntry);
+        final HttpCacheStorageEntry readEntry = impl.deserialize(bytes);
+        assertEquals(writeEntry.getKey(), readEntry.getKey());
+        assertThat(readEntry.getContent(), HttpCacheEntryMatcher.equivalent(writeEntry.getContent()));
+        return readEntry;
+    }
+
+    private HttpCacheStorageEntry makeCacheEntryWithVariantMap(final String key) {
+        final Header[] headers = new Header[5];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = new BasicHeader("header" + i, "value" + i);
+        }
+        final Map<String,String> variantMap = new HashMap<>();
+        variantMap.put("test variant 1","true");
+        variantMap.put("test variant 2","true");
+        final HttpCacheEntry cacheEntry = new HttpCacheEntry(new Date(), new Date(),
+                HttpStatus.SC_OK, headers, new HeapResource(HttpTestUtils.getRandomBytes(1024)), variantMap);
+        return new HttpCacheStorageEntry(key, cacheEntry);
+    }
+
+}
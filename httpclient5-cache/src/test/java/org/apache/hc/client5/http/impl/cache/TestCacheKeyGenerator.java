@@ -30,6 +30,8 @@
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.net.URI;
+
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.core5.http.Header;
@@ -148,6 +150,7 @@ public String generateKey(final HttpHost h, final HttpRequest request) {
         };
         when(mockEntry.hasVariants()).thenReturn(true);
         when(mockEntry.headerIterator("Vary")).thenReturn(new BasicHeaderIterator(varyHeaders, "Vary"));
+        when(mockEntry.getVariantHeaderNames()).thenCallRealMethod();
         when(mockRequest.getHeaders("Accept-Encoding")).thenReturn(encHeaders);
 
         final String result = extractor.generateVariantURI(defaultHost, mockRequest, mockEntry);
@@ -173,6 +176,7 @@ public String generateKey(final HttpHost h, final HttpRequest request) {
         };
         when(mockEntry.hasVariants()).thenReturn(true);
         when(mockEntry.headerIterator("Vary")).thenReturn(new BasicHeaderIterator(varyHeaders, "Vary"));
+        when(mockEntry.getVariantHeaderNames()).thenCallRealMethod();
         when(mockRequest.getHeaders("Accept-Encoding"))
                 .thenReturn(noHeaders);
 
@@ -200,6 +204,7 @@ public String generateKey(final HttpHost h, final HttpRequest request) {
         };
         when(mockEntry.hasVariants()).thenReturn(true);
         when(mockEntry.headerIterator("Vary")).thenReturn(new BasicHeaderIterator(varyHeaders, "Vary"));
+        when(mockEntry.getVariantHeaderNames()).thenCallRealMethod();
         when(mockRequest.getHeaders("Accept-Encoding")).thenReturn(encHeaders);
         when(mockRequest.getHeaders("User-Agent")).thenReturn(uaHeaders);
 
@@ -229,6 +234,7 @@ public String generateKey(final HttpHost h, final HttpRequest request) {
         };
         when(mockEntry.hasVariants()).thenReturn(true);
         when(mockEntry.headerIterator("Vary")).thenReturn(new BasicHeaderIterator(varyHeaders, "Vary"));
+        when(mockEntry.getVariantHeaderNames()).thenCallRealMethod();
         when(mockRequest.getHeaders("Accept-Encoding")).thenReturn(encHeaders);
         when(mockRequest.getHeaders("User-Agent")).thenReturn(uaHeaders);
 
@@ -258,6 +264,7 @@ public String generateKey(final HttpHost h, final HttpRequest request) {
         };
         when(mockEntry.hasVariants()).thenReturn(true);
         when(mockEntry.headerIterator("Vary")).thenReturn(new BasicHeaderIterator(varyHeaders, "Vary"));
+        when(mockEntry.getVariantHeaderNames()).thenCallRealMethod();
         when(mockRequest.getHeaders("Accept-Encoding")).thenReturn(encHeaders);
         when(mockRequest.getHeaders("User-Agent")).thenReturn(uaHeaders);
 
@@ -417,4 +424,53 @@ public void testEquivalentExtraPathEncodingsWithPercentAreEquivalent() {
         final HttpRequest req2 = new BasicHttpRequest("GET", "/%7Esmith%2Fhome%20folder.html");
         Assert.assertEquals(extractor.generateKey(host, req1), extractor.generateKey(host, req2));
     }
+
+    @Test
+    public void testPlainKeysMatchNormalizedRequestUri() throws Exception {
+        final HttpHost host = new HttpHost("Foo.Example.com", -1, "http");
+        final String[] paths = { "/", "", "/home.html", "/a/b/", "?q", "/a?b=c&d=e", "/a?",
+                "/a-b_c.d~e/f;g=h,i:j@k!$'()*+", "/...", "/a/.b", "relative/path", "/a?b/c?d" };
+        for (final String path : paths) {
+            final HttpRequest request = new BasicHttpRequest("GET", path);
+            Assert.assertEquals(path,
+                    extractor.generateKey(new URI(HttpCacheSupport.getRequestUri(request, host))),
+                    extractor.generateKey(host, request));
+        }
+    }
+
+    @Test
+    public void testPlainKeysForAbsoluteRequestUris() throws Exception {
+        final HttpHost host = new HttpHost("foo.example.com", -1, "http");
+        final String[] uris = { "https://Bar.example.com/a", "http://bar.example.com:8080/a?b",
+                "HTTP://bar.example.com", "http://a-1.b2.example.com/", "myhttp://bar.example.com/a" };
+        for (final String uri : uris) {
+            final HttpGet request = new HttpGet(uri);
+            Assert.assertEquals(uri, extractor.generateKey(new URI(uri)), extractor.generateKey(host, request));
+        }
+    }
+
+    @Test
+    public void testNonPlainRequestUrisAreFullyNormalized() throws Exception {
+        final HttpHost host = new HttpHost("foo.example.com", -1, "http");
+        final String[] uris = { "http://1.2.3.4/", "http://foo.123/", "http://-a.example.com/",
+                "http://example.com./", "http://a/b//c", "http://a/b/./c", "http://a/b/../c", "http://a/b/..",
+                "http://a/%7Eb", "http://a/b#c", "http://a/b?c#d" };
+        for (final String uri : uris) {
+            final HttpGet request = new HttpGet(uri);
+            Assert.assertEquals(uri,
+                    extractor.generateKey(new URI(HttpCacheSupport.getRequestUri(request, host))),
+                    extractor.generateKey(host, request));
+        }
+    }
+
+    @Test
+    public void testVariantKeyEncodesHeaderValues() {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry(new Header[] {
+                new BasicHeader("Vary", "User-Agent, Accept-Encoding") });
+        final HttpRequest request = new BasicHttpRequest("GET", "/");
+        request.addHeader("Accept-Encoding", " gzip ");
+        request.addHeader("User-Agent", "Mozilla/5.0 (X11; Linux x86_64)");
+        Assert.assertEquals("{Accept-Encoding=gzip&User-Agent=Mozilla%2F5.0+%28X11%3B+Linux+x86_64%29}",
+                extractor.generateVariantKey(request, entry));
+    }
 }
@@ -28,6 +28,7 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -85,6 +86,31 @@ public void testUpdateCacheEntryReturnsDifferentEntryInstance()
         assertNotSame(newEntry, entry);
     }
 
+    @Test
+    public void testUpdateCacheEntrySharesResource() throws IOException {
+        final HeapResource resource = new HeapResource(new byte[] { 1, 2, 3 });
+        entry = new HttpCacheEntry(tenSecondsAgo, eightSecondsAgo, HttpStatus.SC_OK, new Header[0], resource);
+        final HttpCacheEntry newEntry = impl.updateCacheEntry(null, entry,
+                requestDate, responseDate, response);
+        assertSame(resource, newEntry.getResource());
+        assertEquals(2, resource.refCount());
+
+        resource.dispose();
+        assertEquals(1, resource.refCount());
+        assertEquals(3, newEntry.getResource().get().length);
+    }
+
+    @Test
+    public void testUpdateParentCacheEntrySharesResource() throws IOException {
+        final HeapResource resource = new HeapResource(new byte[] { 1, 2, 3 });
+        final HttpCacheEntry parent = new HttpCacheEntry(tenSecondsAgo, eightSecondsAgo, HttpStatus.SC_OK,
+                new Header[0], resource, new HashMap<String, String>());
+        final HttpCacheEntry result = impl.updateParentCacheEntry("parentCacheKey", parent,
+                HttpTestUtils.makeCacheEntry(), "variantKey", "variantCacheKey");
+        assertSame(resource, result.getResource());
+        assertEquals(2, resource.refCount());
+    }
+
     @Test
     public void testHeadersAreMergedCorrectly() throws IOException {
         final Header[] headers = {
@@ -0,0 +1,268 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.client5.http.cache.HttpCacheContext;
+import org.apache.hc.client5.http.classic.ExecChain;
+import org.apache.hc.client5.http.classic.ExecRuntime;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.message.BasicClassicHttpRequest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link CacheWriteBehindQueue}. */
+public class TestCacheWriteBehindQueue {
+
+    private HttpHost host;
+    private List<Runnable> jobs;
+    private CacheWriteBehindQueue impl;
+
+    @Before
+    public void setUp() {
+        host = new HttpHost("foo.example.com", 80);
+        jobs = new ArrayList<>();
+        impl = new CacheWriteBehindQueue(new Executor() {
+
+            @Override
+            public void execute(final Runnable command) {
+                jobs.add(command);
+            }
+
+        }, 2);
+    }
+
+    private void runJobs() {
+        for (final Runnable job: jobs) {
+            job.run();
+        }
+        jobs.clear();
+    }
+
+    private static final class CountingWrite implements CacheWriteBehindQueue.Write {
+
+        int count;
+        int discarded;
+
+        @Override
+        public void execute(final Runnable done) {
+            count++;
+            done.run();
+        }
+
+        @Override
+        public void discard() {
+            discarded++;
+        }
+
+    }
+
+    @Test
+    public void testWritesForSameKeyCoalesced() throws Exception {
+        final CountingWrite write1 = new CountingWrite();
+        final CountingWrite write2 = new CountingWrite();
+        Assert.assertTrue(impl.enqueue(host, "foo", write1));
+        Assert.assertTrue(impl.enqueue(host, "foo", write2));
+        Assert.assertEquals(1, impl.getQueueSize());
+        Assert.assertEquals(1, impl.getCoalescedCount());
+
+        runJobs();
+        Assert.assertEquals(0, write1.count);
+        Assert.assertEquals(1, write1.discarded);
+        Assert.assertEquals(1, write2.count);
+        Assert.assertEquals(0, impl.getQueueSize());
+
+        final CountingWrite write3 = new CountingWrite();
+        Assert.assertTrue(impl.enqueue(host, "foo", write3));
+        runJobs();
+        Assert.assertEquals(1, write3.count);
+    }
+
+    @Test
+    public void testOverflowCounted() throws Exception {
+        final CountingWrite write = new CountingWrite();
+        Assert.assertTrue(impl.enqueue(host, "foo", write));
+        Assert.assertTrue(impl.enqueue(host, "bar", write));
+        Assert.assertFalse(impl.enqueue(host, "baz", write));
+        Assert.assertEquals(2, impl.getQueueSize());
+        Assert.assertEquals(1, impl.getOverflowCount());
+        Assert.assertEquals(1, write.discarded);
+
+        runJobs();
+        Assert.assertEquals(2, write.count);
+        Assert.assertTrue(impl.enqueue(host, "baz", write));
+    }
+
+    @Test
+    public void testRejectedWriteCountedAsOverflow() throws Exception {
+        impl = new CacheWriteBehindQueue(new Executor() {
+
+            @Override
+            public void execute(final Runnable command) {
+                throw new RejectedExecutionException();
+            }
+
+        }, 2);
+        final CountingWrite write = new CountingWrite();
+        Assert.assertFalse(impl.enqueue(host, "foo", write));
+        Assert.assertEquals(0, impl.getQueueSize());
+        Assert.assertEquals(1, impl.getOverflowCount());
+        Assert.assertEquals(1, write.discarded);
+    }
+
+    @Test
+    public void testInvalidationDropsPendingWrites() throws Exception {
+        final CountingWrite write1 = new CountingWrite();
+        final CountingWrite write2 = new CountingWrite();
+        Assert.assertTrue(impl.enqueue(host, "foo", write1));
+        impl.invalidate(host);
+        Assert.assertTrue(impl.enqueue(host, "bar", write2));
+
+        runJobs();
+        Assert.assertEquals(0, write1.count);
+        Assert.assertEquals(1, write1.discarded);
+        Assert.assertEquals(1, write2.count);
+        Assert.assertEquals(1, impl.getInvalidatedCount());
+        Assert.assertEquals(0, impl.getQueueSize());
+    }
+
+    @Test
+    public void testWriteInProgressCountedUntilDone() throws Exception {
+        final List<Runnable> callbacks = new ArrayList<>();
+        Assert.assertTrue(impl.enqueue(host, "foo", new CacheWriteBehindQueue.Write() {
+
+            @Override
+            public void execute(final Runnable done) {
+                callbacks.add(done);
+            }
+
+            @Override
+            public void discard() {
+            }
+
+        }));
+        runJobs();
+        Assert.assertEquals(1, callbacks.size());
+        Assert.assertEquals(1, impl.getQueueSize());
+
+        callbacks.get(0).run();
+        Assert.assertEquals(0, impl.getQueueSize());
+        callbacks.get(0).run();
+        Assert.assertEquals(0, impl.getQueueSize());
+    }
+
+    @Test
+    public void testCachingExecWritesBehind() throws Exception {
+        final CachingExec exec = new CachingExec(new BasicHttpCache(), CacheConfig.DEFAULT, null, impl);
+        final ExecChain chain = mock(ExecChain.class);
+        when(chain.proceed(any(ClassicHttpRequest.class), any(ExecChain.Scope.class))).thenReturn(
+                HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+        final HttpRoute route = new HttpRoute(host);
+        final ExecRuntime execRuntime = mock(ExecRuntime.class);
+
+        final ClassicHttpRequest request1 = new BasicClassicHttpRequest("GET", "/stuff");
+        final HttpCacheContext context1 = HttpCacheContext.create();
+        final ClassicHttpResponse response1 = exec.execute(request1,
+                new ExecChain.Scope("test", route, request1, execRuntime, context1), chain);
+        Assert.assertEquals(200, response1.getCode());
+        Assert.assertEquals(128, EntityUtils.toByteArray(response1.getEntity()).length);
+        Assert.assertEquals(CacheResponseStatus.CACHE_MISS, context1.getCacheResponseStatus());
+        Assert.assertEquals(1, impl.getQueueSize());
+
+        runJobs();
+
+        final ClassicHttpRequest request2 = new BasicClassicHttpRequest("GET", "/stuff");
+        final HttpCacheContext context2 = HttpCacheContext.create();
+        final ClassicHttpResponse response2 = exec.execute(request2,
+                new ExecChain.Scope("test", route, request2, execRuntime, context2), chain);
+        Assert.assertEquals(128, EntityUtils.toByteArray(response2.getEntity()).length);
+        Assert.assertEquals(CacheResponseStatus.CACHE_HIT, context2.getCacheResponseStatus());
+    }
+
+    @Test
+    public void testCollapsedRequestsWaitForWriteBehind() throws Exception {
+        final CacheConfig config = CacheConfig.custom()
+                .setRequestCollapsingEnabled(true)
+                .build();
+        final CachingExec exec = new CachingExec(new BasicHttpCache(), config, null, impl);
+        final ExecChain chain = mock(ExecChain.class);
+        when(chain.proceed(any(ClassicHttpRequest.class), any(ExecChain.Scope.class))).thenReturn(
+                HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+        final HttpRoute route = new HttpRoute(host);
+
+        final ClassicHttpRequest request = new BasicClassicHttpRequest("GET", "/stuff");
+        exec.execute(request, new ExecChain.Scope("test", route, request, mock(ExecRuntime.class),
+                HttpCacheContext.create()), chain);
+        // The leader has returned but the response is not in the cache yet
+        Assert.assertEquals(1, exec.requestCollapser.getInflightCount());
+
+        runJobs();
+        Assert.assertEquals(0, exec.requestCollapser.getInflightCount());
+    }
+
+    @Test
+    public void testUnsafeRequestDropsPendingWriteBehind() throws Exception {
+        final CachingExec exec = new CachingExec(new BasicHttpCache(), CacheConfig.DEFAULT, null, impl);
+        final ExecChain chain = mock(ExecChain.class);
+        when(chain.proceed(any(ClassicHttpRequest.class), any(ExecChain.Scope.class))).thenReturn(
+                HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+        final HttpRoute route = new HttpRoute(host);
+        final ExecRuntime execRuntime = mock(ExecRuntime.class);
+
+        final ClassicHttpRequest request1 = new BasicClassicHttpRequest("GET", "/stuff");
+        exec.execute(request1, new ExecChain.Scope("test", route, request1, execRuntime,
+                HttpCacheContext.create()), chain);
+        final ClassicHttpRequest request2 = new BasicClassicHttpRequest("POST", "/stuff");
+        exec.execute(request2, new ExecChain.Scope("test", route, request2, execRuntime,
+                HttpCacheContext.create()), chain);
+
+        runJobs();
+        Assert.assertEquals(1, impl.getInvalidatedCount());
+
+        final ClassicHttpRequest request3 = new BasicClassicHttpRequest("GET", "/stuff");
+        final HttpCacheContext context3 = HttpCacheContext.create();
+        exec.execute(request3, new ExecChain.Scope("test", route, request3, execRuntime, context3), chain);
+        Assert.assertEquals(CacheResponseStatus.CACHE_MISS, context3.getCacheResponseStatus());
+    }
+
+}
@@ -32,6 +32,8 @@
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.util.Date;
 import java.util.HashMap;
 
@@ -42,11 +44,16 @@
 import org.apache.hc.core5.http.message.BasicHeader;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 @SuppressWarnings({"boxing","static-access"}) // test code
 public class TestCachedHttpResponseGenerator {
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     private HttpCacheEntry entry;
     private ClassicHttpRequest request;
     private CacheValidityPolicy mockValidityPolicy;
@@ -74,6 +81,27 @@ public void testResponseHasContentLength() throws Exception {
                 .parseInt(length.getValue()));
     }
 
+    @Test
+    public void testFileContentIsNotInlinedOnRequest() throws Exception {
+        final byte[] buf = new byte[] { 1, 2, 3, 4, 5 };
+        final File file = tempFolder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(buf);
+        }
+        final FileResource resource = new FileResource(file);
+        final HttpCacheEntry entry1 = new HttpCacheEntry(new Date(), new Date(), 200,
+                new Header[] { new BasicHeader("Content-Type", "text/plain") }, resource);
+
+        final SimpleHttpResponse response = impl.generateResponse(request, entry1, false);
+
+        Assert.assertNull(response.getBody());
+        Assert.assertEquals("5", response.getFirstHeader("Content-Length").getValue());
+        Assert.assertSame(resource, impl.getDirectContent(request, entry1));
+
+        final SimpleHttpResponse inlined = impl.generateResponse(request, entry1);
+        Assert.assertArrayEquals(buf, inlined.getBodyBytes());
+    }
+
     @Test
     public void testContentLengthIsNotAddedWhenTransferEncodingIsPresent() throws Exception {
 
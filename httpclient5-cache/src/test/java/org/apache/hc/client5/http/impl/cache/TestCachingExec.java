@@ -39,14 +39,25 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.cache.HttpCacheContext;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.classic.ExecChain;
+import org.apache.hc.client5.http.classic.ExecRuntime;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.http.ClassicHttpRequest;
@@ -58,7 +69,9 @@
 import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.HttpVersion;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
 import org.apache.hc.core5.http.message.BasicClassicHttpRequest;
 import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
 import org.easymock.EasyMock;
@@ -66,7 +79,9 @@
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 @SuppressWarnings("boxing") // test code
 public class TestCachingExec extends TestCachingExecChain {
@@ -88,6 +103,9 @@ public class TestCachingExec extends TestCachingExecChain {
     private Date requestDate;
     private Date responseDate;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Override
     @Before
     public void setUp() {
@@ -418,6 +436,110 @@ private void getVariantCacheEntriesReturns(final Map<String,Variant> result) thr
         expect(mockCache.getVariantCacheEntriesWithEtags(host, request)).andReturn(result);
     }
 
+    @Test
+    public void testConcurrentCacheMissesAreCollapsed() throws Exception {
+        final CachingExec cachingExec = new CachingExec(new BasicHttpCache(),
+                CacheConfig.custom().setRequestCollapsingEnabled(true).build());
+        final AtomicInteger backendCalls = new AtomicInteger();
+        final CountDownLatch backendCalled = new CountDownLatch(1);
+        final CountDownLatch backendResponds = new CountDownLatch(1);
+        final ExecChain backend = new ExecChain() {
+
+            @Override
+            public ClassicHttpResponse proceed(
+                    final ClassicHttpRequest request, final ExecChain.Scope scope) throws IOException {
+                backendCalls.incrementAndGet();
+                backendCalled.countDown();
+                try {
+                    backendResponds.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    throw new InterruptedIOException();
+                }
+                final ClassicHttpResponse response = new BasicClassicHttpResponse(HttpStatus.SC_OK, "OK");
+                response.setHeader("Date", DateUtils.formatDate(new Date()));
+                response.setHeader("Cache-Control", "max-age=3600");
+                response.setEntity(new StringEntity("content"));
+                return response;
+            }
+
+        };
+        final ExecRuntime execRuntime = createNiceMock(ExecRuntime.class);
+        replay(execRuntime);
+        final Callable<String> task = new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                final ClassicHttpRequest get = new HttpGet("http://foo.example.com/");
+                final ExecChain.Scope scope = new ExecChain.Scope(
+                        "test", route, get, execRuntime, HttpCacheContext.create());
+                try (final ClassicHttpResponse response = cachingExec.execute(get, scope, backend)) {
+                    return EntityUtils.toString(response.getEntity());
+                }
+            }
+
+        };
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            results.add(executorService.submit(task));
+            Assert.assertTrue(backendCalled.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                results.add(executorService.submit(task));
+            }
+            Thread.sleep(100);
+            backendResponds.countDown();
+            for (final Future<String> result : results) {
+                Assert.assertEquals("content", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        Assert.assertEquals(1, backendCalls.get());
+        Assert.assertEquals(1, cachingExec.getCacheMisses());
+        Assert.assertEquals(3, cachingExec.getCacheHits());
+    }
+
+    @Test
+    public void testStreamedCacheMissHoldsCollapsedRequestsUntilCached() throws Exception {
+        final CacheConfig config = CacheConfig.custom()
+                .setRequestCollapsingEnabled(true)
+                .setMaxObjectSize(16)
+                .setMaxStreamedObjectSize(4096)
+                .build();
+        final CachingExec cachingExec = new CachingExec(new BasicHttpCache(
+                new FileResourceFactory(tempFolder.newFolder()), new BasicHttpCacheStorage(config)), config);
+        final ExecChain backend = new ExecChain() {
+
+            @Override
+            public ClassicHttpResponse proceed(
+                    final ClassicHttpRequest request, final ExecChain.Scope scope) throws IOException {
+                final ClassicHttpResponse response = new BasicClassicHttpResponse(HttpStatus.SC_OK, "OK");
+                response.setHeader("Date", DateUtils.formatDate(new Date()));
+                response.setHeader("Cache-Control", "max-age=3600");
+                response.setEntity(new StringEntity("content longer than the heap limit"));
+                return response;
+            }
+
+        };
+        final ExecRuntime execRuntime = createNiceMock(ExecRuntime.class);
+        replay(execRuntime);
+
+        final ClassicHttpRequest get1 = new HttpGet("http://foo.example.com/");
+        final ClassicHttpResponse response1 = cachingExec.execute(get1, new ExecChain.Scope(
+                "test", route, get1, execRuntime, HttpCacheContext.create()), backend);
+        // The body has not been streamed into the cache yet
+        Assert.assertEquals(1, cachingExec.requestCollapser.getInflightCount());
+        Assert.assertEquals("content longer than the heap limit", EntityUtils.toString(response1.getEntity()));
+        response1.close();
+        Assert.assertEquals(0, cachingExec.requestCollapser.getInflightCount());
+
+        final ClassicHttpRequest get2 = new HttpGet("http://foo.example.com/");
+        final ClassicHttpResponse response2 = cachingExec.execute(get2, new ExecChain.Scope(
+                "test", route, get2, execRuntime, HttpCacheContext.create()), backend);
+        Assert.assertEquals("content longer than the heap limit", EntityUtils.toString(response2.getEntity()));
+        Assert.assertEquals(1, cachingExec.getCacheHits());
+    }
+
     private void cacheInvalidatorWasCalled()  throws IOException {
         mockCache.flushInvalidatedCacheEntriesFor(
                 (HttpHost)anyObject(),
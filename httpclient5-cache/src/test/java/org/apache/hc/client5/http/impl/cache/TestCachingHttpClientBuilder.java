@@ -45,4 +45,12 @@ public void testNullCacheConfig() throws Exception {
         CachingHttpClientBuilder.create().setCacheConfig(null).build();
     }
 
+    @Test
+    public void testMaxCacheSize() throws Exception {
+        final CacheConfig cacheConfig = CacheConfig.custom()
+                .setMaxCacheSize(1024 * 1024)
+                .build();
+        CachingHttpClientBuilder.create().setCacheConfig(cacheConfig).build();
+    }
+
 }
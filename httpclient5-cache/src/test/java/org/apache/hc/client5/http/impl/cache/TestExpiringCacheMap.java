@@ -0,0 +1,105 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link ExpiringCacheMap}. */
+public class TestExpiringCacheMap {
+
+    private static String keyInOtherStripe(final ExpiringCacheMap map, final String key) {
+        for (int i = 0; ; i++) {
+            final String other = "other" + i;
+            map.invalidate(key);
+            final long before = map.getInvalidations(other);
+            map.invalidate(key);
+            if (map.getInvalidations(other) == before) {
+                return other;
+            }
+        }
+    }
+
+    @Test
+    public void testEvictsInPutOrder() {
+        final ExpiringCacheMap map = new ExpiringCacheMap(3, 60000);
+        for (int i = 0; i < 5; i++) {
+            map.put("key" + i, HttpTestUtils.makeCacheEntry());
+        }
+        Assert.assertEquals(3, map.size());
+        Assert.assertNull(map.get("key0"));
+        Assert.assertNull(map.get("key1"));
+        Assert.assertNotNull(map.get("key4"));
+    }
+
+    @Test
+    public void testReplacedEntriesDoNotCountTowardsTheBound() {
+        final ExpiringCacheMap map = new ExpiringCacheMap(3, 60000);
+        map.put("key0", HttpTestUtils.makeCacheEntry());
+        for (int i = 0; i < 1000; i++) {
+            map.put("key1", HttpTestUtils.makeCacheEntry());
+        }
+        map.put("key2", HttpTestUtils.makeCacheEntry());
+        Assert.assertEquals(3, map.size());
+        Assert.assertNotNull(map.get("key0"));
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        final ExpiringCacheMap map = new ExpiringCacheMap(10, 1);
+        map.put("key", HttpTestUtils.makeCacheEntry());
+        Thread.sleep(10);
+        Assert.assertNull(map.get("key"));
+        Assert.assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testPutIfNotInvalidated() {
+        final ExpiringCacheMap map = new ExpiringCacheMap(10, 60000);
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        final long invalidations = map.getInvalidations("key");
+        map.invalidate("key");
+        map.putIfNotInvalidated("key", entry, invalidations);
+        Assert.assertNull(map.get("key"));
+
+        map.putIfNotInvalidated("key", entry, map.getInvalidations("key"));
+        Assert.assertSame(entry, map.get("key"));
+    }
+
+    @Test
+    public void testInvalidationOfOtherKeyDoesNotFence() {
+        final ExpiringCacheMap map = new ExpiringCacheMap(10, 60000);
+        final String other = keyInOtherStripe(map, "key");
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        final long invalidations = map.getInvalidations("key");
+        map.invalidate(other);
+        map.putIfNotInvalidated("key", entry, invalidations);
+        Assert.assertSame(entry, map.get("key"));
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Unit tests for {@link FileResource}. */
+public class TestFileResource {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private byte[] content;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        content = new byte[20000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        file = tempFolder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+    }
+
+    @Test
+    public void testMappedContent() throws Exception {
+        final FileResource resource = new FileResource(file);
+        final ByteBuffer buffer1 = resource.getByteBuffer();
+        Assert.assertTrue(buffer1.isReadOnly());
+        Assert.assertEquals(content.length, buffer1.remaining());
+        final byte[] tmp = new byte[buffer1.remaining()];
+        buffer1.get(tmp);
+        Assert.assertArrayEquals(content, tmp);
+
+        final ByteBuffer buffer2 = resource.getByteBuffer();
+        Assert.assertEquals(0, buffer2.position());
+        Assert.assertEquals(content.length, buffer2.remaining());
+
+        Assert.assertArrayEquals(content, resource.get());
+    }
+
+    @Test(expected = ResourceIOException.class)
+    public void testMappedContentOfDisposedResource() throws Exception {
+        final FileResource resource = new FileResource(file);
+        resource.getByteBuffer();
+        resource.dispose();
+        Assert.assertFalse(file.exists());
+        resource.getByteBuffer();
+    }
+
+    @Test
+    public void testEntityWritesFileContent() throws Exception {
+        final FileResource resource = new FileResource(file);
+        final FileResourceEntity entity = new FileResourceEntity(resource, "application/octet-stream");
+        Assert.assertEquals(content.length, entity.getContentLength());
+        Assert.assertEquals("application/octet-stream", entity.getContentType());
+        Assert.assertTrue(entity.isRepeatable());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        Assert.assertArrayEquals(content, out.toByteArray());
+        Assert.assertArrayEquals(content, EntityUtils.toByteArray(entity));
+    }
+
+    @Test
+    public void testEntityWritesFileContentToFile() throws Exception {
+        final FileResource resource = new FileResource(file);
+        final FileResourceEntity entity = new FileResourceEntity(resource, "application/octet-stream");
+        final File target = tempFolder.newFile();
+        try (final FileOutputStream out = new FileOutputStream(target)) {
+            entity.writeTo(out);
+        }
+        Assert.assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void testEntityFailsOnTruncatedFile() throws Exception {
+        final FileResource resource = new FileResource(file);
+        final FileResourceEntity entity = new FileResourceEntity(resource, "application/octet-stream");
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(content.length / 2);
+        }
+        try {
+            entity.writeTo(new ByteArrayOutputStream());
+            Assert.fail("ResourceIOException expected");
+        } catch (final ResourceIOException expected) {
+        }
+        try (final FileOutputStream out = new FileOutputStream(tempFolder.newFile())) {
+            entity.writeTo(out);
+            Assert.fail("ResourceIOException expected");
+        } catch (final ResourceIOException expected) {
+        }
+    }
+
+    @Test
+    public void testUnmap() throws Exception {
+        final ByteBuffer buffer;
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r");
+             final FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, content.length);
+        }
+        Assert.assertTrue(FileResource.Unmapper.unmap(buffer));
+        Assert.assertFalse(FileResource.Unmapper.unmap(ByteBuffer.allocate(16)));
+    }
+
+    @Test
+    public void testDisposeWhileRetainedKeepsMapping() throws Exception {
+        final FileResource resource = new FileResource(file);
+        Assert.assertTrue(resource.retain());
+        final ByteBuffer buffer = resource.getByteBuffer();
+        resource.dispose();
+        Assert.assertTrue(file.exists());
+        final byte[] tmp = new byte[buffer.remaining()];
+        buffer.get(tmp);
+        Assert.assertArrayEquals(content, tmp);
+        resource.release();
+        Assert.assertFalse(file.exists());
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.client5.http.cache.HttpCacheContext;
+import org.apache.hc.client5.http.classic.ExecChain;
+import org.apache.hc.client5.http.classic.ExecRuntime;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.message.BasicClassicHttpRequest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link InMemoryCacheStatistics}. */
+public class TestInMemoryCacheStatistics {
+
+    private HttpHost host1;
+    private HttpHost host2;
+    private InMemoryCacheStatistics impl;
+
+    @Before
+    public void setUp() {
+        host1 = new HttpHost("foo.example.com", 80);
+        host2 = new HttpHost("bar.example.com", 80);
+        impl = new InMemoryCacheStatistics();
+    }
+
+    @Test
+    public void testResponseCounts() {
+        impl.onResponse(host1, CacheResponseStatus.CACHE_HIT, 100, 1000);
+        impl.onResponse(host1, CacheResponseStatus.CACHE_HIT, 50, 1000);
+        impl.onResponse(host1, CacheResponseStatus.CACHE_MISS, 0, 5000);
+        impl.onResponse(host2, CacheResponseStatus.VALIDATED, 10, 3000);
+
+        final InMemoryCacheStatistics.Snapshot snapshot = impl.getSnapshot();
+        Assert.assertEquals(4, snapshot.getResponseCount());
+        Assert.assertEquals(2, snapshot.getResponseCount(CacheResponseStatus.CACHE_HIT));
+        Assert.assertEquals(1, snapshot.getResponseCount(CacheResponseStatus.CACHE_MISS));
+        Assert.assertEquals(1, snapshot.getResponseCount(CacheResponseStatus.VALIDATED));
+        Assert.assertEquals(0, snapshot.getResponseCount(CacheResponseStatus.FAILURE));
+        Assert.assertEquals(0.75, snapshot.getHitRatio(), 0.001);
+        Assert.assertEquals(160, snapshot.getCachedBytes());
+        Assert.assertEquals(2, snapshot.getResponseTime(CacheResponseStatus.CACHE_HIT).getCount());
+        Assert.assertEquals(5000, snapshot.getResponseTime(CacheResponseStatus.CACHE_MISS).getMax());
+
+        final InMemoryCacheStatistics.HostSnapshot hostSnapshot1 = impl.getHostSnapshot(host1);
+        Assert.assertNotNull(hostSnapshot1);
+        Assert.assertEquals(3, hostSnapshot1.getResponseCount());
+        Assert.assertEquals(150, hostSnapshot1.getCachedBytes());
+        Assert.assertEquals(2.0 / 3.0, hostSnapshot1.getHitRatio(), 0.001);
+        final InMemoryCacheStatistics.HostSnapshot hostSnapshot2 = impl.getHostSnapshot(host2);
+        Assert.assertNotNull(hostSnapshot2);
+        Assert.assertEquals(1, hostSnapshot2.getResponseCount(CacheResponseStatus.VALIDATED));
+        Assert.assertNull(impl.getHostSnapshot(new HttpHost("other.example.com")));
+        Assert.assertEquals(2, impl.getHostSnapshots().size());
+    }
+
+    @Test
+    public void testRevalidationAndStorageCounts() {
+        impl.onRevalidation(host1, true, 100);
+        impl.onRevalidation(host1, false, 200);
+        impl.onRevalidation(host1, true, 300);
+        impl.onStorageGet(10, true);
+        impl.onStorageGet(10, false);
+        impl.onStoragePut(20);
+        impl.onStorageRemove(30);
+        impl.onStorageFailure(40);
+
+        final InMemoryCacheStatistics.Snapshot snapshot = impl.getSnapshot();
+        Assert.assertEquals(3, snapshot.getRevalidationCount());
+        Assert.assertEquals(2, snapshot.getValidatedCount());
+        Assert.assertEquals(2.0 / 3.0, snapshot.getRevalidationSuccessRatio(), 0.001);
+        Assert.assertEquals(300, snapshot.getRevalidationTime().getMax());
+        Assert.assertEquals(2, snapshot.getStorageGetTime().getCount());
+        Assert.assertEquals(1, snapshot.getStorageHitCount());
+        Assert.assertEquals(1, snapshot.getStoragePutTime().getCount());
+        Assert.assertEquals(1, snapshot.getStorageRemoveTime().getCount());
+        Assert.assertEquals(1, snapshot.getStorageFailureCount());
+
+        final InMemoryCacheStatistics.HostSnapshot hostSnapshot = impl.getHostSnapshot(host1);
+        Assert.assertNotNull(hostSnapshot);
+        Assert.assertEquals(3, hostSnapshot.getRevalidationCount());
+        Assert.assertEquals(2, hostSnapshot.getValidatedCount());
+    }
+
+    @Test
+    public void testEmptyRatios() {
+        final InMemoryCacheStatistics.Snapshot snapshot = impl.getSnapshot();
+        Assert.assertEquals(0, snapshot.getResponseCount());
+        Assert.assertEquals(0.0, snapshot.getHitRatio(), 0.0);
+        Assert.assertEquals(0.0, snapshot.getRevalidationSuccessRatio(), 0.0);
+    }
+
+    @Test
+    public void testClear() {
+        impl.onResponse(host1, CacheResponseStatus.CACHE_HIT, 100, 1000);
+        impl.onStorageGet(10, true);
+        impl.clear();
+
+        final InMemoryCacheStatistics.Snapshot snapshot = impl.getSnapshot();
+        Assert.assertEquals(0, snapshot.getResponseCount());
+        Assert.assertEquals(0, snapshot.getCachedBytes());
+        Assert.assertEquals(0, snapshot.getStorageHitCount());
+        Assert.assertNull(impl.getHostSnapshot(host1));
+        Assert.assertTrue(impl.getHostSnapshots().isEmpty());
+    }
+
+    @Test
+    public void testHostCountersAreBounded() {
+        impl = new InMemoryCacheStatistics(1);
+        impl.onResponse(host1, CacheResponseStatus.CACHE_HIT, 100, 1000);
+        impl.onResponse(host2, CacheResponseStatus.CACHE_HIT, 50, 1000);
+        impl.onRevalidation(host2, true, 100);
+        impl.onResponse(host1, CacheResponseStatus.CACHE_MISS, 0, 1000);
+
+        Assert.assertEquals(1, impl.getHostSnapshots().size());
+        Assert.assertNull(impl.getHostSnapshot(host2));
+        final InMemoryCacheStatistics.HostSnapshot hostSnapshot = impl.getHostSnapshot(host1);
+        Assert.assertNotNull(hostSnapshot);
+        Assert.assertEquals(2, hostSnapshot.getResponseCount());
+
+        final InMemoryCacheStatistics.Snapshot snapshot = impl.getSnapshot();
+        Assert.assertEquals(3, snapshot.getResponseCount());
+        Assert.assertEquals(150, snapshot.getCachedBytes());
+        Assert.assertEquals(1, snapshot.getValidatedCount());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int n = 0; n < 1000; n++) {
+                        impl.onResponse(host1, CacheResponseStatus.CACHE_HIT, 1, 10);
+                    }
+                }
+
+            });
+        }
+        for (final Thread thread: threads) {
+            thread.start();
+        }
+        for (final Thread thread: threads) {
+            thread.join();
+        }
+        final InMemoryCacheStatistics.HostSnapshot hostSnapshot = impl.getHostSnapshot(host1);
+        Assert.assertNotNull(hostSnapshot);
+        Assert.assertEquals(8000, hostSnapshot.getResponseCount(CacheResponseStatus.CACHE_HIT));
+        Assert.assertEquals(8000, hostSnapshot.getCachedBytes());
+        Assert.assertEquals(8000, impl.getSnapshot().getResponseCount());
+    }
+
+    @Test
+    public void testCachingExecReportsResponses() throws Exception {
+        final CachingExec exec = new CachingExec(new BasicHttpCache(), CacheConfig.DEFAULT, impl);
+        final ExecChain chain = mock(ExecChain.class);
+        when(chain.proceed(any(ClassicHttpRequest.class), any(ExecChain.Scope.class))).thenReturn(
+                HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+        final HttpRoute route = new HttpRoute(host1);
+        final ExecRuntime execRuntime = mock(ExecRuntime.class);
+
+        for (int i = 0; i < 2; i++) {
+            final ClassicHttpRequest request = new BasicClassicHttpRequest("GET", "/stuff");
+            final HttpCacheContext context = HttpCacheContext.create();
+            final ClassicHttpResponse response = exec.execute(request,
+                    new ExecChain.Scope("test", route, request, execRuntime, context), chain);
+            EntityUtils.consume(response.getEntity());
+        }
+
+        final InMemoryCacheStatistics.HostSnapshot hostSnapshot = impl.getHostSnapshot(host1);
+        Assert.assertNotNull(hostSnapshot);
+        Assert.assertEquals(1, hostSnapshot.getResponseCount(CacheResponseStatus.CACHE_MISS));
+        Assert.assertEquals(1, hostSnapshot.getResponseCount(CacheResponseStatus.CACHE_HIT));
+        Assert.assertEquals(128, hostSnapshot.getCachedBytes());
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.util.Arrays;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheListener;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link InstrumentedHttpCacheStorage}. */
+public class TestInstrumentedHttpCacheStorage {
+
+    private HttpCacheListener listener;
+    private InstrumentedHttpCacheStorage impl;
+
+    @Before
+    public void setUp() {
+        listener = mock(HttpCacheListener.class);
+        impl = new InstrumentedHttpCacheStorage(new SimpleHttpCacheStorage(), listener);
+    }
+
+    @Test
+    public void testReportsOperations() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry);
+        Assert.assertSame(entry, impl.getEntry("foo"));
+        Assert.assertNull(impl.getEntry("bar"));
+        impl.updateEntry("foo", new HttpCacheCASOperation() {
+
+            @Override
+            public HttpCacheEntry execute(final HttpCacheEntry existing) {
+                return existing;
+            }
+
+        });
+        Assert.assertEquals(1, impl.getEntries(Arrays.asList("foo", "bar")).size());
+        impl.removeEntry("foo");
+
+        verify(listener, times(2)).onStoragePut(anyLong());
+        verify(listener, times(2)).onStorageGet(anyLong(), eq(true));
+        verify(listener).onStorageGet(anyLong(), eq(false));
+        verify(listener).onStorageRemove(anyLong());
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void testReportsFailures() throws Exception {
+        final HttpCacheStorage storage = mock(HttpCacheStorage.class);
+        doThrow(new ResourceIOException("Oops")).when(storage).getEntry("foo");
+        impl = new InstrumentedHttpCacheStorage(storage, listener);
+        try {
+            impl.getEntry("foo");
+            Assert.fail("ResourceIOException expected");
+        } catch (final ResourceIOException expected) {
+        }
+        verify(listener).onStorageFailure(anyLong());
+        verifyNoMoreInteractions(listener);
+    }
+
+}
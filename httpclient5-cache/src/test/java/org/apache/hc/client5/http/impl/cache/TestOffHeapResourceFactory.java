@@ -0,0 +1,228 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.function.Callback;
+import org.apache.hc.core5.http.Header;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link OffHeapResourceFactory}. */
+public class TestOffHeapResourceFactory {
+
+    private static final int SLAB_SIZE = 4096;
+
+    private OffHeapResourceFactory impl;
+
+    @Before
+    public void setUp() {
+        impl = new OffHeapResourceFactory(4 * SLAB_SIZE, SLAB_SIZE);
+    }
+
+    private static byte[] createContent(final int len) {
+        final byte[] content = new byte[len];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+
+    @Test
+    public void testContentSpanningSeveralChunks() throws Exception {
+        final byte[] content = createContent(2 * SLAB_SIZE + 300);
+        final Resource resource = impl.generate("id", content);
+        Assert.assertTrue(resource instanceof OffHeapResource);
+        Assert.assertEquals(content.length, resource.length());
+        Assert.assertArrayEquals(content, resource.get());
+        Assert.assertEquals(2 * SLAB_SIZE + 512, impl.getUsedSize());
+        Assert.assertEquals(3 * SLAB_SIZE, impl.getAllocatedSize());
+    }
+
+    @Test
+    public void testEmptyContent() throws Exception {
+        final Resource resource = impl.generate("id", new byte[0]);
+        Assert.assertEquals(0, resource.length());
+        Assert.assertArrayEquals(new byte[0], resource.get());
+        Assert.assertEquals(0, impl.getAllocatedSize());
+    }
+
+    @Test
+    public void testChunksReusedAfterRelease() throws Exception {
+        final OffHeapResource resource1 = (OffHeapResource) impl.generate("id", createContent(1000));
+        Assert.assertTrue(resource1.retain());
+        Assert.assertEquals(2, resource1.refCount());
+        resource1.dispose();
+        Assert.assertEquals(1024, impl.getUsedSize());
+        resource1.dispose();
+        Assert.assertEquals(0, resource1.refCount());
+        Assert.assertEquals(0, impl.getUsedSize());
+        Assert.assertFalse(resource1.retain());
+        try {
+            resource1.get();
+            Assert.fail("ResourceIOException expected");
+        } catch (final ResourceIOException expected) {
+        }
+
+        final byte[] content = createContent(900);
+        final Resource resource2 = impl.generate("id", content);
+        Assert.assertArrayEquals(content, resource2.get());
+        Assert.assertEquals(SLAB_SIZE, impl.getAllocatedSize());
+    }
+
+    @Test
+    public void testBudgetExhausted() throws Exception {
+        impl.generate("id", createContent(4 * SLAB_SIZE));
+        try {
+            impl.generate("id", createContent(10));
+            Assert.fail("ResourceIOException expected");
+        } catch (final ResourceIOException expected) {
+        }
+        Assert.assertEquals(4 * SLAB_SIZE, impl.getAllocatedSize());
+    }
+
+    @Test
+    public void testBudgetReclaimedFromManagedStorage() throws Exception {
+        final ManagedHttpCacheStorage storage = new ManagedHttpCacheStorage(CacheConfig.DEFAULT);
+        impl.setReclaimCallback(new Callback<Long>() {
+
+            @Override
+            public void execute(final Long size) {
+                storage.reclaim(size);
+            }
+
+        });
+        for (int i = 0; i < 4; i++) {
+            final Resource resource = impl.generate("id", createContent(SLAB_SIZE));
+            storage.putEntry("key" + i, new HttpCacheEntry(new Date(), new Date(), 200, new Header[0], resource));
+        }
+        Assert.assertEquals(4 * SLAB_SIZE, impl.getUsedSize());
+        storage.getEntry("key0");
+
+        final byte[] content = createContent(SLAB_SIZE);
+        final Resource resource = impl.generate("id", content);
+        Assert.assertArrayEquals(content, resource.get());
+
+        // least recently used entry evicted
+        Assert.assertNotNull(storage.getEntry("key0"));
+        Assert.assertNull(storage.getEntry("key1"));
+        Assert.assertNotNull(storage.getEntry("key2"));
+        Assert.assertEquals(4 * SLAB_SIZE, impl.getUsedSize());
+    }
+
+    @Test
+    public void testSerializedAsHeapResource() throws Exception {
+        final byte[] content = createContent(5000);
+        final Resource resource = impl.generate("id", content);
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(resource);
+        }
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            final Resource copy = (Resource) in.readObject();
+            Assert.assertTrue(copy instanceof HeapResource);
+            Assert.assertArrayEquals(content, copy.get());
+        }
+    }
+
+    @Test
+    public void testEmptySlabsReturnedToBudget() throws Exception {
+        final List<Resource> small = new ArrayList<>();
+        for (int i = 0; i < 4 * SLAB_SIZE / OffHeapResourceFactory.MIN_CHUNK_SIZE; i++) {
+            small.add(impl.generate("id", createContent(200)));
+        }
+        Assert.assertEquals(4 * SLAB_SIZE, impl.getAllocatedSize());
+        for (final Resource resource: small) {
+            resource.dispose();
+        }
+        // One empty slab is kept for the size class
+        Assert.assertEquals(SLAB_SIZE, impl.getAllocatedSize());
+        Assert.assertEquals(0, impl.getUsedSize());
+
+        final byte[] content = createContent(4 * SLAB_SIZE);
+        final Resource large = impl.generate("id", content);
+        Assert.assertArrayEquals(content, large.get());
+        Assert.assertEquals(4 * SLAB_SIZE, impl.getAllocatedSize());
+    }
+
+    @Test
+    public void testPartiallyUsedSlabKept() throws Exception {
+        final Resource resource1 = impl.generate("id", createContent(200));
+        final Resource resource2 = impl.generate("id", createContent(200));
+        Assert.assertEquals(SLAB_SIZE, impl.getAllocatedSize());
+        resource1.dispose();
+        Assert.assertEquals(SLAB_SIZE, impl.getAllocatedSize());
+        final Resource resource3 = impl.generate("id", createContent(200));
+        Assert.assertEquals(SLAB_SIZE, impl.getAllocatedSize());
+        Assert.assertEquals(2 * OffHeapResourceFactory.MIN_CHUNK_SIZE, impl.getUsedSize());
+        resource2.dispose();
+        resource3.dispose();
+        Assert.assertEquals(0, impl.getUsedSize());
+    }
+
+    @Test
+    public void testByteBuffers() throws Exception {
+        final byte[] content = createContent(SLAB_SIZE + 100);
+        final OffHeapResource resource = (OffHeapResource) impl.generate("id", content);
+        final ByteBuffer[] buffers = resource.getByteBuffers();
+        Assert.assertEquals(2, buffers.length);
+        final ByteBuffer all = ByteBuffer.allocate(content.length);
+        for (final ByteBuffer buffer: buffers) {
+            Assert.assertTrue(buffer.isReadOnly());
+            all.put(buffer);
+        }
+        Assert.assertArrayEquals(content, all.array());
+        // Views are independent of each other
+        Assert.assertEquals(SLAB_SIZE, resource.getByteBuffers()[0].remaining());
+
+        resource.dispose();
+        try {
+            resource.getByteBuffers();
+            Assert.fail("ResourceIOException expected");
+        } catch (final ResourceIOException expected) {
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSlabSizeMustBePowerOfTwo() {
+        new OffHeapResourceFactory(1024 * 1024, 3000);
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link RequestCollapser}. */
+public class TestRequestCollapser {
+
+    private static Runnable counter(final AtomicInteger count) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+
+        };
+    }
+
+    @Test
+    public void testOnlyFirstCallerLeads() throws Exception {
+        final RequestCollapser collapser = new RequestCollapser(TimeValue.ofSeconds(5));
+        final RequestCollapser.Inflight inflight = collapser.lead("foo");
+        Assert.assertNotNull(inflight);
+        Assert.assertNull(collapser.lead("foo"));
+        Assert.assertNotNull(collapser.lead("bar"));
+        inflight.release();
+        Assert.assertNotNull(collapser.lead("foo"));
+    }
+
+    @Test
+    public void testAwaitReturnsWhenReleased() throws Exception {
+        final RequestCollapser collapser = new RequestCollapser(TimeValue.ofSeconds(5));
+        final RequestCollapser.Inflight inflight = collapser.lead("foo");
+        final AtomicBoolean released = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        final Thread follower = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    released.set(collapser.await("foo"));
+                } catch (final Exception ignore) {
+                }
+                done.countDown();
+            }
+
+        });
+        follower.start();
+        Thread.sleep(50);
+        inflight.release();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(released.get());
+        Assert.assertEquals(0, collapser.getInflightCount());
+    }
+
+    @Test
+    public void testAwaitTimesOut() throws Exception {
+        final RequestCollapser collapser = new RequestCollapser(TimeValue.ofMillis(50));
+        Assert.assertNotNull(collapser.lead("foo"));
+        Assert.assertFalse(collapser.await("foo"));
+        Assert.assertTrue(collapser.await("bar"));
+    }
+
+    @Test
+    public void testSubscriberRunsImmediatelyWithoutRequestInFlight() throws Exception {
+        final RequestCollapser collapser = new RequestCollapser(TimeValue.ofSeconds(5));
+        final AtomicInteger count = new AtomicInteger();
+        collapser.subscribe("foo", counter(count), null);
+        Assert.assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testSubscribersRunOnceOnRelease() throws Exception {
+        final RequestCollapser collapser = new RequestCollapser(TimeValue.ofSeconds(5));
+        final RequestCollapser.Inflight inflight = collapser.lead("foo");
+        final AtomicInteger count = new AtomicInteger();
+        collapser.subscribe("foo", counter(count), null);
+        collapser.subscribe("foo", counter(count), null);
+        Assert.assertEquals(0, count.get());
+        inflight.release();
+        inflight.release();
+        Assert.assertEquals(2, count.get());
+    }
+
+    @Test
+    public void testHoldDefersReleaseUntilRun() throws Exception {
+        final RequestCollapser collapser = new RequestCollapser(TimeValue.ofSeconds(5));
+        Assert.assertNull(collapser.hold("foo"));
+        final RequestCollapser.Inflight inflight = collapser.lead("foo");
+        final Runnable hold = collapser.hold("foo");
+        Assert.assertNotNull(hold);
+        final AtomicInteger count = new AtomicInteger();
+        collapser.subscribe("foo", counter(count), null);
+
+        inflight.release();
+        Assert.assertEquals(0, count.get());
+        Assert.assertEquals(1, collapser.getInflightCount());
+        Assert.assertNull(collapser.lead("foo"));
+
+        hold.run();
+        hold.run();
+        Assert.assertEquals(1, count.get());
+        Assert.assertEquals(0, collapser.getInflightCount());
+        Assert.assertNull(collapser.hold("foo"));
+    }
+
+    @Test
+    public void testSubscriberTimesOut() throws Exception {
+        final RequestCollapser collapser = new RequestCollapser(TimeValue.ofMillis(50));
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final RequestCollapser.Inflight inflight = collapser.lead("foo");
+            final AtomicInteger count = new AtomicInteger();
+            final CountDownLatch done = new CountDownLatch(1);
+            collapser.subscribe("foo", new Runnable() {
+
+                @Override
+                public void run() {
+                    count.incrementAndGet();
+                    done.countDown();
+                }
+
+            }, scheduler);
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            inflight.release();
+            Assert.assertEquals(1, count.get());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExpiredLeaderIsSuperseded() throws Exception {
+        final RequestCollapser collapser = new RequestCollapser(TimeValue.ofMillis(10));
+        final RequestCollapser.Inflight stale = collapser.lead("foo");
+        Thread.sleep(50);
+        final RequestCollapser.Inflight inflight = collapser.lead("foo");
+        Assert.assertNotNull(inflight);
+        stale.release();
+        Assert.assertEquals(1, collapser.getInflightCount());
+        inflight.release();
+        Assert.assertEquals(0, collapser.getInflightCount());
+    }
+
+}
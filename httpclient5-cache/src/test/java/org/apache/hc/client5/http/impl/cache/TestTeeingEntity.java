@@ -0,0 +1,129 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceSink;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for {@link TeeingEntity}. */
+public class TestTeeingEntity {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File cacheDir;
+    private FileResourceFactory resourceFactory;
+    private FutureCallback<Resource> callback;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        cacheDir = tempFolder.newFolder();
+        resourceFactory = new FileResourceFactory(cacheDir);
+        callback = mock(FutureCallback.class);
+    }
+
+    private static InputStreamEntity createEntity(final byte[] content) {
+        return new InputStreamEntity(new ByteArrayInputStream(content), -1, ContentType.APPLICATION_OCTET_STREAM);
+    }
+
+    private static byte[] createContent(final int len) {
+        final byte[] content = new byte[len];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+
+    @Test
+    public void testContentCommittedAtEndOfStream() throws Exception {
+        final byte[] content = createContent(10000);
+        final ResourceSink sink = resourceFactory.createSink("http://foo/bar");
+        final TeeingEntity entity = new TeeingEntity(createEntity(content), sink, 100000, callback);
+        Assert.assertFalse(entity.isRepeatable());
+        Assert.assertTrue(entity.isStreaming());
+
+        Assert.assertArrayEquals(content, EntityUtils.toByteArray(entity));
+
+        final ArgumentCaptor<Resource> captor = ArgumentCaptor.forClass(Resource.class);
+        verify(callback).completed(captor.capture());
+        final Resource resource = captor.getValue();
+        Assert.assertEquals(content.length, resource.length());
+        Assert.assertArrayEquals(content, resource.get());
+        resource.dispose();
+        Assert.assertEquals(0, cacheDir.list().length);
+    }
+
+    @Test
+    public void testContentAbortedWhenClosedEarly() throws Exception {
+        final byte[] content = createContent(10000);
+        final ResourceSink sink = resourceFactory.createSink("http://foo/bar");
+        final TeeingEntity entity = new TeeingEntity(createEntity(content), sink, 100000, callback);
+
+        final InputStream instream = entity.getContent();
+        Assert.assertEquals(1000, instream.read(new byte[1000]));
+        entity.close();
+
+        verify(callback).cancelled();
+        verify(callback, never()).completed(any(Resource.class));
+        Assert.assertEquals(0, cacheDir.list().length);
+    }
+
+    @Test
+    public void testContentAbortedWhenLimitExceeded() throws Exception {
+        final byte[] content = createContent(10000);
+        final ResourceSink sink = resourceFactory.createSink("http://foo/bar");
+        final TeeingEntity entity = new TeeingEntity(createEntity(content), sink, 5000, callback);
+
+        Assert.assertArrayEquals(content, EntityUtils.toByteArray(entity));
+
+        verify(callback).cancelled();
+        verify(callback, never()).completed(any(Resource.class));
+        Assert.assertEquals(0, cacheDir.list().length);
+    }
+
+}
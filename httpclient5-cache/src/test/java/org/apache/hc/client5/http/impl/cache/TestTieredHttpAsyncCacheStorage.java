@@ -0,0 +1,118 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.hc.client5.http.cache.HttpAsyncCacheStorage;
+import org.apache.hc.client5.http.cache.HttpAsyncCacheStorageAdaptor;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for {@link TieredHttpAsyncCacheStorage}. */
+@SuppressWarnings("unchecked")
+public class TestTieredHttpAsyncCacheStorage {
+
+    private SimpleHttpCacheStorage l2;
+    private TieredHttpAsyncCacheStorage impl;
+
+    @Before
+    public void setUp() {
+        l2 = new SimpleHttpCacheStorage();
+        impl = new TieredHttpAsyncCacheStorage(new HttpAsyncCacheStorageAdaptor(l2), 10, TimeValue.ofSeconds(60));
+    }
+
+    @Test
+    public void testReadThrough() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        l2.putEntry("foo", entry);
+
+        final FutureCallback<HttpCacheEntry> callback1 = mock(FutureCallback.class);
+        impl.getEntry("foo", callback1);
+        verify(callback1).completed(entry);
+        l2.removeEntry("foo");
+        final FutureCallback<HttpCacheEntry> callback2 = mock(FutureCallback.class);
+        impl.getEntry("foo", callback2);
+        verify(callback2).completed(entry);
+
+        Assert.assertEquals(1, impl.getL1HitCount());
+        Assert.assertEquals(1, impl.getL2HitCount());
+    }
+
+    @Test
+    public void testWriteThroughAndInvalidation() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        final FutureCallback<Boolean> callback1 = mock(FutureCallback.class);
+        impl.putEntry("foo", entry, callback1);
+        verify(callback1).completed(Boolean.TRUE);
+        Assert.assertSame(entry, l2.getEntry("foo"));
+        Assert.assertEquals(1, impl.getL1Size());
+
+        final FutureCallback<Boolean> callback2 = mock(FutureCallback.class);
+        impl.removeEntry("foo", callback2);
+        verify(callback2).completed(Boolean.TRUE);
+        Assert.assertNull(l2.getEntry("foo"));
+        Assert.assertEquals(0, impl.getL1Size());
+    }
+
+    @Test
+    public void testWriteBehindDoesNotAwaitL2() throws Exception {
+        final HttpAsyncCacheStorage remote = mock(HttpAsyncCacheStorage.class);
+        when(remote.putEntry(eq("foo"), any(HttpCacheEntry.class), any(FutureCallback.class)))
+                .thenReturn(mock(Cancellable.class));
+        impl = new TieredHttpAsyncCacheStorage(remote, 10, TimeValue.ofSeconds(60), true);
+
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        final FutureCallback<Boolean> callback = mock(FutureCallback.class);
+        impl.putEntry("foo", entry, callback);
+        verify(callback).completed(Boolean.TRUE);
+
+        final FutureCallback<HttpCacheEntry> getCallback = mock(FutureCallback.class);
+        impl.getEntry("foo", getCallback);
+        verify(getCallback).completed(entry);
+        verify(remote, never()).getEntry(eq("foo"), any(FutureCallback.class));
+
+        // failure of the L2 write invalidates the L1 entry
+        final ArgumentCaptor<FutureCallback> captor = ArgumentCaptor.forClass(FutureCallback.class);
+        verify(remote).putEntry(eq("foo"), eq(entry), captor.capture());
+        captor.getValue().failed(new Exception("Oppsie"));
+        Assert.assertEquals(0, impl.getL1Size());
+    }
+
+}
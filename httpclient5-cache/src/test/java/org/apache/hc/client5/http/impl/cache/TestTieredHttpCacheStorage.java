@@ -0,0 +1,170 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link TieredHttpCacheStorage}. */
+public class TestTieredHttpCacheStorage {
+
+    private SimpleHttpCacheStorage l2;
+    private TieredHttpCacheStorage impl;
+
+    @Before
+    public void setUp() {
+        l2 = new SimpleHttpCacheStorage();
+        impl = new TieredHttpCacheStorage(l2, 10, TimeValue.ofSeconds(60));
+    }
+
+    @Test
+    public void testReadThrough() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        l2.putEntry("foo", entry);
+
+        Assert.assertSame(entry, impl.getEntry("foo"));
+        Assert.assertEquals(1, impl.getL2HitCount());
+        l2.removeEntry("foo");
+        Assert.assertSame(entry, impl.getEntry("foo"));
+        Assert.assertEquals(1, impl.getL1HitCount());
+        Assert.assertNull(impl.getEntry("bar"));
+        Assert.assertEquals(1, impl.getMissCount());
+    }
+
+    @Test
+    public void testL1EntriesExpire() throws Exception {
+        impl = new TieredHttpCacheStorage(l2, 10, TimeValue.ofMillis(1));
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry1);
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        l2.putEntry("foo", entry2);
+        Thread.sleep(10);
+
+        Assert.assertSame(entry2, impl.getEntry("foo"));
+        Assert.assertEquals(0, impl.getL1HitCount());
+        Assert.assertEquals(1, impl.getL2HitCount());
+    }
+
+    @Test
+    public void testL1IsBounded() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            impl.putEntry("key" + i, HttpTestUtils.makeCacheEntry());
+        }
+        Assert.assertEquals(10, impl.getL1Size());
+        Assert.assertEquals(20, l2.map.size());
+    }
+
+    @Test
+    public void testWriteThrough() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry);
+        Assert.assertSame(entry, l2.getEntry("foo"));
+        Assert.assertSame(entry, impl.getEntry("foo"));
+        Assert.assertEquals(1, impl.getL1HitCount());
+    }
+
+    @Test
+    public void testWriteBehind() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        impl = new TieredHttpCacheStorage(l2, 10, TimeValue.ofSeconds(60), new Executor() {
+
+            @Override
+            public void execute(final Runnable command) {
+                tasks.add(command);
+            }
+
+        });
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry);
+        Assert.assertNull(l2.getEntry("foo"));
+        Assert.assertSame(entry, impl.getEntry("foo"));
+        impl.removeEntry("foo");
+        Assert.assertNull(impl.getEntry("foo"));
+
+        Assert.assertEquals(2, tasks.size());
+        tasks.get(0).run();
+        Assert.assertSame(entry, l2.getEntry("foo"));
+        tasks.get(1).run();
+        Assert.assertNull(l2.getEntry("foo"));
+    }
+
+    @Test
+    public void testRemoveInvalidatesL1() throws Exception {
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry());
+        impl.removeEntry("foo");
+        Assert.assertNull(l2.getEntry("foo"));
+        Assert.assertNull(impl.getEntry("foo"));
+        Assert.assertEquals(0, impl.getL1HitCount());
+    }
+
+    @Test
+    public void testUpdateInvalidatesL1() throws Exception {
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry());
+        final HttpCacheEntry updated = HttpTestUtils.makeCacheEntry();
+        impl.updateEntry("foo", new HttpCacheCASOperation() {
+
+            @Override
+            public HttpCacheEntry execute(final HttpCacheEntry existing) throws ResourceIOException {
+                return updated;
+            }
+
+        });
+        Assert.assertSame(updated, impl.getEntry("foo"));
+        Assert.assertEquals(0, impl.getL1HitCount());
+        Assert.assertEquals(1, impl.getL2HitCount());
+    }
+
+    @Test
+    public void testGetEntries() throws Exception {
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry1);
+        l2.putEntry("bar", entry2);
+
+        final Map<String, HttpCacheEntry> entries = impl.getEntries(Arrays.asList("foo", "bar", "baz"));
+        Assert.assertEquals(2, entries.size());
+        Assert.assertSame(entry1, entries.get("foo"));
+        Assert.assertSame(entry2, entries.get("bar"));
+        Assert.assertEquals(1, impl.getL1HitCount());
+        Assert.assertEquals(1, impl.getL2HitCount());
+        Assert.assertEquals(1, impl.getMissCount());
+        Assert.assertEquals(2, impl.getL1Size());
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link TinyLfuHttpCacheStorage}. */
+public class TestTinyLfuHttpCacheStorage {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        final TinyLfuHttpCacheStorage storage = new TinyLfuHttpCacheStorage(64 * 1024, 100);
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("foo", entry);
+        Assert.assertSame(entry, storage.getEntry("foo"));
+        Assert.assertNull(storage.getEntry("bar"));
+        Assert.assertEquals(TinyLfuHttpCacheStorage.weigh("foo", entry), storage.getWeightedSize());
+
+        storage.removeEntry("foo");
+        Assert.assertNull(storage.getEntry("foo"));
+        Assert.assertEquals(0, storage.size());
+        Assert.assertEquals(0, storage.getWeightedSize());
+    }
+
+    @Test
+    public void testWeightIncludesBodyAndHeaders() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry(new byte[1000]);
+        final long weight = TinyLfuHttpCacheStorage.weigh("key", entry);
+        Assert.assertTrue(weight > 1000 + "key".length());
+    }
+
+    @Test
+    public void testReplaceAdjustsWeightedSize() throws Exception {
+        final TinyLfuHttpCacheStorage storage = new TinyLfuHttpCacheStorage(64 * 1024, 100);
+        storage.putEntry("foo", HttpTestUtils.makeCacheEntry(new byte[100]));
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry(new byte[2000]);
+        storage.putEntry("foo", entry);
+        Assert.assertEquals(1, storage.size());
+        Assert.assertEquals(TinyLfuHttpCacheStorage.weigh("foo", entry), storage.getWeightedSize());
+    }
+
+    @Test
+    public void testWeightedSizeStaysWithinMaximum() throws Exception {
+        final TinyLfuHttpCacheStorage storage = new TinyLfuHttpCacheStorage(20 * 1024, 16);
+        for (int i = 0; i < 500; i++) {
+            storage.putEntry("key" + i, HttpTestUtils.makeCacheEntry(new byte[100 + (i % 7) * 100]));
+            Assert.assertTrue(storage.getWeightedSize() <= storage.getMaximumSize());
+        }
+        Assert.assertTrue(storage.size() > 0);
+        Assert.assertTrue(storage.size() < 500);
+    }
+
+    @Test
+    public void testOversizedEntryIsNotStored() throws Exception {
+        final TinyLfuHttpCacheStorage storage = new TinyLfuHttpCacheStorage(1024, 16);
+        storage.putEntry("foo", HttpTestUtils.makeCacheEntry(new byte[100]));
+        storage.putEntry("foo", HttpTestUtils.makeCacheEntry(new byte[2048]));
+        Assert.assertNull(storage.getEntry("foo"));
+        Assert.assertEquals(0, storage.getWeightedSize());
+    }
+
+    @Test
+    public void testFrequentlyUsedEntriesSurviveScan() throws Exception {
+        final TinyLfuHttpCacheStorage storage = new TinyLfuHttpCacheStorage(50 * 1024, 64);
+        for (int i = 0; i < 10; i++) {
+            storage.putEntry("hot" + i, HttpTestUtils.makeCacheEntry(new byte[1000]));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 10; i++) {
+                Assert.assertNotNull(storage.getEntry("hot" + i));
+            }
+        }
+        storage.cleanUp();
+        for (int i = 0; i < 1000; i++) {
+            storage.putEntry("cold" + i, HttpTestUtils.makeCacheEntry(new byte[1000]));
+        }
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNotNull("hot" + i, storage.getEntry("hot" + i));
+        }
+        Assert.assertTrue(storage.getWeightedSize() <= storage.getMaximumSize());
+    }
+
+    @Test
+    public void testUpdateEntry() throws Exception {
+        final TinyLfuHttpCacheStorage storage = new TinyLfuHttpCacheStorage(64 * 1024, 100);
+        final HttpCacheEntry original = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry updated = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("foo", original);
+        storage.updateEntry("foo", new HttpCacheCASOperation() {
+
+            @Override
+            public HttpCacheEntry execute(final HttpCacheEntry existing) throws ResourceIOException {
+                Assert.assertSame(original, existing);
+                return updated;
+            }
+
+        });
+        Assert.assertSame(updated, storage.getEntry("foo"));
+        Assert.assertEquals(1, storage.size());
+    }
+
+    @Test
+    public void testGetEntries() throws Exception {
+        final TinyLfuHttpCacheStorage storage = new TinyLfuHttpCacheStorage(64 * 1024, 100);
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("foo", entry1);
+        storage.putEntry("bar", entry2);
+        final Map<String, HttpCacheEntry> entries = storage.getEntries(Arrays.asList("foo", "bar", "baz"));
+        Assert.assertEquals(2, entries.size());
+        Assert.assertSame(entry1, entries.get("foo"));
+        Assert.assertSame(entry2, entries.get("bar"));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final TinyLfuHttpCacheStorage storage = new TinyLfuHttpCacheStorage(32 * 1024, 64);
+        final Thread[] threads = new Thread[4];
+        final Throwable[] failures = new Throwable[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            final String key = "key" + ((i * 31 + id) % 100);
+                            if (storage.getEntry(key) == null) {
+                                storage.putEntry(key, HttpTestUtils.makeCacheEntry(new byte[500]));
+                            }
+                            if (i % 50 == 0) {
+                                storage.removeEntry(key);
+                            }
+                        }
+                    } catch (final Throwable ex) {
+                        failures[id] = ex;
+                    }
+                }
+
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        for (final Throwable failure : failures) {
+            Assert.assertNull(failure);
+        }
+        storage.cleanUp();
+        Assert.assertTrue(storage.getWeightedSize() <= storage.getMaximumSize());
+    }
+
+}
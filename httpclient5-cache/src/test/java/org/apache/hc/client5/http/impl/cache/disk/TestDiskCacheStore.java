@@ -0,0 +1,231 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache.disk;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Unit tests for {@link DiskCacheStore}. */
+public class TestDiskCacheStore {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static byte[] bytes(final String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(final DiskCacheStore.Record record) {
+        return record != null ? new String(record.getValue(), StandardCharsets.UTF_8) : null;
+    }
+
+    private DiskCacheStore open(final File dir) throws Exception {
+        return new DiskCacheStore(dir, 1024 * 1024, 4096, null);
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        try (final DiskCacheStore store = open(tmp.getRoot())) {
+            store.put("foo", bytes("bar"));
+            Assert.assertEquals("bar", string(store.get("foo")));
+            store.put("foo", bytes("baz"));
+            Assert.assertEquals("baz", string(store.get("foo")));
+            Assert.assertTrue(store.remove("foo"));
+            Assert.assertFalse(store.remove("foo"));
+            Assert.assertNull(store.get("foo"));
+            Assert.assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    public void testReplaceRequiresCurrentVersion() throws Exception {
+        try (final DiskCacheStore store = open(tmp.getRoot())) {
+            Assert.assertFalse(store.replace("foo", 1, bytes("bar")));
+            store.put("foo", bytes("bar"));
+            final DiskCacheStore.Record record = store.get("foo");
+            Assert.assertTrue(store.replace("foo", record.getVersion(), bytes("baz")));
+            Assert.assertFalse(store.replace("foo", record.getVersion(), bytes("qux")));
+            Assert.assertEquals("baz", string(store.get("foo")));
+        }
+    }
+
+    @Test
+    public void testReopenFromCheckpoint() throws Exception {
+        final File dir = tmp.getRoot();
+        try (final DiskCacheStore store = open(dir)) {
+            for (int i = 0; i < 100; i++) {
+                store.put("key" + i, bytes("value" + i));
+            }
+            store.remove("key0");
+        }
+        Assert.assertTrue(new File(dir, DiskCacheStore.CHECKPOINT_FILE).isFile());
+        try (final DiskCacheStore store = open(dir)) {
+            Assert.assertEquals(99, store.size());
+            Assert.assertNull(store.get("key0"));
+            Assert.assertEquals("value42", string(store.get("key42")));
+            store.put("key100", bytes("value100"));
+            Assert.assertEquals("value100", string(store.get("key100")));
+        }
+    }
+
+    @Test
+    public void testReplayRecordsAfterCheckpoint() throws Exception {
+        final File dir = tmp.getRoot();
+        final DiskCacheStore store = open(dir);
+        store.put("foo", bytes("1"));
+        store.put("bar", bytes("2"));
+        store.checkpoint();
+        store.put("foo", bytes("3"));
+        store.remove("bar");
+        store.put("baz", bytes("4"));
+        // Simulate a crash: no checkpoint on close
+        final File checkpoint = new File(dir, DiskCacheStore.CHECKPOINT_FILE);
+        final byte[] saved = java.nio.file.Files.readAllBytes(checkpoint.toPath());
+        store.close();
+        java.nio.file.Files.write(checkpoint.toPath(), saved);
+
+        try (final DiskCacheStore reopened = open(dir)) {
+            Assert.assertEquals("3", string(reopened.get("foo")));
+            Assert.assertNull(reopened.get("bar"));
+            Assert.assertEquals("4", string(reopened.get("baz")));
+        }
+    }
+
+    @Test
+    public void testRebuildWithoutCheckpointTruncatesTornTail() throws Exception {
+        final File dir = tmp.getRoot();
+        try (final DiskCacheStore store = open(dir)) {
+            store.put("foo", bytes("bar"));
+            store.put("baz", bytes("qux"));
+            store.remove("baz");
+        }
+        Assert.assertTrue(new File(dir, DiskCacheStore.CHECKPOINT_FILE).delete());
+        final File segment = new File(dir, DiskCacheStore.SEGMENT_PREFIX + "0" + DiskCacheStore.SEGMENT_SUFFIX);
+        final long length = segment.length();
+        try (final RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(length);
+            raf.write(new byte[] {0x48, 0x43, 0x4c, 0x52, 1, 0, 0});
+        }
+        try (final DiskCacheStore store = open(dir)) {
+            Assert.assertEquals(1, store.size());
+            Assert.assertEquals("bar", string(store.get("foo")));
+            Assert.assertNull(store.get("baz"));
+            Assert.assertEquals(length, segment.length());
+            store.put("quux", bytes("corge"));
+            Assert.assertEquals("corge", string(store.get("quux")));
+        }
+    }
+
+    @Test
+    public void testCompactionReclaimsSupersededRecords() throws Exception {
+        try (final DiskCacheStore store = open(tmp.getRoot())) {
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < 10; i++) {
+                    store.put("key" + i, new byte[200]);
+                }
+            }
+            final long sizeBefore = store.getDiskSize();
+            final int segmentsBefore = store.getSegmentCount();
+            store.compact();
+            Assert.assertTrue(store.getDiskSize() < sizeBefore);
+            Assert.assertTrue(store.getSegmentCount() < segmentsBefore);
+            Assert.assertEquals(10, store.size());
+            for (int i = 0; i < 10; i++) {
+                Assert.assertNotNull(store.get("key" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsVersions() throws Exception {
+        try (final DiskCacheStore store = open(tmp.getRoot())) {
+            store.put("foo", bytes("bar"));
+            final long version = store.get("foo").getVersion();
+            for (int i = 0; i < 100; i++) {
+                store.put("filler", new byte[200]);
+            }
+            store.compact();
+            Assert.assertTrue(store.replace("foo", version, bytes("baz")));
+        }
+    }
+
+    @Test
+    public void testMaxSizeEvictsOldestSegments() throws Exception {
+        try (final DiskCacheStore store = new DiskCacheStore(tmp.getRoot(), 16 * 1024, 4096, null)) {
+            for (int i = 0; i < 100; i++) {
+                store.put("key" + i, new byte[500]);
+                Assert.assertTrue(store.getDiskSize() <= 16 * 1024);
+            }
+            Assert.assertNull(store.get("key0"));
+            Assert.assertNotNull(store.get("key99"));
+        }
+    }
+
+    @Test
+    public void testReopenWithSmallerMaxSizeEvictsSeveralSegments() throws Exception {
+        final File dir = tmp.getRoot();
+        try (final DiskCacheStore store = open(dir)) {
+            for (int i = 0; i < 100; i++) {
+                store.put("key" + i, new byte[500]);
+            }
+            Assert.assertTrue(store.getSegmentCount() > 4);
+        }
+        try (final DiskCacheStore store = new DiskCacheStore(dir, 8 * 1024, 4096, null)) {
+            Assert.assertTrue(store.getDiskSize() <= 8 * 1024);
+            long onDisk = 0;
+            for (final File file: dir.listFiles()) {
+                if (file.getName().startsWith(DiskCacheStore.SEGMENT_PREFIX)) {
+                    onDisk += file.length();
+                }
+            }
+            Assert.assertEquals(onDisk, store.getDiskSize());
+            Assert.assertNull(store.get("key0"));
+            Assert.assertNull(store.get("key50"));
+            Assert.assertNotNull(store.get("key99"));
+            store.put("key100", new byte[500]);
+            Assert.assertTrue(store.getDiskSize() <= 8 * 1024);
+            Assert.assertNotNull(store.get("key100"));
+        }
+    }
+
+    @Test
+    public void testOversizedValueIsNotStored() throws Exception {
+        try (final DiskCacheStore store = new DiskCacheStore(tmp.getRoot(), 1024, 512, null)) {
+            store.put("foo", bytes("bar"));
+            store.put("foo", new byte[2048]);
+            Assert.assertNull(store.get("foo"));
+        }
+    }
+
+}
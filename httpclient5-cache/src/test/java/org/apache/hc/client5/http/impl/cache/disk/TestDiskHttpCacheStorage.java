@@ -0,0 +1,177 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache.disk;
+
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.client5.http.impl.cache.HttpCacheEntryMatcher;
+import org.apache.hc.client5.http.impl.cache.HttpTestUtils;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Unit tests for {@link DiskHttpCacheStorage} and {@link DiskHttpAsyncCacheStorage}. */
+public class TestDiskHttpCacheStorage {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testEntriesSurviveRestart() throws Exception {
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        try (final DiskHttpCacheStorage storage = new DiskHttpCacheStorage(tmp.getRoot(), CacheConfig.DEFAULT)) {
+            storage.putEntry("foo", entry1);
+            storage.putEntry("bar", entry2);
+            assertThat(storage.getEntry("foo"), HttpCacheEntryMatcher.equivalent(entry1));
+        }
+        try (final DiskHttpCacheStorage storage = new DiskHttpCacheStorage(tmp.getRoot(), CacheConfig.DEFAULT)) {
+            final Map<String, HttpCacheEntry> entries = storage.getEntries(Arrays.asList("foo", "bar", "baz"));
+            Assert.assertEquals(2, entries.size());
+            assertThat(entries.get("foo"), HttpCacheEntryMatcher.equivalent(entry1));
+            assertThat(entries.get("bar"), HttpCacheEntryMatcher.equivalent(entry2));
+            storage.removeEntry("foo");
+            Assert.assertNull(storage.getEntry("foo"));
+        }
+    }
+
+    @Test
+    public void testUpdateEntry() throws Exception {
+        final HttpCacheEntry original = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry updated = HttpTestUtils.makeCacheEntry();
+        try (final DiskHttpCacheStorage storage = new DiskHttpCacheStorage(tmp.getRoot(), CacheConfig.DEFAULT)) {
+            storage.putEntry("foo", original);
+            storage.updateEntry("foo", new HttpCacheCASOperation() {
+
+                @Override
+                public HttpCacheEntry execute(final HttpCacheEntry existing) throws ResourceIOException {
+                    assertThat(existing, HttpCacheEntryMatcher.equivalent(original));
+                    return updated;
+                }
+
+            });
+            assertThat(storage.getEntry("foo"), HttpCacheEntryMatcher.equivalent(updated));
+        }
+    }
+
+    @Test
+    public void testAsyncStorage() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        try (final DiskHttpAsyncCacheStorage storage = new DiskHttpAsyncCacheStorage(tmp.getRoot(), CacheConfig.DEFAULT)) {
+            final CountDownLatch stored = new CountDownLatch(1);
+            storage.putEntry("foo", entry, new FutureCallback<Boolean>() {
+
+                @Override
+                public void completed(final Boolean result) {
+                    stored.countDown();
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                }
+
+                @Override
+                public void cancelled() {
+                }
+
+            });
+            Assert.assertTrue(stored.await(5, TimeUnit.SECONDS));
+            final CountDownLatch retrieved = new CountDownLatch(1);
+            final AtomicReference<HttpCacheEntry> result = new AtomicReference<>();
+            storage.getEntry("foo", new FutureCallback<HttpCacheEntry>() {
+
+                @Override
+                public void completed(final HttpCacheEntry cacheEntry) {
+                    result.set(cacheEntry);
+                    retrieved.countDown();
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    retrieved.countDown();
+                }
+
+                @Override
+                public void cancelled() {
+                    retrieved.countDown();
+                }
+
+            });
+            Assert.assertTrue(retrieved.await(5, TimeUnit.SECONDS));
+            assertThat(result.get(), HttpCacheEntryMatcher.equivalent(entry));
+        }
+    }
+
+    @Test
+    public void testCloseCompletesPendingOperations() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        final int count = 50;
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final DiskHttpAsyncCacheStorage storage = new DiskHttpAsyncCacheStorage(tmp.getRoot(), CacheConfig.DEFAULT);
+        for (int i = 0; i < count; i++) {
+            storage.putEntry("key" + i, entry, new FutureCallback<Boolean>() {
+
+                @Override
+                public void completed(final Boolean result) {
+                    completed.incrementAndGet();
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    failed.incrementAndGet();
+                }
+
+                @Override
+                public void cancelled() {
+                }
+
+            });
+        }
+        storage.close();
+        Assert.assertEquals(count, completed.get());
+        Assert.assertEquals(0, failed.get());
+        try (final DiskHttpCacheStorage reopened = new DiskHttpCacheStorage(tmp.getRoot(), CacheConfig.DEFAULT)) {
+            assertThat(reopened.getEntry("key" + (count - 1)), HttpCacheEntryMatcher.equivalent(entry));
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache.memcached;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+/** Unit tests for {@link Murmur3KeyHashingScheme}. */
+public class TestMurmur3HashingScheme {
+
+    @Test
+    public void canHash() {
+        final Murmur3KeyHashingScheme impl = new Murmur3KeyHashingScheme();
+        final String result = impl.hash("hello, hashing world");
+        assertEquals(32, result.length());
+        assertEquals(result, impl.hash("hello, hashing world"));
+        assertFalse(result.equals(impl.hash("hello, hashing world!")));
+    }
+
+    @Test
+    public void matchesReferenceImplementation() {
+        final Murmur3KeyHashingScheme impl = new Murmur3KeyHashingScheme();
+        assertEquals("00000000000000000000000000000000", impl.hash(""));
+        assertEquals("cbd8a7b341bd9b025b1e906a48ae1d19", impl.hash("hello"));
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http;
+
+import java.net.InetAddress;
+import java.util.concurrent.Future;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+
+/**
+ * Non-blocking counterpart of {@link DnsResolver}. Implementations must not
+ * block the calling thread, which may be an I/O dispatch thread.
+ *
+ * @see org.apache.hc.client5.http.impl.ExecutorAsyncDnsResolver
+ *
+ * @since 5.0
+ */
+public interface AsyncDnsResolver {
+
+    /**
+     * Resolves the IP addresses of the given host name. The returned future
+     * fails with {@link java.net.UnknownHostException} if the host name
+     * cannot be resolved.
+     *
+     * @param host the host name to be resolved.
+     * @param callback the callback notified of the result. May be {@code null}.
+     * @return the future result of the lookup.
+     */
+    Future<InetAddress[]> resolve(String host, FutureCallback<InetAddress[]> callback);
+
+}
@@ -0,0 +1,90 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http;
+
+/**
+ * Listener of connection pool events that can be used to collect
+ * connection management metrics on a per route basis.
+ * <p>
+ * Listener methods get invoked on the critical path of request execution
+ * by multiple threads concurrently. Implementations must be thread safe,
+ * must not block and should not throw exceptions.
+ * </p>
+ *
+ * @since 5.0
+ */
+public interface ConnPoolListener {
+
+    /**
+     * Triggered when a connection has been leased from the pool.
+     *
+     * @param route the connection route.
+     * @param waitNanos time elapsed between the lease request and the lease in nanoseconds.
+     * @param reused {@code true} if a persistent connection has been re-used,
+     *   {@code false} if a new connection has to be established.
+     */
+    void onLease(HttpRoute route, long waitNanos, boolean reused);
+
+    /**
+     * Triggered when a lease request has timed out waiting for a connection.
+     *
+     * @param route the connection route.
+     * @param waitNanos time elapsed before the request timed out in nanoseconds.
+     */
+    void onLeaseTimeout(HttpRoute route, long waitNanos);
+
+    /**
+     * Triggered when a new connection has been established.
+     *
+     * @param route the connection route.
+     * @param connectNanos time taken to establish the connection in nanoseconds,
+     *   excluding TLS handshake if the handshake time is reported separately.
+     */
+    void onConnect(HttpRoute route, long connectNanos);
+
+    /**
+     * Triggered when a TLS handshake has been completed.
+     *
+     * @param route the connection route.
+     * @param handshakeNanos time taken by the handshake in nanoseconds.
+     */
+    void onTlsHandshake(HttpRoute route, long handshakeNanos);
+
+    /**
+     * Triggered when a connection has been released back to the pool.
+     *
+     * @param route the connection route.
+     * @param ageMillis age of the connection in milliseconds.
+     * @param reuseCount number of times the connection had been re-used
+     *   prior to this release.
+     * @param reusable {@code true} if the connection has been kept alive,
+     *   {@code false} if it has been closed.
+     */
+    void onRelease(HttpRoute route, long ageMillis, int reuseCount, boolean reusable);
+
+}
@@ -0,0 +1,51 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async;
+
+import org.apache.hc.core5.annotation.Internal;
+
+/**
+ * {@link AsyncExecRuntime} that can create independent runtimes sharing its
+ * connection manager.
+ * <p>
+ * This interface is considered internal and generally ought not be used or accessed
+ * by custom request exec handlers.
+ *
+ * @since 5.0
+ */
+@Internal
+public interface ForkableAsyncExecRuntime extends AsyncExecRuntime {
+
+    /**
+     * Creates a new execution runtime that shares the connection manager of this
+     * runtime but has no connection endpoint of its own. Forked runtimes can be used
+     * to execute requests independently of the message exchange this runtime
+     * belongs to.
+     */
+    AsyncExecRuntime fork();
+
+}
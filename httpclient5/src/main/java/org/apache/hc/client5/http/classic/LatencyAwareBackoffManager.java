@@ -0,0 +1,50 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.classic;
+
+import org.apache.hc.client5.http.HttpRoute;
+
+/**
+ * {@link BackoffManager} that also takes the round trip time of
+ * successful message exchanges into account.
+ *
+ * @since 5.0
+ */
+public interface LatencyAwareBackoffManager extends BackoffManager {
+
+    /**
+     * Called in place of {@link #probe(HttpRoute)} when a message exchange
+     * has succeeded and its round trip time is known.
+     *
+     * @param route the route of the message exchange.
+     * @param rttNanos the time in nanoseconds from sending the request
+     *   to receiving the response head.
+     */
+    void probe(HttpRoute route, long rttNanos);
+
+}
@@ -0,0 +1,391 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * {@link DnsResolver} decorator that caches the results of another resolver.
+ * <p>
+ * Successful lookups are kept for the configured time to live, failed lookups
+ * for the (usually much shorter) negative time to live. Cache reads do not
+ * lock. A name that is looked up again while its entry is within the
+ * refresh-ahead window of its expiry is re-resolved on a background thread
+ * and the cached addresses keep being served in the meantime, so a host that
+ * is in regular use never makes the caller wait for a DNS lookup. A failed
+ * refresh leaves the cached addresses in place until they expire.
+ * </p>
+ * <p>
+ * Concurrent lookups of a name that is not cached are collapsed into a single
+ * call to the underlying resolver.
+ * </p>
+ * <p>
+ * {@link #resolveCanonicalHostname(String)} is passed through to the
+ * underlying resolver uncached.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class CachingDnsResolver implements DnsResolver, Closeable {
+
+    public static final TimeValue DEFAULT_TTL = TimeValue.ofSeconds(60);
+    public static final TimeValue DEFAULT_NEGATIVE_TTL = TimeValue.ofSeconds(10);
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final DnsResolver dnsResolver;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final long refreshAheadNanos;
+    private final ConcurrentHashMap<String, Entry> cache;
+    private final ConcurrentHashMap<String, PendingLookup> pendingLookups;
+    private final ExecutorService refreshExecutor;
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private final AtomicLong refreshCount;
+
+    /**
+     * @param dnsResolver the resolver whose results are cached.
+     * @param ttl how long successful lookups are cached.
+     * @param negativeTtl how long failed lookups are cached. Zero disables
+     *   negative caching.
+     * @param refreshAhead how long before expiry a looked up entry is
+     *   refreshed in the background. Zero disables refresh-ahead.
+     */
+    public CachingDnsResolver(
+            final DnsResolver dnsResolver,
+            final TimeValue ttl,
+            final TimeValue negativeTtl,
+            final TimeValue refreshAhead) {
+        super();
+        this.dnsResolver = Args.notNull(dnsResolver, "DNS resolver");
+        Args.check(TimeValue.isPositive(ttl), "TTL must be positive");
+        Args.check(TimeValue.isNonNegative(negativeTtl), "Negative TTL may not be negative");
+        Args.check(TimeValue.isNonNegative(refreshAhead), "Refresh-ahead window may not be negative");
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.refreshAheadNanos = Math.min(refreshAhead.toNanos(), this.ttlNanos);
+        this.cache = new ConcurrentHashMap<>();
+        this.pendingLookups = new ConcurrentHashMap<>();
+        this.refreshExecutor = this.refreshAheadNanos > 0
+                        ? Executors.newSingleThreadExecutor(new DefaultThreadFactory("dns-refresh", true))
+                        : null;
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.refreshCount = new AtomicLong();
+    }
+
+    /**
+     * Creates a resolver with the default TTLs that refreshes entries
+     * during the last quarter of their time to live.
+     */
+    public CachingDnsResolver(final DnsResolver dnsResolver) {
+        this(dnsResolver, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL,
+                TimeValue.ofNanoseconds(DEFAULT_TTL.toNanos() / 4));
+    }
+
+    /**
+     * Creates a resolver with the default TTLs on top of
+     * {@link SystemDefaultDnsResolver}.
+     */
+    public CachingDnsResolver() {
+        this(SystemDefaultDnsResolver.INSTANCE);
+    }
+
+    long now() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public InetAddress[] resolve(final String host) throws UnknownHostException {
+        final long now = now();
+        Entry entry = cache.get(host);
+        if (entry != null && entry.expiry - now > 0) {
+            hitCount.incrementAndGet();
+            if (refreshExecutor != null && entry.failure == null && entry.expiry - now <= refreshAheadNanos) {
+                scheduleRefresh(host, entry);
+            }
+        } else {
+            missCount.incrementAndGet();
+            entry = lookupOnce(host);
+        }
+        if (entry.failure != null) {
+            final UnknownHostException ex = new UnknownHostException(entry.failure.getMessage());
+            ex.initCause(entry.failure);
+            throw ex;
+        }
+        return entry.addresses.clone();
+    }
+
+    /**
+     * Looks up the given host unless a lookup of the same host is already
+     * in progress, in which case its result is awaited.
+     */
+    private Entry lookupOnce(final String host) throws UnknownHostException {
+        final PendingLookup pendingLookup = new PendingLookup();
+        final PendingLookup existing = pendingLookups.putIfAbsent(host, pendingLookup);
+        if (existing != null) {
+            return existing.get(host);
+        }
+        try {
+            final long now = now();
+            Entry entry = cache.get(host);
+            // the entry may have been stored by a lookup completed in the meantime
+            if (entry == null || entry.expiry - now <= 0) {
+                entry = lookup(host, now);
+                if (entry.expiry - now > 0) {
+                    cache.put(host, entry);
+                } else {
+                    cache.remove(host);
+                }
+            }
+            pendingLookup.completed(entry);
+            return entry;
+        } catch (final UnknownHostException | RuntimeException ex) {
+            pendingLookup.failed(ex);
+            throw ex;
+        } finally {
+            pendingLookups.remove(host, pendingLookup);
+        }
+    }
+
+    private Entry lookup(final String host, final long now) throws UnknownHostException {
+        try {
+            final InetAddress[] addresses = dnsResolver.resolve(host);
+            if (addresses == null || addresses.length == 0) {
+                throw new UnknownHostException(host + " cannot be resolved");
+            }
+            return new Entry(addresses.clone(), null, now + ttlNanos);
+        } catch (final UnknownHostException ex) {
+            if (negativeTtlNanos > 0) {
+                return new Entry(null, ex, now + negativeTtlNanos);
+            }
+            throw ex;
+        }
+    }
+
+    private void scheduleRefresh(final String host, final Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    refresh(host, entry);
+                }
+
+            });
+        } catch (final RejectedExecutionException ex) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    void refresh(final String host, final Entry entry) {
+        try {
+            final long now = now();
+            final InetAddress[] addresses = dnsResolver.resolve(host);
+            if (addresses == null || addresses.length == 0) {
+                throw new UnknownHostException(host + " cannot be resolved");
+            }
+            if (cache.replace(host, entry, new Entry(addresses.clone(), null, now + ttlNanos))) {
+                refreshCount.incrementAndGet();
+            }
+        } catch (final UnknownHostException ex) {
+            // Keep serving the cached addresses until they expire; a lookup
+            // failing once they have expired is cached as negative entry
+            if (log.isDebugEnabled()) {
+                log.debug("Refresh of " + host + " failed: " + ex.getMessage());
+            }
+        } catch (final RuntimeException ex) {
+            entry.refreshing.set(false);
+            log.warn("Unexpected error refreshing " + host, ex);
+        }
+    }
+
+    @Override
+    public String resolveCanonicalHostname(final String host) throws UnknownHostException {
+        return dnsResolver.resolveCanonicalHostname(host);
+    }
+
+    /**
+     * Removes the cached result for the given host, if any.
+     */
+    public void invalidate(final String host) {
+        cache.remove(host);
+    }
+
+    /**
+     * Removes all expired entries from the cache.
+     */
+    public void closeExpired() {
+        final long now = now();
+        for (final Iterator<Map.Entry<String, Entry>> it = cache.entrySet().iterator(); it.hasNext(); ) {
+            if (it.next().getValue().expiry - now <= 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of cached (positive and negative) entries.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups passed through to the underlying resolver.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of entries refreshed ahead of their expiry.
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    @Override
+    public void close() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for pending background refreshes to complete after {@link #close()}.
+     */
+    public void awaitTermination(final TimeValue waitTime) throws InterruptedException {
+        if (refreshExecutor != null) {
+            refreshExecutor.awaitTermination(waitTime.getDuration(), waitTime.getTimeUnit());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[hits: " + hitCount.get() + "; misses: " + missCount.get()
+                + "; refreshes: " + refreshCount.get() + "; size: " + cache.size() + "]";
+    }
+
+    static final class PendingLookup {
+
+        private final CountDownLatch latch;
+        private volatile Entry entry;
+        private volatile Exception failure;
+
+        PendingLookup() {
+            this.latch = new CountDownLatch(1);
+        }
+
+        void completed(final Entry entry) {
+            this.entry = entry;
+            this.latch.countDown();
+        }
+
+        void failed(final Exception failure) {
+            this.failure = failure;
+            this.latch.countDown();
+        }
+
+        Entry get(final String host) throws UnknownHostException {
+            try {
+                this.latch.await();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new UnknownHostException("Lookup of " + host + " interrupted");
+            }
+            final Exception cause = this.failure;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause != null) {
+                final UnknownHostException ex = new UnknownHostException(cause.getMessage());
+                ex.initCause(cause);
+                throw ex;
+            }
+            return this.entry;
+        }
+
+    }
+
+    static final class Entry {
+
+        final InetAddress[] addresses;
+        final UnknownHostException failure;
+        final long expiry;
+        final AtomicBoolean refreshing;
+
+        Entry(final InetAddress[] addresses, final UnknownHostException failure, final long expiry) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expiry = expiry;
+            this.refreshing = new AtomicBoolean(false);
+        }
+
+    }
+
+}
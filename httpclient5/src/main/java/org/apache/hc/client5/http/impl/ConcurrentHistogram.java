@@ -0,0 +1,209 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Lock-free histogram of non-negative {@code long} values with exponentially
+ * sized buckets. Bucket {@code n} holds values in the range
+ * {@code [2^(n-1), 2^n)}, bucket {@code 0} holds zero. Recording a value
+ * costs a few atomic increments and never blocks. Percentiles are estimated
+ * with the upper bound of the bucket they fall into.
+ * <p>
+ * Histograms updated by many threads at once can be split into several
+ * stripes, each padded to a multiple of a cache line. A thread records into
+ * the stripe selected by its id, snapshots merge all stripes.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class ConcurrentHistogram {
+
+    private static final int BUCKETS = 64;
+
+    // longs per 64 byte cache line
+    private static final int LINE = 8;
+    private static final int SUM = BUCKETS;
+    private static final int MAX = BUCKETS + 1;
+    private static final int WIDTH = (BUCKETS + 2 + LINE - 1) / LINE * LINE;
+
+    private final int stripes;
+    private final AtomicLongArray cells;
+
+    /**
+     * Creates a histogram with the given number of stripes.
+     *
+     * @param stripes the number of stripes, a power of two.
+     */
+    public ConcurrentHistogram(final int stripes) {
+        Args.positive(stripes, "Stripes");
+        Args.check((stripes & (stripes - 1)) == 0, "Stripes must be a power of two");
+        this.stripes = stripes;
+        this.cells = new AtomicLongArray(stripes * WIDTH);
+    }
+
+    public ConcurrentHistogram() {
+        this(1);
+    }
+
+    static int bucketOf(final long value) {
+        return value > 0 ? BUCKETS - Long.numberOfLeadingZeros(value) : 0;
+    }
+
+    static long upperBound(final int bucket) {
+        return bucket > 0 ? (bucket < BUCKETS - 1 ? (1L << bucket) - 1 : Long.MAX_VALUE) : 0;
+    }
+
+    private int stripe() {
+        return (int) (Thread.currentThread().getId() & (this.stripes - 1)) * WIDTH;
+    }
+
+    /**
+     * Records the given value. Negative values are recorded as zero.
+     */
+    public void record(final long value) {
+        final long v = value > 0 ? value : 0;
+        final int base = stripe();
+        this.cells.incrementAndGet(base + bucketOf(v));
+        this.cells.addAndGet(base + SUM, v);
+        for (;;) {
+            final long current = this.cells.get(base + MAX);
+            if (v <= current || this.cells.compareAndSet(base + MAX, current, v)) {
+                break;
+            }
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < this.cells.length(); i++) {
+            this.cells.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns a point-in-time copy of the histogram. Values recorded concurrently
+     * with this method may or may not be reflected in the snapshot.
+     */
+    public Snapshot getSnapshot() {
+        final long[] counts = new long[BUCKETS];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+        for (int base = 0; base < this.cells.length(); base += WIDTH) {
+            for (int i = 0; i < BUCKETS; i++) {
+                final long n = this.cells.get(base + i);
+                counts[i] += n;
+                count += n;
+            }
+            sum += this.cells.get(base + SUM);
+            max = Math.max(max, this.cells.get(base + MAX));
+        }
+        return new Snapshot(counts, count, sum, max);
+    }
+
+    @Override
+    public String toString() {
+        return getSnapshot().toString();
+    }
+
+    /**
+     * Immutable snapshot of {@link ConcurrentHistogram}.
+     */
+    @Contract(threading = ThreadingBehavior.IMMUTABLE)
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(final long[] counts, final long count, final long sum, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count > 0 ? (double) sum / count : 0.0d;
+        }
+
+        /**
+         * Returns an estimate of the given percentile.
+         *
+         * @param percentile percentile in the range of {@code [0.0, 1.0]}.
+         */
+        public long getPercentile(final double percentile) {
+            Args.check(percentile >= 0.0d && percentile <= 1.0d, "Percentile must be in the range [0.0, 1.0]");
+            if (count == 0) {
+                return 0;
+            }
+            final long threshold = Math.max(1L, (long) Math.ceil(percentile * count));
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= threshold) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buffer = new StringBuilder();
+            buffer.append("[count: ").append(count);
+            buffer.append("][mean: ").append(Math.round(getMean()));
+            buffer.append("][p50: ").append(getPercentile(0.5d));
+            buffer.append("][p99: ").append(getPercentile(0.99d));
+            buffer.append("][max: ").append(max);
+            buffer.append("]");
+            return buffer.toString();
+        }
+
+    }
+
+}
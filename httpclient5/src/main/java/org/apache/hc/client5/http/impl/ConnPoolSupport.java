@@ -26,11 +26,18 @@
  */
 package org.apache.hc.client5.http.impl;
 
+import java.util.Set;
+
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.core5.annotation.Internal;
+import org.apache.hc.core5.io.GracefullyCloseable;
+import org.apache.hc.core5.io.ShutdownType;
 import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.ManagedConnPool;
+import org.apache.hc.core5.pool.PoolEntry;
 import org.apache.hc.core5.pool.PoolStats;
 import org.apache.hc.core5.util.Identifiable;
+import org.apache.hc.core5.util.TimeValue;
 
 @Internal
 public final class ConnPoolSupport {
@@ -69,4 +76,39 @@ public static String formatStats(
         return buf.toString();
     }
 
+    /**
+     * Closes the connection of the given entry if the entry is available in the
+     * pool and has expired or stayed idle longer than {@code maxIdleTime}.
+     * {@link StripedConnPool} takes the entry out of the pool. Other pools cannot
+     * single out an entry, so the connection is closed in place, with the entry
+     * locked against a concurrent lease; a lease of the entry waits for the close
+     * and then opens a new connection. Entries that have been handed out by the
+     * pool must be in {@code leasedEntries}, added while holding the lock of
+     * the entry.
+     *
+     * @return {@code true} if the entry may still be available in the pool.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, C extends GracefullyCloseable> boolean closeIfDue(
+            final ManagedConnPool<T, C> pool,
+            final Set<? extends PoolEntry<?, ?>> leasedEntries,
+            final PoolEntry<?, ?> entry,
+            final TimeValue maxIdleTime) {
+        if (pool instanceof StripedConnPool) {
+            return ((StripedConnPool<T, C>) pool).closeIfDue((PoolEntry<T, C>) entry, maxIdleTime);
+        }
+        final long now = System.currentTimeMillis();
+        final long deadline = TimeValue.isPositive(maxIdleTime) ? now - maxIdleTime.toMillis() : Long.MIN_VALUE;
+        synchronized (entry) {
+            if (leasedEntries.contains(entry) || !entry.hasConnection()) {
+                return false;
+            }
+            if (entry.getExpiry() < now || entry.getUpdated() <= deadline) {
+                entry.discardConnection(ShutdownType.GRACEFUL);
+                return false;
+            }
+            return true;
+        }
+    }
+
 }
@@ -0,0 +1,61 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import org.apache.hc.core5.pool.PoolEntry;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * Connection managers that report connections returned to the pool
+ * to a {@link ConnectionMaintenanceScheduler}, enabling eviction of
+ * individual connections at the time they become due rather than
+ * at a fixed interval.
+ *
+ * @since 5.0
+ */
+public interface ConnectionMaintenanceAware {
+
+    /**
+     * Sets the registration to report released connections to.
+     * {@code null} stops reporting.
+     */
+    void setConnectionMaintenance(ConnectionMaintenanceScheduler.Registration registration);
+
+    /**
+     * Closes the connection of the given pool entry if the entry is available
+     * in the pool and has expired or stayed idle longer than {@code maxIdleTime}.
+     *
+     * @param entry the entry reported to the registration.
+     * @param maxIdleTime the maximum time connections may stay idle in the pool.
+     *   If {@code null} the connection is only closed if it has expired.
+     * @return {@code true} if the entry is still available in the pool,
+     *   {@code false} if it has been closed or is not available.
+     */
+    boolean closeIfDue(PoolEntry<?, ?> entry, TimeValue maxIdleTime);
+
+}
@@ -0,0 +1,704 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
+import org.apache.hc.core5.function.Supplier;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolEntry;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.Asserts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Schedules connection pool maintenance of any number of connection managers
+ * and connection pools on a single background thread.
+ * <p>
+ * Tasks are kept in a hashed timer wheel: scheduling and cancellation take
+ * constant time and the thread only wakes up once per tick. Connection
+ * managers implementing {@link ConnectionMaintenanceAware} report every
+ * connection returned to the pool, so that each connection gets evicted in
+ * the tick it expires or exceeds the max idle time, without sweeping the
+ * whole pool. Pools of other connection managers are swept at a fixed interval.
+ * </p>
+ * <p>
+ * Work that may block, such as validating idle connections or sweeping a pool,
+ * is handed off to a separate executor, so that the timer thread only dispatches
+ * and one slow pool cannot hold up the timers of all others.
+ * </p>
+ * <p>
+ * A single instance is meant to be shared by all clients of the application,
+ * see {@link #getDefault()}.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class ConnectionMaintenanceScheduler implements Closeable {
+
+    public static final TimeValue DEFAULT_TICK_DURATION = TimeValue.ofMillis(500);
+    public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+    /**
+     * Interval at which pools that do not report connection release get maintained
+     * if no max idle time has been given.
+     */
+    public static final TimeValue DEFAULT_MAINTENANCE_INTERVAL = TimeValue.ofSeconds(5);
+
+    private static final int INIT = 0;
+    private static final int STARTED = 1;
+    private static final int SHUTDOWN = 2;
+
+    private static class DefaultHolder {
+
+        static final ConnectionMaintenanceScheduler INSTANCE = new ConnectionMaintenanceScheduler(
+                DEFAULT_TICK_DURATION, DEFAULT_TICKS_PER_WHEEL, null, SYSTEM_CLOCK, true);
+
+    }
+
+    private static final Supplier<Long> SYSTEM_CLOCK = new Supplier<Long>() {
+
+        @Override
+        public Long get() {
+            return Long.valueOf(System.nanoTime());
+        }
+
+    };
+
+    /**
+     * Returns the scheduler shared by all clients not configured with a
+     * scheduler of their own. Closing the shared instance has no effect.
+     */
+    public static ConnectionMaintenanceScheduler getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<List<Timeout>> wheel;
+    private final Queue<Timeout> pending;
+    private final Thread worker;
+    private final ExecutorService executor;
+    private final AtomicInteger state;
+    private final Supplier<Long> clock;
+    private final long startTime;
+    private final boolean shared;
+
+    private ConnectionMaintenanceScheduler(
+            final TimeValue tickDuration,
+            final int ticksPerWheel,
+            final ThreadFactory threadFactory,
+            final Supplier<Long> clock,
+            final boolean shared) {
+        Args.check(TimeValue.isPositive(tickDuration), "Tick duration must be positive");
+        Args.positive(ticksPerWheel, "Ticks per wheel");
+        int wheelSize = 1;
+        while (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+        this.tickNanos = tickDuration.toNanos();
+        this.mask = wheelSize - 1;
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            this.wheel.add(new ArrayList<Timeout>());
+        }
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.worker = (threadFactory != null ? threadFactory : new DefaultThreadFactory("connection-maintenance", true))
+                .newThread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        runWorker();
+                    }
+
+                });
+        this.executor = Executors.newCachedThreadPool(
+                threadFactory != null ? threadFactory : new DefaultThreadFactory("connection-validation", true));
+        this.state = new AtomicInteger(INIT);
+        this.clock = clock;
+        this.startTime = clock.get().longValue();
+        this.shared = shared;
+    }
+
+
+    /**
+     * @param tickDuration the resolution of the scheduler.
+     * @param ticksPerWheel the number of buckets of the timer wheel; rounded up
+     *   to the next power of two.
+     * @param threadFactory the factory of the worker thread. May be {@code null}.
+     */
+    public ConnectionMaintenanceScheduler(
+            final TimeValue tickDuration,
+            final int ticksPerWheel,
+            final ThreadFactory threadFactory) {
+        this(tickDuration, ticksPerWheel, threadFactory, SYSTEM_CLOCK, false);
+    }
+
+    /**
+     * @param clock the source of the current time in nanoseconds.
+     */
+    ConnectionMaintenanceScheduler(
+            final TimeValue tickDuration,
+            final int ticksPerWheel,
+            final ThreadFactory threadFactory,
+            final Supplier<Long> clock) {
+        this(tickDuration, ticksPerWheel, threadFactory, Args.notNull(clock, "Clock"), false);
+    }
+
+    public ConnectionMaintenanceScheduler() {
+        this(DEFAULT_TICK_DURATION, DEFAULT_TICKS_PER_WHEEL, null, SYSTEM_CLOCK, false);
+    }
+
+    private long now() {
+        return clock.get().longValue() - startTime;
+    }
+
+    private Timeout enqueue(final Runnable task, final long deadline) {
+        if (state.get() == INIT && state.compareAndSet(INIT, STARTED)) {
+            worker.start();
+        }
+        Asserts.check(state.get() == STARTED, "Connection maintenance scheduler has been shut down");
+        final Timeout timeout = new Timeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Runs the task once after the given delay (rounded up to the tick duration).
+     * The task is executed by the worker thread and must not block.
+     */
+    public Cancellable schedule(final Runnable task, final TimeValue delay) {
+        Args.notNull(task, "Task");
+        Args.notNull(delay, "Delay");
+        return enqueue(task, now() + Math.max(delay.toNanos(), 0L));
+    }
+
+    /**
+     * Runs the task repeatedly with the given delay between the end of a run
+     * and the start of the next one.
+     */
+    public Cancellable scheduleRecurring(final Runnable task, final TimeValue interval) {
+        Args.notNull(task, "Task");
+        Args.check(TimeValue.isPositive(interval), "Interval must be positive");
+        final RecurringTask recurringTask = new RecurringTask(task, interval);
+        recurringTask.scheduleNext();
+        return recurringTask;
+    }
+
+    /**
+     * Registers the pool of a connection manager for maintenance: expired
+     * connections and connections idle longer than {@code maxIdleTime} get
+     * evicted, and connection managers implementing {@link IdleConnectionValidator}
+     * get to validate their idle connections. Connection managers implementing
+     * {@link ConnectionMaintenanceAware} have their connections evicted one by one
+     * and request validation themselves; the pools of other connection managers
+     * are swept at an interval of {@code maxIdleTime}, or
+     * {@link #DEFAULT_MAINTENANCE_INTERVAL} if not given.
+     *
+     * @param connPool the pool to maintain.
+     * @param maxIdleTime the maximum time connections may stay idle in the pool.
+     *   If {@code null} idle connections are only evicted when they expire.
+     * @return the registration; closing it ends maintenance of the pool.
+     */
+    public Registration register(final ConnPoolControl<?> connPool, final TimeValue maxIdleTime) {
+        Args.notNull(connPool, "Connection pool");
+        final Registration registration = new Registration(connPool, maxIdleTime);
+        if (connPool instanceof ConnectionMaintenanceAware) {
+            ((ConnectionMaintenanceAware) connPool).setConnectionMaintenance(registration);
+        } else {
+            registration.recurringTask = scheduleRecurring(registration.sweepTask,
+                    TimeValue.isPositive(maxIdleTime) ? maxIdleTime : DEFAULT_MAINTENANCE_INTERVAL);
+        }
+        return registration;
+    }
+
+    public boolean isShutdown() {
+        return state.get() == SHUTDOWN;
+    }
+
+    /**
+     * Stops the worker thread. Pending tasks are discarded; validation runs
+     * in progress are allowed to complete. Has no effect on the
+     * {@link #getDefault() shared instance}.
+     */
+    @Override
+    public void close() {
+        if (shared) {
+            return;
+        }
+        if (state.getAndSet(SHUTDOWN) == STARTED) {
+            worker.interrupt();
+        }
+        pending.clear();
+        executor.shutdown();
+    }
+
+    public void awaitTermination(final TimeValue waitTime) throws InterruptedException {
+        final long waitMillis = waitTime != null ? waitTime.toMillis() : 0;
+        if (worker.isAlive()) {
+            worker.join(waitMillis);
+        }
+        executor.awaitTermination(waitMillis > 0 ? waitMillis : Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean dispatch(final Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (final RejectedExecutionException ex) {
+            log.debug("Connection maintenance task rejected: scheduler shut down");
+            return false;
+        }
+    }
+
+    private void runWorker() {
+        long tick = now() / tickNanos;
+        while (state.get() == STARTED) {
+            final long sleepNanos = (tick + 1) * tickNanos - now();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                continue;
+            }
+            transferPending(tick);
+            expire(wheel.get((int) (tick & mask)));
+            tick++;
+        }
+        for (final List<Timeout> bucket: wheel) {
+            bucket.clear();
+        }
+    }
+
+    private void transferPending(final long currentTick) {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            final long tick = Math.max(timeout.deadline / tickNanos, currentTick);
+            timeout.remainingRounds = (tick - currentTick) / wheel.size();
+            wheel.get((int) (tick & mask)).add(timeout);
+        }
+    }
+
+    private void expire(final List<Timeout> bucket) {
+        final List<Timeout> due = new ArrayList<>();
+        for (final Iterator<Timeout> it = bucket.iterator(); it.hasNext(); ) {
+            final Timeout timeout = it.next();
+            if (timeout.isCancelled()) {
+                it.remove();
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                it.remove();
+                due.add(timeout);
+            }
+        }
+        for (final Timeout timeout: due) {
+            if (timeout.expire()) {
+                try {
+                    timeout.task.run();
+                } catch (final RuntimeException ex) {
+                    log.warn("Connection maintenance task failed", ex);
+                }
+            }
+        }
+    }
+
+    private static final class Timeout implements Cancellable {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        final Runnable task;
+        final long deadline;
+        final AtomicInteger status;
+        long remainingRounds;
+
+        Timeout(final Runnable task, final long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            this.status = new AtomicInteger(PENDING);
+        }
+
+        boolean isCancelled() {
+            return status.get() == CANCELLED;
+        }
+
+        boolean expire() {
+            return status.compareAndSet(PENDING, EXPIRED);
+        }
+
+        @Override
+        public boolean cancel() {
+            return status.compareAndSet(PENDING, CANCELLED);
+        }
+
+    }
+
+    private final class RecurringTask implements Runnable, Cancellable {
+
+        private final Runnable task;
+        private final TimeValue interval;
+        private volatile boolean cancelled;
+        private volatile Cancellable current;
+
+        RecurringTask(final Runnable task, final TimeValue interval) {
+            this.task = task;
+            this.interval = interval;
+        }
+
+        void scheduleNext() {
+            current = schedule(this, interval);
+            if (cancelled) {
+                current.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                task.run();
+            } finally {
+                if (!cancelled && state.get() == STARTED) {
+                    scheduleNext();
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            cancelled = true;
+            final Cancellable cancellable = current;
+            return cancellable != null && cancellable.cancel();
+        }
+
+    }
+
+    /**
+     * Maintenance registration of a connection pool.
+     */
+    public final class Registration implements Closeable {
+
+        private final ConnPoolControl<?> connPool;
+        private final TimeValue maxIdleTime;
+        private final ConcurrentMap<PoolEntry<?, ?>, EntryCheck> entryChecks;
+        private final ConcurrentMap<Long, ValidationCheck> validationChecks;
+        private final AtomicInteger validationRequests;
+        private final AtomicBoolean sweeping;
+        private final Runnable validationTask;
+        private final Runnable sweepTask;
+        private final Runnable sweepRun;
+        private volatile Cancellable recurringTask;
+        private volatile boolean closed;
+
+        Registration(final ConnPoolControl<?> connPool, final TimeValue maxIdleTime) {
+            this.connPool = connPool;
+            this.maxIdleTime = TimeValue.isPositive(maxIdleTime) ? maxIdleTime : null;
+            this.entryChecks = new ConcurrentHashMap<>();
+            this.validationChecks = new ConcurrentHashMap<>();
+            this.validationRequests = new AtomicInteger();
+            this.sweeping = new AtomicBoolean(false);
+            this.validationTask = new Runnable() {
+
+                @Override
+                public void run() {
+                    runValidation();
+                }
+
+            };
+            this.sweepTask = new Runnable() {
+
+                @Override
+                public void run() {
+                    // a sweep still in progress is not queued up again
+                    if (!closed && sweeping.compareAndSet(false, true) && !dispatch(sweepRun)) {
+                        sweeping.set(false);
+                    }
+                }
+
+            };
+            this.sweepRun = new Runnable() {
+
+                @Override
+                public void run() {
+                    sweep();
+                }
+
+            };
+        }
+
+        private void sweep() {
+            try {
+                if (!closed) {
+                    connPool.closeExpired();
+                    if (maxIdleTime != null) {
+                        connPool.closeIdle(maxIdleTime);
+                    }
+                    if (connPool instanceof IdleConnectionValidator) {
+                        ((IdleConnectionValidator) connPool).validateIdle();
+                    }
+                }
+            } catch (final RuntimeException ex) {
+                log.warn("Connection pool maintenance failed", ex);
+            } finally {
+                sweeping.set(false);
+            }
+        }
+
+        /**
+         * Dispatches a validation run unless one is pending already. A request
+         * made while a run is in progress makes the run go another round, so that
+         * connections becoming due in the meantime are not missed.
+         */
+        private void requestValidation() {
+            if (validationRequests.getAndIncrement() == 0 && !dispatch(validationTask)) {
+                validationRequests.set(0);
+            }
+        }
+
+        private void runValidation() {
+            int missed = 1;
+            for (;;) {
+                try {
+                    if (!closed) {
+                        ((IdleConnectionValidator) connPool).validateIdle();
+                    }
+                } catch (final RuntimeException ex) {
+                    log.warn("Connection validation failed", ex);
+                }
+                missed = validationRequests.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private long getDeadline(final PoolEntry<?, ?> entry) {
+            final long expiry = entry.getExpiry();
+            if (maxIdleTime != null) {
+                return Math.min(expiry, entry.getUpdated() + maxIdleTime.toMillis());
+            }
+            return expiry;
+        }
+
+        /**
+         * Notifies of a connection returned to the pool. The connection gets
+         * closed in the tick it expires or exceeds the max idle time, unless
+         * it has been leased again by then.
+         */
+        public void connectionReleased(final PoolEntry<?, ?> entry) {
+            Args.notNull(entry, "Pool entry");
+            if (closed || isShutdown()) {
+                return;
+            }
+            final long deadline = getDeadline(entry);
+            if (deadline == Long.MAX_VALUE) {
+                return;
+            }
+            for (;;) {
+                final EntryCheck existing = entryChecks.get(entry);
+                if (existing != null && existing.deadline <= deadline) {
+                    // the pending check re-arms itself at the current deadline of the entry
+                    return;
+                }
+                final EntryCheck check = new EntryCheck(entry, deadline);
+                final boolean armed = existing != null
+                        ? entryChecks.replace(entry, existing, check)
+                        : entryChecks.putIfAbsent(entry, check) == null;
+                if (armed) {
+                    if (existing != null) {
+                        existing.cancel();
+                    }
+                    // one millisecond late, as pools only evict connections strictly past their deadline
+                    check.arm(TimeValue.ofMillis(Math.max(deadline - System.currentTimeMillis(), 0L) + 1));
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Makes sure the idle connections of the pool get validated after
+         * the given delay, or at most one tick later. Requests falling into
+         * the same tick are coalesced.
+         */
+        public void scheduleValidation(final TimeValue delay) {
+            Args.notNull(delay, "Delay");
+            if (closed || isShutdown() || !(connPool instanceof IdleConnectionValidator)) {
+                return;
+            }
+            final long tick = (now() + Math.max(delay.toNanos(), 0L) + tickNanos - 1) / tickNanos;
+            final Long key = Long.valueOf(tick);
+            if (validationChecks.containsKey(key)) {
+                return;
+            }
+            final ValidationCheck check = new ValidationCheck(key);
+            if (validationChecks.putIfAbsent(key, check) == null) {
+                try {
+                    // the bucket of a tick is processed at the end of the tick
+                    check.timeout = enqueue(check, tick * tickNanos - 1);
+                } catch (final IllegalStateException ex) {
+                    validationChecks.remove(key);
+                }
+                if (closed) {
+                    check.cancel();
+                }
+            }
+        }
+
+        int getPendingCount() {
+            return entryChecks.size() + validationChecks.size();
+        }
+
+        /**
+         * Ends maintenance of the pool.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            final Cancellable recurring = recurringTask;
+            if (recurring != null) {
+                recurring.cancel();
+            }
+            for (final EntryCheck check: entryChecks.values()) {
+                check.cancel();
+            }
+            entryChecks.clear();
+            for (final ValidationCheck check: validationChecks.values()) {
+                check.cancel();
+            }
+            validationChecks.clear();
+            if (connPool instanceof ConnectionMaintenanceAware) {
+                ((ConnectionMaintenanceAware) connPool).setConnectionMaintenance(null);
+            }
+        }
+
+        private final class EntryCheck implements Runnable, Cancellable {
+
+            private final PoolEntry<?, ?> entry;
+            private final long deadline;
+            private volatile Cancellable timeout;
+
+            EntryCheck(final PoolEntry<?, ?> entry, final long deadline) {
+                this.entry = entry;
+                this.deadline = deadline;
+            }
+
+            void arm(final TimeValue delay) {
+                try {
+                    timeout = schedule(this, delay);
+                } catch (final IllegalStateException ex) {
+                    entryChecks.remove(entry, this);
+                }
+                if (closed) {
+                    cancel();
+                }
+            }
+
+            @Override
+            public void run() {
+                if (!entryChecks.remove(entry, this) || closed) {
+                    return;
+                }
+                if (((ConnectionMaintenanceAware) connPool).closeIfDue(entry, maxIdleTime)) {
+                    // the connection has been re-used and returned to the pool since
+                    if (getDeadline(entry) >= System.currentTimeMillis()) {
+                        connectionReleased(entry);
+                    }
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                entryChecks.remove(entry, this);
+                final Cancellable cancellable = timeout;
+                return cancellable != null && cancellable.cancel();
+            }
+
+        }
+
+        private final class ValidationCheck implements Runnable, Cancellable {
+
+            private final Long key;
+            private volatile Cancellable timeout;
+
+            ValidationCheck(final Long key) {
+                this.key = key;
+            }
+
+            @Override
+            public void run() {
+                validationChecks.remove(key, this);
+                if (!closed) {
+                    requestValidation();
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                validationChecks.remove(key, this);
+                final Cancellable cancellable = timeout;
+                return cancellable != null && cancellable.cancel();
+            }
+
+        }
+
+    }
+
+}
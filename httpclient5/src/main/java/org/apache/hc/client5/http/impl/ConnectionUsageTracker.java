@@ -0,0 +1,113 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.hc.client5.http.ConnPoolListener;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.Internal;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+
+/**
+ * Keeps track of creation time and number of leases of pooled connections
+ * in order to report them to {@link ConnPoolListener}. Connections are held
+ * by weak references and do not need to be explicitly unregistered when
+ * evicted from the pool. Connections are spread over a number of independently
+ * locked stripes to avoid contention on release.
+ */
+@Internal
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class ConnectionUsageTracker {
+
+    private static final int STRIPES = 16;
+
+    private final Map<Object, Usage>[] usageMaps;
+
+    @SuppressWarnings("unchecked")
+    public ConnectionUsageTracker() {
+        this.usageMaps = new Map[STRIPES];
+        for (int i = 0; i < this.usageMaps.length; i++) {
+            this.usageMaps[i] = new WeakHashMap<>();
+        }
+    }
+
+    private Map<Object, Usage> getUsageMap(final Object connection) {
+        int h = System.identityHashCode(connection);
+        h ^= h >>> 16;
+        return this.usageMaps[h & (STRIPES - 1)];
+    }
+
+    public void connected(final Object connection) {
+        final Usage usage = new Usage(System.currentTimeMillis());
+        final Map<Object, Usage> usageMap = getUsageMap(connection);
+        synchronized (usageMap) {
+            usageMap.put(connection, usage);
+        }
+    }
+
+    public void released(
+            final HttpRoute route,
+            final Object connection,
+            final boolean reusable,
+            final ConnPoolListener listener) {
+        final long now = System.currentTimeMillis();
+        final long created;
+        final int leaseCount;
+        final Map<Object, Usage> usageMap = getUsageMap(connection);
+        synchronized (usageMap) {
+            Usage usage = usageMap.get(connection);
+            if (usage == null) {
+                // connected before the tracker became active
+                usage = new Usage(now);
+                usageMap.put(connection, usage);
+            }
+            usage.leaseCount++;
+            created = usage.created;
+            leaseCount = usage.leaseCount;
+            if (!reusable) {
+                usageMap.remove(connection);
+            }
+        }
+        listener.onRelease(route, now - created, leaseCount - 1, reusable);
+    }
+
+    static final class Usage {
+
+        final long created;
+        int leaseCount;
+
+        Usage(final long created) {
+            this.created = created;
+        }
+
+    }
+
+}
@@ -28,6 +28,8 @@
 
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+
 public final class ExecSupport {
 
     private static final AtomicLong COUNT = new AtomicLong(0);
@@ -36,4 +38,18 @@ public static long getNextExecNumber() {
         return COUNT.incrementAndGet();
     }
 
+    /**
+     * Returns the round trip time in nanoseconds of the final message exchange
+     * of an execution started at the given {@link System#nanoTime()}, excluding
+     * connection lease and connect if the start of the exchange has been recorded.
+     */
+    public static long getRoundTripTime(final HttpClientContext context, final long start) {
+        final long now = System.nanoTime();
+        final Object exchangeStart = context.getAttribute(HttpClientContext.EXCHANGE_START_TIME);
+        if (exchangeStart instanceof Long && (Long) exchangeStart - start >= 0) {
+            return now - (Long) exchangeStart;
+        }
+        return now - start;
+    }
+
 }
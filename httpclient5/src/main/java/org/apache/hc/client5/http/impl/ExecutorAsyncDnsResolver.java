@@ -0,0 +1,149 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.AsyncDnsResolver;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link AsyncDnsResolver} that runs the lookups of a blocking
+ * {@link DnsResolver} on an {@link Executor}.
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class ExecutorAsyncDnsResolver implements AsyncDnsResolver {
+
+    private static final int DEFAULT_THREADS = 4;
+
+    private static final Executor DIRECT = new Executor() {
+
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+
+    };
+
+    private static final Executor DEFAULT_EXECUTOR = createDefaultExecutor();
+
+    /**
+     * {@link SystemDefaultDnsResolver} running on a small shared pool of daemon threads.
+     */
+    public static final ExecutorAsyncDnsResolver INSTANCE = new ExecutorAsyncDnsResolver(
+            SystemDefaultDnsResolver.INSTANCE, DEFAULT_EXECUTOR);
+
+    private static Executor createDefaultExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                DEFAULT_THREADS, DEFAULT_THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new DefaultThreadFactory("dns-resolver", true));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Returns an adapter that calls the given resolver on the thread requesting
+     * the lookup. Only suitable for resolvers that never block, such as
+     * {@link InMemoryDnsResolver}.
+     */
+    public static ExecutorAsyncDnsResolver direct(final DnsResolver dnsResolver) {
+        return new ExecutorAsyncDnsResolver(dnsResolver, DIRECT);
+    }
+
+    /**
+     * Returns an adapter that runs the lookups of the given resolver on the
+     * shared pool used by {@link #INSTANCE}. {@link InMemoryDnsResolver} never
+     * blocks and is called on the thread requesting the lookup.
+     */
+    public static ExecutorAsyncDnsResolver adapt(final DnsResolver dnsResolver) {
+        Args.notNull(dnsResolver, "DNS resolver");
+        if (dnsResolver instanceof InMemoryDnsResolver) {
+            return direct(dnsResolver);
+        }
+        return new ExecutorAsyncDnsResolver(dnsResolver, DEFAULT_EXECUTOR);
+    }
+
+    private final DnsResolver dnsResolver;
+    private final Executor executor;
+
+    public ExecutorAsyncDnsResolver(final DnsResolver dnsResolver, final Executor executor) {
+        super();
+        this.dnsResolver = Args.notNull(dnsResolver, "DNS resolver");
+        this.executor = Args.notNull(executor, "Executor");
+    }
+
+    @Override
+    public Future<InetAddress[]> resolve(final String host, final FutureCallback<InetAddress[]> callback) {
+        final BasicFuture<InetAddress[]> future = new BasicFuture<>(callback);
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (future.isCancelled()) {
+                        return;
+                    }
+                    try {
+                        final InetAddress[] addresses = dnsResolver.resolve(host);
+                        if (addresses == null || addresses.length == 0) {
+                            future.failed(new UnknownHostException(host + " cannot be resolved"));
+                        } else {
+                            future.completed(addresses);
+                        }
+                    } catch (final UnknownHostException ex) {
+                        future.failed(ex);
+                    } catch (final RuntimeException ex) {
+                        future.failed(ex);
+                    }
+                }
+
+            });
+        } catch (final RejectedExecutionException ex) {
+            future.failed(ex);
+        }
+        return future;
+    }
+
+}
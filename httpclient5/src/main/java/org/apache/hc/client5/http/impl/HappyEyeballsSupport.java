@@ -0,0 +1,78 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hc.core5.annotation.Internal;
+
+/**
+ * Support methods for staggered parallel connection establishment
+ * as described in RFC 8305 (Happy Eyeballs Version 2).
+ */
+@Internal
+public final class HappyEyeballsSupport {
+
+    /**
+     * Re-orders resolved addresses so that IPv6 and IPv4 addresses alternate,
+     * starting with the address family of the first address. The relative order
+     * of addresses within the same family is preserved.
+     */
+    public static InetAddress[] interleave(final InetAddress[] addresses) {
+        if (addresses == null || addresses.length < 3) {
+            return addresses;
+        }
+        final List<InetAddress> first = new ArrayList<>(addresses.length);
+        final List<InetAddress> second = new ArrayList<>(addresses.length);
+        final boolean firstIPv6 = addresses[0] instanceof Inet6Address;
+        for (final InetAddress address: addresses) {
+            if ((address instanceof Inet6Address) == firstIPv6) {
+                first.add(address);
+            } else {
+                second.add(address);
+            }
+        }
+        final InetAddress[] result = new InetAddress[addresses.length];
+        int i = 0;
+        int n1 = 0;
+        int n2 = 0;
+        while (n1 < first.size() || n2 < second.size()) {
+            if (n1 < first.size()) {
+                result[i++] = first.get(n1++);
+            }
+            if (n2 < second.size()) {
+                result[i++] = second.get(n2++);
+            }
+        }
+        return result;
+    }
+
+}
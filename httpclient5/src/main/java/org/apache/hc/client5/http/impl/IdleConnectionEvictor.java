@@ -38,6 +38,10 @@
 /**
  * This class maintains a background thread to enforce an eviction policy for expired / idle
  * persistent connections kept alive in the connection pool.
+ * <p>
+ * If the connection manager implements {@link IdleConnectionValidator} the evictor
+ * also triggers validation of idle connections on each run.
+ * </p>
  *
  * @since 4.4
  */
@@ -61,6 +65,9 @@ public void run() {
                         if (maxIdleTime != null) {
                             connectionManager.closeIdle(maxIdleTime);
                         }
+                        if (connectionManager instanceof IdleConnectionValidator) {
+                            ((IdleConnectionValidator) connectionManager).validateIdle();
+                        }
                     }
                 } catch (final InterruptedException ex) {
                     Thread.currentThread().interrupt();
@@ -0,0 +1,278 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.ConnPoolListener;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+
+/**
+ * {@link ConnPoolListener} implementation that keeps connection pool metrics
+ * in memory on a per route basis. All metrics are recorded without locking.
+ * Point-in-time views of the metrics can be obtained with {@link #getSnapshot(HttpRoute)}
+ * and {@link #getSnapshots()}.
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class InMemoryConnPoolMetrics implements ConnPoolListener {
+
+    private final ConcurrentMap<HttpRoute, RouteMetrics> routeMetricsMap;
+
+    public InMemoryConnPoolMetrics() {
+        this.routeMetricsMap = new ConcurrentHashMap<>();
+    }
+
+    private RouteMetrics getRouteMetrics(final HttpRoute route) {
+        RouteMetrics routeMetrics = this.routeMetricsMap.get(route);
+        if (routeMetrics == null) {
+            final RouteMetrics newRouteMetrics = new RouteMetrics();
+            routeMetrics = this.routeMetricsMap.putIfAbsent(route, newRouteMetrics);
+            if (routeMetrics == null) {
+                routeMetrics = newRouteMetrics;
+            }
+        }
+        return routeMetrics;
+    }
+
+    @Override
+    public void onLease(final HttpRoute route, final long waitNanos, final boolean reused) {
+        final RouteMetrics routeMetrics = getRouteMetrics(route);
+        routeMetrics.leaseCount.incrementAndGet();
+        if (reused) {
+            routeMetrics.reuseCount.incrementAndGet();
+        }
+        routeMetrics.leaseWait.record(waitNanos);
+    }
+
+    @Override
+    public void onLeaseTimeout(final HttpRoute route, final long waitNanos) {
+        getRouteMetrics(route).leaseTimeoutCount.incrementAndGet();
+    }
+
+    @Override
+    public void onConnect(final HttpRoute route, final long connectNanos) {
+        getRouteMetrics(route).connectTime.record(connectNanos);
+    }
+
+    @Override
+    public void onTlsHandshake(final HttpRoute route, final long handshakeNanos) {
+        getRouteMetrics(route).tlsHandshakeTime.record(handshakeNanos);
+    }
+
+    @Override
+    public void onRelease(final HttpRoute route, final long ageMillis, final int reuseCount, final boolean reusable) {
+        final RouteMetrics routeMetrics = getRouteMetrics(route);
+        routeMetrics.ageAtRelease.record(ageMillis);
+        routeMetrics.reusesPerConnection.record(reuseCount);
+    }
+
+    /**
+     * Returns a snapshot of metrics of the given route or {@code null}
+     * if no events have been recorded for the route.
+     */
+    public RouteSnapshot getSnapshot(final HttpRoute route) {
+        final RouteMetrics routeMetrics = this.routeMetricsMap.get(route);
+        return routeMetrics != null ? routeMetrics.getSnapshot(route) : null;
+    }
+
+    /**
+     * Returns snapshots of metrics of all routes.
+     */
+    public Map<HttpRoute, RouteSnapshot> getSnapshots() {
+        final Map<HttpRoute, RouteSnapshot> snapshots = new HashMap<>();
+        for (final Map.Entry<HttpRoute, RouteMetrics> entry: this.routeMetricsMap.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().getSnapshot(entry.getKey()));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Discards all metrics recorded so far.
+     */
+    public void clear() {
+        this.routeMetricsMap.clear();
+    }
+
+    @Override
+    public String toString() {
+        return getSnapshots().values().toString();
+    }
+
+    static final class RouteMetrics {
+
+        final AtomicLong leaseCount = new AtomicLong(0);
+        final AtomicLong reuseCount = new AtomicLong(0);
+        final AtomicLong leaseTimeoutCount = new AtomicLong(0);
+        final ConcurrentHistogram leaseWait = new ConcurrentHistogram();
+        final ConcurrentHistogram connectTime = new ConcurrentHistogram();
+        final ConcurrentHistogram tlsHandshakeTime = new ConcurrentHistogram();
+        final ConcurrentHistogram ageAtRelease = new ConcurrentHistogram();
+        final ConcurrentHistogram reusesPerConnection = new ConcurrentHistogram();
+
+        RouteSnapshot getSnapshot(final HttpRoute route) {
+            return new RouteSnapshot(
+                    route,
+                    leaseCount.get(),
+                    reuseCount.get(),
+                    leaseTimeoutCount.get(),
+                    leaseWait.getSnapshot(),
+                    connectTime.getSnapshot(),
+                    tlsHandshakeTime.getSnapshot(),
+                    ageAtRelease.getSnapshot(),
+                    reusesPerConnection.getSnapshot());
+        }
+
+    }
+
+    /**
+     * Point-in-time view of connection pool metrics of a particular route.
+     */
+    @Contract(threading = ThreadingBehavior.IMMUTABLE)
+    public static final class RouteSnapshot {
+
+        private final HttpRoute route;
+        private final long leaseCount;
+        private final long reuseCount;
+        private final long leaseTimeoutCount;
+        private final ConcurrentHistogram.Snapshot leaseWait;
+        private final ConcurrentHistogram.Snapshot connectTime;
+        private final ConcurrentHistogram.Snapshot tlsHandshakeTime;
+        private final ConcurrentHistogram.Snapshot ageAtRelease;
+        private final ConcurrentHistogram.Snapshot reusesPerConnection;
+
+        RouteSnapshot(
+                final HttpRoute route,
+                final long leaseCount,
+                final long reuseCount,
+                final long leaseTimeoutCount,
+                final ConcurrentHistogram.Snapshot leaseWait,
+                final ConcurrentHistogram.Snapshot connectTime,
+                final ConcurrentHistogram.Snapshot tlsHandshakeTime,
+                final ConcurrentHistogram.Snapshot ageAtRelease,
+                final ConcurrentHistogram.Snapshot reusesPerConnection) {
+            this.route = route;
+            this.leaseCount = leaseCount;
+            this.reuseCount = reuseCount;
+            this.leaseTimeoutCount = leaseTimeoutCount;
+            this.leaseWait = leaseWait;
+            this.connectTime = connectTime;
+            this.tlsHandshakeTime = tlsHandshakeTime;
+            this.ageAtRelease = ageAtRelease;
+            this.reusesPerConnection = reusesPerConnection;
+        }
+
+        public HttpRoute getRoute() {
+            return route;
+        }
+
+        /**
+         * Returns the total number of connection leases.
+         */
+        public long getLeaseCount() {
+            return leaseCount;
+        }
+
+        /**
+         * Returns the number of leases that have re-used a persistent connection.
+         */
+        public long getReuseCount() {
+            return reuseCount;
+        }
+
+        /**
+         * Returns the ratio of leases that have re-used a persistent connection.
+         */
+        public double getReuseRatio() {
+            return leaseCount > 0 ? (double) reuseCount / leaseCount : 0.0d;
+        }
+
+        public long getLeaseTimeoutCount() {
+            return leaseTimeoutCount;
+        }
+
+        /**
+         * Returns lease wait times in nanoseconds.
+         */
+        public ConcurrentHistogram.Snapshot getLeaseWait() {
+            return leaseWait;
+        }
+
+        /**
+         * Returns connect times in nanoseconds.
+         */
+        public ConcurrentHistogram.Snapshot getConnectTime() {
+            return connectTime;
+        }
+
+        /**
+         * Returns TLS handshake times in nanoseconds.
+         */
+        public ConcurrentHistogram.Snapshot getTlsHandshakeTime() {
+            return tlsHandshakeTime;
+        }
+
+        /**
+         * Returns connection age at release in milliseconds.
+         */
+        public ConcurrentHistogram.Snapshot getAgeAtRelease() {
+            return ageAtRelease;
+        }
+
+        /**
+         * Returns the number of times connections had been re-used as of their release.
+         */
+        public ConcurrentHistogram.Snapshot getReusesPerConnection() {
+            return reusesPerConnection;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buffer = new StringBuilder();
+            buffer.append("[route: ").append(route);
+            buffer.append("][leases: ").append(leaseCount);
+            buffer.append("][reused: ").append(reuseCount);
+            buffer.append("][lease timeouts: ").append(leaseTimeoutCount);
+            buffer.append("][lease wait: ").append(leaseWait);
+            buffer.append("][connect: ").append(connectTime);
+            buffer.append("][tls handshake: ").append(tlsHandshakeTime);
+            buffer.append("][age at release: ").append(ageAtRelease);
+            buffer.append("]");
+            return buffer.toString();
+        }
+
+    }
+
+}
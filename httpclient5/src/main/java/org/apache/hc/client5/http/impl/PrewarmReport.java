@@ -0,0 +1,104 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Outcome of a connection pre-warming run. Pre-warming opens a number of
+ * persistent connections to the given route ahead of time and returns them
+ * to the pool so that subsequent requests do not incur connect and TLS
+ * handshake latency.
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public final class PrewarmReport {
+
+    private final HttpRoute route;
+    private final int requested;
+    private final int succeeded;
+    private final List<Exception> failures;
+
+    public PrewarmReport(
+            final HttpRoute route,
+            final int requested,
+            final int succeeded,
+            final List<Exception> failures) {
+        this.route = Args.notNull(route, "HTTP route");
+        this.requested = requested;
+        this.succeeded = succeeded;
+        this.failures = failures != null ?
+                Collections.unmodifiableList(new ArrayList<>(failures)) : Collections.<Exception>emptyList();
+    }
+
+    public HttpRoute getRoute() {
+        return route;
+    }
+
+    /**
+     * Returns the number of connections the pre-warming run attempted to establish.
+     */
+    public int getRequested() {
+        return requested;
+    }
+
+    /**
+     * Returns the number of connections that have been fully established
+     * and returned to the pool.
+     */
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Returns exceptions caused by connection attempts that have failed.
+     */
+    public List<Exception> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[route: ").append(route);
+        buffer.append("][requested: ").append(requested);
+        buffer.append("][succeeded: ").append(succeeded);
+        buffer.append("][failed: ").append(failures.size());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
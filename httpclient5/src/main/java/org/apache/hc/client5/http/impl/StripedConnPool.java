@@ -0,0 +1,744 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.function.Callback;
+import org.apache.hc.core5.io.GracefullyCloseable;
+import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.pool.ManagedConnPool;
+import org.apache.hc.core5.pool.PoolEntry;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.Asserts;
+import org.apache.hc.core5.util.LangUtils;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * Connection pool with per route limits and a total limit that does not rely
+ * on a global lock. Available connections are kept in per route lock-free deques,
+ * the total number of allocated connections is tracked by a set of striped counters
+ * and pending lease requests are queued per route and completed by whichever thread
+ * releases a connection or frees capacity. Lease requests time out on their own
+ * through the {@link ConnectionMaintenanceScheduler#getDefault() shared maintenance
+ * scheduler}.
+ * <p>
+ * This pool is intended for clients with a large number of concurrent threads
+ * where lock contention on {@link org.apache.hc.core5.pool.StrictConnPool}
+ * becomes a bottleneck. Unlike the strict pool it makes no fairness guarantees
+ * to pending requests of different routes.
+ * </p>
+ *
+ * @param <T> route type
+ * @param <C> connection type
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class StripedConnPool<T, C extends GracefullyCloseable> implements ManagedConnPool<T, C> {
+
+    // spread stripes 64 bytes apart to avoid false sharing
+    private static final int PAD = 16;
+
+    private final TimeValue timeToLive;
+    private final PoolReusePolicy policy;
+    private final ConcurrentMap<T, RoutePool<T, C>> routeToPool;
+    private final ConcurrentMap<T, Integer> maxPerRoute;
+    private final AtomicIntegerArray stripes;
+    private final int stripeCount;
+    private final AtomicBoolean isShutDown;
+
+    private volatile int defaultMaxPerRoute;
+    private volatile int maxTotal;
+
+    public StripedConnPool(
+            final int defaultMaxPerRoute,
+            final int maxTotal,
+            final TimeValue timeToLive,
+            final PoolReusePolicy policy,
+            final int stripeCount) {
+        super();
+        Args.positive(defaultMaxPerRoute, "Max per route value");
+        Args.positive(maxTotal, "Max total value");
+        Args.positive(stripeCount, "Stripe count");
+        this.timeToLive = timeToLive != null ? timeToLive : TimeValue.NEG_ONE_MILLISECONDS;
+        this.policy = policy != null ? policy : PoolReusePolicy.LIFO;
+        this.routeToPool = new ConcurrentHashMap<>();
+        this.maxPerRoute = new ConcurrentHashMap<>();
+        int n = 1;
+        while (n < stripeCount) {
+            n <<= 1;
+        }
+        this.stripeCount = n;
+        this.stripes = new AtomicIntegerArray(n * PAD);
+        this.isShutDown = new AtomicBoolean(false);
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+        this.maxTotal = maxTotal;
+    }
+
+    public StripedConnPool(
+            final int defaultMaxPerRoute,
+            final int maxTotal,
+            final TimeValue timeToLive,
+            final PoolReusePolicy policy) {
+        this(defaultMaxPerRoute, maxTotal, timeToLive, policy,
+                Math.min(64, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public StripedConnPool(final int defaultMaxPerRoute, final int maxTotal) {
+        this(defaultMaxPerRoute, maxTotal, TimeValue.NEG_ONE_MILLISECONDS, PoolReusePolicy.LIFO);
+    }
+
+    public boolean isShutdown() {
+        return this.isShutDown.get();
+    }
+
+    @Override
+    public void shutdown(final ShutdownType shutdownType) {
+        if (this.isShutDown.compareAndSet(false, true)) {
+            for (final RoutePool<T, C> routePool: this.routeToPool.values()) {
+                for (;;) {
+                    final LeaseRequest<T, C> request = routePool.pending.pollFirst();
+                    if (request == null) {
+                        break;
+                    }
+                    request.future.cancel();
+                }
+                for (;;) {
+                    final PoolEntry<T, C> entry = routePool.available.pollFirst();
+                    if (entry == null) {
+                        break;
+                    }
+                    entry.discardConnection(shutdownType);
+                }
+                for (final PoolEntry<T, C> entry: routePool.leased) {
+                    entry.discardConnection(shutdownType);
+                }
+                routePool.leased.clear();
+            }
+            this.routeToPool.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        shutdown(ShutdownType.GRACEFUL);
+    }
+
+    private RoutePool<T, C> getPool(final T route) {
+        RoutePool<T, C> routePool = this.routeToPool.get(route);
+        if (routePool == null) {
+            final RoutePool<T, C> newRoutePool = new RoutePool<>(route);
+            routePool = this.routeToPool.putIfAbsent(route, newRoutePool);
+            if (routePool == null) {
+                routePool = newRoutePool;
+            }
+        }
+        return routePool;
+    }
+
+    @Override
+    public Future<PoolEntry<T, C>> lease(
+            final T route, final Object state,
+            final Timeout requestTimeout,
+            final FutureCallback<PoolEntry<T, C>> callback) {
+        Args.notNull(route, "Route");
+        Asserts.check(!this.isShutDown.get(), "Connection pool shut down");
+        final BasicFuture<PoolEntry<T, C>> future = new BasicFuture<>(callback);
+        final RoutePool<T, C> routePool = getPool(route);
+        // requests already waiting are served first
+        if (routePool.pending.isEmpty()) {
+            final PoolEntry<T, C> entry = acquire(routePool, state);
+            if (entry != null) {
+                future.completed(entry);
+                return future;
+            }
+        }
+        final long deadline = TimeValue.isPositive(requestTimeout) ?
+                System.currentTimeMillis() + requestTimeout.toMillis() : 0;
+        final LeaseRequest<T, C> request = new LeaseRequest<>(state, deadline, future);
+        routePool.pending.addLast(request);
+        if (deadline > 0) {
+            scheduleTimeout(routePool, request, requestTimeout);
+        }
+        servicePending(routePool);
+        return future;
+    }
+
+    private void scheduleTimeout(
+            final RoutePool<T, C> routePool, final LeaseRequest<T, C> request, final Timeout requestTimeout) {
+        try {
+            request.timeout = ConnectionMaintenanceScheduler.getDefault().schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (routePool.pending.remove(request)) {
+                        request.future.failed(new TimeoutException("Timeout deadline: " + request.deadline));
+                    }
+                }
+
+            }, requestTimeout);
+        } catch (final IllegalStateException ex) {
+            // the scheduler is shut down; the request times out on the next pool maintenance
+        }
+    }
+
+    private static void cancelTimeout(final LeaseRequest<?, ?> request) {
+        final Cancellable timeout = request.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    public Future<PoolEntry<T, C>> lease(final T route, final Object state) {
+        return lease(route, state, Timeout.DISABLED, null);
+    }
+
+    @Override
+    public void release(final PoolEntry<T, C> entry, final boolean reusable) {
+        if (entry == null) {
+            return;
+        }
+        final RoutePool<T, C> routePool = this.routeToPool.get(entry.getRoute());
+        if (routePool == null) {
+            // the pool has been shut down
+            entry.discardConnection(ShutdownType.GRACEFUL);
+            return;
+        }
+        if (!routePool.leased.remove(entry)) {
+            throw new IllegalStateException("Pool entry is not present in the set of leased entries");
+        }
+        if (reusable && !this.isShutDown.get()) {
+            makeAvailable(routePool, entry);
+            servicePending(routePool);
+            if (totalAllocated() >= this.maxTotal) {
+                // requests of other routes held back by the total limit can
+                // only proceed by evicting the connection just returned
+                serviceAllPending();
+            }
+        } else {
+            discard(routePool, entry);
+            serviceAllPending();
+        }
+    }
+
+    private PoolEntry<T, C> acquire(final RoutePool<T, C> routePool, final Object state) {
+        final long now = System.currentTimeMillis();
+        for (;;) {
+            final PoolEntry<T, C> entry = pollAvailable(routePool, state);
+            if (entry == null) {
+                break;
+            }
+            if (isExpired(entry, now)) {
+                discard(routePool, entry);
+                continue;
+            }
+            routePool.leased.add(entry);
+            return entry;
+        }
+        if (allocate(routePool)) {
+            final PoolEntry<T, C> entry = new PoolEntry<>(routePool.route, this.timeToLive);
+            routePool.leased.add(entry);
+            return entry;
+        }
+        return null;
+    }
+
+    private static boolean isExpired(final PoolEntry<?, ?> entry, final long now) {
+        return entry.hasConnection() && entry.getExpiry() < now;
+    }
+
+    private PoolEntry<T, C> pollAvailable(final RoutePool<T, C> routePool, final Object state) {
+        for (final PoolEntry<T, C> entry: routePool.available) {
+            if (LangUtils.equals(state, entry.getState()) && routePool.available.removeFirstOccurrence(entry)) {
+                return entry;
+            }
+        }
+        if (state != null) {
+            for (final PoolEntry<T, C> entry: routePool.available) {
+                if (entry.getState() == null && routePool.available.removeFirstOccurrence(entry)) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void makeAvailable(final RoutePool<T, C> routePool, final PoolEntry<T, C> entry) {
+        switch (this.policy) {
+            case LIFO:
+                routePool.available.addFirst(entry);
+                break;
+            case FIFO:
+                routePool.available.addLast(entry);
+                break;
+            default:
+                throw new IllegalStateException("Unexpected ConnPoolPolicy value: " + this.policy);
+        }
+    }
+
+    private void discard(final RoutePool<T, C> routePool, final PoolEntry<T, C> entry) {
+        entry.discardConnection(ShutdownType.GRACEFUL);
+        routePool.allocated.decrementAndGet();
+        releaseTotal();
+    }
+
+    private boolean allocate(final RoutePool<T, C> routePool) {
+        final int max = getMaxPerRoute(routePool.route);
+        for (;;) {
+            final int allocated = routePool.allocated.get();
+            if (allocated >= max) {
+                return false;
+            }
+            if (routePool.allocated.compareAndSet(allocated, allocated + 1)) {
+                break;
+            }
+        }
+        if (acquireTotal()) {
+            return true;
+        }
+        // The total limit has been reached. Try to make room by closing
+        // the least recently used idle connection of another route.
+        if (evictOther(routePool) && acquireTotal()) {
+            return true;
+        }
+        routePool.allocated.decrementAndGet();
+        return false;
+    }
+
+    private boolean evictOther(final RoutePool<T, C> routePool) {
+        for (final RoutePool<T, C> otherPool: this.routeToPool.values()) {
+            if (otherPool != routePool) {
+                final PoolEntry<T, C> entry = this.policy == PoolReusePolicy.LIFO ?
+                        otherPool.available.pollLast() : otherPool.available.pollFirst();
+                if (entry != null) {
+                    discard(otherPool, entry);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int stripeCapacity(final int stripe) {
+        final int max = this.maxTotal;
+        return max / this.stripeCount + (stripe < max % this.stripeCount ? 1 : 0);
+    }
+
+    private int homeStripe() {
+        return (int) Thread.currentThread().getId() & (this.stripeCount - 1);
+    }
+
+    private boolean acquireTotal() {
+        final int home = homeStripe();
+        for (int i = 0; i < this.stripeCount; i++) {
+            final int stripe = (home + i) & (this.stripeCount - 1);
+            final int capacity = stripeCapacity(stripe);
+            for (;;) {
+                final int count = this.stripes.get(stripe * PAD);
+                if (count >= capacity) {
+                    break;
+                }
+                if (this.stripes.compareAndSet(stripe * PAD, count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void releaseTotal() {
+        final int home = homeStripe();
+        for (int i = 0; i < this.stripeCount; i++) {
+            final int stripe = (home + i) & (this.stripeCount - 1);
+            for (;;) {
+                final int count = this.stripes.get(stripe * PAD);
+                if (count <= 0) {
+                    break;
+                }
+                if (this.stripes.compareAndSet(stripe * PAD, count, count - 1)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int totalAllocated() {
+        int total = 0;
+        for (int i = 0; i < this.stripeCount; i++) {
+            total += this.stripes.get(i * PAD);
+        }
+        return total;
+    }
+
+    /**
+     * Completes pending requests of the route as long as connections can be
+     * acquired for them. Only one thread at a time services the queue of a route;
+     * a thread that finds the queue being serviced makes the servicing thread
+     * take another pass, so that capacity freed concurrently is never missed.
+     */
+    private void servicePending(final RoutePool<T, C> routePool) {
+        if (routePool.servicing.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (;;) {
+            boolean done = false;
+            try {
+                drainPending(routePool);
+                done = true;
+            } finally {
+                if (!done) {
+                    routePool.servicing.set(0);
+                }
+            }
+            missed = routePool.servicing.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void drainPending(final RoutePool<T, C> routePool) {
+        for (;;) {
+            final LeaseRequest<T, C> request = routePool.pending.peekFirst();
+            if (request == null) {
+                return;
+            }
+            final BasicFuture<PoolEntry<T, C>> future = request.future;
+            if (future.isDone()) {
+                routePool.pending.remove(request);
+                cancelTimeout(request);
+                continue;
+            }
+            if (request.deadline > 0 && request.deadline <= System.currentTimeMillis()) {
+                if (routePool.pending.remove(request)) {
+                    future.failed(new TimeoutException("Timeout deadline: " + request.deadline));
+                }
+                continue;
+            }
+            final PoolEntry<T, C> entry = acquire(routePool, request.state);
+            if (entry == null) {
+                // the request stays at the head of the queue
+                return;
+            }
+            // the request may have timed out in the meantime
+            if (!routePool.pending.remove(request) || !future.completed(entry)) {
+                routePool.leased.remove(entry);
+                makeAvailable(routePool, entry);
+                continue;
+            }
+            cancelTimeout(request);
+        }
+    }
+
+    private void serviceAllPending() {
+        for (final RoutePool<T, C> routePool: this.routeToPool.values()) {
+            if (!routePool.pending.isEmpty()) {
+                servicePending(routePool);
+            }
+        }
+    }
+
+    private void purgeTimedOutRequests() {
+        final long now = System.currentTimeMillis();
+        for (final RoutePool<T, C> routePool: this.routeToPool.values()) {
+            for (final Iterator<LeaseRequest<T, C>> it = routePool.pending.iterator(); it.hasNext(); ) {
+                final LeaseRequest<T, C> request = it.next();
+                if (request.future.isDone()) {
+                    it.remove();
+                } else if (request.deadline > 0 && request.deadline <= now) {
+                    it.remove();
+                    request.future.failed(new TimeoutException("Timeout deadline: " + request.deadline));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setMaxTotal(final int max) {
+        Args.positive(max, "Max value");
+        this.maxTotal = max;
+        serviceAllPending();
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return this.maxTotal;
+    }
+
+    @Override
+    public void setDefaultMaxPerRoute(final int max) {
+        Args.positive(max, "Max value");
+        this.defaultMaxPerRoute = max;
+        serviceAllPending();
+    }
+
+    @Override
+    public int getDefaultMaxPerRoute() {
+        return this.defaultMaxPerRoute;
+    }
+
+    @Override
+    public void setMaxPerRoute(final T route, final int max) {
+        Args.notNull(route, "Route");
+        if (max > -1) {
+            this.maxPerRoute.put(route, max);
+        } else {
+            this.maxPerRoute.remove(route);
+        }
+        final RoutePool<T, C> routePool = this.routeToPool.get(route);
+        if (routePool != null) {
+            servicePending(routePool);
+        }
+    }
+
+    @Override
+    public int getMaxPerRoute(final T route) {
+        Args.notNull(route, "Route");
+        final Integer v = this.maxPerRoute.get(route);
+        return v != null ? v.intValue() : this.defaultMaxPerRoute;
+    }
+
+    @Override
+    public PoolStats getTotalStats() {
+        int leased = 0;
+        int pending = 0;
+        int available = 0;
+        for (final RoutePool<T, C> routePool: this.routeToPool.values()) {
+            leased += routePool.leased.size();
+            pending += routePool.pending.size();
+            available += routePool.available.size();
+        }
+        return new PoolStats(leased, pending, available, this.maxTotal);
+    }
+
+    @Override
+    public PoolStats getStats(final T route) {
+        Args.notNull(route, "Route");
+        final RoutePool<T, C> routePool = this.routeToPool.get(route);
+        if (routePool == null) {
+            return new PoolStats(0, 0, 0, getMaxPerRoute(route));
+        }
+        return new PoolStats(
+                routePool.leased.size(),
+                routePool.pending.size(),
+                routePool.available.size(),
+                getMaxPerRoute(route));
+    }
+
+    @Override
+    public Set<T> getRoutes() {
+        return new HashSet<>(this.routeToPool.keySet());
+    }
+
+    @Override
+    public void closeIdle(final TimeValue idleTime) {
+        final long deadline = System.currentTimeMillis() - (TimeValue.isPositive(idleTime) ? idleTime.toMillis() : 0);
+        boolean freed = false;
+        for (final RoutePool<T, C> routePool: this.routeToPool.values()) {
+            for (final PoolEntry<T, C> entry: routePool.available) {
+                if (entry.getUpdated() <= deadline && routePool.available.removeFirstOccurrence(entry)) {
+                    discard(routePool, entry);
+                    freed = true;
+                }
+            }
+        }
+        purgeTimedOutRequests();
+        if (freed) {
+            serviceAllPending();
+        }
+    }
+
+    @Override
+    public void closeExpired() {
+        final long now = System.currentTimeMillis();
+        boolean freed = false;
+        for (final RoutePool<T, C> routePool: this.routeToPool.values()) {
+            for (final PoolEntry<T, C> entry: routePool.available) {
+                if (isExpired(entry, now) && routePool.available.removeFirstOccurrence(entry)) {
+                    discard(routePool, entry);
+                    freed = true;
+                }
+            }
+        }
+        purgeTimedOutRequests();
+        if (freed) {
+            serviceAllPending();
+        }
+    }
+
+    /**
+     * Closes the connection of the given entry if the entry is available in the
+     * pool and has expired or stayed idle longer than the given time.
+     *
+     * @param entry the pool entry.
+     * @param idleTime the idle time. If {@code null} the connection is only
+     *   closed if it has expired.
+     * @return {@code true} if the entry is available in the pool and has been kept.
+     */
+    public boolean closeIfDue(final PoolEntry<T, C> entry, final TimeValue idleTime) {
+        final RoutePool<T, C> routePool = this.routeToPool.get(entry.getRoute());
+        if (routePool == null || !routePool.available.contains(entry)) {
+            return false;
+        }
+        final long now = System.currentTimeMillis();
+        final long deadline = TimeValue.isPositive(idleTime) ? now - idleTime.toMillis() : Long.MIN_VALUE;
+        if (!isExpired(entry, now) && entry.getUpdated() > deadline) {
+            return true;
+        }
+        if (!routePool.available.removeFirstOccurrence(entry)) {
+            // leased in the meantime
+            return false;
+        }
+        // the entry may have been leased and returned before it got taken out of the pool
+        if (!isExpired(entry, now) && entry.getUpdated() > deadline) {
+            makeAvailable(routePool, entry);
+            servicePending(routePool);
+            return true;
+        }
+        discard(routePool, entry);
+        serviceAllPending();
+        return false;
+    }
+
+    /**
+     * Enumerates entries available in the pool. Each entry is taken out of the pool
+     * for the duration of the callback, which therefore has exclusive access to
+     * the entry and its connection. Entries whose connection got discarded by
+     * the callback are removed from the pool, all others are put back.
+     *
+     * @param callback the callback to invoke for every available entry.
+     */
+    public void enumAvailable(final Callback<PoolEntry<T, C>> callback) {
+        boolean freed = false;
+        for (final RoutePool<T, C> routePool: this.routeToPool.values()) {
+            boolean returned = false;
+            // iterate over a snapshot as entries get re-inserted into the deque
+            for (final PoolEntry<T, C> entry: new ArrayList<>(routePool.available)) {
+                if (!routePool.available.removeFirstOccurrence(entry)) {
+                    continue;
+                }
+                boolean reusable = false;
+                try {
+                    callback.execute(entry);
+                    reusable = entry.hasConnection() && !this.isShutDown.get();
+                } finally {
+                    if (reusable) {
+                        // put the entry back where the least recently used entries are kept
+                        if (this.policy == PoolReusePolicy.FIFO) {
+                            routePool.available.addFirst(entry);
+                        } else {
+                            routePool.available.addLast(entry);
+                        }
+                        returned = true;
+                    } else {
+                        discard(routePool, entry);
+                        freed = true;
+                    }
+                }
+            }
+            if (returned) {
+                servicePending(routePool);
+            }
+        }
+        if (freed) {
+            serviceAllPending();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[allocated: ");
+        buffer.append(totalAllocated());
+        buffer.append("][max total: ");
+        buffer.append(this.maxTotal);
+        buffer.append("][stripes: ");
+        buffer.append(this.stripeCount);
+        buffer.append("][routes: ");
+        buffer.append(this.routeToPool.keySet());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    static final class LeaseRequest<T, C extends GracefullyCloseable> {
+
+        final Object state;
+        final long deadline;
+        final BasicFuture<PoolEntry<T, C>> future;
+        volatile Cancellable timeout;
+
+        LeaseRequest(final Object state, final long deadline, final BasicFuture<PoolEntry<T, C>> future) {
+            this.state = state;
+            this.deadline = deadline;
+            this.future = future;
+        }
+
+    }
+
+    static final class RoutePool<T, C extends GracefullyCloseable> {
+
+        final T route;
+        final ConcurrentLinkedDeque<PoolEntry<T, C>> available;
+        final Set<PoolEntry<T, C>> leased;
+        final ConcurrentLinkedDeque<LeaseRequest<T, C>> pending;
+        final AtomicInteger allocated;
+        final AtomicInteger servicing;
+
+        RoutePool(final T route) {
+            this.route = route;
+            this.available = new ConcurrentLinkedDeque<>();
+            this.leased = Collections.newSetFromMap(new ConcurrentHashMap<PoolEntry<T, C>, Boolean>());
+            this.pending = new ConcurrentLinkedDeque<>();
+            this.allocated = new AtomicInteger(0);
+            this.servicing = new AtomicInteger(0);
+        }
+
+    }
+
+}
@@ -92,7 +92,8 @@ void ensureRunning() {
         }
     }
 
-    ConnectionInitiator getConnectionInitiator() {
+    @Override
+    public ConnectionInitiator getConnectionInitiator() {
         return ioReactor;
     }
 
@@ -46,6 +46,7 @@
 import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
 import org.apache.hc.core5.http.protocol.HttpContext;
 import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.reactor.ConnectionInitiator;
 import org.apache.hc.core5.reactor.ExceptionEvent;
 import org.apache.hc.core5.reactor.IOReactorStatus;
 import org.apache.hc.core5.util.Args;
@@ -71,6 +72,20 @@ public abstract class CloseableHttpAsyncClient implements HttpAsyncClient, Close
 
     public abstract void shutdown(ShutdownType shutdownType);
 
+    /**
+     * Returns the connection initiator of the client's I/O reactor, for instance
+     * to pre-warm connections with
+     * {@link org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager#prewarm}.
+     *
+     * @return the connection initiator or {@code null} if the client does not
+     *  expose one, in which case pre-warming is skipped.
+     *
+     * @since 5.0
+     */
+    public ConnectionInitiator getConnectionInitiator() {
+        return null;
+    }
+
     public final <T> Future<T> execute(
             final AsyncRequestProducer requestProducer,
             final AsyncResponseConsumer<T> responseConsumer,
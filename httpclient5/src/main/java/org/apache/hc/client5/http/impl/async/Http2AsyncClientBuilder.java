@@ -38,6 +38,7 @@
 import java.util.List;
 import java.util.concurrent.ThreadFactory;
 
+import org.apache.hc.client5.http.AsyncDnsResolver;
 import org.apache.hc.client5.http.AuthenticationStrategy;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpRequestRetryHandler;
@@ -53,6 +54,7 @@
 import org.apache.hc.client5.http.cookie.CookieSpecProvider;
 import org.apache.hc.client5.http.cookie.CookieStore;
 import org.apache.hc.client5.http.impl.ChainElements;
+import org.apache.hc.client5.http.impl.ConnectionMaintenanceScheduler;
 import org.apache.hc.client5.http.impl.CookieSpecRegistries;
 import org.apache.hc.client5.http.impl.DefaultAuthenticationStrategy;
 import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryHandler;
@@ -77,6 +79,7 @@
 import org.apache.hc.client5.http.routing.HttpRoutePlanner;
 import org.apache.hc.client5.http.ssl.H2TlsStrategy;
 import org.apache.hc.core5.annotation.Internal;
+import org.apache.hc.core5.concurrent.Cancellable;
 import org.apache.hc.core5.concurrent.DefaultThreadFactory;
 import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.function.Resolver;
@@ -197,6 +200,7 @@ private ExecInterceptorEntry(
     private RequestConfig defaultRequestConfig;
     private boolean evictIdleConnections;
     private TimeValue maxIdleTime;
+    private ConnectionMaintenanceScheduler connectionMaintenanceScheduler;
 
     private boolean systemProperties;
     private boolean automaticRetriesDisabled;
@@ -205,6 +209,7 @@ private ExecInterceptorEntry(
     private boolean authCachingDisabled;
 
     private DnsResolver dnsResolver;
+    private AsyncDnsResolver asyncDnsResolver;
     private TlsStrategy tlsStrategy;
 
     private ThreadFactory threadFactory;
@@ -411,6 +416,17 @@ public final Http2AsyncClientBuilder setDnsResolver(final DnsResolver dnsResolve
         return this;
     }
 
+    /**
+     * Assigns {@link AsyncDnsResolver} instance. Takes precedence over
+     * {@link #setDnsResolver(DnsResolver)}.
+     *
+     * @since 5.0
+     */
+    public final Http2AsyncClientBuilder setAsyncDnsResolver(final AsyncDnsResolver asyncDnsResolver) {
+        this.asyncDnsResolver = asyncDnsResolver;
+        return this;
+    }
+
     /**
      * Assigns {@link TlsStrategy} instance.
      */
@@ -543,10 +559,10 @@ public final Http2AsyncClientBuilder disableAuthCaching() {
 
     /**
      * Makes this instance of HttpClient proactively evict idle connections from the
-     * connection pool using a background thread.
+     * connection pool using the {@link ConnectionMaintenanceScheduler}.
      * <p>
      * One MUST explicitly close HttpClient with {@link CloseableHttpAsyncClient#close()}
-     * in order to stop and release the background thread.
+     * in order to end the maintenance of the connection pool.
      * <p>
      * Please note this method has no effect if the instance of HttpClient is configuted to
      * use a shared connection manager.
@@ -561,6 +577,19 @@ public final Http2AsyncClientBuilder evictIdleConnections(final TimeValue maxIdl
         return this;
     }
 
+    /**
+     * Assigns the {@link ConnectionMaintenanceScheduler} evicting idle connections.
+     * If not set, the scheduler shared by all clients
+     * ({@link ConnectionMaintenanceScheduler#getDefault()}) is used.
+     *
+     * @since 5.0
+     */
+    public final Http2AsyncClientBuilder setConnectionMaintenanceScheduler(
+            final ConnectionMaintenanceScheduler connectionMaintenanceScheduler) {
+        this.connectionMaintenanceScheduler = connectionMaintenanceScheduler;
+        return this;
+    }
+
     /**
      * Request exec chain customization and extension.
      * <p>
@@ -792,7 +821,9 @@ public void execute(final IOSession ioSession) {
             }
         }
 
-        final MultuhomeConnectionInitiator connectionInitiator = new MultuhomeConnectionInitiator(ioReactor, dnsResolver);
+        final MultuhomeConnectionInitiator connectionInitiator = asyncDnsResolver != null
+                        ? new MultuhomeConnectionInitiator(ioReactor, asyncDnsResolver)
+                        : new MultuhomeConnectionInitiator(ioReactor, dnsResolver);
         final H2ConnPool connPool = new H2ConnPool(connectionInitiator, new Resolver<HttpHost, InetSocketAddress>() {
 
             @Override
@@ -807,17 +838,25 @@ public InetSocketAddress resolve(final HttpHost host) {
             closeablesCopy = new ArrayList<>(1);
         }
         if (evictIdleConnections) {
-            final IdleConnectionEvictor connectionEvictor = new IdleConnectionEvictor(connPool,
-                    maxIdleTime != null ? maxIdleTime : TimeValue.ofSeconds(30L));
+            final ConnectionMaintenanceScheduler scheduler = connectionMaintenanceScheduler != null
+                            ? connectionMaintenanceScheduler : ConnectionMaintenanceScheduler.getDefault();
+            final TimeValue maxIdleTimeCopy = maxIdleTime != null ? maxIdleTime : TimeValue.ofSeconds(30L);
+            final Cancellable maintenance = scheduler.scheduleRecurring(new Runnable() {
+
+                @Override
+                public void run() {
+                    connPool.closeIdle(maxIdleTimeCopy);
+                }
+
+            }, maxIdleTimeCopy);
             closeablesCopy.add(new Closeable() {
 
                 @Override
                 public void close() throws IOException {
-                    connectionEvictor.shutdown();
+                    maintenance.cancel();
                 }
 
             });
-            connectionEvictor.start();
         }
         closeablesCopy.add(connPool);
 
@@ -845,41 +884,4 @@ public String run() {
         });
     }
 
-    static class IdleConnectionEvictor implements Closeable {
-
-        private final Thread thread;
-
-        public IdleConnectionEvictor(final H2ConnPool connPool, final TimeValue maxIdleTime) {
-            this.thread = new DefaultThreadFactory("idle-connection-evictor", true).newThread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        while (!Thread.currentThread().isInterrupted()) {
-                            Thread.sleep(maxIdleTime.toMillis());
-                            connPool.closeIdle(maxIdleTime);
-                        }
-                    } catch (final InterruptedException ex) {
-                        Thread.currentThread().interrupt();
-                    } catch (final Exception ex) {
-                    }
-
-                }
-            });
-        }
-
-        public void start() {
-            thread.start();
-        }
-
-        public void shutdown() {
-            thread.interrupt();
-        }
-
-        @Override
-        public void close() throws IOException {
-            shutdown();
-        }
-
-    }
-
 }
@@ -28,7 +28,6 @@
 package org.apache.hc.client5.http.impl.async;
 
 import java.io.Closeable;
-import java.io.IOException;
 import java.net.ProxySelector;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -48,12 +47,15 @@
 import org.apache.hc.client5.http.auth.AuthSchemeProvider;
 import org.apache.hc.client5.http.auth.CredentialsProvider;
 import org.apache.hc.client5.http.auth.KerberosConfig;
+import org.apache.hc.client5.http.classic.BackoffManager;
+import org.apache.hc.client5.http.classic.ConnectionBackoffStrategy;
 import org.apache.hc.client5.http.config.AuthSchemes;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.cookie.BasicCookieStore;
 import org.apache.hc.client5.http.cookie.CookieSpecProvider;
 import org.apache.hc.client5.http.cookie.CookieStore;
 import org.apache.hc.client5.http.impl.ChainElements;
+import org.apache.hc.client5.http.impl.ConnectionMaintenanceScheduler;
 import org.apache.hc.client5.http.impl.CookieSpecRegistries;
 import org.apache.hc.client5.http.impl.DefaultAuthenticationStrategy;
 import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
@@ -61,7 +63,6 @@
 import org.apache.hc.client5.http.impl.DefaultRedirectStrategy;
 import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
 import org.apache.hc.client5.http.impl.DefaultUserTokenHandler;
-import org.apache.hc.client5.http.impl.IdleConnectionEvictor;
 import org.apache.hc.client5.http.impl.NoopUserTokenHandler;
 import org.apache.hc.client5.http.impl.auth.BasicCredentialsProvider;
 import org.apache.hc.client5.http.impl.auth.BasicSchemeFactory;
@@ -220,6 +221,8 @@ private ExecInterceptorEntry(
     private HttpRoutePlanner routePlanner;
     private RedirectStrategy redirectStrategy;
     private HttpRequestRetryHandler retryHandler;
+    private ConnectionBackoffStrategy connectionBackoffStrategy;
+    private BackoffManager backoffManager;
 
     private ConnectionReuseStrategy reuseStrategy;
 
@@ -235,6 +238,7 @@ private ExecInterceptorEntry(
     private boolean evictExpiredConnections;
     private boolean evictIdleConnections;
     private TimeValue maxIdleTime;
+    private ConnectionMaintenanceScheduler connectionMaintenanceScheduler;
 
     private boolean systemProperties;
     private boolean automaticRetriesDisabled;
@@ -489,6 +493,27 @@ public final HttpAsyncClientBuilder setRetryHandler(final HttpRequestRetryHandle
         return this;
     }
 
+    /**
+     * Assigns {@link ConnectionBackoffStrategy} instance.
+     *
+     * @since 5.0
+     */
+    public final HttpAsyncClientBuilder setConnectionBackoffStrategy(
+            final ConnectionBackoffStrategy connectionBackoffStrategy) {
+        this.connectionBackoffStrategy = connectionBackoffStrategy;
+        return this;
+    }
+
+    /**
+     * Assigns {@link BackoffManager} instance.
+     *
+     * @since 5.0
+     */
+    public final HttpAsyncClientBuilder setBackoffManager(final BackoffManager backoffManager) {
+        this.backoffManager = backoffManager;
+        return this;
+    }
+
     /**
      * Assigns {@link RedirectStrategy} instance.
      * <p>
@@ -652,10 +677,10 @@ public final HttpAsyncClientBuilder disableAuthCaching() {
 
     /**
      * Makes this instance of HttpClient proactively evict expired connections from the
-     * connection pool using a background thread.
+     * connection pool using the {@link ConnectionMaintenanceScheduler}.
      * <p>
      * One MUST explicitly close HttpClient with {@link CloseableHttpAsyncClient#close()} in order
-     * to stop and release the background thread.
+     * to end the maintenance of the connection pool.
      * <p>
      * Please note this method has no effect if the instance of HttpClient is configuted to
      * use a shared connection manager.
@@ -691,6 +716,19 @@ public final HttpAsyncClientBuilder evictIdleConnections(final TimeValue maxIdle
         return this;
     }
 
+    /**
+     * Assigns the {@link ConnectionMaintenanceScheduler} evicting expired and idle
+     * connections. If not set, the scheduler shared by all clients
+     * ({@link ConnectionMaintenanceScheduler#getDefault()}) is used.
+     *
+     * @since 5.0
+     */
+    public final HttpAsyncClientBuilder setConnectionMaintenanceScheduler(
+            final ConnectionMaintenanceScheduler connectionMaintenanceScheduler) {
+        this.connectionMaintenanceScheduler = connectionMaintenanceScheduler;
+        return this;
+    }
+
     /**
      * Request exec chain customization and extension.
      * <p>
@@ -859,6 +897,12 @@ public ProxySelector run() {
                     ChainElements.REDIRECT.name());
         }
 
+        // Optionally, add connection back-off executor
+        if (this.backoffManager != null && this.connectionBackoffStrategy != null) {
+            execChainDefinition.addFirst(new AsyncBackoffStrategyExec(this.connectionBackoffStrategy, this.backoffManager),
+                    ChainElements.BACK_OFF.name());
+        }
+
         List<Closeable> closeablesCopy = closeables != null ? new ArrayList<>(closeables) : null;
         if (!this.connManagerShared) {
             if (closeablesCopy == null) {
@@ -866,17 +910,9 @@ public ProxySelector run() {
             }
             if (evictExpiredConnections || evictIdleConnections) {
                 if (connManagerCopy instanceof ConnPoolControl) {
-                    final IdleConnectionEvictor connectionEvictor = new IdleConnectionEvictor((ConnPoolControl<?>) connManagerCopy,
-                            maxIdleTime,  maxIdleTime);
-                    closeablesCopy.add(new Closeable() {
-
-                        @Override
-                        public void close() throws IOException {
-                            connectionEvictor.shutdown();
-                        }
-
-                    });
-                    connectionEvictor.start();
+                    final ConnectionMaintenanceScheduler scheduler = connectionMaintenanceScheduler != null
+                                    ? connectionMaintenanceScheduler : ConnectionMaintenanceScheduler.getDefault();
+                    closeablesCopy.add(scheduler.register((ConnPoolControl<?>) connManagerCopy, maxIdleTime));
                 }
             }
             closeablesCopy.add(connManagerCopy);
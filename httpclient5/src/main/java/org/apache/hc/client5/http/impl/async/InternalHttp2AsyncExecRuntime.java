@@ -32,6 +32,7 @@
 
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.async.AsyncExecRuntime;
+import org.apache.hc.client5.http.async.ForkableAsyncExecRuntime;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.ConnPoolSupport;
 import org.apache.hc.client5.http.impl.Operations;
@@ -47,7 +48,7 @@
 import org.apache.hc.core5.util.TimeValue;
 import org.apache.logging.log4j.Logger;
 
-class InternalHttp2AsyncExecRuntime implements AsyncExecRuntime {
+class InternalHttp2AsyncExecRuntime implements ForkableAsyncExecRuntime {
 
     private final Logger log;
     private final H2ConnPool connPool;
@@ -197,6 +198,7 @@ public void execute(final AsyncClientExchangeHandler exchangeHandler, final Http
             if (log.isDebugEnabled()) {
                 log.debug(ConnPoolSupport.getId(endpoint) + ": executing " + ConnPoolSupport.getId(exchangeHandler));
             }
+            context.setAttribute(HttpClientContext.EXCHANGE_START_TIME, System.nanoTime());
             session.addLast(new ExecutionCommand(exchangeHandler, context));
         } else {
             final HttpHost target = endpoint.target;
@@ -210,6 +212,7 @@ public void completed(final IOSession ioSession) {
                     if (log.isDebugEnabled()) {
                         log.debug(ConnPoolSupport.getId(endpoint) + ": executing " + ConnPoolSupport.getId(exchangeHandler));
                     }
+                    context.setAttribute(HttpClientContext.EXCHANGE_START_TIME, System.nanoTime());
                     session.addLast(new ExecutionCommand(exchangeHandler, context));
                 }
 
@@ -238,6 +241,11 @@ public void markConnectionNonReusable() {
         reusable = false;
     }
 
+    @Override
+    public AsyncExecRuntime fork() {
+        return new InternalHttp2AsyncExecRuntime(log, connPool);
+    }
+
     static class Endpoint {
 
         final HttpHost target;
@@ -33,6 +33,7 @@
 
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.async.AsyncExecRuntime;
+import org.apache.hc.client5.http.async.ForkableAsyncExecRuntime;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.ConnPoolSupport;
 import org.apache.hc.client5.http.impl.Operations;
@@ -47,7 +48,7 @@
 import org.apache.hc.core5.util.TimeValue;
 import org.apache.logging.log4j.Logger;
 
-class InternalHttpAsyncExecRuntime implements AsyncExecRuntime {
+class InternalHttpAsyncExecRuntime implements ForkableAsyncExecRuntime {
 
     private final Logger log;
     private final AsyncClientConnectionManager manager;
@@ -236,6 +237,7 @@ public void execute(final AsyncClientExchangeHandler exchangeHandler, final Http
             if (log.isDebugEnabled()) {
                 log.debug(ConnPoolSupport.getId(endpoint) + ": executing " + ConnPoolSupport.getId(exchangeHandler));
             }
+            context.setAttribute(HttpClientContext.EXCHANGE_START_TIME, System.nanoTime());
             endpoint.execute(exchangeHandler, context);
         } else {
             connect(context, new FutureCallback<AsyncExecRuntime>() {
@@ -246,6 +248,7 @@ public void completed(final AsyncExecRuntime runtime) {
                         log.debug(ConnPoolSupport.getId(endpoint) + ": executing " + ConnPoolSupport.getId(exchangeHandler));
                     }
                     try {
+                        context.setAttribute(HttpClientContext.EXCHANGE_START_TIME, System.nanoTime());
                         endpoint.execute(exchangeHandler, context);
                     } catch (final RuntimeException ex) {
                         failed(ex);
@@ -281,4 +284,9 @@ public void markConnectionNonReusable() {
         validDuration = null;
     }
 
+    @Override
+    public AsyncExecRuntime fork() {
+        return new InternalHttpAsyncExecRuntime(log, manager, connectionInitiator, versionPolicy);
+    }
+
 }
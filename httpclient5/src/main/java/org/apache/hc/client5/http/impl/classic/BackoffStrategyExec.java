@@ -34,6 +34,8 @@
 import org.apache.hc.client5.http.classic.ConnectionBackoffStrategy;
 import org.apache.hc.client5.http.classic.ExecChain;
 import org.apache.hc.client5.http.classic.ExecChainHandler;
+import org.apache.hc.client5.http.classic.LatencyAwareBackoffManager;
+import org.apache.hc.client5.http.impl.ExecSupport;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
 import org.apache.hc.core5.http.ClassicHttpRequest;
@@ -69,6 +71,7 @@ public ClassicHttpResponse execute(
         Args.notNull(scope, "Scope");
         final HttpRoute route = scope.route;
 
+        final long start = System.nanoTime();
         final ClassicHttpResponse response;
         try {
             response = chain.proceed(request, scope);
@@ -80,6 +83,8 @@ public ClassicHttpResponse execute(
         }
         if (this.connectionBackoffStrategy.shouldBackoff(response)) {
             this.backoffManager.backOff(route);
+        } else if (this.backoffManager instanceof LatencyAwareBackoffManager) {
+            ((LatencyAwareBackoffManager) this.backoffManager).probe(route, ExecSupport.getRoundTripTime(scope.clientContext, start));
         } else {
             this.backoffManager.probe(route);
         }
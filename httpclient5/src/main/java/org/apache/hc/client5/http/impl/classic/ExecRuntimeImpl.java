@@ -185,6 +185,7 @@ public ClassicHttpResponse execute(final ClassicHttpRequest request, final HttpC
         if (!endpoint.isConnected()) {
             connectEndpoint(endpoint, context);
         }
+        context.setAttribute(HttpClientContext.EXCHANGE_START_TIME, System.nanoTime());
         return endpoint.execute(request, requestExecutor, context);
     }
 
@@ -0,0 +1,270 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.classic;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.classic.LatencyAwareBackoffManager;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * <p>The {@code GradientBackoffManager} continuously adjusts the number of
+ * connections allowed to a given route from the round trip times of the
+ * message exchanges on that route, along the lines of TCP Vegas.</p>
+ *
+ * <p>The shortest round trip time observed within a sampling window is taken
+ * as the no-load latency of the route. With every successful exchange the
+ * limit is multiplied by the gradient between the no-load latency (scaled
+ * by a tolerance) and the measured latency, capped at 1.0 and floored at
+ * 0.5, and a headroom of the square root of the limit is added. While the
+ * route responds at its no-load latency the limit therefore keeps growing;
+ * once requests start to queue up at the server and latency rises, the limit
+ * shrinks before requests start to time out. Explicit backoff signals cut
+ * the limit by the backoff ratio, at most once per cool down period.</p>
+ *
+ * <p>Route state is kept in immutable snapshots updated by compare-and-set,
+ * so feedback from concurrent requests does not contend on a lock.</p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE_CONDITIONAL)
+public class GradientBackoffManager implements LatencyAwareBackoffManager {
+
+    private final ConnPoolControl<HttpRoute> connPerRoute;
+    private final Clock clock;
+    private final ConcurrentMap<HttpRoute, AtomicReference<RouteLimit>> routeLimits;
+    private int minLimit = 1;
+    private int maxLimit = 100;
+    private double rttTolerance = 1.5;
+    private double smoothing = 0.2;
+    private double backoffRatio = 0.9;
+    private long coolDown = 1000L;
+    private long minRttWindow = 30 * 1000L;
+
+    /**
+     * Creates a {@code GradientBackoffManager} to manage
+     * per-host connection pool sizes represented by the
+     * given {@link ConnPoolControl}.
+     * @param connPerRoute per-host routing maximums to
+     *   be managed
+     */
+    public GradientBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute) {
+        this(connPerRoute, new SystemClock());
+    }
+
+    GradientBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute, final Clock clock) {
+        this.connPerRoute = Args.notNull(connPerRoute, "Connection pool control");
+        this.clock = clock;
+        this.routeLimits = new ConcurrentHashMap<>();
+    }
+
+    private AtomicReference<RouteLimit> getRouteLimit(final HttpRoute route) {
+        AtomicReference<RouteLimit> ref = routeLimits.get(route);
+        if (ref == null) {
+            final int current = connPerRoute.getMaxPerRoute(route);
+            final AtomicReference<RouteLimit> newRef = new AtomicReference<>(
+                    new RouteLimit(clamp(current), 0L, 0L, 0L));
+            ref = routeLimits.putIfAbsent(route, newRef);
+            if (ref == null) {
+                ref = newRef;
+            }
+        }
+        return ref;
+    }
+
+    private double clamp(final double limit) {
+        return Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+
+    private void apply(final HttpRoute route, final AtomicReference<RouteLimit> ref) {
+        for (;;) {
+            final RouteLimit current = ref.get();
+            final int max = (int) current.limit;
+            if (connPerRoute.getMaxPerRoute(route) != max) {
+                connPerRoute.setMaxPerRoute(route, max);
+            }
+            // a concurrent update may have been applied before this one;
+            // the latest limit gets re-applied until it has settled
+            if (ref.get() == current) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void probe(final HttpRoute route, final long rttNanos) {
+        if (rttNanos <= 0) {
+            return;
+        }
+        final AtomicReference<RouteLimit> ref = getRouteLimit(route);
+        for (;;) {
+            final RouteLimit current = ref.get();
+            final long now = clock.getCurrentTime();
+            final long minRtt;
+            final long minRttTimestamp;
+            if (current.minRtt == 0L || now - current.minRttTimestamp >= minRttWindow) {
+                minRtt = rttNanos;
+                minRttTimestamp = now;
+            } else {
+                minRtt = Math.min(current.minRtt, rttNanos);
+                minRttTimestamp = current.minRttTimestamp;
+            }
+            final double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * minRtt / rttNanos));
+            final double target = current.limit * gradient + Math.sqrt(current.limit);
+            final double limit = clamp(current.limit * (1.0 - smoothing) + target * smoothing);
+            final RouteLimit next = new RouteLimit(limit, minRtt, minRttTimestamp, current.lastBackoff);
+            if (ref.compareAndSet(current, next)) {
+                if ((int) next.limit != (int) current.limit) {
+                    apply(route, ref);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Has no effect, as without round trip time there is nothing to go by.
+     */
+    @Override
+    public void probe(final HttpRoute route) {
+    }
+
+    @Override
+    public void backOff(final HttpRoute route) {
+        final AtomicReference<RouteLimit> ref = getRouteLimit(route);
+        for (;;) {
+            final RouteLimit current = ref.get();
+            final long now = clock.getCurrentTime();
+            if (current.lastBackoff != 0L && now - current.lastBackoff < coolDown) {
+                return;
+            }
+            final RouteLimit next = new RouteLimit(
+                    clamp(current.limit * backoffRatio), current.minRtt, current.minRttTimestamp, now);
+            if (ref.compareAndSet(current, next)) {
+                if ((int) next.limit != (int) current.limit) {
+                    apply(route, ref);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the current (fractional) limit of the given route, or
+     * {@code -1} if no feedback has been received for the route yet.
+     */
+    public double getLimit(final HttpRoute route) {
+        final AtomicReference<RouteLimit> ref = routeLimits.get(route);
+        return ref != null ? ref.get().limit : -1;
+    }
+
+    /**
+     * Sets the range the per-host connection limit is kept in;
+     * defaults to 1 to 100.
+     * @param minLimit must be &gt;= 1
+     * @param maxLimit must be &gt;= minLimit
+     */
+    public void setLimits(final int minLimit, final int maxLimit) {
+        Args.positive(minLimit, "Min limit");
+        Args.check(maxLimit >= minLimit, "Max limit may not be less than min limit");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Sets the factor by which the round trip time may exceed the
+     * no-load latency before the limit starts to shrink. Defaults to 1.5.
+     * @param rttTolerance must be &gt;= 1.0
+     */
+    public void setRttTolerance(final double rttTolerance) {
+        Args.check(rttTolerance >= 1.0, "RTT tolerance must be >= 1.0");
+        this.rttTolerance = rttTolerance;
+    }
+
+    /**
+     * Sets the weight of a new sample in the limit; defaults to 0.2.
+     * @param smoothing must be between 0.0 (exclusive) and 1.0 (inclusive).
+     */
+    public void setSmoothing(final double smoothing) {
+        Args.check(smoothing > 0.0 && smoothing <= 1.0, "Smoothing must be 0.0 < f <= 1.0");
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Sets the factor the limit gets multiplied by on backoff;
+     * defaults to 0.9.
+     * @param backoffRatio must be between 0.0 and 1.0, exclusive.
+     */
+    public void setBackoffRatio(final double backoffRatio) {
+        Args.check(backoffRatio > 0.0 && backoffRatio < 1.0, "Backoff ratio must be 0.0 < f < 1.0");
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Sets the minimum time between two backoffs for a given host;
+     * defaults to 1 second.
+     */
+    public void setCooldown(final TimeValue coolDown) {
+        Args.check(TimeValue.isNonNegative(coolDown), "Cool down may not be negative");
+        this.coolDown = coolDown.toMillis();
+    }
+
+    /**
+     * Sets the period after which the no-load latency of a host is
+     * sampled anew, so that a permanent change of latency gets
+     * picked up; defaults to 30 seconds.
+     */
+    public void setMinRttWindow(final TimeValue minRttWindow) {
+        Args.check(TimeValue.isPositive(minRttWindow), "Min RTT window must be positive");
+        this.minRttWindow = minRttWindow.toMillis();
+    }
+
+    static final class RouteLimit {
+
+        final double limit;
+        final long minRtt;
+        final long minRttTimestamp;
+        final long lastBackoff;
+
+        RouteLimit(final double limit, final long minRtt, final long minRttTimestamp, final long lastBackoff) {
+            this.limit = limit;
+            this.minRtt = minRtt;
+            this.minRttTimestamp = minRttTimestamp;
+            this.lastBackoff = lastBackoff;
+        }
+
+    }
+
+}
@@ -28,7 +28,6 @@
 package org.apache.hc.client5.http.impl.classic;
 
 import java.io.Closeable;
-import java.io.IOException;
 import java.net.ProxySelector;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -36,7 +35,6 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.hc.client5.http.AuthenticationStrategy;
 import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
@@ -58,6 +56,7 @@
 import org.apache.hc.client5.http.cookie.CookieStore;
 import org.apache.hc.client5.http.entity.InputStreamFactory;
 import org.apache.hc.client5.http.impl.ChainElements;
+import org.apache.hc.client5.http.impl.ConnectionMaintenanceScheduler;
 import org.apache.hc.client5.http.impl.CookieSpecRegistries;
 import org.apache.hc.client5.http.impl.DefaultAuthenticationStrategy;
 import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
@@ -65,7 +64,6 @@
 import org.apache.hc.client5.http.impl.DefaultRedirectStrategy;
 import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
 import org.apache.hc.client5.http.impl.DefaultUserTokenHandler;
-import org.apache.hc.client5.http.impl.IdleConnectionEvictor;
 import org.apache.hc.client5.http.impl.NoopUserTokenHandler;
 import org.apache.hc.client5.http.impl.auth.BasicCredentialsProvider;
 import org.apache.hc.client5.http.impl.auth.BasicSchemeFactory;
@@ -75,6 +73,7 @@
 import org.apache.hc.client5.http.impl.auth.NTLMSchemeFactory;
 import org.apache.hc.client5.http.impl.auth.SPNegoSchemeFactory;
 import org.apache.hc.client5.http.impl.auth.SystemDefaultCredentialsProvider;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
 import org.apache.hc.client5.http.impl.routing.DefaultProxyRoutePlanner;
 import org.apache.hc.client5.http.impl.routing.DefaultRoutePlanner;
@@ -222,6 +221,7 @@ private ExecInterceptorEntry(
     private boolean evictExpiredConnections;
     private boolean evictIdleConnections;
     private TimeValue maxIdleTime;
+    private ConnectionMaintenanceScheduler connectionMaintenanceScheduler;
 
     private boolean systemProperties;
     private boolean redirectHandlingDisabled;
@@ -655,10 +655,10 @@ public final HttpClientBuilder useSystemProperties() {
 
     /**
      * Makes this instance of HttpClient proactively evict expired connections from the
-     * connection pool using a background thread.
+     * connection pool using the {@link ConnectionMaintenanceScheduler}.
      * <p>
      * One MUST explicitly close HttpClient with {@link CloseableHttpClient#close()} in order
-     * to stop and release the background thread.
+     * to end the maintenance of the connection pool.
      * <p>
      * Please note this method has no effect if the instance of HttpClient is configured to
      * use a shared connection manager.
@@ -675,10 +675,10 @@ public final HttpClientBuilder evictExpiredConnections() {
 
     /**
      * Makes this instance of HttpClient proactively evict idle connections from the
-     * connection pool using a background thread.
+     * connection pool using the {@link ConnectionMaintenanceScheduler}.
      * <p>
      * One MUST explicitly close HttpClient with {@link CloseableHttpClient#close()} in order
-     * to stop and release the background thread.
+     * to end the maintenance of the connection pool.
      * <p>
      * Please note this method has no effect if the instance of HttpClient is configured to
      * use a shared connection manager.
@@ -698,6 +698,19 @@ public final HttpClientBuilder evictIdleConnections(final TimeValue maxIdleTime)
         return this;
     }
 
+    /**
+     * Assigns the {@link ConnectionMaintenanceScheduler} evicting expired and idle
+     * connections. If not set, the scheduler shared by all clients
+     * ({@link ConnectionMaintenanceScheduler#getDefault()}) is used.
+     *
+     * @since 5.0
+     */
+    public final HttpClientBuilder setConnectionMaintenanceScheduler(
+            final ConnectionMaintenanceScheduler connectionMaintenanceScheduler) {
+        this.connectionMaintenanceScheduler = connectionMaintenanceScheduler;
+        return this;
+    }
+
     /**
      * Request exec chain customization and extension.
      * <p>
@@ -983,24 +996,13 @@ public boolean keepAlive(
             if (closeablesCopy == null) {
                 closeablesCopy = new ArrayList<>(1);
             }
-            if (evictExpiredConnections || evictIdleConnections) {
+            final boolean validateInBackground = connManagerCopy instanceof PoolingHttpClientConnectionManager
+                    && ((PoolingHttpClientConnectionManager) connManagerCopy).isValidateInBackground();
+            if (evictExpiredConnections || evictIdleConnections || validateInBackground) {
                 if (connManagerCopy instanceof ConnPoolControl) {
-                    final IdleConnectionEvictor connectionEvictor = new IdleConnectionEvictor((ConnPoolControl<?>) connManagerCopy,
-                            maxIdleTime, maxIdleTime);
-                    closeablesCopy.add(new Closeable() {
-
-                        @Override
-                        public void close() throws IOException {
-                            connectionEvictor.shutdown();
-                            try {
-                                connectionEvictor.awaitTermination(1L, TimeUnit.SECONDS);
-                            } catch (final InterruptedException interrupted) {
-                                Thread.currentThread().interrupt();
-                            }
-                        }
-
-                    });
-                    connectionEvictor.start();
+                    final ConnectionMaintenanceScheduler scheduler = connectionMaintenanceScheduler != null
+                                    ? connectionMaintenanceScheduler : ConnectionMaintenanceScheduler.getDefault();
+                    closeablesCopy.add(scheduler.register((ConnPoolControl<?>) connManagerCopy, maxIdleTime));
                 }
             }
             closeablesCopy.add(connManagerCopy);
@@ -27,12 +27,22 @@
 package org.apache.hc.client5.http.impl.io;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NoRouteToHostException;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSocket;
 
 import org.apache.hc.client5.http.ConnectTimeoutException;
 import org.apache.hc.client5.http.DnsResolver;
@@ -41,6 +51,7 @@
 import org.apache.hc.client5.http.SystemDefaultDnsResolver;
 import org.apache.hc.client5.http.UnsupportedSchemeException;
 import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.impl.HappyEyeballsSupport;
 import org.apache.hc.client5.http.io.HttpClientConnectionOperator;
 import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
@@ -49,6 +60,7 @@
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.Internal;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
 import org.apache.hc.core5.http.ConnectionClosedException;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.config.Lookup;
@@ -72,16 +84,39 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
 
     static final String SOCKET_FACTORY_REGISTRY = "http.socket-factory-registry";
 
+    private static final int MAX_CONNECT_THREADS = 32;
+
     private final Logger log = LogManager.getLogger(getClass());
 
     private final Lookup<ConnectionSocketFactory> socketFactoryRegistry;
     private final SchemePortResolver schemePortResolver;
     private final DnsResolver dnsResolver;
+    private final TimeValue staggeredConnectDelay;
+    private final Executor connectExecutor;
 
+    private volatile Executor defaultConnectExecutor;
+
+    /**
+     * @param staggeredConnectDelay if positive, connection attempts to multiple
+     *   resolved addresses are made in parallel, with IPv6 and IPv4 addresses
+     *   interleaved and each attempt started with the given delay after
+     *   the previous one (RFC 8305 Happy Eyeballs). The first connection
+     *   established wins, all other attempts get aborted. With layered
+     *   (TLS) socket factories only the TCP connects race; the TLS handshake
+     *   is carried out on the winning connection only.
+     *   Otherwise addresses are tried sequentially.
+     * @param connectExecutor the executor running the parallel connection attempts.
+     *   If {@code null} the operator creates its own bounded thread pool on first use,
+     *   whose threads terminate when idle.
+     *
+     * @since 5.0
+     */
     public DefaultHttpClientConnectionOperator(
             final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
             final SchemePortResolver schemePortResolver,
-            final DnsResolver dnsResolver) {
+            final DnsResolver dnsResolver,
+            final TimeValue staggeredConnectDelay,
+            final Executor connectExecutor) {
         super();
         Args.notNull(socketFactoryRegistry, "Socket factory registry");
         this.socketFactoryRegistry = socketFactoryRegistry;
@@ -89,6 +124,52 @@ public DefaultHttpClientConnectionOperator(
             DefaultSchemePortResolver.INSTANCE;
         this.dnsResolver = dnsResolver != null ? dnsResolver :
             SystemDefaultDnsResolver.INSTANCE;
+        this.staggeredConnectDelay = staggeredConnectDelay;
+        this.connectExecutor = connectExecutor;
+    }
+
+    /**
+     * @param staggeredConnectDelay if positive, connection attempts to multiple
+     *   resolved addresses are made in parallel, see
+     *   {@link #DefaultHttpClientConnectionOperator(Lookup, SchemePortResolver, DnsResolver, TimeValue, Executor)}.
+     *
+     * @since 5.0
+     */
+    public DefaultHttpClientConnectionOperator(
+            final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
+            final SchemePortResolver schemePortResolver,
+            final DnsResolver dnsResolver,
+            final TimeValue staggeredConnectDelay) {
+        this(socketFactoryRegistry, schemePortResolver, dnsResolver, staggeredConnectDelay, null);
+    }
+
+    public DefaultHttpClientConnectionOperator(
+            final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
+            final SchemePortResolver schemePortResolver,
+            final DnsResolver dnsResolver) {
+        this(socketFactoryRegistry, schemePortResolver, dnsResolver, null, null);
+    }
+
+    private Executor getConnectExecutor() {
+        if (this.connectExecutor != null) {
+            return this.connectExecutor;
+        }
+        Executor executor = this.defaultConnectExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.defaultConnectExecutor;
+                if (executor == null) {
+                    final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+                            MAX_CONNECT_THREADS, MAX_CONNECT_THREADS, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(),
+                            new DefaultThreadFactory("staggered-connect", true));
+                    threadPoolExecutor.allowCoreThreadTimeOut(true);
+                    executor = threadPoolExecutor;
+                    this.defaultConnectExecutor = executor;
+                }
+            }
+        }
+        return executor;
     }
 
     @SuppressWarnings("unchecked")
@@ -121,26 +202,15 @@ public void connect(
         final InetAddress[] addresses = host.getAddress() != null ?
                 new InetAddress[] { host.getAddress() } : this.dnsResolver.resolve(host.getHostName());
         final int port = this.schemePortResolver.resolve(host);
+        if (addresses.length > 1 && TimeValue.isPositive(this.staggeredConnectDelay)) {
+            staggeredConnect(conn, sf, host, addresses, port, localAddress, connectTimeout, socketConfig, context);
+            return;
+        }
         for (int i = 0; i < addresses.length; i++) {
             final InetAddress address = addresses[i];
             final boolean last = i == addresses.length - 1;
 
-            Socket sock = sf.createSocket(context);
-            sock.setSoTimeout(socketConfig.getSoTimeout().toMillisIntBound());
-            sock.setReuseAddress(socketConfig.isSoReuseAddress());
-            sock.setTcpNoDelay(socketConfig.isTcpNoDelay());
-            sock.setKeepAlive(socketConfig.isSoKeepAlive());
-            if (socketConfig.getRcvBufSize() > 0) {
-                sock.setReceiveBufferSize(socketConfig.getRcvBufSize());
-            }
-            if (socketConfig.getSndBufSize() > 0) {
-                sock.setSendBufferSize(socketConfig.getSndBufSize());
-            }
-
-            final int linger = socketConfig.getSoLinger().toMillisIntBound();
-            if (linger >= 0) {
-                sock.setSoLinger(true, linger);
-            }
+            Socket sock = createSocket(sf, socketConfig, context);
             conn.bind(sock);
 
             final InetSocketAddress remoteAddress = new InetSocketAddress(address, port);
@@ -179,6 +249,214 @@ public void connect(
         }
     }
 
+    private static Socket createSocket(
+            final ConnectionSocketFactory sf,
+            final SocketConfig socketConfig,
+            final HttpContext context) throws IOException {
+        final Socket sock = sf.createSocket(context);
+        sock.setSoTimeout(socketConfig.getSoTimeout().toMillisIntBound());
+        sock.setReuseAddress(socketConfig.isSoReuseAddress());
+        sock.setTcpNoDelay(socketConfig.isTcpNoDelay());
+        sock.setKeepAlive(socketConfig.isSoKeepAlive());
+        if (socketConfig.getRcvBufSize() > 0) {
+            sock.setReceiveBufferSize(socketConfig.getRcvBufSize());
+        }
+        if (socketConfig.getSndBufSize() > 0) {
+            sock.setSendBufferSize(socketConfig.getSndBufSize());
+        }
+
+        final int linger = socketConfig.getSoLinger().toMillisIntBound();
+        if (linger >= 0) {
+            sock.setSoLinger(true, linger);
+        }
+        return sock;
+    }
+
+    private void staggeredConnect(
+            final ManagedHttpClientConnection conn,
+            final ConnectionSocketFactory sf,
+            final HttpHost host,
+            final InetAddress[] resolvedAddresses,
+            final int port,
+            final InetSocketAddress localAddress,
+            final TimeValue connectTimeout,
+            final SocketConfig socketConfig,
+            final HttpContext context) throws IOException {
+        final InetAddress[] addresses = HappyEyeballsSupport.interleave(resolvedAddresses);
+        final BlockingQueue<ConnectAttempt> completed = new LinkedBlockingQueue<>();
+        final List<ConnectAttempt> attempts = new ArrayList<>(addresses.length);
+        final long delayMillis = this.staggeredConnectDelay.toMillis();
+        ConnectAttempt winner = null;
+        IOException lastException = null;
+        int finished = 0;
+        try {
+            while (finished < addresses.length) {
+                if (attempts.size() == finished) {
+                    // nothing in flight: start the next attempt right away
+                    attempts.add(startAttempt(sf, host, addresses[attempts.size()], port, localAddress,
+                            connectTimeout, socketConfig, context, completed));
+                }
+                final ConnectAttempt attempt;
+                if (attempts.size() < addresses.length) {
+                    attempt = completed.poll(delayMillis, TimeUnit.MILLISECONDS);
+                    if (attempt == null) {
+                        attempts.add(startAttempt(sf, host, addresses[attempts.size()], port, localAddress,
+                                connectTimeout, socketConfig, context, completed));
+                        continue;
+                    }
+                } else {
+                    attempt = completed.take();
+                }
+                finished++;
+                if (attempt.exception == null) {
+                    winner = attempt;
+                    break;
+                }
+                lastException = attempt.exception;
+                if (this.log.isDebugEnabled()) {
+                    this.log.debug("Connect to " + attempt.remoteAddress + " failed: " + lastException.getMessage());
+                }
+                if (attempts.size() < addresses.length && attempts.size() > finished) {
+                    // do not wait for the delay to elapse if an attempt has failed
+                    attempts.add(startAttempt(sf, host, addresses[attempts.size()], port, localAddress,
+                            connectTimeout, socketConfig, context, completed));
+                }
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            lastException = new InterruptedIOException("Connect interrupted");
+        } finally {
+            for (final ConnectAttempt attempt: attempts) {
+                if (attempt != winner) {
+                    attempt.abort();
+                }
+            }
+        }
+        if (winner != null) {
+            Socket sock = winner.socket;
+            if (winner.layeringRequired) {
+                conn.bind(sock);
+                try {
+                    sock = ((LayeredConnectionSocketFactory) sf).createLayeredSocket(sock, host.getHostName(), port, context);
+                } catch (final IOException | RuntimeException ex) {
+                    sock.close();
+                    throw ex;
+                }
+            }
+            conn.bind(sock);
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Connection established " + conn);
+            }
+            return;
+        }
+        if (lastException instanceof SocketTimeoutException) {
+            throw new ConnectTimeoutException(lastException, host, resolvedAddresses);
+        } else if (lastException instanceof ConnectException) {
+            if ("Connection timed out".equals(lastException.getMessage())) {
+                throw new ConnectTimeoutException(lastException, host, resolvedAddresses);
+            } else {
+                throw new HttpHostConnectException(lastException, host, resolvedAddresses);
+            }
+        }
+        throw lastException;
+    }
+
+    private ConnectAttempt startAttempt(
+            final ConnectionSocketFactory sf,
+            final HttpHost host,
+            final InetAddress address,
+            final int port,
+            final InetSocketAddress localAddress,
+            final TimeValue connectTimeout,
+            final SocketConfig socketConfig,
+            final HttpContext context,
+            final BlockingQueue<ConnectAttempt> completed) {
+        final InetSocketAddress remoteAddress = new InetSocketAddress(address, port);
+        if (this.log.isDebugEnabled()) {
+            this.log.debug("Connecting to " + remoteAddress);
+        }
+        final ConnectAttempt attempt = new ConnectAttempt(remoteAddress);
+        getConnectExecutor().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    final Socket sock = createSocket(sf, socketConfig, context);
+                    attempt.socket = sock;
+                    if (attempt.aborted) {
+                        sock.close();
+                        throw new InterruptedIOException("Connect aborted");
+                    }
+                    if (sf instanceof LayeredConnectionSocketFactory && !(sock instanceof SSLSocket)) {
+                        // only the TCP connect races, TLS gets layered over the winning socket
+                        connectPlain(sock, remoteAddress, localAddress, connectTimeout);
+                        attempt.layeringRequired = true;
+                    } else {
+                        attempt.socket = sf.connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, context);
+                    }
+                    if (attempt.aborted) {
+                        attempt.socket.close();
+                    }
+                } catch (final IOException ex) {
+                    attempt.exception = ex;
+                } catch (final RuntimeException ex) {
+                    attempt.exception = new IOException(ex.getMessage(), ex);
+                }
+                completed.add(attempt);
+            }
+
+        });
+        return attempt;
+    }
+
+    private static void connectPlain(
+            final Socket sock,
+            final InetSocketAddress remoteAddress,
+            final InetSocketAddress localAddress,
+            final TimeValue connectTimeout) throws IOException {
+        try {
+            if (localAddress != null) {
+                sock.bind(localAddress);
+            }
+            if (TimeValue.isPositive(connectTimeout) && sock.getSoTimeout() == 0) {
+                sock.setSoTimeout(connectTimeout.toMillisIntBound());
+            }
+            sock.connect(remoteAddress, connectTimeout != null ? connectTimeout.toMillisIntBound() : 0);
+        } catch (final IOException ex) {
+            try {
+                sock.close();
+            } catch (final IOException ignore) {
+            }
+            throw ex;
+        }
+    }
+
+    static final class ConnectAttempt {
+
+        final InetSocketAddress remoteAddress;
+
+        volatile Socket socket;
+        volatile IOException exception;
+        volatile boolean aborted;
+        volatile boolean layeringRequired;
+
+        ConnectAttempt(final InetSocketAddress remoteAddress) {
+            this.remoteAddress = remoteAddress;
+        }
+
+        void abort() {
+            this.aborted = true;
+            final Socket sock = this.socket;
+            if (sock != null) {
+                try {
+                    sock.close();
+                } catch (final IOException ignore) {
+                }
+            }
+        }
+
+    }
+
     @Override
     public void upgrade(
             final ManagedHttpClientConnection conn,
@@ -27,30 +27,52 @@
 package org.apache.hc.client5.http.impl.io;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.hc.client5.http.ConnPoolListener;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.SchemePortResolver;
 import org.apache.hc.client5.http.impl.ConnPoolSupport;
+import org.apache.hc.client5.http.impl.ConnectionMaintenanceAware;
+import org.apache.hc.client5.http.impl.ConnectionMaintenanceScheduler;
 import org.apache.hc.client5.http.impl.ConnectionShutdownException;
+import org.apache.hc.client5.http.impl.ConnectionUsageTracker;
+import org.apache.hc.client5.http.impl.IdleConnectionValidator;
+import org.apache.hc.client5.http.impl.PrewarmReport;
+import org.apache.hc.client5.http.impl.StripedConnPool;
 import org.apache.hc.client5.http.io.ConnectionEndpoint;
 import org.apache.hc.client5.http.io.HttpClientConnectionManager;
 import org.apache.hc.client5.http.io.HttpClientConnectionOperator;
 import org.apache.hc.client5.http.io.LeaseRequest;
 import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
 import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
 import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.Internal;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
+import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.http.ClassicHttpRequest;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.HttpException;
@@ -103,7 +125,8 @@
  */
 @Contract(threading = ThreadingBehavior.SAFE_CONDITIONAL)
 public class PoolingHttpClientConnectionManager
-    implements HttpClientConnectionManager, ConnPoolControl<HttpRoute> {
+    implements HttpClientConnectionManager, ConnPoolControl<HttpRoute>, IdleConnectionValidator,
+        ConnectionMaintenanceAware {
 
     private final Logger log = LogManager.getLogger(getClass());
 
@@ -114,9 +137,16 @@
     private final ManagedConnPool<HttpRoute, ManagedHttpClientConnection> pool;
     private final HttpConnectionFactory<ManagedHttpClientConnection> connFactory;
     private final AtomicBoolean closed;
+    private final ConnectionUsageTracker usageTracker;
+    private final Set<PoolEntry<HttpRoute, ManagedHttpClientConnection>> leasedEntries;
+    private final AtomicBoolean validationScheduled;
 
     private volatile SocketConfig defaultSocketConfig;
     private volatile TimeValue validateAfterInactivity;
+    private volatile boolean validateInBackground;
+    private volatile ConnPoolListener connPoolListener;
+    private volatile ConnectionMaintenanceScheduler.Registration connectionMaintenance;
+    private volatile ExecutorService prewarmExecutor;
 
     public PoolingHttpClientConnectionManager() {
         this(RegistryBuilder.<ConnectionSocketFactory>create()
@@ -206,6 +236,10 @@ protected PoolingHttpClientConnectionManager(
         }
         this.connFactory = connFactory != null ? connFactory : ManagedHttpClientConnectionFactory.INSTANCE;
         this.closed = new AtomicBoolean(false);
+        this.usageTracker = new ConnectionUsageTracker();
+        this.leasedEntries = Collections.newSetFromMap(
+                new ConcurrentHashMap<PoolEntry<HttpRoute, ManagedHttpClientConnection>, Boolean>());
+        this.validationScheduled = new AtomicBoolean(false);
     }
 
     @Internal
@@ -218,6 +252,10 @@ protected PoolingHttpClientConnectionManager(
         this.pool = Args.notNull(pool, "Connection pool");
         this.connFactory = connFactory != null ? connFactory : ManagedHttpClientConnectionFactory.INSTANCE;
         this.closed = new AtomicBoolean(false);
+        this.usageTracker = new ConnectionUsageTracker();
+        this.leasedEntries = Collections.newSetFromMap(
+                new ConcurrentHashMap<PoolEntry<HttpRoute, ManagedHttpClientConnection>, Boolean>());
+        this.validationScheduled = new AtomicBoolean(false);
     }
 
     @Override
@@ -225,6 +263,11 @@ public void close() {
         if (this.closed.compareAndSet(false, true)) {
             this.log.debug("Connection manager is shutting down");
             this.pool.shutdown(ShutdownType.GRACEFUL);
+            synchronized (this) {
+                if (this.prewarmExecutor != null) {
+                    this.prewarmExecutor.shutdownNow();
+                }
+            }
             this.log.debug("Connection manager shut down");
         }
     }
@@ -250,6 +293,7 @@ public LeaseRequest lease(
         if (this.log.isDebugEnabled()) {
             this.log.debug("Connection request: " + ConnPoolSupport.formatStats(null, route, state, this.pool));
         }
+        final long leaseStart = System.nanoTime();
         final Future<PoolEntry<HttpRoute, ManagedHttpClientConnection>> leaseFuture = this.pool.lease(route, state, requestTimeout, null);
         return new LeaseRequest() {
 
@@ -270,26 +314,21 @@ public synchronized ConnectionEndpoint get(
                     }
                 } catch (final TimeoutException ex) {
                     leaseFuture.cancel(true);
+                    fireLeaseTimeout(route, leaseStart);
+                    throw ex;
+                } catch (final ExecutionException ex) {
+                    if (ex.getCause() instanceof TimeoutException) {
+                        fireLeaseTimeout(route, leaseStart);
+                    }
                     throw ex;
                 }
                 try {
-                    if (TimeValue.isPositive(validateAfterInactivity)) {
-                        final ManagedHttpClientConnection conn = poolEntry.getConnection();
-                        if (conn != null
-                                && poolEntry.getUpdated() + validateAfterInactivity.toMillis() <= System.currentTimeMillis()) {
-                            boolean stale;
-                            try {
-                                stale = conn.isStale();
-                            } catch (final IOException ignore) {
-                                stale = true;
-                            }
-                            if (stale) {
-                                if (log.isDebugEnabled()) {
-                                    log.debug("Connection " + ConnPoolSupport.getId(conn) + " is stale");
-                                }
-                                poolEntry.discardConnection(ShutdownType.IMMEDIATE);
-                            }
-                        }
+                    // waits for a background validation or eviction of the entry in progress
+                    synchronized (poolEntry) {
+                        leasedEntries.add(poolEntry);
+                    }
+                    if (!isBackgroundValidationActive() && TimeValue.isPositive(validateAfterInactivity)) {
+                        validate(poolEntry, System.currentTimeMillis() - validateAfterInactivity.toMillis());
                     }
                     final ManagedHttpClientConnection conn = poolEntry.getConnection();
                     if (conn != null) {
@@ -297,17 +336,23 @@ public synchronized ConnectionEndpoint get(
                     } else {
                         poolEntry.assignConnection(connFactory.createConnection(null));
                     }
+                    final ConnPoolListener listener = connPoolListener;
+                    if (listener != null) {
+                        listener.onLease(route, System.nanoTime() - leaseStart, conn != null);
+                    }
                     if (log.isDebugEnabled()) {
                         log.debug("Connection leased: " + ConnPoolSupport.formatStats(
                                 poolEntry.getConnection(), route, state, pool));
                     }
                     if (leaseFuture.isCancelled()) {
+                        leasedEntries.remove(poolEntry);
                         pool.release(poolEntry, false);
                     } else {
                         this.endpoint = new InternalConnectionEndpoint(poolEntry);
                     }
                     return this.endpoint;
                 } catch (final Exception ex) {
+                    leasedEntries.remove(poolEntry);
                     pool.release(poolEntry, false);
                     throw new ExecutionException(ex.getMessage(), ex);
                 }
@@ -353,11 +398,26 @@ public void release(final ConnectionEndpoint endpoint, final Object state, final
             reusable = false;
             throw ex;
         } finally {
+            this.leasedEntries.remove(entry);
             this.pool.release(entry, reusable);
             if (this.log.isDebugEnabled()) {
                 this.log.debug("Connection released: " + ConnPoolSupport.formatStats(
                         conn, entry.getRoute(), entry.getState(), pool));
             }
+            final ConnectionMaintenanceScheduler.Registration maintenance = this.connectionMaintenance;
+            if (maintenance != null && reusable) {
+                maintenance.connectionReleased(entry);
+                final TimeValue validateAfterInactivitySnapshot = this.validateAfterInactivity;
+                if (TimeValue.isPositive(validateAfterInactivitySnapshot) && isBackgroundValidationActive()) {
+                    maintenance.scheduleValidation(validateAfterInactivitySnapshot);
+                }
+            } else if (reusable) {
+                scheduleValidation();
+            }
+            final ConnPoolListener listener = this.connPoolListener;
+            if (listener != null && conn != null) {
+                this.usageTracker.released(entry.getRoute(), conn, reusable, listener);
+            }
         }
     }
 
@@ -379,6 +439,7 @@ public void connect(final ConnectionEndpoint endpoint, final TimeValue connectTi
         } else {
             host = route.getTargetHost();
         }
+        final long connectStart = System.nanoTime();
         this.connectionOperator.connect(
                 poolEntry.getConnection(),
                 host,
@@ -386,6 +447,17 @@ public void connect(final ConnectionEndpoint endpoint, final TimeValue connectTi
                 connectTimeout,
                 defaultSocketConfig != null ? this.defaultSocketConfig : SocketConfig.DEFAULT,
                 context);
+        final ConnPoolListener listener = this.connPoolListener;
+        if (listener != null) {
+            this.usageTracker.connected(poolEntry.getConnection());
+            final long handshakeNanos = takeHandshakeTime(context);
+            if (handshakeNanos >= 0) {
+                listener.onTlsHandshake(route, handshakeNanos);
+                listener.onConnect(route, System.nanoTime() - connectStart - handshakeNanos);
+            } else {
+                listener.onConnect(route, System.nanoTime() - connectStart);
+            }
+        }
     }
 
     @Override
@@ -394,7 +466,251 @@ public void upgrade(final ConnectionEndpoint endpoint, final HttpContext context
         final InternalConnectionEndpoint internalEndpoint = cast(endpoint);
         final PoolEntry<HttpRoute, ManagedHttpClientConnection> poolEntry = internalEndpoint.getValidatedPoolEntry();
         final HttpRoute route = poolEntry.getRoute();
+        final long upgradeStart = System.nanoTime();
         this.connectionOperator.upgrade(poolEntry.getConnection(), route.getTargetHost(), context);
+        final ConnPoolListener listener = this.connPoolListener;
+        if (listener != null) {
+            final long handshakeNanos = takeHandshakeTime(context);
+            listener.onTlsHandshake(route, handshakeNanos >= 0 ? handshakeNanos : System.nanoTime() - upgradeStart);
+        }
+    }
+
+    private static long takeHandshakeTime(final HttpContext context) {
+        if (context == null) {
+            return -1;
+        }
+        final Object handshakeTime = context.removeAttribute(HttpClientContext.TLS_HANDSHAKE_TIME);
+        return handshakeTime instanceof Long ? ((Long) handshakeTime).longValue() : -1;
+    }
+
+    private void fireLeaseTimeout(final HttpRoute route, final long leaseStart) {
+        final ConnPoolListener listener = this.connPoolListener;
+        if (listener != null) {
+            listener.onLeaseTimeout(route, System.nanoTime() - leaseStart);
+        }
+    }
+
+    /**
+     * Opens up to {@code connections} persistent connections to the given route
+     * in parallel and returns them to the pool, so that subsequent requests can
+     * re-use them without incurring connect and TLS handshake latency. The number
+     * of connections is capped by the per route limit. Connections already
+     * available in the pool count towards the total.
+     * <p>
+     * Connections are opened by a thread pool owned by the connection manager,
+     * which is created on first use, never grows beyond the total connection limit
+     * in effect at that time and is shut down along with the connection manager.
+     * </p>
+     *
+     * @param route the route to pre-warm. Tunnelled routes are not supported.
+     * @param connections the number of connections to establish.
+     * @param timeout the timeout applied to both connection lease and connect.
+     * @return future reporting the outcome of the pre-warming run.
+     *
+     * @since 5.0
+     */
+    public Future<PrewarmReport> prewarm(final HttpRoute route, final int connections, final Timeout timeout) {
+        return prewarm(route, connections, timeout, getPrewarmExecutor());
+    }
+
+    private ExecutorService getPrewarmExecutor() {
+        ExecutorService executorService = this.prewarmExecutor;
+        if (executorService == null) {
+            synchronized (this) {
+                executorService = this.prewarmExecutor;
+                if (executorService == null) {
+                    Asserts.check(!this.closed.get(), "Connection pool shut down");
+                    final int maxThreads = Math.max(1, getMaxTotal());
+                    final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+                            maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(),
+                            new DefaultThreadFactory("connection-prewarm", true));
+                    threadPoolExecutor.allowCoreThreadTimeOut(true);
+                    executorService = threadPoolExecutor;
+                    this.prewarmExecutor = executorService;
+                }
+            }
+        }
+        return executorService;
+    }
+
+    /**
+     * Opens up to {@code connections} persistent connections to the given route
+     * using the given executor and returns them to the pool. Connections are
+     * opened in parallel up to the number of threads the executor makes
+     * available. The number of connections is capped by the per route limit.
+     * Connections already available in the pool count towards the total.
+     *
+     * @param route the route to pre-warm. Tunnelled routes are not supported.
+     * @param connections the number of connections to establish.
+     * @param timeout the timeout applied to both connection lease and connect.
+     * @param executor the executor that opens the connections.
+     * @return future reporting the outcome of the pre-warming run.
+     *
+     * @since 5.0
+     */
+    public Future<PrewarmReport> prewarm(
+            final HttpRoute route, final int connections, final Timeout timeout, final Executor executor) {
+        Args.notNull(route, "HTTP route");
+        Args.positive(connections, "Number of connections");
+        Args.notNull(timeout, "Timeout");
+        Args.notNull(executor, "Executor");
+        Args.check(!route.isTunnelled(), "Tunnelled routes cannot be pre-warmed");
+        final int n = Math.min(connections, getMaxPerRoute(route));
+        final BasicFuture<PrewarmReport> future = new BasicFuture<>(null);
+        if (n <= 0) {
+            future.completed(new PrewarmReport(route, 0, 0, null));
+            return future;
+        }
+        // Leased endpoints are held until every attempt has finished so that
+        // a connection warmed by one attempt does not get re-leased by another
+        final Queue<ConnectionEndpoint> endpoints = new ConcurrentLinkedQueue<>();
+        final Queue<Exception> failures = new ConcurrentLinkedQueue<>();
+        final AtomicInteger remaining = new AtomicInteger(n);
+        for (int i = 0; i < n; i++) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        final LeaseRequest leaseRequest = lease(route, timeout, null);
+                        final ConnectionEndpoint endpoint;
+                        if (TimeValue.isPositive(timeout)) {
+                            endpoint = leaseRequest.get(timeout.getDuration(), timeout.getTimeUnit());
+                        } else {
+                            endpoint = leaseRequest.get(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                        }
+                        endpoints.add(endpoint);
+                        if (!endpoint.isConnected()) {
+                            connect(endpoint, timeout, HttpClientContext.create());
+                        }
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        failures.add(ex);
+                    } catch (final Exception ex) {
+                        failures.add(ex);
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            int succeeded = 0;
+                            for (final ConnectionEndpoint endpoint: endpoints) {
+                                if (endpoint.isConnected()) {
+                                    succeeded++;
+                                }
+                                release(endpoint, null, TimeValue.NEG_ONE_MILLISECONDS);
+                            }
+                            final PrewarmReport report = new PrewarmReport(route, n, succeeded, new ArrayList<>(failures));
+                            if (log.isDebugEnabled()) {
+                                log.debug("Pre-warming complete: " + report);
+                            }
+                            future.completed(report);
+                        }
+                    }
+                }
+
+            });
+        }
+        return future;
+    }
+
+    private void validate(final PoolEntry<HttpRoute, ManagedHttpClientConnection> poolEntry, final long deadline) {
+        final ManagedHttpClientConnection conn = poolEntry.getConnection();
+        if (conn != null && poolEntry.getUpdated() <= deadline) {
+            boolean stale;
+            try {
+                stale = conn.isStale();
+            } catch (final IOException ignore) {
+                stale = true;
+            }
+            if (stale) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Connection " + ConnPoolSupport.getId(conn) + " is stale");
+                }
+                poolEntry.discardConnection(ShutdownType.IMMEDIATE);
+            }
+        }
+    }
+
+    /**
+     * Schedules a background validation run on the shared maintenance scheduler
+     * when the connection manager is not registered for maintenance, for instance
+     * because it is shared between clients. Runs repeat as long as there are
+     * connections available in the pool.
+     */
+    private void scheduleValidation() {
+        final TimeValue validateAfterInactivitySnapshot = this.validateAfterInactivity;
+        if (!TimeValue.isPositive(validateAfterInactivitySnapshot) || !isBackgroundValidationActive()
+                || this.closed.get() || !this.validationScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            ConnectionMaintenanceScheduler.getDefault().schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    validationScheduled.set(false);
+                    if (closed.get() || connectionMaintenance != null) {
+                        return;
+                    }
+                    validateIdle();
+                    if (pool.getTotalStats().getAvailable() > 0) {
+                        scheduleValidation();
+                    }
+                }
+
+            }, validateAfterInactivitySnapshot);
+        } catch (final IllegalStateException ex) {
+            this.validationScheduled.set(false);
+        }
+    }
+
+    private boolean isBackgroundValidationActive() {
+        return validateInBackground
+                && (this.pool instanceof StrictConnPool || this.pool instanceof StripedConnPool);
+    }
+
+    /**
+     * Validates connections kept idle in the pool longer than
+     * {@link #getValidateAfterInactivity()} and evicts those found stale.
+     * This method has no effect unless background validation has been
+     * enabled with {@link #setValidateInBackground(boolean)}.
+     *
+     * @since 5.0
+     */
+    @Override
+    public void validateIdle() {
+        final TimeValue validateAfterInactivitySnapshot = this.validateAfterInactivity;
+        if (!TimeValue.isPositive(validateAfterInactivitySnapshot) || !isBackgroundValidationActive()) {
+            return;
+        }
+        final long deadline = System.currentTimeMillis() - validateAfterInactivitySnapshot.toMillis();
+        // Candidates are collected while the pool is locked and probed after the lock
+        // has been released, as the staleness check blocks on socket I/O
+        final List<PoolEntry<HttpRoute, ManagedHttpClientConnection>> candidates = new ArrayList<>();
+        final Callback<PoolEntry<HttpRoute, ManagedHttpClientConnection>> callback = new Callback<PoolEntry<HttpRoute, ManagedHttpClientConnection>>() {
+
+            @Override
+            public void execute(final PoolEntry<HttpRoute, ManagedHttpClientConnection> poolEntry) {
+                if (poolEntry.hasConnection() && poolEntry.getUpdated() <= deadline) {
+                    candidates.add(poolEntry);
+                }
+            }
+
+        };
+        this.log.debug("Validating idle connections");
+        if (this.pool instanceof StrictConnPool) {
+            ((StrictConnPool<HttpRoute, ManagedHttpClientConnection>) this.pool).enumAvailable(callback);
+        } else if (this.pool instanceof StripedConnPool) {
+            ((StripedConnPool<HttpRoute, ManagedHttpClientConnection>) this.pool).enumAvailable(callback);
+        }
+        for (final PoolEntry<HttpRoute, ManagedHttpClientConnection> candidate: candidates) {
+            // the lease of a candidate waits until the candidate has been probed;
+            // candidates leased in the meantime are skipped
+            synchronized (candidate) {
+                if (!this.leasedEntries.contains(candidate)) {
+                    validate(candidate, deadline);
+                }
+            }
+        }
     }
 
     @Override
@@ -488,6 +804,70 @@ public void setValidateAfterInactivity(final TimeValue validateAfterInactivity)
         this.validateAfterInactivity = validateAfterInactivity;
     }
 
+    public ConnPoolListener getConnPoolListener() {
+        return connPoolListener;
+    }
+
+    /**
+     * Sets {@link ConnPoolListener} to be notified of connection lease, connect,
+     * TLS handshake and release events. {@code null} disables notifications.
+     *
+     * @see org.apache.hc.client5.http.impl.InMemoryConnPoolMetrics
+     *
+     * @since 5.0
+     */
+    public void setConnPoolListener(final ConnPoolListener connPoolListener) {
+        this.connPoolListener = connPoolListener;
+    }
+
+    /**
+     * Sets the {@link ConnectionMaintenanceScheduler} registration to report
+     * connections returned to the pool to.
+     *
+     * @since 5.0
+     */
+    @Override
+    public void setConnectionMaintenance(final ConnectionMaintenanceScheduler.Registration registration) {
+        this.connectionMaintenance = registration;
+    }
+
+    /**
+     * @since 5.0
+     */
+    @Override
+    public boolean closeIfDue(final PoolEntry<?, ?> entry, final TimeValue maxIdleTime) {
+        return ConnPoolSupport.closeIfDue(this.pool, this.leasedEntries, entry, maxIdleTime);
+    }
+
+    public boolean isValidateInBackground() {
+        return validateInBackground;
+    }
+
+    /**
+     * Enables or disables background validation of idle connections. When enabled,
+     * connections are no longer checked for staleness at the time of lease. Instead,
+     * connections idle longer than {@link #getValidateAfterInactivity()} get validated
+     * and evicted if stale by {@link #validateIdle()}, which is meant to be invoked
+     * by a {@link ConnectionMaintenanceScheduler} or an
+     * {@link org.apache.hc.client5.http.impl.IdleConnectionEvictor}.
+     * {@link org.apache.hc.client5.http.impl.classic.HttpClientBuilder} registers the
+     * connection manager for maintenance automatically unless it is shared. A connection
+     * manager that is not registered for maintenance schedules validation runs
+     * on the {@link ConnectionMaintenanceScheduler#getDefault() shared scheduler} by
+     * itself as long as connections are available in the pool.
+     * <p>
+     * Background validation is supported with the strict and the striped connection
+     * pools only. Connections are probed outside of the pool lock; a lease of
+     * a connection being probed waits for the probe to finish. With all other pools
+     * connections continue to be validated at the time of lease.
+     * </p>
+     *
+     * @since 5.0
+     */
+    public void setValidateInBackground(final boolean validateInBackground) {
+        this.validateInBackground = validateInBackground;
+    }
+
     class InternalConnectionEndpoint extends ConnectionEndpoint {
 
         private final AtomicReference<PoolEntry<HttpRoute, ManagedHttpClientConnection>> poolEntryRef;
@@ -27,13 +27,19 @@
 
 package org.apache.hc.client5.http.impl.io;
 
+import java.util.concurrent.Executor;
+
+import org.apache.hc.client5.http.ConnPoolListener;
 import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.impl.StripedConnPool;
 import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
 import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
 import org.apache.hc.client5.http.socket.LayeredConnectionSocketFactory;
 import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
 import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.core5.http.config.Registry;
 import org.apache.hc.core5.http.config.RegistryBuilder;
 import org.apache.hc.core5.http.config.SocketConfig;
 import org.apache.hc.core5.http.io.HttpConnectionFactory;
@@ -78,12 +84,18 @@ public class PoolingHttpClientConnectionManagerBuilder {
     private SocketConfig defaultSocketConfig;
 
     private boolean systemProperties;
+    private boolean stripedConnPool;
+    private boolean validateInBackground;
 
     private int maxConnTotal = 0;
     private int maxConnPerRoute = 0;
 
     private TimeValue timeToLive;
     private TimeValue validateAfterInactivity;
+    private TimeValue staggeredConnectDelay;
+    private Executor staggeredConnectExecutor;
+
+    private ConnPoolListener connPoolListener;
 
     public static PoolingHttpClientConnectionManagerBuilder create() {
         return new PoolingHttpClientConnectionManagerBuilder();
@@ -186,6 +198,58 @@ public final PoolingHttpClientConnectionManagerBuilder setValidateAfterInactivit
         return this;
     }
 
+    /**
+     * Validate idle persistent connections in the background instead of
+     * at the time of connection lease.
+     *
+     * @see PoolingHttpClientConnectionManager#setValidateInBackground(boolean)
+     *
+     * @since 5.0
+     */
+    public final PoolingHttpClientConnectionManagerBuilder setValidateInBackground(final boolean validateInBackground) {
+        this.validateInBackground = validateInBackground;
+        return this;
+    }
+
+    /**
+     * Assigns {@link ConnPoolListener} to be notified of connection pool events.
+     *
+     * @since 5.0
+     */
+    public final PoolingHttpClientConnectionManagerBuilder setConnPoolListener(final ConnPoolListener connPoolListener) {
+        this.connPoolListener = connPoolListener;
+        return this;
+    }
+
+    /**
+     * Enables staggered parallel connection establishment (RFC 8305 Happy Eyeballs).
+     * If the target host resolves to multiple addresses, connection attempts
+     * alternate between IPv6 and IPv4 addresses and are started with the given
+     * delay after one another (250 milliseconds is a good default), without waiting
+     * for the previous attempt to time out. The first connection established is
+     * used, all other attempts get cancelled. If not set, addresses are tried
+     * sequentially.
+     *
+     * @since 5.0
+     */
+    public final PoolingHttpClientConnectionManagerBuilder setStaggeredConnectDelay(final TimeValue staggeredConnectDelay) {
+        this.staggeredConnectDelay = staggeredConnectDelay;
+        return this;
+    }
+
+    /**
+     * Assigns the executor running staggered connection attempts. If not set,
+     * the connection operator uses a bounded thread pool of its own.
+     *
+     * @see #setStaggeredConnectDelay(TimeValue)
+     *
+     * @since 5.0
+     */
+    public final PoolingHttpClientConnectionManagerBuilder setStaggeredConnectExecutor(final Executor staggeredConnectExecutor) {
+        this.staggeredConnectExecutor = staggeredConnectExecutor;
+        return this;
+    }
+
     /**
      * Use system properties when creating and configuring default
      * implementations.
@@ -195,23 +259,52 @@ public final PoolingHttpClientConnectionManagerBuilder useSystemProperties() {
         return this;
     }
 
+    /**
+     * Use {@link StripedConnPool} instead of the pool implementation selected
+     * by {@link PoolConcurrencyPolicy}. The striped pool does not serialize
+     * connection leasing and is better suited for large numbers of concurrent
+     * execution threads.
+     *
+     * @since 5.0
+     */
+    public final PoolingHttpClientConnectionManagerBuilder useStripedConnPool() {
+        this.stripedConnPool = true;
+        return this;
+    }
+
     public PoolingHttpClientConnectionManager build() {
+        final Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory != null ? sslSocketFactory :
+                        (systemProperties ?
+                                SSLConnectionSocketFactory.getSystemSocketFactory() :
+                                SSLConnectionSocketFactory.getSocketFactory()))
+                .build();
+        final TimeValue timeToLiveCopy = timeToLive != null ? timeToLive : TimeValue.NEG_ONE_MILLISECONDS;
+        final DefaultHttpClientConnectionOperator connectionOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, staggeredConnectDelay, staggeredConnectExecutor);
         @SuppressWarnings("resource")
-        final PoolingHttpClientConnectionManager poolingmgr = new PoolingHttpClientConnectionManager(
-                RegistryBuilder.<ConnectionSocketFactory>create()
-                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
-                        .register("https", sslSocketFactory != null ? sslSocketFactory :
-                                (systemProperties ?
-                                        SSLConnectionSocketFactory.getSystemSocketFactory() :
-                                        SSLConnectionSocketFactory.getSocketFactory()))
-                        .build(),
-                poolConcurrencyPolicy,
-                poolReusePolicy,
-                timeToLive != null ? timeToLive : TimeValue.NEG_ONE_MILLISECONDS,
-                schemePortResolver,
-                dnsResolver,
-                connectionFactory);
+        final PoolingHttpClientConnectionManager poolingmgr;
+        if (stripedConnPool) {
+            poolingmgr = new PoolingHttpClientConnectionManager(
+                    connectionOperator,
+                    new StripedConnPool<HttpRoute, ManagedHttpClientConnection>(
+                            PoolingHttpClientConnectionManager.DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                            PoolingHttpClientConnectionManager.DEFAULT_MAX_TOTAL_CONNECTIONS,
+                            timeToLiveCopy,
+                            poolReusePolicy),
+                    connectionFactory);
+        } else {
+            poolingmgr = new PoolingHttpClientConnectionManager(
+                    connectionOperator,
+                    poolConcurrencyPolicy,
+                    poolReusePolicy,
+                    timeToLiveCopy,
+                    connectionFactory);
+        }
         poolingmgr.setValidateAfterInactivity(this.validateAfterInactivity);
+        poolingmgr.setConnPoolListener(this.connPoolListener);
+        poolingmgr.setValidateInBackground(this.validateInBackground);
         if (defaultSocketConfig != null) {
             poolingmgr.setDefaultSocketConfig(defaultSocketConfig);
         }
@@ -32,6 +32,7 @@
 import java.net.SocketAddress;
 import java.util.concurrent.Future;
 
+import org.apache.hc.client5.http.AsyncDnsResolver;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.SchemePortResolver;
 import org.apache.hc.client5.http.UnsupportedSchemeException;
@@ -61,13 +62,36 @@ final class DefaultAsyncClientConnectionOperator implements AsyncClientConnectio
     private final MultihomeIOSessionRequester sessionRequester;
     private final Lookup<TlsStrategy> tlsStrategyLookup;
 
-    DefaultAsyncClientConnectionOperator(
+    private DefaultAsyncClientConnectionOperator(
             final Lookup<TlsStrategy> tlsStrategyLookup,
             final SchemePortResolver schemePortResolver,
-            final DnsResolver dnsResolver) {
+            final MultihomeIOSessionRequester sessionRequester) {
         this.tlsStrategyLookup = Args.notNull(tlsStrategyLookup, "TLS strategy lookup");
         this.schemePortResolver = schemePortResolver != null ? schemePortResolver : DefaultSchemePortResolver.INSTANCE;
-        this.sessionRequester = new MultihomeIOSessionRequester(dnsResolver);
+        this.sessionRequester = sessionRequester;
+    }
+
+    DefaultAsyncClientConnectionOperator(
+            final Lookup<TlsStrategy> tlsStrategyLookup,
+            final SchemePortResolver schemePortResolver,
+            final AsyncDnsResolver dnsResolver,
+            final TimeValue staggeredConnectDelay) {
+        this(tlsStrategyLookup, schemePortResolver, new MultihomeIOSessionRequester(dnsResolver, staggeredConnectDelay));
+    }
+
+    DefaultAsyncClientConnectionOperator(
+            final Lookup<TlsStrategy> tlsStrategyLookup,
+            final SchemePortResolver schemePortResolver,
+            final DnsResolver dnsResolver,
+            final TimeValue staggeredConnectDelay) {
+        this(tlsStrategyLookup, schemePortResolver, new MultihomeIOSessionRequester(dnsResolver, staggeredConnectDelay));
+    }
+
+    DefaultAsyncClientConnectionOperator(
+            final Lookup<TlsStrategy> tlsStrategyLookup,
+            final SchemePortResolver schemePortResolver,
+            final DnsResolver dnsResolver) {
+        this(tlsStrategyLookup, schemePortResolver, dnsResolver, null);
     }
 
     @Override
@@ -30,19 +30,24 @@
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSession;
 
 import org.apache.hc.client5.http.impl.ConnPoolSupport;
 import org.apache.hc.client5.http.nio.ManagedAsyncClientConnection;
 import org.apache.hc.core5.annotation.Internal;
+import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.http.EndpointDetails;
 import org.apache.hc.core5.http.HttpConnection;
 import org.apache.hc.core5.http.HttpVersion;
 import org.apache.hc.core5.http.ProtocolVersion;
 import org.apache.hc.core5.http.nio.command.ShutdownCommand;
 import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.net.NamedEndpoint;
 import org.apache.hc.core5.reactor.Command;
 import org.apache.hc.core5.reactor.IOEventHandler;
 import org.apache.hc.core5.reactor.IOSession;
@@ -68,11 +73,35 @@ final class DefaultManagedAsyncClientConnection implements ManagedAsyncClientCon
     private final IOSession ioSession;
     private final int socketTimeout;
     private final AtomicBoolean closed;
+    private final AtomicReference<Callback<Long>> tlsHandshakeCallbackRef;
+    private volatile long tlsHandshakeNanos;
 
     public DefaultManagedAsyncClientConnection(final IOSession ioSession) {
         this.ioSession = ioSession;
         this.socketTimeout = ioSession.getSocketTimeout();
         this.closed = new AtomicBoolean();
+        this.tlsHandshakeCallbackRef = new AtomicReference<>();
+        this.tlsHandshakeNanos = -1;
+    }
+
+    /**
+     * Registers a callback that receives the duration of the TLS handshake in
+     * nanoseconds once the handshake has completed successfully. The callback
+     * is executed immediately if the handshake has already completed.
+     */
+    void notifyTlsHandshake(final Callback<Long> callback) {
+        this.tlsHandshakeCallbackRef.set(callback);
+        final long handshakeNanos = this.tlsHandshakeNanos;
+        if (handshakeNanos >= 0) {
+            fireTlsHandshake(handshakeNanos);
+        }
+    }
+
+    private void fireTlsHandshake(final long handshakeNanos) {
+        final Callback<Long> callback = this.tlsHandshakeCallbackRef.getAndSet(null);
+        if (callback != null) {
+            callback.execute(handshakeNanos);
+        }
     }
 
     @Override
@@ -155,7 +184,19 @@ public void startTls(
             log.debug(getId() + ": start TLS");
         }
         if (ioSession instanceof TransportSecurityLayer) {
-            ((TransportSecurityLayer) ioSession).startTls(sslContext, sslBufferManagement, initializer, verifier);
+            final long handshakeStart = System.nanoTime();
+            ((TransportSecurityLayer) ioSession).startTls(sslContext, sslBufferManagement, initializer, new SSLSessionVerifier() {
+
+                @Override
+                public TlsDetails verify(final NamedEndpoint endpoint, final SSLEngine sslEngine) throws SSLException {
+                    final TlsDetails tlsDetails = verifier != null ? verifier.verify(endpoint, sslEngine) : null;
+                    final long handshakeNanos = System.nanoTime() - handshakeStart;
+                    tlsHandshakeNanos = handshakeNanos;
+                    fireTlsHandshake(handshakeNanos);
+                    return tlsDetails;
+                }
+
+            });
         } else {
             throw new UnsupportedOperationException("TLS upgrade not supported");
         }
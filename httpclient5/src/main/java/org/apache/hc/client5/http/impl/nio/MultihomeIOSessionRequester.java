@@ -31,14 +31,24 @@
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.net.UnknownHostException;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import org.apache.hc.client5.http.AsyncDnsResolver;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpHostConnectException;
-import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.client5.http.impl.ExecutorAsyncDnsResolver;
+import org.apache.hc.client5.http.impl.HappyEyeballsSupport;
+import org.apache.hc.core5.concurrent.Cancellable;
 import org.apache.hc.core5.concurrent.ComplexFuture;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.net.NamedEndpoint;
 import org.apache.hc.core5.reactor.ConnectionInitiator;
@@ -47,10 +57,42 @@
 
 final class MultihomeIOSessionRequester {
 
-    private final DnsResolver dnsResolver;
+    private static final ScheduledExecutorService SCHEDULER;
+
+    static {
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(
+                1, new DefaultThreadFactory("staggered-connect", true));
+        scheduler.setRemoveOnCancelPolicy(true);
+        SCHEDULER = scheduler;
+    }
+
+    private final AsyncDnsResolver dnsResolver;
+    private final TimeValue staggeredConnectDelay;
+
+    /**
+     * @param dnsResolver the resolver of remote host names. If {@code null}
+     *   {@link ExecutorAsyncDnsResolver#INSTANCE} is used.
+     * @param staggeredConnectDelay the delay between staggered connection attempts.
+     *   If {@code null} addresses are tried sequentially.
+     */
+    MultihomeIOSessionRequester(final AsyncDnsResolver dnsResolver, final TimeValue staggeredConnectDelay) {
+        this.dnsResolver = dnsResolver != null ? dnsResolver : ExecutorAsyncDnsResolver.INSTANCE;
+        this.staggeredConnectDelay = staggeredConnectDelay;
+    }
+
+    /**
+     * @param dnsResolver the resolver of remote host names, adapted with
+     *   {@link ExecutorAsyncDnsResolver#adapt(DnsResolver)}. If {@code null}
+     *   {@link ExecutorAsyncDnsResolver#INSTANCE} is used.
+     * @param staggeredConnectDelay the delay between staggered connection attempts.
+     *   If {@code null} addresses are tried sequentially.
+     */
+    MultihomeIOSessionRequester(final DnsResolver dnsResolver, final TimeValue staggeredConnectDelay) {
+        this(dnsResolver != null ? ExecutorAsyncDnsResolver.adapt(dnsResolver) : null, staggeredConnectDelay);
+    }
 
     MultihomeIOSessionRequester(final DnsResolver dnsResolver) {
-        this.dnsResolver = dnsResolver != null ? dnsResolver : SystemDefaultDnsResolver.INSTANCE;
+        this(dnsResolver, null);
     }
 
     public Future<IOSession> connect(
@@ -65,64 +107,221 @@ public Future<IOSession> connect(
             return connectionInitiator.connect(remoteEndpoint, remoteAddress, localAddress, connectTimeout, attachment, callback);
         } else {
             final ComplexFuture<IOSession> future = new ComplexFuture<>(callback);
-            final InetAddress[] remoteAddresses;
-            try {
-                remoteAddresses = dnsResolver.resolve(remoteEndpoint.getHostName());
-            } catch (final UnknownHostException ex) {
-                future.failed(ex);
-                return future;
+            // the lookup may complete and hand over to the connect attempts on another thread
+            // before it returns, so its future must be registered as dependency beforehand
+            final AtomicReference<Future<InetAddress[]>> dnsFutureRef = new AtomicReference<>();
+            future.setDependency(new Cancellable() {
+
+                @Override
+                public boolean cancel() {
+                    final Future<InetAddress[]> dnsFuture = dnsFutureRef.get();
+                    return dnsFuture != null && dnsFuture.cancel(true);
+                }
+
+            });
+            dnsFutureRef.set(dnsResolver.resolve(remoteEndpoint.getHostName(),
+                    new FutureCallback<InetAddress[]>() {
+
+                        @Override
+                        public void completed(final InetAddress[] remoteAddresses) {
+                            if (future.isCancelled()) {
+                                return;
+                            }
+                            if (remoteAddresses.length > 1 && TimeValue.isPositive(staggeredConnectDelay)) {
+                                staggeredConnect(connectionInitiator, remoteEndpoint,
+                                        HappyEyeballsSupport.interleave(remoteAddresses),
+                                        localAddress, connectTimeout, attachment, future);
+                            } else {
+                                sequentialConnect(connectionInitiator, remoteEndpoint, remoteAddresses,
+                                        localAddress, connectTimeout, attachment, future);
+                            }
+                        }
+
+                        @Override
+                        public void failed(final Exception ex) {
+                            future.failed(ex);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            future.cancel();
+                        }
+
+                    }));
+            return future;
+        }
+    }
+
+    private void sequentialConnect(
+            final ConnectionInitiator connectionInitiator,
+            final NamedEndpoint remoteEndpoint,
+            final InetAddress[] remoteAddresses,
+            final SocketAddress localAddress,
+            final TimeValue connectTimeout,
+            final Object attachment,
+            final ComplexFuture<IOSession> future) {
+        final Runnable runnable = new Runnable() {
+
+            private final AtomicInteger attempt = new AtomicInteger(0);
+
+            void executeNext() {
+                final int index = attempt.getAndIncrement();
+                final InetSocketAddress remoteAddress = new InetSocketAddress(remoteAddresses[index], remoteEndpoint.getPort());
+                final Future<IOSession> sessionFuture = connectionInitiator.connect(
+                        remoteEndpoint,
+                        remoteAddress,
+                        localAddress,
+                        connectTimeout,
+                        attachment,
+                        new FutureCallback<IOSession>() {
+
+                            @Override
+                            public void completed(final IOSession session) {
+                                future.completed(session);
+                            }
+
+                            @Override
+                            public void failed(final Exception cause) {
+                                if (attempt.get() >= remoteAddresses.length) {
+                                    if (cause instanceof IOException) {
+                                        future.failed(new HttpHostConnectException((IOException) cause, remoteEndpoint, remoteAddresses));
+                                    } else {
+                                        future.failed(cause);
+                                    }
+                                } else {
+                                    executeNext();
+                                }
+                            }
+
+                            @Override
+                            public void cancelled() {
+                                future.cancel();
+                            }
+
+                        });
+                future.setDependency(sessionFuture);
+            }
+
+            @Override
+            public void run() {
+                executeNext();
+            }
+
+        };
+        runnable.run();
+    }
+
+    private void staggeredConnect(
+            final ConnectionInitiator connectionInitiator,
+            final NamedEndpoint remoteEndpoint,
+            final InetAddress[] remoteAddresses,
+            final SocketAddress localAddress,
+            final TimeValue connectTimeout,
+            final Object attachment,
+            final ComplexFuture<IOSession> future) {
+        final AtomicReferenceArray<Future<IOSession>> sessionFutures = new AtomicReferenceArray<>(remoteAddresses.length);
+        final Runnable runnable = new Runnable() {
+
+            private final AtomicInteger attempt = new AtomicInteger(0);
+            private final AtomicInteger failures = new AtomicInteger(0);
+            private final AtomicBoolean done = new AtomicBoolean(false);
+            private volatile ScheduledFuture<?> nextAttempt;
+
+            void cancelOthers(final int winner) {
+                final ScheduledFuture<?> scheduledFuture = nextAttempt;
+                if (scheduledFuture != null) {
+                    scheduledFuture.cancel(false);
+                }
+                for (int i = 0; i < sessionFutures.length(); i++) {
+                    final Future<IOSession> sessionFuture = sessionFutures.get(i);
+                    if (i != winner && sessionFuture != null) {
+                        sessionFuture.cancel(true);
+                    }
+                }
             }
-            final Runnable runnable = new Runnable() {
-
-                private final AtomicInteger attempt = new AtomicInteger(0);
-
-                void executeNext() {
-                    final int index = attempt.getAndIncrement();
-                    final InetSocketAddress remoteAddress = new InetSocketAddress(remoteAddresses[index], remoteEndpoint.getPort());
-                    final Future<IOSession> sessionFuture = connectionInitiator.connect(
-                            remoteEndpoint,
-                            remoteAddress,
-                            localAddress,
-                            connectTimeout,
-                            attachment,
-                            new FutureCallback<IOSession>() {
-
-                                @Override
-                                public void completed(final IOSession session) {
+
+            void executeNext() {
+                if (done.get()) {
+                    return;
+                }
+                final int index = attempt.getAndIncrement();
+                if (index >= remoteAddresses.length) {
+                    return;
+                }
+                final InetSocketAddress remoteAddress = new InetSocketAddress(remoteAddresses[index], remoteEndpoint.getPort());
+                final Future<IOSession> sessionFuture = connectionInitiator.connect(
+                        remoteEndpoint,
+                        remoteAddress,
+                        localAddress,
+                        connectTimeout,
+                        attachment,
+                        new FutureCallback<IOSession>() {
+
+                            @Override
+                            public void completed(final IOSession session) {
+                                if (done.compareAndSet(false, true)) {
+                                    cancelOthers(index);
                                     future.completed(session);
+                                } else {
+                                    session.close();
                                 }
+                            }
 
-                                @Override
-                                public void failed(final Exception cause) {
-                                    if (attempt.get() >= remoteAddresses.length) {
+                            @Override
+                            public void failed(final Exception cause) {
+                                if (failures.incrementAndGet() >= remoteAddresses.length) {
+                                    if (done.compareAndSet(false, true)) {
                                         if (cause instanceof IOException) {
                                             future.failed(new HttpHostConnectException((IOException) cause, remoteEndpoint, remoteAddresses));
                                         } else {
                                             future.failed(cause);
                                         }
-                                    } else {
-                                        executeNext();
                                     }
+                                } else {
+                                    // do not wait for the delay to elapse if an attempt has failed
+                                    executeNext();
                                 }
+                            }
 
-                                @Override
-                                public void cancelled() {
+                            @Override
+                            public void cancelled() {
+                                if (done.compareAndSet(false, true)) {
+                                    cancelOthers(index);
                                     future.cancel();
                                 }
+                            }
 
-                            });
-                    future.setDependency(sessionFuture);
+                        });
+                sessionFutures.set(index, sessionFuture);
+                if (done.get()) {
+                    sessionFuture.cancel(true);
+                } else if (attempt.get() < remoteAddresses.length) {
+                    nextAttempt = SCHEDULER.schedule(this, staggeredConnectDelay.toMillis(), TimeUnit.MILLISECONDS);
                 }
+            }
 
-                @Override
-                public void run() {
-                    executeNext();
+            @Override
+            public void run() {
+                executeNext();
+            }
+
+        };
+        future.setDependency(new Cancellable() {
+
+            @Override
+            public boolean cancel() {
+                boolean cancelled = false;
+                for (int i = 0; i < sessionFutures.length(); i++) {
+                    final Future<IOSession> sessionFuture = sessionFutures.get(i);
+                    if (sessionFuture != null) {
+                        cancelled |= sessionFuture.cancel(true);
+                    }
                 }
+                return cancelled;
+            }
 
-            };
-            runnable.run();
-            return future;
-        }
+        });
+        runnable.run();
     }
 
     public Future<IOSession> connect(
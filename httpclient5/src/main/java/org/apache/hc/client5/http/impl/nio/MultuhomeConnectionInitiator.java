@@ -30,6 +30,7 @@
 import java.net.SocketAddress;
 import java.util.concurrent.Future;
 
+import org.apache.hc.client5.http.AsyncDnsResolver;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.net.NamedEndpoint;
@@ -55,6 +56,16 @@ public MultuhomeConnectionInitiator(
         this.sessionRequester = new MultihomeIOSessionRequester(dnsResolver);
     }
 
+    /**
+     * @since 5.0
+     */
+    public MultuhomeConnectionInitiator(
+            final ConnectionInitiator connectionInitiator,
+            final AsyncDnsResolver dnsResolver) {
+        this.connectionInitiator = Args.notNull(connectionInitiator, "Connection initiator");
+        this.sessionRequester = new MultihomeIOSessionRequester(dnsResolver, null);
+    }
+
     @Override
     public Future<IOSession> connect(
             final NamedEndpoint remoteEndpoint,
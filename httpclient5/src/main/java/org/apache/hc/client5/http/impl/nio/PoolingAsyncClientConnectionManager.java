@@ -29,28 +29,44 @@
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.hc.client5.http.ConnPoolListener;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.SchemePortResolver;
 import org.apache.hc.client5.http.impl.ConnPoolSupport;
+import org.apache.hc.client5.http.impl.ConnectionMaintenanceAware;
+import org.apache.hc.client5.http.impl.ConnectionMaintenanceScheduler;
 import org.apache.hc.client5.http.impl.ConnectionShutdownException;
+import org.apache.hc.client5.http.impl.ConnectionUsageTracker;
+import org.apache.hc.client5.http.impl.PrewarmReport;
 import org.apache.hc.client5.http.nio.AsyncClientConnectionManager;
 import org.apache.hc.client5.http.nio.AsyncClientConnectionOperator;
 import org.apache.hc.client5.http.nio.AsyncConnectionEndpoint;
 import org.apache.hc.client5.http.nio.ManagedAsyncClientConnection;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.ssl.H2TlsStrategy;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.Internal;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.BasicFuture;
 import org.apache.hc.core5.concurrent.ComplexFuture;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.function.Callback;
+import org.apache.hc.core5.http.ConnectionClosedException;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpVersion;
 import org.apache.hc.core5.http.ProtocolVersion;
@@ -60,6 +76,7 @@
 import org.apache.hc.core5.http.nio.command.ExecutionCommand;
 import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
 import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
 import org.apache.hc.core5.http2.nio.command.PingCommand;
 import org.apache.hc.core5.http2.nio.support.BasicPingHandler;
 import org.apache.hc.core5.io.ShutdownType;
@@ -99,18 +116,25 @@
  * @since 5.0
  */
 @Contract(threading = ThreadingBehavior.SAFE_CONDITIONAL)
-public class PoolingAsyncClientConnectionManager implements AsyncClientConnectionManager, ConnPoolControl<HttpRoute> {
+public class PoolingAsyncClientConnectionManager
+    implements AsyncClientConnectionManager, ConnPoolControl<HttpRoute>, ConnectionMaintenanceAware {
 
     private final Logger log = LogManager.getLogger(getClass());
 
     public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 25;
     public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 5;
 
+    private static final TimeValue NEGOTIATION_CHECK_INTERVAL = TimeValue.ofMillis(10);
+
     private final ManagedConnPool<HttpRoute, ManagedAsyncClientConnection> pool;
     private final AsyncClientConnectionOperator connectionOperator;
     private final AtomicBoolean closed;
+    private final ConnectionUsageTracker usageTracker;
+    private final Set<PoolEntry<HttpRoute, ManagedAsyncClientConnection>> leasedEntries;
 
     private volatile TimeValue validateAfterInactivity;
+    private volatile ConnPoolListener connPoolListener;
+    private volatile ConnectionMaintenanceScheduler.Registration connectionMaintenance;
 
     public PoolingAsyncClientConnectionManager() {
         this(RegistryBuilder.<TlsStrategy>create()
@@ -175,6 +199,9 @@ protected PoolingAsyncClientConnectionManager(
                 throw new IllegalArgumentException("Unexpected PoolConcurrencyPolicy value: " + poolConcurrencyPolicy);
         }
         this.closed = new AtomicBoolean(false);
+        this.usageTracker = new ConnectionUsageTracker();
+        this.leasedEntries = Collections.newSetFromMap(
+                new ConcurrentHashMap<PoolEntry<HttpRoute, ManagedAsyncClientConnection>, Boolean>());
     }
 
     @Internal
@@ -184,6 +211,9 @@ protected PoolingAsyncClientConnectionManager(
         this.connectionOperator = Args.notNull(connectionOperator, "Connection operator");
         this.pool = Args.notNull(pool, "Connection pool");
         this.closed = new AtomicBoolean(false);
+        this.usageTracker = new ConnectionUsageTracker();
+        this.leasedEntries = Collections.newSetFromMap(
+                new ConcurrentHashMap<PoolEntry<HttpRoute, ManagedAsyncClientConnection>, Boolean>());
     }
 
     @Override
@@ -213,6 +243,7 @@ public Future<AsyncConnectionEndpoint> lease(
             log.debug("Connection request: " + ConnPoolSupport.formatStats(null, route, state, pool));
         }
         final ComplexFuture<AsyncConnectionEndpoint> resultFuture = new ComplexFuture<>(callback);
+        final long leaseStart = System.nanoTime();
         final Future<PoolEntry<HttpRoute, ManagedAsyncClientConnection>> leaseFuture = pool.lease(
                 route, state, requestTimeout, new FutureCallback<PoolEntry<HttpRoute, ManagedAsyncClientConnection>>() {
 
@@ -224,6 +255,10 @@ void leaseCompleted(final PoolEntry<HttpRoute, ManagedAsyncClientConnection> poo
                         if (log.isDebugEnabled()) {
                             log.debug("Connection leased: " + ConnPoolSupport.formatStats(connection, route, state, pool));
                         }
+                        final ConnPoolListener listener = connPoolListener;
+                        if (listener != null) {
+                            listener.onLease(route, System.nanoTime() - leaseStart, poolEntry.hasConnection());
+                        }
                         final AsyncConnectionEndpoint endpoint = new InternalConnectionEndpoint(poolEntry);
                         if (log.isDebugEnabled()) {
                             log.debug(ConnPoolSupport.getId(endpoint) + ": acquired " + ConnPoolSupport.getId(connection));
@@ -233,6 +268,10 @@ void leaseCompleted(final PoolEntry<HttpRoute, ManagedAsyncClientConnection> poo
 
                     @Override
                     public void completed(final PoolEntry<HttpRoute, ManagedAsyncClientConnection> poolEntry) {
+                        // waits for an eviction of the entry in progress
+                        synchronized (poolEntry) {
+                            leasedEntries.add(poolEntry);
+                        }
                         final ManagedAsyncClientConnection connection = poolEntry.getConnection();
                         final TimeValue timeValue = PoolingAsyncClientConnectionManager.this.validateAfterInactivity;
                         if (TimeValue.isPositive(timeValue) && connection != null &&
@@ -269,6 +308,12 @@ public void execute(final Boolean result) {
 
                     @Override
                     public void failed(final Exception ex) {
+                        if (ex instanceof TimeoutException) {
+                            final ConnPoolListener listener = connPoolListener;
+                            if (listener != null) {
+                                listener.onLeaseTimeout(route, System.nanoTime() - leaseStart);
+                            }
+                        }
                         resultFuture.failed(ex);
                     }
 
@@ -315,11 +360,20 @@ public void release(final AsyncConnectionEndpoint endpoint, final Object state,
             reusable = false;
             throw ex;
         } finally {
+            leasedEntries.remove(entry);
             pool.release(entry, reusable);
             if (log.isDebugEnabled()) {
                 log.debug("Connection released: " + ConnPoolSupport.formatStats(
                         connection, entry.getRoute(), entry.getState(), pool));
             }
+            final ConnectionMaintenanceScheduler.Registration maintenance = connectionMaintenance;
+            if (maintenance != null && reusable) {
+                maintenance.connectionReleased(entry);
+            }
+            final ConnPoolListener listener = connPoolListener;
+            if (listener != null && connection != null) {
+                usageTracker.released(entry.getRoute(), connection, reusable, listener);
+            }
         }
     }
 
@@ -349,6 +403,7 @@ public Future<AsyncConnectionEndpoint> connect(
             host = route.getTargetHost();
         }
         final InetSocketAddress localAddress = route.getLocalSocketAddress();
+        final long connectStart = System.nanoTime();
         final Future<ManagedAsyncClientConnection> connectFuture = connectionOperator.connect(
                 connectionInitiator, host, localAddress, timeout, attachment, new FutureCallback<ManagedAsyncClientConnection>() {
 
@@ -359,6 +414,12 @@ public void completed(final ManagedAsyncClientConnection connection) {
                                 log.debug(ConnPoolSupport.getId(internalEndpoint) + ": connected " + ConnPoolSupport.getId(connection));
                             }
                             poolEntry.assignConnection(connection);
+                            final ConnPoolListener listener = connPoolListener;
+                            if (listener != null) {
+                                usageTracker.connected(connection);
+                                listener.onConnect(route, System.nanoTime() - connectStart);
+                                trackTlsHandshake(route, connection, listener);
+                            }
                             resultFuture.completed(internalEndpoint);
                         } catch (final RuntimeException ex) {
                             resultFuture.failed(ex);
@@ -391,11 +452,213 @@ public void upgrade(
         final HttpRoute route = poolEntry.getRoute();
         final ManagedAsyncClientConnection connection = poolEntry.getConnection();
         connectionOperator.upgrade(poolEntry.getConnection(), route.getTargetHost(), attachment);
+        final ConnPoolListener listener = connPoolListener;
+        if (listener != null) {
+            trackTlsHandshake(route, connection, listener);
+        }
         if (log.isDebugEnabled()) {
             log.debug(ConnPoolSupport.getId(internalEndpoint) + ": upgraded " + ConnPoolSupport.getId(connection));
         }
     }
 
+    private static void trackTlsHandshake(
+            final HttpRoute route, final ManagedAsyncClientConnection connection, final ConnPoolListener listener) {
+        // the handshake completes asynchronously once the connection has been established
+        if (connection instanceof DefaultManagedAsyncClientConnection) {
+            ((DefaultManagedAsyncClientConnection) connection).notifyTlsHandshake(new Callback<Long>() {
+
+                @Override
+                public void execute(final Long handshakeNanos) {
+                    listener.onTlsHandshake(route, handshakeNanos);
+                }
+
+            });
+        }
+    }
+
+    /**
+     * Opens up to {@code connections} persistent connections to the given route
+     * concurrently and returns them to the pool, so that subsequent requests can
+     * re-use them without incurring connect and TLS handshake latency. The number
+     * of connections is capped by the per route limit. Connections already
+     * available in the pool count towards the total.
+     * <p>
+     * Connections are only counted as pre-warmed once protocol negotiation has
+     * completed. Every connection that ends up speaking HTTP/2, be it forced with
+     * {@link HttpVersionPolicy#FORCE_HTTP_2} or negotiated by ALPN, is additionally
+     * verified with a PING round trip, which ensures that the initial SETTINGS
+     * exchange has completed as well.
+     * </p>
+     *
+     * @param route the route to pre-warm. Tunnelled routes are not supported.
+     * @param connections the number of connections to establish.
+     * @param timeout the timeout applied to connection lease, connect and
+     *                protocol negotiation.
+     * @param connectionInitiator the connection initiator of the client, as returned by
+     * {@link org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient#getConnectionInitiator()}.
+     *  If {@code null} no connections are attempted and the run completes
+     *  with an empty report.
+     * @param attachment the connect attachment (usually {@link HttpVersionPolicy}).
+     * @param callback the result callback. May be {@code null}.
+     * @return future reporting the outcome of the pre-warming run.
+     *
+     * @since 5.0
+     */
+    public Future<PrewarmReport> prewarm(
+            final HttpRoute route,
+            final int connections,
+            final Timeout timeout,
+            final ConnectionInitiator connectionInitiator,
+            final Object attachment,
+            final FutureCallback<PrewarmReport> callback) {
+        Args.notNull(route, "HTTP route");
+        Args.positive(connections, "Number of connections");
+        Args.notNull(timeout, "Timeout");
+        Args.check(!route.isTunnelled(), "Tunnelled routes cannot be pre-warmed");
+        final int n = connectionInitiator != null ? Math.min(connections, getMaxPerRoute(route)) : 0;
+        final BasicFuture<PrewarmReport> resultFuture = new BasicFuture<>(callback);
+        if (n <= 0) {
+            if (connectionInitiator == null && log.isDebugEnabled()) {
+                log.debug(route + ": no connection initiator; pre-warming skipped");
+            }
+            resultFuture.completed(new PrewarmReport(route, 0, 0, null));
+            return resultFuture;
+        }
+        final boolean forceHttp2 = attachment == HttpVersionPolicy.FORCE_HTTP_2;
+        // Leased endpoints are held until every attempt has finished so that
+        // a connection warmed by one attempt does not get re-leased by another
+        final Queue<AsyncConnectionEndpoint> endpoints = new ConcurrentLinkedQueue<>();
+        final Queue<Exception> failures = new ConcurrentLinkedQueue<>();
+        final AtomicInteger succeeded = new AtomicInteger(0);
+        final AtomicInteger remaining = new AtomicInteger(n);
+        for (int i = 0; i < n; i++) {
+            lease(route, null, timeout, new FutureCallback<AsyncConnectionEndpoint>() {
+
+                void done(final AsyncConnectionEndpoint endpoint, final Exception cause) {
+                    if (cause != null) {
+                        failures.add(cause);
+                        if (endpoint != null) {
+                            try {
+                                endpoint.shutdown();
+                            } catch (final IOException ignore) {
+                            }
+                        }
+                    } else {
+                        succeeded.incrementAndGet();
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        for (final AsyncConnectionEndpoint leasedEndpoint: endpoints) {
+                            release(leasedEndpoint, null, TimeValue.NEG_ONE_MILLISECONDS);
+                        }
+                        final PrewarmReport report = new PrewarmReport(route, n, succeeded.get(), new ArrayList<>(failures));
+                        if (log.isDebugEnabled()) {
+                            log.debug("Pre-warming complete: " + report);
+                        }
+                        resultFuture.completed(report);
+                    }
+                }
+
+                void verify(final AsyncConnectionEndpoint endpoint, final long deadline) {
+                    final ManagedAsyncClientConnection connection;
+                    try {
+                        connection = cast(endpoint).getValidatedPoolEntry().getConnection();
+                    } catch (final RuntimeException ex) {
+                        done(endpoint, ex);
+                        return;
+                    }
+                    if (forceHttp2) {
+                        ping(endpoint, connection);
+                        return;
+                    }
+                    if (!connection.isOpen()) {
+                        done(endpoint, new ConnectionClosedException("Connection closed during protocol negotiation"));
+                        return;
+                    }
+                    final ProtocolVersion protocolVersion = connection.getProtocolVersion();
+                    if (protocolVersion == null) {
+                        // protocol negotiation still in progress
+                        if (deadline > 0 && System.currentTimeMillis() >= deadline) {
+                            done(endpoint, new TimeoutException("Protocol negotiation timed out"));
+                            return;
+                        }
+                        try {
+                            ConnectionMaintenanceScheduler.getDefault().schedule(new Runnable() {
+
+                                @Override
+                                public void run() {
+                                    verify(endpoint, deadline);
+                                }
+
+                            }, NEGOTIATION_CHECK_INTERVAL);
+                        } catch (final IllegalStateException ex) {
+                            done(endpoint, ex);
+                        }
+                    } else if (protocolVersion.greaterEquals(HttpVersion.HTTP_2)) {
+                        ping(endpoint, connection);
+                    } else {
+                        done(endpoint, null);
+                    }
+                }
+
+                void ping(final AsyncConnectionEndpoint endpoint, final ManagedAsyncClientConnection connection) {
+                    connection.submitPriorityCommand(new PingCommand(new BasicPingHandler(new Callback<Boolean>() {
+
+                        @Override
+                        public void execute(final Boolean result) {
+                            if (result == Boolean.TRUE) {
+                                done(endpoint, null);
+                            } else {
+                                done(endpoint, new ConnectionClosedException("Connection closed before HTTP/2 handshake completed"));
+                            }
+                        }
+
+                    })));
+                }
+
+                @Override
+                public void completed(final AsyncConnectionEndpoint endpoint) {
+                    endpoints.add(endpoint);
+                    if (endpoint.isConnected()) {
+                        done(endpoint, null);
+                        return;
+                    }
+                    connect(endpoint, connectionInitiator, timeout, attachment, HttpClientContext.create(),
+                            new FutureCallback<AsyncConnectionEndpoint>() {
+
+                                @Override
+                                public void completed(final AsyncConnectionEndpoint result) {
+                                    verify(endpoint, TimeValue.isPositive(timeout) ?
+                                            System.currentTimeMillis() + timeout.toMillis() : 0);
+                                }
+
+                                @Override
+                                public void failed(final Exception ex) {
+                                    done(endpoint, ex);
+                                }
+
+                                @Override
+                                public void cancelled() {
+                                    done(endpoint, new CancellationException("Connect cancelled"));
+                                }
+
+                            });
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    done(null, ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    done(null, new CancellationException("Connection lease cancelled"));
+                }
+
+            });
+        }
+        return resultFuture;
+    }
+
     @Override
     public Set<HttpRoute> getRoutes() {
         return pool.getRoutes();
@@ -451,6 +714,47 @@ public PoolStats getStats(final HttpRoute route) {
         return pool.getStats(route);
     }
 
+    public ConnPoolListener getConnPoolListener() {
+        return connPoolListener;
+    }
+
+    /**
+     * Sets {@link ConnPoolListener} to be notified of connection lease, connect,
+     * TLS handshake and release events. {@code null} disables notifications.
+     * <p>
+     * Please note that TLS handshake is carried out asynchronously by the I/O reactor
+     * once the connection has been established. It is therefore not included in
+     * the connect time but reported separately through
+     * {@link ConnPoolListener#onTlsHandshake(HttpRoute, long)} when it completes.
+     * </p>
+     *
+     * @see org.apache.hc.client5.http.impl.InMemoryConnPoolMetrics
+     *
+     * @since 5.0
+     */
+    public void setConnPoolListener(final ConnPoolListener connPoolListener) {
+        this.connPoolListener = connPoolListener;
+    }
+
+    /**
+     * Sets the {@link ConnectionMaintenanceScheduler} registration to report
+     * connections returned to the pool to.
+     *
+     * @since 5.0
+     */
+    @Override
+    public void setConnectionMaintenance(final ConnectionMaintenanceScheduler.Registration registration) {
+        this.connectionMaintenance = registration;
+    }
+
+    /**
+     * @since 5.0
+     */
+    @Override
+    public boolean closeIfDue(final PoolEntry<?, ?> entry, final TimeValue maxIdleTime) {
+        return ConnPoolSupport.closeIfDue(this.pool, this.leasedEntries, entry, maxIdleTime);
+    }
+
     public TimeValue getValidateAfterInactivity() {
         return validateAfterInactivity;
     }
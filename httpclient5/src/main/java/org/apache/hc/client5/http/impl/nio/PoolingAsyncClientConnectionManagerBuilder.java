@@ -30,9 +30,15 @@
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 
+import org.apache.hc.client5.http.AsyncDnsResolver;
+import org.apache.hc.client5.http.ConnPoolListener;
 import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.impl.StripedConnPool;
+import org.apache.hc.client5.http.nio.ManagedAsyncClientConnection;
 import org.apache.hc.client5.http.ssl.H2TlsStrategy;
+import org.apache.hc.core5.http.config.Lookup;
 import org.apache.hc.core5.http.config.RegistryBuilder;
 import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
 import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
@@ -70,16 +76,21 @@ public class PoolingAsyncClientConnectionManagerBuilder {
     private TlsStrategy tlsStrategy;
     private SchemePortResolver schemePortResolver;
     private DnsResolver dnsResolver;
+    private AsyncDnsResolver asyncDnsResolver;
     private PoolConcurrencyPolicy poolConcurrencyPolicy;
     private PoolReusePolicy poolReusePolicy;
 
     private boolean systemProperties;
+    private boolean stripedConnPool;
 
     private int maxConnTotal = 0;
     private int maxConnPerRoute = 0;
 
     private TimeValue timeToLive;
     private TimeValue validateAfterInactivity;
+    private TimeValue staggeredConnectDelay;
+
+    private ConnPoolListener connPoolListener;
 
     public static PoolingAsyncClientConnectionManagerBuilder create() {
         return new PoolingAsyncClientConnectionManagerBuilder();
@@ -106,6 +117,21 @@ public final PoolingAsyncClientConnectionManagerBuilder setDnsResolver(final Dns
         return this;
     }
 
+    /**
+     * Assigns {@link AsyncDnsResolver} instance. Takes precedence over
+     * {@link #setDnsResolver(DnsResolver)}. A {@link DnsResolver} is run on
+     * a shared pool of background threads, see
+     * {@link org.apache.hc.client5.http.impl.ExecutorAsyncDnsResolver#adapt(DnsResolver)}.
+     * If neither is set, lookups are done by the system resolver on the
+     * same pool.
+     *
+     * @since 5.0
+     */
+    public final PoolingAsyncClientConnectionManagerBuilder setAsyncDnsResolver(final AsyncDnsResolver asyncDnsResolver) {
+        this.asyncDnsResolver = asyncDnsResolver;
+        return this;
+    }
+
     /**
      * Assigns {@link SchemePortResolver} instance.
      */
@@ -165,6 +191,32 @@ public final PoolingAsyncClientConnectionManagerBuilder setValidateAfterInactivi
         return this;
     }
 
+    /**
+     * Assigns {@link ConnPoolListener} to be notified of connection pool events.
+     *
+     * @since 5.0
+     */
+    public final PoolingAsyncClientConnectionManagerBuilder setConnPoolListener(final ConnPoolListener connPoolListener) {
+        this.connPoolListener = connPoolListener;
+        return this;
+    }
+
+    /**
+     * Enables staggered parallel connection establishment (RFC 8305 Happy Eyeballs).
+     * If the target host resolves to multiple addresses, connection attempts
+     * alternate between IPv6 and IPv4 addresses and are started with the given
+     * delay after one another (250 milliseconds is a good default), without waiting
+     * for the previous attempt to time out. The first connection established is
+     * used, all other attempts get cancelled. If not set, addresses are tried
+     * sequentially.
+     *
+     * @since 5.0
+     */
+    public final PoolingAsyncClientConnectionManagerBuilder setStaggeredConnectDelay(final TimeValue staggeredConnectDelay) {
+        this.staggeredConnectDelay = staggeredConnectDelay;
+        return this;
+    }
+
     /**
      * Use system properties when creating and configuring default
      * implementations.
@@ -174,6 +226,19 @@ public final PoolingAsyncClientConnectionManagerBuilder useSystemProperties() {
         return this;
     }
 
+    /**
+     * Use {@link StripedConnPool} instead of the pool implementation selected
+     * by {@link PoolConcurrencyPolicy}. The striped pool does not serialize
+     * connection leasing and is better suited for large numbers of concurrent
+     * execution threads.
+     *
+     * @since 5.0
+     */
+    public final PoolingAsyncClientConnectionManagerBuilder useStripedConnPool() {
+        this.stripedConnPool = true;
+        return this;
+    }
+
     public PoolingAsyncClientConnectionManager build() {
         final TlsStrategy tlsStrategyCopy;
         if (tlsStrategy != null) {
@@ -188,17 +253,33 @@ public TlsStrategy run() {
         } else {
             tlsStrategyCopy = H2TlsStrategy.getDefault();
         }
+        final Lookup<TlsStrategy> tlsStrategyLookup = RegistryBuilder.<TlsStrategy>create()
+                .register("https", tlsStrategyCopy)
+                .build();
+        final DefaultAsyncClientConnectionOperator connectionOperator = asyncDnsResolver != null
+                        ? new DefaultAsyncClientConnectionOperator(
+                                tlsStrategyLookup, schemePortResolver, asyncDnsResolver, staggeredConnectDelay)
+                        : new DefaultAsyncClientConnectionOperator(
+                                tlsStrategyLookup, schemePortResolver, dnsResolver, staggeredConnectDelay);
         @SuppressWarnings("resource")
-        final PoolingAsyncClientConnectionManager poolingmgr = new PoolingAsyncClientConnectionManager(
-                RegistryBuilder.<TlsStrategy>create()
-                        .register("https", tlsStrategyCopy)
-                        .build(),
-                poolConcurrencyPolicy,
-                poolReusePolicy,
-                timeToLive,
-                schemePortResolver,
-                dnsResolver);
+        final PoolingAsyncClientConnectionManager poolingmgr;
+        if (stripedConnPool) {
+            poolingmgr = new PoolingAsyncClientConnectionManager(
+                    new StripedConnPool<HttpRoute, ManagedAsyncClientConnection>(
+                            PoolingAsyncClientConnectionManager.DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                            PoolingAsyncClientConnectionManager.DEFAULT_MAX_TOTAL_CONNECTIONS,
+                            timeToLive,
+                            poolReusePolicy),
+                    connectionOperator);
+        } else {
+            poolingmgr = new PoolingAsyncClientConnectionManager(
+                    connectionOperator,
+                    poolConcurrencyPolicy,
+                    poolReusePolicy,
+                    timeToLive);
+        }
         poolingmgr.setValidateAfterInactivity(this.validateAfterInactivity);
+        poolingmgr.setConnPoolListener(this.connPoolListener);
         if (maxConnTotal > 0) {
             poolingmgr.setMaxTotal(maxConnTotal);
         }
@@ -132,6 +132,23 @@ public class HttpClientContext extends HttpCoreContext {
      */
     public static final String REQUEST_CONFIG = "http.request-config";
 
+    /**
+     * Attribute name of a {@link Long} object that represents the duration
+     * of the most recent TLS handshake in nanoseconds.
+     *
+     * @since 5.0
+     */
+    public static final String TLS_HANDSHAKE_TIME = "http.tls-handshake-time";
+
+    /**
+     * Attribute name of a {@link Long} object that represents the
+     * {@link System#nanoTime()} at which the most recent request message
+     * was submitted for execution over an established connection.
+     *
+     * @since 5.0
+     */
+    public static final String EXCHANGE_START_TIME = "http.exchange-start-time";
+
     public static HttpClientContext adapt(final HttpContext context) {
         Args.notNull(context, "HTTP context");
         if (context instanceof HttpClientContext) {
@@ -47,6 +47,7 @@
 import javax.net.ssl.SSLSocket;
 import javax.security.auth.x500.X500Principal;
 
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.psl.PublicSuffixMatcherLoader;
 import org.apache.hc.client5.http.socket.LayeredConnectionSocketFactory;
 import org.apache.hc.core5.annotation.Contract;
@@ -287,8 +288,10 @@ public Socket connectSocket(
         if (sock instanceof SSLSocket) {
             final SSLSocket sslsock = (SSLSocket) sock;
             this.log.debug("Starting handshake");
+            final long handshakeStart = System.nanoTime();
             sslsock.startHandshake();
             verifyHostname(sslsock, host.getHostName());
+            recordHandshakeTime(context, handshakeStart);
             return sock;
         } else {
             return createLayeredSocket(sock, host.getHostName(), remoteAddress.getPort(), context);
@@ -332,11 +335,19 @@ public Socket createLayeredSocket(
 
         prepareSocket(sslsock);
         this.log.debug("Starting handshake");
+        final long handshakeStart = System.nanoTime();
         sslsock.startHandshake();
         verifyHostname(sslsock, target);
+        recordHandshakeTime(context, handshakeStart);
         return sslsock;
     }
 
+    private static void recordHandshakeTime(final HttpContext context, final long handshakeStart) {
+        if (context != null) {
+            context.setAttribute(HttpClientContext.TLS_HANDSHAKE_TIME, System.nanoTime() - handshakeStart);
+        }
+    }
+
     private void verifyHostname(final SSLSocket sslsock, final String hostname) throws IOException {
         try {
             SSLSession session = sslsock.getSession();
@@ -0,0 +1,238 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link CachingDnsResolver}.
+ */
+public class TestCachingDnsResolver {
+
+    private final AtomicLong clock = new AtomicLong();
+    private DnsResolver delegate;
+    private CachingDnsResolver resolver;
+    private InetAddress ip1;
+    private InetAddress ip2;
+
+    @Before
+    public void setup() throws Exception {
+        delegate = Mockito.mock(DnsResolver.class);
+        ip1 = InetAddress.getByAddress("somehost", new byte[] {10, 0, 0, 1});
+        ip2 = InetAddress.getByAddress("somehost", new byte[] {10, 0, 0, 2});
+        resolver = new CachingDnsResolver(delegate,
+                TimeValue.ofSeconds(60), TimeValue.ofSeconds(5), TimeValue.ofSeconds(10)) {
+
+            @Override
+            long now() {
+                return clock.get();
+            }
+
+        };
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        resolver.close();
+    }
+
+    @Test
+    public void testPositiveCaching() throws Exception {
+        Mockito.when(delegate.resolve("somehost")).thenReturn(new InetAddress[] { ip1 });
+
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, resolver.resolve("somehost"));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, resolver.resolve("somehost"));
+
+        Mockito.verify(delegate, Mockito.times(1)).resolve("somehost");
+        Assert.assertEquals(1, resolver.getHitCount());
+        Assert.assertEquals(1, resolver.getMissCount());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        Mockito.when(delegate.resolve("somehost")).thenReturn(new InetAddress[] { ip2 });
+        Assert.assertArrayEquals(new InetAddress[] { ip2 }, resolver.resolve("somehost"));
+        Mockito.verify(delegate, Mockito.times(2)).resolve("somehost");
+        Assert.assertEquals(2, resolver.getMissCount());
+    }
+
+    @Test
+    public void testCachedAddressesNotModifiable() throws Exception {
+        Mockito.when(delegate.resolve("somehost")).thenReturn(new InetAddress[] { ip1 });
+
+        final InetAddress[] addresses = resolver.resolve("somehost");
+        addresses[0] = ip2;
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, resolver.resolve("somehost"));
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception {
+        Mockito.when(delegate.resolve("somehost")).thenThrow(new UnknownHostException("somehost"));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                resolver.resolve("somehost");
+                Assert.fail("UnknownHostException expected");
+            } catch (final UnknownHostException expected) {
+            }
+        }
+        Mockito.verify(delegate, Mockito.times(1)).resolve("somehost");
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        Mockito.reset(delegate);
+        Mockito.when(delegate.resolve("somehost")).thenReturn(new InetAddress[] { ip1 });
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, resolver.resolve("somehost"));
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        Mockito.when(delegate.resolve("somehost")).thenReturn(new InetAddress[] { ip1 });
+        resolver.resolve("somehost");
+
+        Mockito.when(delegate.resolve("somehost")).thenReturn(new InetAddress[] { ip2 });
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(55));
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, resolver.resolve("somehost"));
+
+        Mockito.verify(delegate, Mockito.timeout(5000).times(2)).resolve("somehost");
+        resolver.close();
+        resolver.awaitTermination(TimeValue.ofSeconds(5));
+        Assert.assertEquals(1, resolver.getRefreshCount());
+
+        // the refreshed entry lives for a full TTL from the time of the refresh
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(40));
+        Assert.assertArrayEquals(new InetAddress[] { ip2 }, resolver.resolve("somehost"));
+        Assert.assertEquals(1, resolver.getMissCount());
+    }
+
+    @Test
+    public void testFailedRefreshKeepsAddresses() throws Exception {
+        Mockito.when(delegate.resolve("somehost")).thenReturn(new InetAddress[] { ip1 });
+        resolver.resolve("somehost");
+
+        Mockito.when(delegate.resolve("somehost")).thenThrow(new UnknownHostException("somehost"));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(55));
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, resolver.resolve("somehost"));
+
+        Mockito.verify(delegate, Mockito.timeout(5000).times(2)).resolve("somehost");
+        resolver.close();
+        resolver.awaitTermination(TimeValue.ofSeconds(5));
+        Assert.assertEquals(0, resolver.getRefreshCount());
+
+        // still served from the cache up to the original expiry
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, resolver.resolve("somehost"));
+        Assert.assertEquals(1, resolver.getMissCount());
+    }
+
+    @Test
+    public void testConcurrentMissesCollapsed() throws Exception {
+        final CountDownLatch lookupStarted = new CountDownLatch(1);
+        final CountDownLatch lookupReleased = new CountDownLatch(1);
+        Mockito.when(delegate.resolve("somehost")).thenAnswer(new Answer<InetAddress[]>() {
+
+            @Override
+            public InetAddress[] answer(final InvocationOnMock invocation) throws Throwable {
+                lookupStarted.countDown();
+                lookupReleased.await(5, TimeUnit.SECONDS);
+                return new InetAddress[] { ip1 };
+            }
+
+        });
+        final int threadCount = 4;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        Assert.assertArrayEquals(new InetAddress[] { ip1 }, resolver.resolve("somehost"));
+                    } catch (final Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+
+            }).start();
+        }
+        Assert.assertTrue(lookupStarted.await(5, TimeUnit.SECONDS));
+        // give the other threads a chance to join the pending lookup
+        Thread.sleep(100);
+        lookupReleased.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(failure.get());
+        Mockito.verify(delegate, Mockito.times(1)).resolve("somehost");
+    }
+
+    @Test
+    public void testFailedMissNotCachedWithoutNegativeTtl() throws Exception {
+        final CachingDnsResolver uncachedFailures = new CachingDnsResolver(delegate,
+                TimeValue.ofSeconds(60), TimeValue.ZERO_MILLISECONDS, TimeValue.ZERO_MILLISECONDS);
+        Mockito.when(delegate.resolve("somehost")).thenThrow(new UnknownHostException("somehost"));
+        try {
+            uncachedFailures.resolve("somehost");
+            Assert.fail("UnknownHostException expected");
+        } catch (final UnknownHostException expected) {
+        }
+        Assert.assertEquals(0, uncachedFailures.size());
+        uncachedFailures.close();
+    }
+
+    @Test
+    public void testCloseExpired() throws Exception {
+        Mockito.when(delegate.resolve("somehost")).thenReturn(new InetAddress[] { ip1 });
+        Mockito.when(delegate.resolve("otherhost")).thenThrow(new UnknownHostException("otherhost"));
+        resolver.resolve("somehost");
+        try {
+            resolver.resolve("otherhost");
+        } catch (final UnknownHostException expected) {
+        }
+        Assert.assertEquals(2, resolver.size());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        resolver.closeExpired();
+        Assert.assertEquals(1, resolver.size());
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ConcurrentHistogram}.
+ */
+public class TestConcurrentHistogram {
+
+    @Test
+    public void testBuckets() {
+        Assert.assertEquals(0, ConcurrentHistogram.bucketOf(0));
+        Assert.assertEquals(0, ConcurrentHistogram.bucketOf(-10));
+        Assert.assertEquals(1, ConcurrentHistogram.bucketOf(1));
+        Assert.assertEquals(2, ConcurrentHistogram.bucketOf(2));
+        Assert.assertEquals(2, ConcurrentHistogram.bucketOf(3));
+        Assert.assertEquals(11, ConcurrentHistogram.bucketOf(1024));
+        Assert.assertEquals(63, ConcurrentHistogram.bucketOf(Long.MAX_VALUE));
+        Assert.assertEquals(1023, ConcurrentHistogram.upperBound(10));
+        Assert.assertEquals(Long.MAX_VALUE, ConcurrentHistogram.upperBound(63));
+    }
+
+    @Test
+    public void testSnapshot() {
+        final ConcurrentHistogram histogram = new ConcurrentHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        final ConcurrentHistogram.Snapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(100, snapshot.getCount());
+        Assert.assertEquals(5050, snapshot.getSum());
+        Assert.assertEquals(100, snapshot.getMax());
+        Assert.assertEquals(50.5d, snapshot.getMean(), 0.001d);
+        Assert.assertEquals(63, snapshot.getPercentile(0.5d));
+        Assert.assertEquals(100, snapshot.getPercentile(0.99d));
+        Assert.assertEquals(1, snapshot.getPercentile(0.0d));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getSnapshot().getCount());
+        Assert.assertEquals(0, histogram.getSnapshot().getPercentile(0.5d));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final ConcurrentHistogram histogram = new ConcurrentHistogram();
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int n = 0; n < 10000; n++) {
+                        histogram.record(n);
+                    }
+                }
+
+            });
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final ConcurrentHistogram.Snapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(40000, snapshot.getCount());
+        Assert.assertEquals(9999, snapshot.getMax());
+    }
+
+    @Test
+    public void testStripedRecording() throws Exception {
+        final ConcurrentHistogram histogram = new ConcurrentHistogram(4);
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final long value = i + 1;
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int n = 0; n < 1000; n++) {
+                        histogram.record(value);
+                    }
+                }
+
+            });
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final ConcurrentHistogram.Snapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(8000, snapshot.getCount());
+        Assert.assertEquals(36000, snapshot.getSum());
+        Assert.assertEquals(8, snapshot.getMax());
+        Assert.assertEquals(1, snapshot.getPercentile(0.1d));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getSnapshot().getCount());
+        Assert.assertEquals(0, histogram.getSnapshot().getMax());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStripesMustBePowerOfTwo() {
+        new ConcurrentHistogram(3);
+    }
+
+}
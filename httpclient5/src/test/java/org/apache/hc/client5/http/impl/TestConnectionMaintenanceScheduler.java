@@ -0,0 +1,306 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.function.Supplier;
+import org.apache.hc.core5.io.GracefullyCloseable;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolEntry;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link ConnectionMaintenanceScheduler}.
+ */
+public class TestConnectionMaintenanceScheduler {
+
+    private ConnectionMaintenanceScheduler scheduler;
+
+    @Before
+    public void setup() {
+        scheduler = new ConnectionMaintenanceScheduler(TimeValue.ofMillis(10), 8, null);
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        scheduler.close();
+        scheduler.awaitTermination(TimeValue.ofSeconds(1));
+    }
+
+    @Test
+    public void testSchedule() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        // longer than one revolution of the wheel
+        scheduler.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+
+        }, TimeValue.ofMillis(200));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final Cancellable cancellable = scheduler.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+
+        }, TimeValue.ofMillis(50));
+        Assert.assertTrue(cancellable.cancel());
+        Thread.sleep(200);
+        Assert.assertEquals(0, count.get());
+    }
+
+    @Test
+    public void testScheduleRecurring() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final Cancellable cancellable = scheduler.scheduleRecurring(new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+
+        }, TimeValue.ofMillis(20));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        cancellable.cancel();
+    }
+
+    @Test
+    public void testEvictionOnRelease() throws Exception {
+        final ConnPoolControl<?> cm = Mockito.mock(ConnPoolControl.class,
+                Mockito.withSettings().extraInterfaces(ConnectionMaintenanceAware.class));
+        final ConnectionMaintenanceScheduler.Registration registration = scheduler.register(cm, TimeValue.ofSeconds(30));
+        Mockito.verify((ConnectionMaintenanceAware) cm).setConnectionMaintenance(registration);
+
+        final PoolEntry<String, GracefullyCloseable> entry = new PoolEntry<>("route");
+        entry.assignConnection(Mockito.mock(GracefullyCloseable.class));
+        entry.updateExpiry(TimeValue.ofMillis(50));
+        registration.connectionReleased(entry);
+        Assert.assertEquals(1, registration.getPendingCount());
+
+        Mockito.verify((ConnectionMaintenanceAware) cm, Mockito.timeout(5000)).closeIfDue(
+                entry, TimeValue.ofSeconds(30));
+        // only the released connection is looked at, the pool does not get swept
+        Mockito.verify(cm, Mockito.never()).closeExpired();
+        Mockito.verify(cm, Mockito.never()).closeIdle(Mockito.<TimeValue>any());
+        Assert.assertEquals(0, registration.getPendingCount());
+
+        registration.close();
+        Mockito.verify((ConnectionMaintenanceAware) cm).setConnectionMaintenance(null);
+    }
+
+    @Test
+    public void testEarlierDeadlineReplacesCheck() throws Exception {
+        final ConnPoolControl<?> cm = Mockito.mock(ConnPoolControl.class,
+                Mockito.withSettings().extraInterfaces(ConnectionMaintenanceAware.class));
+        final ConnectionMaintenanceScheduler.Registration registration = scheduler.register(cm, TimeValue.ofMinutes(1));
+
+        final PoolEntry<String, GracefullyCloseable> entry = new PoolEntry<>("route");
+        entry.assignConnection(Mockito.mock(GracefullyCloseable.class));
+        registration.connectionReleased(entry);
+        registration.connectionReleased(entry);
+        Assert.assertEquals(1, registration.getPendingCount());
+
+        entry.updateExpiry(TimeValue.ofMillis(50));
+        registration.connectionReleased(entry);
+        Assert.assertEquals(1, registration.getPendingCount());
+        Mockito.verify((ConnectionMaintenanceAware) cm, Mockito.timeout(5000)).closeIfDue(
+                entry, TimeValue.ofMinutes(1));
+
+        registration.close();
+        Assert.assertEquals(0, registration.getPendingCount());
+    }
+
+    @Test
+    public void testKeptEntryChecksRearmed() throws Exception {
+        final ConnPoolControl<?> cm = Mockito.mock(ConnPoolControl.class,
+                Mockito.withSettings().extraInterfaces(ConnectionMaintenanceAware.class));
+        final ConnectionMaintenanceScheduler.Registration registration = scheduler.register(cm, TimeValue.ofMillis(50));
+
+        final PoolEntry<String, GracefullyCloseable> entry = new PoolEntry<>("route");
+        entry.assignConnection(Mockito.mock(GracefullyCloseable.class));
+        Mockito.when(((ConnectionMaintenanceAware) cm).closeIfDue(entry, TimeValue.ofMillis(50))).thenAnswer(
+                new Answer<Boolean>() {
+
+                    @Override
+                    public Boolean answer(final InvocationOnMock invocation) throws Throwable {
+                        // the connection got re-used and returned to the pool in the meantime
+                        entry.updateState(null);
+                        return Boolean.TRUE;
+                    }
+
+                });
+        registration.connectionReleased(entry);
+        Mockito.verify((ConnectionMaintenanceAware) cm, Mockito.timeout(5000).atLeast(2)).closeIfDue(
+                entry, TimeValue.ofMillis(50));
+
+        registration.close();
+    }
+
+    @Test
+    public void testValidationRequestsCoalesced() throws Exception {
+        final ConnPoolControl<?> cm = Mockito.mock(ConnPoolControl.class,
+                Mockito.withSettings().extraInterfaces(ConnectionMaintenanceAware.class, IdleConnectionValidator.class));
+        // the clock stands still, so that the requests cannot straddle a tick boundary
+        final ConnectionMaintenanceScheduler frozenScheduler = new ConnectionMaintenanceScheduler(
+                TimeValue.ofMillis(10), 8, null, new Supplier<Long>() {
+
+                    @Override
+                    public Long get() {
+                        return Long.valueOf(0);
+                    }
+
+                });
+        try {
+            final ConnectionMaintenanceScheduler.Registration registration = frozenScheduler.register(cm, null);
+
+            registration.scheduleValidation(TimeValue.ofMillis(25));
+            registration.scheduleValidation(TimeValue.ofMillis(21));
+            Assert.assertEquals(1, registration.getPendingCount());
+            registration.scheduleValidation(TimeValue.ofMillis(35));
+            Assert.assertEquals(2, registration.getPendingCount());
+
+            registration.close();
+            Assert.assertEquals(0, registration.getPendingCount());
+        } finally {
+            frozenScheduler.close();
+        }
+        Mockito.verify((IdleConnectionValidator) cm, Mockito.never()).validateIdle();
+    }
+
+    @Test
+    public void testValidationOnRequest() throws Exception {
+        final ConnPoolControl<?> cm = Mockito.mock(ConnPoolControl.class,
+                Mockito.withSettings().extraInterfaces(ConnectionMaintenanceAware.class, IdleConnectionValidator.class));
+        final ConnectionMaintenanceScheduler.Registration registration = scheduler.register(cm, null);
+
+        registration.scheduleValidation(TimeValue.ofMillis(50));
+        Mockito.verify((IdleConnectionValidator) cm, Mockito.timeout(5000)).validateIdle();
+        Mockito.verify(cm, Mockito.never()).closeExpired();
+
+        registration.close();
+    }
+
+    @Test
+    public void testMaintenanceAwarePoolNotSwept() throws Exception {
+        final ConnPoolControl<?> cm = Mockito.mock(ConnPoolControl.class,
+                Mockito.withSettings().extraInterfaces(ConnectionMaintenanceAware.class, IdleConnectionValidator.class));
+        final ConnectionMaintenanceScheduler.Registration registration = scheduler.register(cm, TimeValue.ofMillis(20));
+
+        Thread.sleep(200);
+        Mockito.verify(cm, Mockito.never()).closeExpired();
+        Mockito.verify(cm, Mockito.never()).closeIdle(Mockito.<TimeValue>any());
+        Mockito.verify((IdleConnectionValidator) cm, Mockito.never()).validateIdle();
+
+        registration.close();
+    }
+
+    @Test
+    public void testValidationDoesNotHoldUpTimers() throws Exception {
+        final ConnPoolControl<?> cm = Mockito.mock(ConnPoolControl.class,
+                Mockito.withSettings().extraInterfaces(ConnectionMaintenanceAware.class, IdleConnectionValidator.class));
+        final CountDownLatch validating = new CountDownLatch(1);
+        final CountDownLatch unblock = new CountDownLatch(1);
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                validating.countDown();
+                unblock.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+
+        }).when((IdleConnectionValidator) cm).validateIdle();
+        final ConnectionMaintenanceScheduler.Registration registration = scheduler.register(cm, null);
+        try {
+            registration.scheduleValidation(TimeValue.ofMillis(10));
+            Assert.assertTrue(validating.await(5, TimeUnit.SECONDS));
+
+            final CountDownLatch fired = new CountDownLatch(1);
+            scheduler.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    fired.countDown();
+                }
+
+            }, TimeValue.ofMillis(10));
+            // the timer fires while the validation is still blocked
+            Assert.assertTrue(fired.await(5, TimeUnit.SECONDS));
+        } finally {
+            unblock.countDown();
+            registration.close();
+        }
+    }
+
+    @Test
+    public void testPeriodicMaintenance() throws Exception {
+        final ConnPoolControl<?> cm = Mockito.mock(ConnPoolControl.class);
+        final ConnectionMaintenanceScheduler.Registration registration = scheduler.register(cm, TimeValue.ofMillis(50));
+
+        Mockito.verify(cm, Mockito.timeout(5000).atLeast(2)).closeExpired();
+        Mockito.verify(cm, Mockito.atLeast(1)).closeIdle(TimeValue.ofMillis(50));
+
+        registration.close();
+    }
+
+    @Test
+    public void testDefaultCloseIgnored() throws Exception {
+        ConnectionMaintenanceScheduler.getDefault().close();
+        Assert.assertFalse(ConnectionMaintenanceScheduler.getDefault().isShutdown());
+        ConnectionMaintenanceScheduler.getDefault().schedule(Mockito.mock(Runnable.class), TimeValue.ofMillis(10)).cancel();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testScheduleAfterClose() throws Exception {
+        scheduler.close();
+        scheduler.schedule(Mockito.mock(Runnable.class), TimeValue.ofMillis(10));
+    }
+
+}
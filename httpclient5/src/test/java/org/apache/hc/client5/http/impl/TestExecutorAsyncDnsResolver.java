@@ -0,0 +1,136 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link ExecutorAsyncDnsResolver}.
+ */
+public class TestExecutorAsyncDnsResolver {
+
+    @Test
+    public void testResolve() throws Exception {
+        final InetAddress ip = InetAddress.getByAddress("somehost", new byte[] {10, 0, 0, 1});
+        final DnsResolver dnsResolver = Mockito.mock(DnsResolver.class);
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip });
+        final Executor executor = Mockito.mock(Executor.class);
+        @SuppressWarnings("unchecked")
+        final FutureCallback<InetAddress[]> callback = Mockito.mock(FutureCallback.class);
+
+        final ExecutorAsyncDnsResolver asyncDnsResolver = new ExecutorAsyncDnsResolver(dnsResolver, executor);
+        final Future<InetAddress[]> future = asyncDnsResolver.resolve("somehost", callback);
+        Assert.assertFalse(future.isDone());
+        Mockito.verify(dnsResolver, Mockito.never()).resolve(Mockito.anyString());
+
+        final ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(executor).execute(taskCaptor.capture());
+        taskCaptor.getValue().run();
+
+        Assert.assertTrue(future.isDone());
+        Assert.assertArrayEquals(new InetAddress[] { ip }, future.get());
+        Mockito.verify(callback).completed(Mockito.<InetAddress[]>any());
+    }
+
+    @Test
+    public void testResolveFailure() throws Exception {
+        final DnsResolver dnsResolver = Mockito.mock(DnsResolver.class);
+        Mockito.when(dnsResolver.resolve("somehost")).thenThrow(new UnknownHostException("somehost"));
+
+        final Future<InetAddress[]> future = ExecutorAsyncDnsResolver.direct(dnsResolver).resolve("somehost", null);
+        Assert.assertTrue(future.isDone());
+        try {
+            future.get();
+            Assert.fail("ExecutionException expected");
+        } catch (final ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof UnknownHostException);
+        }
+    }
+
+    @Test
+    public void testAdaptedResolverRunsInBackground() throws Exception {
+        final InetAddress ip = InetAddress.getByAddress("somehost", new byte[] {10, 0, 0, 1});
+        final AtomicReference<Thread> lookupThread = new AtomicReference<>();
+        final DnsResolver dnsResolver = Mockito.mock(DnsResolver.class);
+        Mockito.when(dnsResolver.resolve("somehost")).thenAnswer(new Answer<InetAddress[]>() {
+
+            @Override
+            public InetAddress[] answer(final InvocationOnMock invocation) throws Throwable {
+                lookupThread.set(Thread.currentThread());
+                return new InetAddress[] { ip };
+            }
+
+        });
+
+        final Future<InetAddress[]> future = ExecutorAsyncDnsResolver.adapt(dnsResolver).resolve("somehost", null);
+        Assert.assertArrayEquals(new InetAddress[] { ip }, future.get(5, TimeUnit.SECONDS));
+        Assert.assertNotNull(lookupThread.get());
+        Assert.assertNotSame(Thread.currentThread(), lookupThread.get());
+    }
+
+    @Test
+    public void testAdaptedInMemoryResolverRunsInline() throws Exception {
+        final InetAddress ip = InetAddress.getByAddress("somehost", new byte[] {10, 0, 0, 1});
+        final InMemoryDnsResolver dnsResolver = new InMemoryDnsResolver();
+        dnsResolver.add("somehost", ip);
+
+        final Future<InetAddress[]> future = ExecutorAsyncDnsResolver.adapt(dnsResolver).resolve("somehost", null);
+        Assert.assertTrue(future.isDone());
+        Assert.assertArrayEquals(new InetAddress[] { ip }, future.get());
+    }
+
+    @Test
+    public void testCancelledBeforeLookup() throws Exception {
+        final DnsResolver dnsResolver = Mockito.mock(DnsResolver.class);
+        final Executor executor = Mockito.mock(Executor.class);
+
+        final Future<InetAddress[]> future = new ExecutorAsyncDnsResolver(dnsResolver, executor).resolve("somehost", null);
+        future.cancel(true);
+
+        final ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(executor).execute(taskCaptor.capture());
+        taskCaptor.getValue().run();
+        Mockito.verify(dnsResolver, Mockito.never()).resolve(Mockito.anyString());
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.net.InetAddress;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link HappyEyeballsSupport}.
+ */
+public class TestHappyEyeballsSupport {
+
+    @Test
+    public void testInterleave() throws Exception {
+        final InetAddress v6a = InetAddress.getByName("2001:db8::1");
+        final InetAddress v6b = InetAddress.getByName("2001:db8::2");
+        final InetAddress v6c = InetAddress.getByName("2001:db8::3");
+        final InetAddress v4a = InetAddress.getByName("192.0.2.1");
+        final InetAddress v4b = InetAddress.getByName("192.0.2.2");
+
+        Assert.assertArrayEquals(
+                new InetAddress[] { v6a, v4a, v6b, v4b, v6c },
+                HappyEyeballsSupport.interleave(new InetAddress[] { v6a, v6b, v6c, v4a, v4b }));
+        Assert.assertArrayEquals(
+                new InetAddress[] { v4a, v6a, v4b, v6b, v6c },
+                HappyEyeballsSupport.interleave(new InetAddress[] { v4a, v4b, v6a, v6b, v6c }));
+        Assert.assertArrayEquals(
+                new InetAddress[] { v4a, v6a, v4b },
+                HappyEyeballsSupport.interleave(new InetAddress[] { v4a, v4b, v6a }));
+    }
+
+    @Test
+    public void testInterleaveSingleFamily() throws Exception {
+        final InetAddress v4a = InetAddress.getByName("192.0.2.1");
+        final InetAddress v4b = InetAddress.getByName("192.0.2.2");
+        final InetAddress v4c = InetAddress.getByName("192.0.2.3");
+        Assert.assertArrayEquals(
+                new InetAddress[] { v4a, v4b, v4c },
+                HappyEyeballsSupport.interleave(new InetAddress[] { v4a, v4b, v4c }));
+        Assert.assertNull(HappyEyeballsSupport.interleave(null));
+    }
+
+}
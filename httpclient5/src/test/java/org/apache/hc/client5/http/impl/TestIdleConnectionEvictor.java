@@ -78,4 +78,22 @@ public void testEvictExpiredOnly() throws Exception {
         Assert.assertFalse(connectionEvictor.isRunning());
     }
 
+    @Test
+    public void testValidateIdle() throws Exception {
+        final ConnPoolControl<?> cm = Mockito.mock(ConnPoolControl.class,
+                Mockito.withSettings().extraInterfaces(IdleConnectionValidator.class));
+        final IdleConnectionEvictor connectionEvictor = new IdleConnectionEvictor(cm,
+                TimeValue.ofMillis(500), null);
+        connectionEvictor.start();
+
+        Thread.sleep(1000);
+
+        Mockito.verify(cm, Mockito.atLeast(1)).closeExpired();
+        Mockito.verify((IdleConnectionValidator) cm, Mockito.atLeast(1)).validateIdle();
+
+        connectionEvictor.shutdown();
+        connectionEvictor.awaitTermination(1, TimeUnit.SECONDS);
+        Assert.assertFalse(connectionEvictor.isRunning());
+    }
+
 }
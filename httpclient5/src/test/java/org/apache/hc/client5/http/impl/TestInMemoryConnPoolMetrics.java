@@ -0,0 +1,80 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.util.Map;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.http.HttpHost;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link InMemoryConnPoolMetrics}.
+ */
+public class TestInMemoryConnPoolMetrics {
+
+    @Test
+    public void testRouteMetrics() {
+        final HttpRoute route1 = new HttpRoute(new HttpHost("somehost", 80));
+        final HttpRoute route2 = new HttpRoute(new HttpHost("otherhost", 80));
+        final InMemoryConnPoolMetrics metrics = new InMemoryConnPoolMetrics();
+        Assert.assertNull(metrics.getSnapshot(route1));
+
+        metrics.onLease(route1, 1000, false);
+        metrics.onConnect(route1, 2000);
+        metrics.onTlsHandshake(route1, 3000);
+        metrics.onRelease(route1, 10, 0, true);
+        metrics.onLease(route1, 100, true);
+        metrics.onRelease(route1, 20, 1, false);
+        metrics.onLeaseTimeout(route2, 5000);
+
+        final InMemoryConnPoolMetrics.RouteSnapshot snapshot1 = metrics.getSnapshot(route1);
+        Assert.assertNotNull(snapshot1);
+        Assert.assertEquals(route1, snapshot1.getRoute());
+        Assert.assertEquals(2, snapshot1.getLeaseCount());
+        Assert.assertEquals(1, snapshot1.getReuseCount());
+        Assert.assertEquals(0.5d, snapshot1.getReuseRatio(), 0.001d);
+        Assert.assertEquals(0, snapshot1.getLeaseTimeoutCount());
+        Assert.assertEquals(2, snapshot1.getLeaseWait().getCount());
+        Assert.assertEquals(1000, snapshot1.getLeaseWait().getMax());
+        Assert.assertEquals(1, snapshot1.getConnectTime().getCount());
+        Assert.assertEquals(1, snapshot1.getTlsHandshakeTime().getCount());
+        Assert.assertEquals(20, snapshot1.getAgeAtRelease().getMax());
+        Assert.assertEquals(1, snapshot1.getReusesPerConnection().getMax());
+
+        final Map<HttpRoute, InMemoryConnPoolMetrics.RouteSnapshot> snapshots = metrics.getSnapshots();
+        Assert.assertEquals(2, snapshots.size());
+        Assert.assertEquals(1, snapshots.get(route2).getLeaseTimeoutCount());
+        Assert.assertEquals(0, snapshots.get(route2).getLeaseCount());
+
+        metrics.clear();
+        Assert.assertTrue(metrics.getSnapshots().isEmpty());
+    }
+
+}
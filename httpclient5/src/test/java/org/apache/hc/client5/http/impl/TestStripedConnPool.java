@@ -0,0 +1,309 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.core5.function.Callback;
+import org.apache.hc.core5.io.GracefullyCloseable;
+import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.pool.PoolEntry;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestStripedConnPool {
+
+    @Test
+    public void testLeaseRelease() throws Exception {
+        final GracefullyCloseable conn1 = Mockito.mock(GracefullyCloseable.class);
+        final GracefullyCloseable conn2 = Mockito.mock(GracefullyCloseable.class);
+
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(2, 10);
+        final PoolEntry<String, GracefullyCloseable> entry1 = pool.lease("somehost", null).get();
+        Assert.assertNotNull(entry1);
+        entry1.assignConnection(conn1);
+        final PoolEntry<String, GracefullyCloseable> entry2 = pool.lease("otherhost", null).get();
+        Assert.assertNotNull(entry2);
+        entry2.assignConnection(conn2);
+
+        pool.release(entry1, true);
+        pool.release(entry2, false);
+        Mockito.verify(conn1, Mockito.never()).shutdown(Mockito.<ShutdownType>any());
+        Mockito.verify(conn2).shutdown(ShutdownType.GRACEFUL);
+
+        final PoolStats totals = pool.getTotalStats();
+        Assert.assertEquals(1, totals.getAvailable());
+        Assert.assertEquals(0, totals.getLeased());
+        Assert.assertEquals(0, totals.getPending());
+
+        final PoolEntry<String, GracefullyCloseable> entry3 = pool.lease("somehost", null).get();
+        Assert.assertSame(entry1, entry3);
+        pool.shutdown(ShutdownType.GRACEFUL);
+        Mockito.verify(conn1).shutdown(ShutdownType.GRACEFUL);
+    }
+
+    @Test
+    public void testMaxPerRoutePendingServicedOnRelease() throws Exception {
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(1, 10);
+        final Future<PoolEntry<String, GracefullyCloseable>> future1 = pool.lease("somehost", null);
+        final Future<PoolEntry<String, GracefullyCloseable>> future2 = pool.lease("somehost", null);
+        Assert.assertTrue(future1.isDone());
+        Assert.assertFalse(future2.isDone());
+        Assert.assertEquals(1, pool.getStats("somehost").getPending());
+
+        final PoolEntry<String, GracefullyCloseable> entry1 = future1.get();
+        entry1.assignConnection(Mockito.mock(GracefullyCloseable.class));
+        pool.release(entry1, true);
+
+        Assert.assertTrue(future2.isDone());
+        Assert.assertSame(entry1, future2.get());
+        Assert.assertEquals(0, pool.getStats("somehost").getPending());
+        Assert.assertEquals(1, pool.getStats("somehost").getLeased());
+    }
+
+    @Test
+    public void testMaxTotalEvictsIdleOfOtherRoute() throws Exception {
+        final GracefullyCloseable conn1 = Mockito.mock(GracefullyCloseable.class);
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(
+                2, 2, TimeValue.NEG_ONE_MILLISECONDS, PoolReusePolicy.LIFO, 4);
+        final PoolEntry<String, GracefullyCloseable> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(conn1);
+        final PoolEntry<String, GracefullyCloseable> entry2 = pool.lease("somehost", null).get();
+        pool.release(entry1, true);
+
+        final Future<PoolEntry<String, GracefullyCloseable>> future3 = pool.lease("otherhost", null);
+        Assert.assertTrue(future3.isDone());
+        Mockito.verify(conn1).shutdown(ShutdownType.GRACEFUL);
+        Assert.assertEquals(0, pool.getStats("somehost").getAvailable());
+
+        final Future<PoolEntry<String, GracefullyCloseable>> future4 = pool.lease("otherhost", null);
+        Assert.assertFalse(future4.isDone());
+
+        pool.release(entry2, false);
+        Assert.assertTrue(future4.isDone());
+        Assert.assertEquals(2, pool.getTotalStats().getLeased());
+    }
+
+    @Test
+    public void testMaxTotalPendingOfOtherRouteServicedOnReusableRelease() throws Exception {
+        final GracefullyCloseable conn1 = Mockito.mock(GracefullyCloseable.class);
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(
+                2, 2, TimeValue.NEG_ONE_MILLISECONDS, PoolReusePolicy.LIFO, 4);
+        final PoolEntry<String, GracefullyCloseable> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(conn1);
+        final PoolEntry<String, GracefullyCloseable> entry2 = pool.lease("somehost", null).get();
+        entry2.assignConnection(Mockito.mock(GracefullyCloseable.class));
+
+        final Future<PoolEntry<String, GracefullyCloseable>> future3 = pool.lease("otherhost", null);
+        Assert.assertFalse(future3.isDone());
+
+        pool.release(entry1, true);
+        Assert.assertTrue(future3.isDone());
+        Mockito.verify(conn1).shutdown(ShutdownType.GRACEFUL);
+        Assert.assertEquals(0, pool.getStats("somehost").getAvailable());
+        Assert.assertEquals(1, pool.getStats("otherhost").getLeased());
+        Assert.assertEquals(0, pool.getStats("otherhost").getPending());
+    }
+
+    @Test
+    public void testStateMatching() throws Exception {
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(2, 10);
+        final PoolEntry<String, GracefullyCloseable> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(Mockito.mock(GracefullyCloseable.class));
+        entry1.updateState("some-state");
+        final PoolEntry<String, GracefullyCloseable> entry2 = pool.lease("somehost", null).get();
+        entry2.assignConnection(Mockito.mock(GracefullyCloseable.class));
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        Assert.assertSame(entry1, pool.lease("somehost", "some-state").get());
+        Assert.assertSame(entry2, pool.lease("somehost", "other-state").get());
+    }
+
+    @Test
+    public void testLeaseTimeout() throws Exception {
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(1, 10);
+        pool.lease("somehost", null).get();
+        final Future<PoolEntry<String, GracefullyCloseable>> future2 = pool.lease(
+                "somehost", null, Timeout.ofMillis(10), null);
+        Assert.assertFalse(future2.isDone());
+        Thread.sleep(50);
+        pool.closeExpired();
+        Assert.assertTrue(future2.isDone());
+        try {
+            future2.get(1, TimeUnit.SECONDS);
+            Assert.fail("ExecutionException should have been thrown");
+        } catch (final ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void testLeaseTimeoutWithoutMaintenance() throws Exception {
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(1, 10);
+        pool.lease("somehost", null).get();
+        final Future<PoolEntry<String, GracefullyCloseable>> future2 = pool.lease(
+                "somehost", null, Timeout.ofMillis(10), null);
+        try {
+            future2.get(10, TimeUnit.SECONDS);
+            Assert.fail("ExecutionException should have been thrown");
+        } catch (final ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+        }
+        Assert.assertEquals(0, pool.getStats("somehost").getPending());
+    }
+
+    @Test
+    public void testQueuedRequestsServedFirst() throws Exception {
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(1, 10);
+        final PoolEntry<String, GracefullyCloseable> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(Mockito.mock(GracefullyCloseable.class));
+        final Future<PoolEntry<String, GracefullyCloseable>> future2 = pool.lease("somehost", null);
+        Assert.assertFalse(future2.isDone());
+
+        pool.release(entry1, false);
+        final Future<PoolEntry<String, GracefullyCloseable>> future3 = pool.lease("somehost", null);
+        Assert.assertTrue(future2.isDone());
+        Assert.assertFalse(future3.isDone());
+    }
+
+    @Test
+    public void testConcurrentLeaseRelease() throws Exception {
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(2, 10);
+        final int threadCount = 8;
+        final int iterations = 2000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int n = 0; n < iterations; n++) {
+                            final PoolEntry<String, GracefullyCloseable> entry = pool.lease(
+                                    "somehost", null).get(10, TimeUnit.SECONDS);
+                            if (!entry.hasConnection()) {
+                                entry.assignConnection(Mockito.mock(GracefullyCloseable.class));
+                            }
+                            pool.release(entry, true);
+                        }
+                    } catch (final Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                }
+
+            });
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(failure.get());
+        final PoolStats stats = pool.getStats("somehost");
+        Assert.assertEquals(0, stats.getLeased());
+        Assert.assertEquals(0, stats.getPending());
+    }
+
+    @Test
+    public void testCloseIdle() throws Exception {
+        final GracefullyCloseable conn1 = Mockito.mock(GracefullyCloseable.class);
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(2, 10);
+        final PoolEntry<String, GracefullyCloseable> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(conn1);
+        entry1.updateExpiry(TimeValue.NEG_ONE_MILLISECONDS);
+        pool.release(entry1, true);
+
+        Thread.sleep(50);
+        pool.closeIdle(TimeValue.ofMillis(10));
+        Mockito.verify(conn1).shutdown(ShutdownType.GRACEFUL);
+        Assert.assertEquals(0, pool.getTotalStats().getAvailable());
+    }
+
+    @Test
+    public void testCloseIfDue() throws Exception {
+        final GracefullyCloseable conn1 = Mockito.mock(GracefullyCloseable.class);
+        final GracefullyCloseable conn2 = Mockito.mock(GracefullyCloseable.class);
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(2, 10);
+        final PoolEntry<String, GracefullyCloseable> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(conn1);
+        final PoolEntry<String, GracefullyCloseable> entry2 = pool.lease("somehost", null).get();
+        entry2.assignConnection(conn2);
+        pool.release(entry1, true);
+
+        Assert.assertTrue(pool.closeIfDue(entry1, TimeValue.ofMinutes(1)));
+        // leased entries are left alone
+        Assert.assertFalse(pool.closeIfDue(entry2, TimeValue.ofMillis(10)));
+        pool.release(entry2, true);
+
+        Thread.sleep(50);
+        Assert.assertFalse(pool.closeIfDue(entry1, TimeValue.ofMillis(10)));
+        Mockito.verify(conn1).shutdown(ShutdownType.GRACEFUL);
+        Mockito.verify(conn2, Mockito.never()).shutdown(Mockito.<ShutdownType>any());
+        Assert.assertEquals(1, pool.getTotalStats().getAvailable());
+    }
+
+    @Test
+    public void testEnumAvailable() throws Exception {
+        final GracefullyCloseable conn1 = Mockito.mock(GracefullyCloseable.class);
+        final GracefullyCloseable conn2 = Mockito.mock(GracefullyCloseable.class);
+        final StripedConnPool<String, GracefullyCloseable> pool = new StripedConnPool<>(2, 10);
+        final PoolEntry<String, GracefullyCloseable> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(conn1);
+        final PoolEntry<String, GracefullyCloseable> entry2 = pool.lease("somehost", null).get();
+        entry2.assignConnection(conn2);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        pool.enumAvailable(new Callback<PoolEntry<String, GracefullyCloseable>>() {
+
+            @Override
+            public void execute(final PoolEntry<String, GracefullyCloseable> entry) {
+                if (entry.getConnection() == conn2) {
+                    entry.discardConnection(ShutdownType.IMMEDIATE);
+                }
+            }
+
+        });
+        Mockito.verify(conn1, Mockito.never()).shutdown(Mockito.<ShutdownType>any());
+        Mockito.verify(conn2).shutdown(ShutdownType.IMMEDIATE);
+        final PoolStats stats = pool.getStats("somehost");
+        Assert.assertEquals(1, stats.getAvailable());
+        Assert.assertEquals(0, stats.getLeased());
+        Assert.assertSame(entry1, pool.lease("somehost", null).get());
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.classic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestGradientBackoffManager {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private GradientBackoffManager impl;
+    private MockConnPoolControl connPerRoute;
+    private HttpRoute route;
+    private MockClock clock;
+
+    @Before
+    public void setUp() {
+        connPerRoute = new MockConnPoolControl();
+        route = new HttpRoute(new HttpHost("localhost", 80));
+        clock = new MockClock();
+        impl = new GradientBackoffManager(connPerRoute, clock);
+        impl.setLimits(1, 50);
+    }
+
+    @Test
+    public void growsLimitAtNoLoadLatency() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        for (int i = 0; i < 20; i++) {
+            impl.probe(route, RTT);
+        }
+        assertTrue(connPerRoute.getMaxPerRoute(route) > 4);
+    }
+
+    @Test
+    public void doesNotExceedMaxLimit() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        for (int i = 0; i < 1000; i++) {
+            impl.probe(route, RTT);
+        }
+        assertEquals(50, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void toleratesModerateLatencyIncrease() {
+        connPerRoute.setMaxPerRoute(route, 10);
+        impl.probe(route, RTT);
+        final int max = connPerRoute.getMaxPerRoute(route);
+        impl.probe(route, RTT * 14 / 10);
+        assertTrue(connPerRoute.getMaxPerRoute(route) >= max);
+    }
+
+    @Test
+    public void shrinksLimitWhenLatencyRises() {
+        connPerRoute.setMaxPerRoute(route, 40);
+        impl.probe(route, RTT);
+        final double limit = impl.getLimit(route);
+        for (int i = 0; i < 20; i++) {
+            impl.probe(route, RTT * 10);
+        }
+        assertTrue(impl.getLimit(route) < limit);
+        assertTrue(connPerRoute.getMaxPerRoute(route) < 40);
+    }
+
+    @Test
+    public void doesNotShrinkBelowMinLimit() {
+        impl.setLimits(5, 50);
+        connPerRoute.setMaxPerRoute(route, 20);
+        impl.probe(route, RTT);
+        for (int i = 0; i < 100; i++) {
+            impl.probe(route, RTT * 10);
+        }
+        assertEquals(5, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void picksUpNewBaselineAfterMinRttWindow() {
+        impl.setMinRttWindow(TimeValue.ofSeconds(10));
+        connPerRoute.setMaxPerRoute(route, 20);
+        impl.probe(route, RTT);
+        clock.setCurrentTime(clock.getCurrentTime() + 11000);
+        impl.probe(route, RTT * 10);
+        final double limit = impl.getLimit(route);
+        impl.probe(route, RTT * 10);
+        assertTrue(impl.getLimit(route) > limit);
+    }
+
+    @Test
+    public void backsOffOncePerCooldown() {
+        connPerRoute.setMaxPerRoute(route, 20);
+        impl.backOff(route);
+        assertEquals(18, connPerRoute.getMaxPerRoute(route));
+        impl.backOff(route);
+        assertEquals(18, connPerRoute.getMaxPerRoute(route));
+        clock.setCurrentTime(clock.getCurrentTime() + 1001);
+        impl.backOff(route);
+        assertEquals(16, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void appliesLatestLimitWhenUpdatesRace() {
+        final AtomicInteger max = new AtomicInteger(20);
+        final AtomicInteger reads = new AtomicInteger();
+        final ConnPoolControl<HttpRoute> racingPool = Mockito.mock(ConnPoolControl.class);
+        final GradientBackoffManager racingImpl = new GradientBackoffManager(racingPool, clock);
+        Mockito.when(racingPool.getMaxPerRoute(route)).thenAnswer(new Answer<Integer>() {
+
+            @Override
+            public Integer answer(final InvocationOnMock invocation) throws Throwable {
+                // a backoff completes while the preceding update is being applied
+                if (reads.incrementAndGet() == 2) {
+                    racingImpl.backOff(route);
+                }
+                return max.get();
+            }
+
+        });
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                max.set(invocation.<Integer>getArgument(1));
+                return null;
+            }
+
+        }).when(racingPool).setMaxPerRoute(Mockito.eq(route), Mockito.anyInt());
+
+        racingImpl.probe(route, RTT);
+        racingImpl.probe(route, RTT * 4);
+        assertTrue(reads.get() > 2);
+        assertEquals((int) racingImpl.getLimit(route), max.get());
+    }
+
+    @Test
+    public void probeWithoutRoundTripTimeHasNoEffect() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        impl.probe(route);
+        assertEquals(4, connPerRoute.getMaxPerRoute(route));
+    }
+
+}
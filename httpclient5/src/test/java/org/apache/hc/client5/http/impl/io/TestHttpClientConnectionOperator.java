@@ -31,8 +31,13 @@
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hc.client5.http.ConnectTimeoutException;
 import org.apache.hc.client5.http.DnsResolver;
@@ -48,9 +53,12 @@
 import org.apache.hc.core5.http.protocol.BasicHttpContext;
 import org.apache.hc.core5.http.protocol.HttpContext;
 import org.apache.hc.core5.util.TimeValue;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 @SuppressWarnings({"boxing","static-access"}) // test code
 public class TestHttpClientConnectionOperator {
@@ -279,4 +287,155 @@ public void testUpgradeNonLayeringScheme() throws Exception {
         connectionOperator.upgrade(conn, host, context);
     }
 
+    @Test
+    public void testStaggeredConnect() throws Exception {
+        final HttpContext context = new BasicHttpContext();
+        final HttpHost host = new HttpHost("somehost");
+        final InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        final Socket socket1 = Mockito.mock(Socket.class);
+        final Socket socket2 = Mockito.mock(Socket.class);
+        final CountDownLatch aborted = new CountDownLatch(1);
+
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                aborted.countDown();
+                return null;
+            }
+
+        }).when(socket1).close();
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(schemePortResolver.resolve(host)).thenReturn(80);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket1, socket2);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.<TimeValue>any(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip1, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenAnswer(new Answer<Socket>() {
+
+                    @Override
+                    public Socket answer(final InvocationOnMock invocation) throws Throwable {
+                        // black-holed address: hang until the socket gets closed
+                        aborted.await(5, TimeUnit.SECONDS);
+                        throw new SocketException("Socket closed");
+                    }
+
+                });
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.<TimeValue>any(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip2, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenReturn(socket2);
+
+        final DefaultHttpClientConnectionOperator staggeredOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, TimeValue.ofMillis(50));
+        final long start = System.currentTimeMillis();
+        staggeredOperator.connect(conn, host, null, TimeValue.ofSeconds(5), SocketConfig.DEFAULT, context);
+        Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+
+        Mockito.verify(conn).bind(socket2);
+        Mockito.verify(conn, Mockito.never()).bind(socket1);
+        Assert.assertTrue(aborted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStaggeredConnectLayersWinnerOnly() throws Exception {
+        final HttpContext context = new BasicHttpContext();
+        final HttpHost host = new HttpHost("somehost", -1, "https");
+        final InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        final Socket socket1 = Mockito.mock(Socket.class);
+        final Socket socket2 = Mockito.mock(Socket.class);
+        final Socket sslSocket = Mockito.mock(Socket.class);
+        final CountDownLatch aborted = new CountDownLatch(1);
+
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                aborted.countDown();
+                return null;
+            }
+
+        }).when(socket1).close();
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                // black-holed address: hang until the socket gets closed
+                aborted.await(5, TimeUnit.SECONDS);
+                throw new SocketException("Socket closed");
+            }
+
+        }).when(socket1).connect(Mockito.<SocketAddress>any(), Mockito.anyInt());
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(socketFactoryRegistry.lookup("https")).thenReturn(sslSocketFactory);
+        Mockito.when(schemePortResolver.resolve(host)).thenReturn(443);
+        Mockito.when(sslSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket1, socket2);
+        Mockito.when(sslSocketFactory.createLayeredSocket(
+                Mockito.same(socket2),
+                Mockito.eq("somehost"),
+                Mockito.eq(443),
+                Mockito.<HttpContext>any())).thenReturn(sslSocket);
+
+        final AtomicInteger executed = new AtomicInteger(0);
+        final Executor executor = new Executor() {
+
+            @Override
+            public void execute(final Runnable command) {
+                executed.incrementAndGet();
+                new Thread(command).start();
+            }
+
+        };
+        final DefaultHttpClientConnectionOperator staggeredOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, TimeValue.ofMillis(50), executor);
+        staggeredOperator.connect(conn, host, null, TimeValue.ofSeconds(5), SocketConfig.DEFAULT, context);
+
+        Mockito.verify(conn).bind(sslSocket);
+        Mockito.verify(sslSocketFactory).createLayeredSocket(socket2, "somehost", 443, context);
+        Mockito.verify(sslSocketFactory, Mockito.never()).createLayeredSocket(
+                Mockito.same(socket1), Mockito.anyString(), Mockito.anyInt(), Mockito.<HttpContext>any());
+        Mockito.verify(sslSocketFactory, Mockito.never()).connectSocket(
+                Mockito.<TimeValue>any(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any());
+        Assert.assertEquals(2, executed.get());
+        Assert.assertTrue(aborted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected=HttpHostConnectException.class)
+    public void testStaggeredConnectFailure() throws Exception {
+        final HttpContext context = new BasicHttpContext();
+        final HttpHost host = new HttpHost("somehost");
+        final InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(schemePortResolver.resolve(host)).thenReturn(80);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.<TimeValue>any(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenThrow(new ConnectException());
+
+        final DefaultHttpClientConnectionOperator staggeredOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, TimeValue.ofMillis(50));
+        staggeredOperator.connect(conn, host, null, TimeValue.ofSeconds(5), SocketConfig.DEFAULT, context);
+    }
+
 }
@@ -27,16 +27,20 @@
 
 package org.apache.hc.client5.http.impl.io;
 
+import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import org.apache.hc.client5.http.ConnPoolListener;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.impl.PrewarmReport;
 import org.apache.hc.client5.http.io.ConnectionEndpoint;
 import org.apache.hc.client5.http.io.LeaseRequest;
 import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
@@ -44,10 +48,12 @@
 import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
 import org.apache.hc.client5.http.socket.LayeredConnectionSocketFactory;
 import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.config.Lookup;
 import org.apache.hc.core5.http.config.SocketConfig;
 import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.ShutdownType;
 import org.apache.hc.core5.pool.PoolEntry;
 import org.apache.hc.core5.pool.StrictConnPool;
 import org.apache.hc.core5.util.TimeValue;
@@ -58,6 +64,8 @@
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 /**
  * {@link PoolingHttpClientConnectionManager} tests.
@@ -373,4 +381,219 @@ public void testProxyConnectAndUpgrade() throws Exception {
                 mockSock, "somehost", 8443, context);
     }
 
+    @Test
+    public void testPrewarm() throws Exception {
+        final HttpHost target = new HttpHost("localhost", 80);
+        final HttpRoute route = new HttpRoute(target);
+
+        final ManagedHttpClientConnection conn1 = Mockito.mock(ManagedHttpClientConnection.class);
+        final ManagedHttpClientConnection conn2 = Mockito.mock(ManagedHttpClientConnection.class);
+        final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry1 = new PoolEntry<>(route, TimeValue.NEG_ONE_MILLISECONDS);
+        entry1.assignConnection(conn1);
+        final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry2 = new PoolEntry<>(route, TimeValue.NEG_ONE_MILLISECONDS);
+        entry2.assignConnection(conn2);
+
+        Mockito.when(conn1.isOpen()).thenReturn(true);
+        Mockito.when(conn2.isOpen()).thenReturn(false);
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(schemePortResolver.resolve(target)).thenReturn(80);
+        Mockito.when(dnsResolver.resolve("localhost")).thenReturn(new InetAddress[] {InetAddress.getLoopbackAddress()});
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.<TimeValue>any(),
+                Mockito.eq(socket),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenThrow(new ConnectException("Connection refused"));
+        Mockito.when(pool.getMaxPerRoute(route)).thenReturn(2);
+        Mockito.when(future.isCancelled()).thenReturn(false);
+        Mockito.when(future.get(1, TimeUnit.SECONDS)).thenReturn(entry1, entry2);
+        Mockito.when(pool.lease(
+                Mockito.eq(route),
+                Mockito.eq(null),
+                Mockito.<Timeout>any(),
+                Mockito.<FutureCallback<PoolEntry<HttpRoute, ManagedHttpClientConnection>>>eq(null)))
+                .thenReturn(future);
+
+        final PrewarmReport report = mgr.prewarm(route, 5, Timeout.ofSeconds(1)).get(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(report);
+        Assert.assertEquals(2, report.getRequested());
+        Assert.assertEquals(1, report.getSucceeded());
+        Assert.assertEquals(1, report.getFailures().size());
+
+        Mockito.verify(pool).release(entry1, true);
+        Mockito.verify(pool).release(entry2, false);
+    }
+
+    @Test
+    public void testPrewarmWithExecutor() throws Exception {
+        final HttpHost target = new HttpHost("localhost", 80);
+        final HttpRoute route = new HttpRoute(target);
+
+        final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry = new PoolEntry<>(route, TimeValue.NEG_ONE_MILLISECONDS);
+        entry.assignConnection(conn);
+
+        Mockito.when(conn.isOpen()).thenReturn(true);
+        Mockito.when(pool.getMaxPerRoute(route)).thenReturn(1);
+        Mockito.when(future.isCancelled()).thenReturn(false);
+        Mockito.when(future.get(1, TimeUnit.SECONDS)).thenReturn(entry);
+        Mockito.when(pool.lease(
+                Mockito.eq(route),
+                Mockito.eq(null),
+                Mockito.<Timeout>any(),
+                Mockito.<FutureCallback<PoolEntry<HttpRoute, ManagedHttpClientConnection>>>eq(null)))
+                .thenReturn(future);
+
+        final Executor executor = Mockito.mock(Executor.class);
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                final Runnable runnable = invocation.getArgument(0);
+                runnable.run();
+                return null;
+            }
+
+        }).when(executor).execute(Mockito.<Runnable>any());
+
+        final Future<PrewarmReport> reportFuture = mgr.prewarm(route, 3, Timeout.ofSeconds(1), executor);
+        Assert.assertTrue(reportFuture.isDone());
+        final PrewarmReport report = reportFuture.get();
+        Assert.assertEquals(1, report.getRequested());
+        Assert.assertEquals(1, report.getSucceeded());
+
+        Mockito.verify(executor, Mockito.times(1)).execute(Mockito.<Runnable>any());
+        Mockito.verify(pool).release(entry, true);
+    }
+
+    @Test
+    public void testValidateIdleOutsidePoolLock() throws Exception {
+        final HttpHost target = new HttpHost("localhost", 80);
+        final HttpRoute route = new HttpRoute(target);
+
+        final ManagedHttpClientConnection conn1 = Mockito.mock(ManagedHttpClientConnection.class);
+        final ManagedHttpClientConnection conn2 = Mockito.mock(ManagedHttpClientConnection.class);
+        final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry1 = new PoolEntry<>(route, TimeValue.NEG_ONE_MILLISECONDS);
+        entry1.assignConnection(conn1);
+        final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry2 = new PoolEntry<>(route, TimeValue.NEG_ONE_MILLISECONDS);
+        entry2.assignConnection(conn2);
+        Mockito.when(conn1.isStale()).thenReturn(true);
+        Mockito.when(conn2.isStale()).thenReturn(true);
+
+        mgr.setValidateInBackground(true);
+        mgr.setValidateAfterInactivity(TimeValue.ofMillis(1));
+
+        Mockito.when(future.isCancelled()).thenReturn(false);
+        Mockito.when(future.get(1, TimeUnit.SECONDS)).thenReturn(entry2);
+        Mockito.when(pool.lease(
+                Mockito.eq(route),
+                Mockito.eq(null),
+                Mockito.<Timeout>any(),
+                Mockito.<FutureCallback<PoolEntry<HttpRoute, ManagedHttpClientConnection>>>eq(null)))
+                .thenReturn(future);
+        final ConnectionEndpoint endpoint2 = mgr.lease(route, null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(endpoint2);
+        Mockito.verify(conn2, Mockito.never()).isStale();
+
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                final Callback<PoolEntry<HttpRoute, ManagedHttpClientConnection>> callback = invocation.getArgument(0);
+                callback.execute(entry1);
+                // a concurrently leased entry
+                callback.execute(entry2);
+                Mockito.verify(conn1, Mockito.never()).isStale();
+                return null;
+            }
+
+        }).when(pool).enumAvailable(Mockito.<Callback<PoolEntry<HttpRoute, ManagedHttpClientConnection>>>any());
+
+        Thread.sleep(20);
+        mgr.validateIdle();
+
+        Mockito.verify(conn1).isStale();
+        Mockito.verify(conn1).shutdown(ShutdownType.IMMEDIATE);
+        Assert.assertFalse(entry1.hasConnection());
+        Mockito.verify(conn2, Mockito.never()).isStale();
+        Assert.assertTrue(entry2.hasConnection());
+    }
+
+    @Test
+    public void testCloseIfDueClosesOnlyTheGivenEntry() throws Exception {
+        final HttpHost target = new HttpHost("localhost", 80);
+        final HttpRoute route = new HttpRoute(target);
+
+        final ManagedHttpClientConnection conn1 = Mockito.mock(ManagedHttpClientConnection.class);
+        final ManagedHttpClientConnection conn2 = Mockito.mock(ManagedHttpClientConnection.class);
+        final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry1 = new PoolEntry<>(route, TimeValue.NEG_ONE_MILLISECONDS);
+        entry1.assignConnection(conn1);
+        final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry2 = new PoolEntry<>(route, TimeValue.NEG_ONE_MILLISECONDS);
+        entry2.assignConnection(conn2);
+
+        Mockito.when(future.isCancelled()).thenReturn(false);
+        Mockito.when(future.get(1, TimeUnit.SECONDS)).thenReturn(entry2);
+        Mockito.when(pool.lease(
+                Mockito.eq(route),
+                Mockito.eq(null),
+                Mockito.<Timeout>any(),
+                Mockito.<FutureCallback<PoolEntry<HttpRoute, ManagedHttpClientConnection>>>eq(null)))
+                .thenReturn(future);
+        Assert.assertNotNull(mgr.lease(route, null).get(1, TimeUnit.SECONDS));
+
+        Assert.assertTrue(mgr.closeIfDue(entry1, TimeValue.ofMinutes(1)));
+        Thread.sleep(20);
+        Assert.assertFalse(mgr.closeIfDue(entry1, TimeValue.ofMillis(1)));
+        Mockito.verify(conn1).shutdown(ShutdownType.GRACEFUL);
+        Assert.assertFalse(entry1.hasConnection());
+        // a leased entry is left alone
+        Assert.assertFalse(mgr.closeIfDue(entry2, TimeValue.ofMillis(1)));
+        Mockito.verify(conn2, Mockito.never()).shutdown(Mockito.<ShutdownType>any());
+        Assert.assertTrue(entry2.hasConnection());
+        // the pool does not get swept
+        Mockito.verify(pool, Mockito.never()).enumAvailable(
+                Mockito.<Callback<PoolEntry<HttpRoute, ManagedHttpClientConnection>>>any());
+        Mockito.verify(pool, Mockito.never()).closeIdle(Mockito.<TimeValue>any());
+        Mockito.verify(pool, Mockito.never()).closeExpired();
+    }
+
+    @Test
+    public void testConnPoolListener() throws Exception {
+        final HttpHost target = new HttpHost("localhost", 80);
+        final HttpRoute route = new HttpRoute(target);
+        final ConnPoolListener listener = Mockito.mock(ConnPoolListener.class);
+        mgr.setConnPoolListener(listener);
+
+        final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry = new PoolEntry<>(route, TimeValue.NEG_ONE_MILLISECONDS);
+        entry.assignConnection(conn);
+
+        Mockito.when(conn.isOpen()).thenReturn(true);
+        Mockito.when(future.isCancelled()).thenReturn(false);
+        Mockito.when(future.get(1, TimeUnit.SECONDS)).thenReturn(entry);
+        Mockito.when(pool.lease(
+                Mockito.eq(route),
+                Mockito.eq(null),
+                Mockito.<Timeout>any(),
+                Mockito.<FutureCallback<PoolEntry<HttpRoute, ManagedHttpClientConnection>>>eq(null)))
+                .thenReturn(future);
+
+        final ConnectionEndpoint endpoint1 = mgr.lease(route, null).get(1, TimeUnit.SECONDS);
+        Mockito.verify(listener).onLease(Mockito.eq(route), Mockito.anyLong(), Mockito.eq(true));
+        mgr.release(endpoint1, null, TimeValue.NEG_ONE_MILLISECONDS);
+        Mockito.verify(listener).onRelease(Mockito.eq(route), Mockito.anyLong(), Mockito.eq(0), Mockito.eq(true));
+
+        final ConnectionEndpoint endpoint2 = mgr.lease(route, null).get(1, TimeUnit.SECONDS);
+        mgr.release(endpoint2, null, TimeValue.NEG_ONE_MILLISECONDS);
+        Mockito.verify(listener).onRelease(Mockito.eq(route), Mockito.anyLong(), Mockito.eq(1), Mockito.eq(true));
+
+        Mockito.when(future.get(1, TimeUnit.SECONDS)).thenThrow(new TimeoutException());
+        try {
+            mgr.lease(route, null).get(1, TimeUnit.SECONDS);
+            Assert.fail("TimeoutException expected");
+        } catch (final TimeoutException expected) {
+        }
+        Mockito.verify(listener).onLeaseTimeout(Mockito.eq(route), Mockito.anyLong());
+    }
+
 }
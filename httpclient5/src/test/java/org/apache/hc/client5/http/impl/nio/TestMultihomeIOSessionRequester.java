@@ -0,0 +1,213 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.nio;
+
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.AsyncDnsResolver;
+import org.apache.hc.client5.http.HttpHostConnectException;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.net.NamedEndpoint;
+import org.apache.hc.core5.reactor.ConnectionInitiator;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link MultihomeIOSessionRequester}.
+ */
+@SuppressWarnings("unchecked")
+public class TestMultihomeIOSessionRequester {
+
+    private AsyncDnsResolver dnsResolver;
+    private ConnectionInitiator connectionInitiator;
+    private ArgumentCaptor<FutureCallback> dnsCallbackCaptor;
+    private BasicFuture<InetAddress[]> dnsFuture;
+    private MultihomeIOSessionRequester sessionRequester;
+
+    @Before
+    public void setup() throws Exception {
+        dnsResolver = Mockito.mock(AsyncDnsResolver.class);
+        connectionInitiator = Mockito.mock(ConnectionInitiator.class);
+        dnsCallbackCaptor = ArgumentCaptor.forClass(FutureCallback.class);
+        dnsFuture = new BasicFuture<>(null);
+        Mockito.when(dnsResolver.resolve(Mockito.eq("somehost"), dnsCallbackCaptor.capture())).thenReturn(dnsFuture);
+        Mockito.when(connectionInitiator.connect(
+                Mockito.<NamedEndpoint>any(), Mockito.<SocketAddress>any(), Mockito.<SocketAddress>any(),
+                Mockito.<TimeValue>any(), Mockito.any(), Mockito.<FutureCallback<IOSession>>any()))
+                .thenReturn(new BasicFuture<IOSession>(null));
+        sessionRequester = new MultihomeIOSessionRequester(dnsResolver, null);
+    }
+
+    @Test
+    public void testConnectAfterLookup() throws Exception {
+        final HttpHost host = new HttpHost("somehost", 80);
+        final Future<IOSession> future = sessionRequester.connect(
+                connectionInitiator, host, null, TimeValue.ofSeconds(1), null, null);
+        Mockito.verify(connectionInitiator, Mockito.never()).connect(
+                Mockito.<NamedEndpoint>any(), Mockito.<SocketAddress>any(), Mockito.<SocketAddress>any(),
+                Mockito.<TimeValue>any(), Mockito.any(), Mockito.<FutureCallback<IOSession>>any());
+
+        final InetAddress ip = InetAddress.getByAddress("somehost", new byte[] {10, 0, 0, 1});
+        dnsCallbackCaptor.getValue().completed(new InetAddress[] { ip });
+
+        final ArgumentCaptor<FutureCallback> sessionCallbackCaptor = ArgumentCaptor.forClass(FutureCallback.class);
+        Mockito.verify(connectionInitiator).connect(
+                Mockito.same(host), Mockito.eq(new InetSocketAddress(ip, 80)), Mockito.<SocketAddress>any(),
+                Mockito.<TimeValue>any(), Mockito.any(), sessionCallbackCaptor.capture());
+        final IOSession session = Mockito.mock(IOSession.class);
+        sessionCallbackCaptor.getValue().completed(session);
+        Assert.assertSame(session, future.get());
+    }
+
+    @Test
+    public void testStaggeredConnectFirstEstablishedWins() throws Exception {
+        final List<BasicFuture<IOSession>> sessionFutures = new CopyOnWriteArrayList<>();
+        final ConnectionInitiator staggeredInitiator = Mockito.mock(ConnectionInitiator.class);
+        Mockito.when(staggeredInitiator.connect(
+                Mockito.<NamedEndpoint>any(), Mockito.<SocketAddress>any(), Mockito.<SocketAddress>any(),
+                Mockito.<TimeValue>any(), Mockito.any(), Mockito.<FutureCallback<IOSession>>any()))
+                .thenAnswer(new Answer<Future<IOSession>>() {
+
+                    @Override
+                    public Future<IOSession> answer(final InvocationOnMock invocation) throws Throwable {
+                        final FutureCallback<IOSession> callback = invocation.getArgument(5);
+                        final BasicFuture<IOSession> sessionFuture = new BasicFuture<>(callback);
+                        sessionFutures.add(sessionFuture);
+                        return sessionFuture;
+                    }
+
+                });
+        final MultihomeIOSessionRequester staggeredRequester = new MultihomeIOSessionRequester(
+                dnsResolver, TimeValue.ofMillis(10));
+
+        final HttpHost host = new HttpHost("somehost", 80);
+        final Future<IOSession> future = staggeredRequester.connect(
+                staggeredInitiator, host, null, TimeValue.ofSeconds(1), null, null);
+        final InetAddress ip1 = InetAddress.getByAddress("somehost", new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress("somehost", new byte[] {10, 0, 0, 2});
+        dnsCallbackCaptor.getValue().completed(new InetAddress[] { ip1, ip2 });
+
+        // the second attempt starts after the delay while the first one is still pending
+        Mockito.verify(staggeredInitiator, Mockito.timeout(5000).times(2)).connect(
+                Mockito.<NamedEndpoint>any(), Mockito.<SocketAddress>any(), Mockito.<SocketAddress>any(),
+                Mockito.<TimeValue>any(), Mockito.any(), Mockito.<FutureCallback<IOSession>>any());
+        final IOSession session2 = Mockito.mock(IOSession.class);
+        sessionFutures.get(1).completed(session2);
+
+        Assert.assertSame(session2, future.get(1, TimeUnit.SECONDS));
+        Assert.assertTrue(sessionFutures.get(0).isCancelled());
+    }
+
+    @Test
+    public void testStaggeredConnectFailureStartsNextAttempt() throws Exception {
+        final List<BasicFuture<IOSession>> sessionFutures = new CopyOnWriteArrayList<>();
+        final ConnectionInitiator staggeredInitiator = Mockito.mock(ConnectionInitiator.class);
+        Mockito.when(staggeredInitiator.connect(
+                Mockito.<NamedEndpoint>any(), Mockito.<SocketAddress>any(), Mockito.<SocketAddress>any(),
+                Mockito.<TimeValue>any(), Mockito.any(), Mockito.<FutureCallback<IOSession>>any()))
+                .thenAnswer(new Answer<Future<IOSession>>() {
+
+                    @Override
+                    public Future<IOSession> answer(final InvocationOnMock invocation) throws Throwable {
+                        final FutureCallback<IOSession> callback = invocation.getArgument(5);
+                        final BasicFuture<IOSession> sessionFuture = new BasicFuture<>(callback);
+                        sessionFutures.add(sessionFuture);
+                        return sessionFuture;
+                    }
+
+                });
+        // the delay is long enough for the second attempt to be started by the failure only
+        final MultihomeIOSessionRequester staggeredRequester = new MultihomeIOSessionRequester(
+                dnsResolver, TimeValue.ofMinutes(1));
+
+        final Future<IOSession> future = staggeredRequester.connect(
+                staggeredInitiator, new HttpHost("somehost", 80), null, TimeValue.ofSeconds(1), null, null);
+        final InetAddress ip1 = InetAddress.getByAddress("somehost", new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress("somehost", new byte[] {10, 0, 0, 2});
+        dnsCallbackCaptor.getValue().completed(new InetAddress[] { ip1, ip2 });
+        Assert.assertEquals(1, sessionFutures.size());
+
+        sessionFutures.get(0).failed(new ConnectException("Connection refused"));
+        Assert.assertEquals(2, sessionFutures.size());
+        Assert.assertFalse(future.isDone());
+
+        sessionFutures.get(1).failed(new ConnectException("Connection refused"));
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            Assert.fail("ExecutionException expected");
+        } catch (final ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof HttpHostConnectException);
+        }
+    }
+
+    @Test
+    public void testLookupFailure() throws Exception {
+        final Future<IOSession> future = sessionRequester.connect(
+                connectionInitiator, new HttpHost("somehost", 80), null, TimeValue.ofSeconds(1), null, null);
+        dnsCallbackCaptor.getValue().failed(new UnknownHostException("somehost"));
+        try {
+            future.get();
+            Assert.fail("ExecutionException expected");
+        } catch (final ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof UnknownHostException);
+        }
+    }
+
+    @Test
+    public void testCancelDuringLookup() throws Exception {
+        final Future<IOSession> future = sessionRequester.connect(
+                connectionInitiator, new HttpHost("somehost", 80), null, TimeValue.ofSeconds(1), null, null);
+        future.cancel(true);
+        Assert.assertTrue(dnsFuture.isCancelled());
+
+        final InetAddress ip = InetAddress.getByAddress("somehost", new byte[] {10, 0, 0, 1});
+        dnsCallbackCaptor.getValue().completed(new InetAddress[] { ip });
+        Mockito.verify(connectionInitiator, Mockito.never()).connect(
+                Mockito.<NamedEndpoint>any(), Mockito.<SocketAddress>any(), Mockito.<SocketAddress>any(),
+                Mockito.<TimeValue>any(), Mockito.any(), Mockito.<FutureCallback<IOSession>>any());
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.nio;
+
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.hc.client5.http.ConnPoolListener;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.PrewarmReport;
+import org.apache.hc.client5.http.nio.AsyncConnectionEndpoint;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpVersion;
+import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.http.impl.nio.HttpConnectionEventHandler;
+import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.nio.AsyncPingHandler;
+import org.apache.hc.core5.http2.nio.command.PingCommand;
+import org.apache.hc.core5.net.NamedEndpoint;
+import org.apache.hc.core5.reactor.Command;
+import org.apache.hc.core5.reactor.ConnectionInitiator;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.TlsCapableIOSession;
+import org.apache.hc.core5.reactor.ssl.SSLBufferManagement;
+import org.apache.hc.core5.reactor.ssl.SSLSessionInitializer;
+import org.apache.hc.core5.reactor.ssl.SSLSessionVerifier;
+import org.apache.hc.core5.reactor.ssl.TransportSecurityLayer;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link PoolingAsyncClientConnectionManager}.
+ */
+public class TestPoolingAsyncClientConnectionManager {
+
+    private HttpConnectionEventHandler protocolHandler;
+    private TlsCapableIOSession session;
+    private ConnectionInitiator connectionInitiator;
+    private PoolingAsyncClientConnectionManager mgr;
+    private HttpRoute route;
+
+    @Before
+    public void setup() throws Exception {
+        protocolHandler = Mockito.mock(HttpConnectionEventHandler.class);
+        session = Mockito.mock(TlsCapableIOSession.class);
+        Mockito.when(session.getHandler()).thenReturn(protocolHandler);
+        connectionInitiator = Mockito.mock(ConnectionInitiator.class);
+        Mockito.when(connectionInitiator.connect(
+                ArgumentMatchers.<NamedEndpoint>any(), ArgumentMatchers.<SocketAddress>any(),
+                ArgumentMatchers.<SocketAddress>any(), ArgumentMatchers.<TimeValue>any(), ArgumentMatchers.any(),
+                ArgumentMatchers.<FutureCallback<IOSession>>any())).thenAnswer(new Answer<BasicFuture<IOSession>>() {
+
+                    @Override
+                    public BasicFuture<IOSession> answer(final InvocationOnMock invocation) throws Throwable {
+                        final FutureCallback<IOSession> callback = invocation.getArgument(5);
+                        final BasicFuture<IOSession> future = new BasicFuture<>(callback);
+                        future.completed(session);
+                        return future;
+                    }
+
+                });
+        mgr = new PoolingAsyncClientConnectionManager(RegistryBuilder.<TlsStrategy>create().build());
+        route = new HttpRoute(new HttpHost(InetAddress.getLoopbackAddress(), 80));
+    }
+
+    @After
+    public void cleanup() {
+        mgr.close();
+    }
+
+    @Test
+    public void testPrewarmWaitsForProtocolNegotiation() throws Exception {
+        Mockito.when(protocolHandler.getProtocolVersion()).thenReturn(null, null, HttpVersion.HTTP_1_1);
+
+        final PrewarmReport report = mgr.prewarm(
+                route, 2, Timeout.ofSeconds(5), connectionInitiator, HttpVersionPolicy.NEGOTIATE, null)
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(2, report.getRequested());
+        Assert.assertEquals(2, report.getSucceeded());
+        Assert.assertEquals(2, mgr.getStats(route).getAvailable());
+        Mockito.verify(session, Mockito.never()).addFirst(ArgumentMatchers.<Command>any());
+    }
+
+    @Test
+    public void testPrewarmWithoutConnectionInitiatorSkipped() throws Exception {
+        final PrewarmReport report = mgr.prewarm(
+                route, 2, Timeout.ofSeconds(5), null, HttpVersionPolicy.NEGOTIATE, null)
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(0, report.getRequested());
+        Assert.assertEquals(0, report.getSucceeded());
+        Assert.assertEquals(0, mgr.getStats(route).getAvailable());
+    }
+
+    @Test
+    public void testPrewarmPingsNegotiatedHttp2() throws Exception {
+        Mockito.when(protocolHandler.getProtocolVersion()).thenReturn(HttpVersion.HTTP_2);
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                final Command command = invocation.getArgument(0);
+                if (command instanceof PingCommand) {
+                    final AsyncPingHandler handler = ((PingCommand) command).getHandler();
+                    handler.consumeResponse(handler.getData());
+                }
+                return null;
+            }
+
+        }).when(session).addFirst(ArgumentMatchers.<Command>any());
+
+        final PrewarmReport report = mgr.prewarm(
+                route, 1, Timeout.ofSeconds(5), connectionInitiator, HttpVersionPolicy.NEGOTIATE, null)
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(1, report.getSucceeded());
+        Mockito.verify(session).addFirst(ArgumentMatchers.isA(PingCommand.class));
+    }
+
+    @Test
+    public void testTlsHandshakeReported() throws Exception {
+        final TlsStrategy tlsStrategy = Mockito.mock(TlsStrategy.class);
+        Mockito.when(tlsStrategy.upgrade(
+                ArgumentMatchers.<TransportSecurityLayer>any(), ArgumentMatchers.<HttpHost>any(),
+                ArgumentMatchers.<SocketAddress>any(), ArgumentMatchers.<SocketAddress>any(),
+                ArgumentMatchers.any())).thenAnswer(new Answer<Boolean>() {
+
+                    @Override
+                    public Boolean answer(final InvocationOnMock invocation) throws Throwable {
+                        final TransportSecurityLayer tlsLayer = invocation.getArgument(0);
+                        tlsLayer.startTls(null, null, null, null);
+                        return Boolean.TRUE;
+                    }
+
+                });
+        final ConnPoolListener listener = Mockito.mock(ConnPoolListener.class);
+        final HttpRoute secureRoute = new HttpRoute(
+                new HttpHost(InetAddress.getLoopbackAddress(), 443, "https"), null, true);
+        try (final PoolingAsyncClientConnectionManager tlsMgr = new PoolingAsyncClientConnectionManager(
+                RegistryBuilder.<TlsStrategy>create().register("https", tlsStrategy).build())) {
+            tlsMgr.setConnPoolListener(listener);
+            final AsyncConnectionEndpoint endpoint = tlsMgr.lease(secureRoute, null, Timeout.ofSeconds(5), null)
+                    .get(5, TimeUnit.SECONDS);
+            tlsMgr.connect(endpoint, connectionInitiator, Timeout.ofSeconds(5), null, null, null)
+                    .get(5, TimeUnit.SECONDS);
+            Mockito.verify(listener).onConnect(ArgumentMatchers.eq(secureRoute), ArgumentMatchers.anyLong());
+            Mockito.verify(listener, Mockito.never()).onTlsHandshake(
+                    ArgumentMatchers.<HttpRoute>any(), ArgumentMatchers.anyLong());
+
+            final ArgumentCaptor<SSLSessionVerifier> verifierCaptor = ArgumentCaptor.forClass(SSLSessionVerifier.class);
+            Mockito.verify(session).startTls(
+                    ArgumentMatchers.<SSLContext>any(), ArgumentMatchers.<SSLBufferManagement>any(),
+                    ArgumentMatchers.<SSLSessionInitializer>any(), verifierCaptor.capture());
+            verifierCaptor.getValue().verify(null, null);
+            Mockito.verify(listener).onTlsHandshake(ArgumentMatchers.eq(secureRoute), ArgumentMatchers.anyLong());
+        }
+    }
+
+    @Test
+    public void testPrewarmNegotiationTimeout() throws Exception {
+        Mockito.when(protocolHandler.getProtocolVersion()).thenReturn(null);
+
+        final PrewarmReport report = mgr.prewarm(
+                route, 1, Timeout.ofMillis(100), connectionInitiator, HttpVersionPolicy.NEGOTIATE, null)
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(0, report.getSucceeded());
+        Assert.assertEquals(1, report.getFailures().size());
+        Assert.assertEquals(0, mgr.getStats(route).getAvailable());
+    }
+
+}